@@ -107,6 +107,12 @@ public class ExecutableFile implements Serializable
      */
     public boolean keepFile;
 
+    /**
+     * Indicates a JAR executable should be run inside the installer JVM rather than in a new java process.
+     * Default is false for backward compatibility.
+     */
+    public boolean inProcess;
+
     /**
      * condition for this executable
      */
@@ -125,6 +131,7 @@ public class ExecutableFile implements Serializable
         osList = new ArrayList<OsModel>();
         argList = new ArrayList<String>();
         keepFile = false;
+        inProcess = false;
     }
 
     /**
@@ -195,6 +202,8 @@ public class ExecutableFile implements Serializable
         }
         retval.append("keepFile = ").append(keepFile);
         retval.append("\n");
+        retval.append("inProcess = ").append(inProcess);
+        retval.append("\n");
         return retval.toString();
     }
 
@@ -133,6 +133,17 @@ public class Pack implements Serializable
      */
     private boolean preselected;
 
+    /**
+     * The size of the jar holding the pack, if packs are written to separate jars, or {@code 0} if unknown.
+     */
+    private long jarSize;
+
+    /**
+     * The hex encoded SHA-256 digest of the jar holding the pack, if packs are written to separate jars.
+     * May be {@code null}
+     */
+    private String jarChecksum;
+
     /**
      * Parent pack name. May be {@code null}
      */
@@ -158,6 +169,12 @@ public class Pack implements Serializable
      */
     private boolean hidden;
 
+    /**
+     * If {@code true}, files whose content has already been installed are created as hard links to the installed
+     * copy.
+     */
+    private boolean hardLinks;
+
     /**
      * Used for conversions.
      */
@@ -511,6 +528,38 @@ public class Pack implements Serializable
         return fileSize;
     }
 
+    /**
+     * Sets the size and checksum of the separate jar holding the pack, used to verify downloads by web installers.
+     *
+     * @param size     the size of the jar, in bytes
+     * @param checksum the hex encoded SHA-256 digest of the jar
+     */
+    public void setJar(long size, String checksum)
+    {
+        jarSize = size;
+        jarChecksum = checksum;
+    }
+
+    /**
+     * Returns the size of the separate jar holding the pack.
+     *
+     * @return the size of the jar, in bytes, or {@code 0} if unknown
+     */
+    public long getJarSize()
+    {
+        return jarSize;
+    }
+
+    /**
+     * Returns the checksum of the separate jar holding the pack.
+     *
+     * @return the hex encoded SHA-256 digest of the jar, or {@code null} if unknown
+     */
+    public String getJarChecksum()
+    {
+        return jarChecksum;
+    }
+
     /**
      * Sets the parent pack name.
      *
@@ -658,6 +707,30 @@ public class Pack implements Serializable
         return hidden;
     }
 
+    /**
+     * Determines if files whose content has already been installed are created as hard links to the installed copy,
+     * rather than being extracted again.
+     * <p/>
+     * Linked files share permissions and content with the installed copy. Where links aren't supported, the
+     * installed copy is copied instead.
+     *
+     * @param hardLinks if {@code true}, create hard links to identical content that has already been installed
+     */
+    public void setHardLinks(boolean hardLinks)
+    {
+        this.hardLinks = hardLinks;
+    }
+
+    /**
+     * Determines if files whose content has already been installed are created as hard links to the installed copy.
+     *
+     * @return {@code true} if hard links are created to identical content that has already been installed
+     */
+    public boolean isHardLinks()
+    {
+        return hardLinks;
+    }
+
     /**
      * To a String (useful for JLists).
      *
@@ -135,6 +135,11 @@ public class PackInfo implements Serializable
         pack.setHidden(hidden);
     }
 
+    public void setHardLinks(boolean hardLinks)
+    {
+        pack.setHardLinks(hardLinks);
+    }
+
     /**
      * Add a file or directory to be installed.
      *
@@ -35,6 +35,20 @@ public interface Value
 
     Set<String> getVarRefs();
 
+    /**
+     * Determines if the value may resolve differently, even if the variables it references are unchanged.
+     * <p/>
+     * A non-volatile value must access variables only via the substitutors passed to
+     * {@link #resolve(VariableSubstitutor...)}. This allows the result of a previous resolution to be reused if none
+     * of the substituted strings have changed.
+     *
+     * @return {@code true} if the value depends on state other than variables, such as files or processes
+     */
+    default boolean isVolatile()
+    {
+        return true;
+    }
+
     InstallData getInstallData();
 
     void setInstallData(InstallData installData);
@@ -34,4 +34,18 @@ public interface ValueFilter extends Serializable
     String filter(String value, VariableSubstitutor... substitutors) throws Exception;
 
     void validate() throws Exception;
+
+    /**
+     * Determines if the filter may produce different results for the same input, even if the variables it references
+     * are unchanged.
+     * <p/>
+     * A non-volatile filter must access variables only via the substitutors passed to
+     * {@link #filter(String, VariableSubstitutor...)}.
+     *
+     * @return {@code true} if the filter depends on state other than its input and variables
+     */
+    default boolean isVolatile()
+    {
+        return true;
+    }
 }
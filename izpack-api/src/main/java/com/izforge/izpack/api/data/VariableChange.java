@@ -0,0 +1,94 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.data;
+
+
+/**
+ * A change to the value of a variable.
+ */
+public final class VariableChange
+{
+
+    /**
+     * The variable name.
+     */
+    private final String name;
+
+    /**
+     * The value before the change.
+     */
+    private final String oldValue;
+
+    /**
+     * The value after the change.
+     */
+    private final String newValue;
+
+
+    /**
+     * Constructs a {@code VariableChange}.
+     *
+     * @param name     the variable name
+     * @param oldValue the value before the change. May be {@code null}
+     * @param newValue the value after the change. May be {@code null}
+     */
+    public VariableChange(String name, String oldValue, String newValue)
+    {
+        this.name = name;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+    }
+
+    /**
+     * Returns the variable name.
+     *
+     * @return the variable name
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns the value before the change.
+     *
+     * @return the old value, or {@code null} if the variable was not set
+     */
+    public String getOldValue()
+    {
+        return oldValue;
+    }
+
+    /**
+     * Returns the value after the change.
+     *
+     * @return the new value, or {@code null} if the variable was unset
+     */
+    public String getNewValue()
+    {
+        return newValue;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name + ": '" + oldValue + "' -> '" + newValue + "'";
+    }
+}
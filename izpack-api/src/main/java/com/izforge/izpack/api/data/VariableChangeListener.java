@@ -0,0 +1,43 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.data;
+
+import java.util.List;
+
+
+/**
+ * Listener for changes to {@link Variables}.
+ */
+public interface VariableChangeListener
+{
+
+    /**
+     * Invoked after variables have changed.
+     * <p/>
+     * Changes made while {@link Variables#refresh() refreshing} dynamic variables are reported together once the
+     * refresh completes, with a single change per variable, from its value before the refresh to its value after.
+     * Variables that were changed and then restored to their original value are not reported.
+     * <p/>
+     * Listeners are invoked on the thread that changed the variables.
+     *
+     * @param changes the changes, in the order the variables were first changed
+     */
+    void variablesChanged(List<VariableChange> changes);
+}
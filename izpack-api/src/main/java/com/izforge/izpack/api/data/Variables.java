@@ -139,6 +139,22 @@ public interface Variables
      */
     Properties getProperties();
 
+    /**
+     * Returns a copy of the variables.
+     * <p/>
+     * Unlike {@link #getProperties()}, the copy is safe to iterate while other threads change variables.
+     *
+     * @return a copy of the variables
+     */
+    default Properties getSnapshot()
+    {
+        Properties properties = getProperties();
+        synchronized (properties)
+        {
+            return (Properties) properties.clone();
+        }
+    }
+
     /**
      * Register a set of variable names for blocking from further changes.
      *
@@ -191,6 +207,44 @@ public interface Variables
      */
     Overrides getOverrides();
 
+    /**
+     * Returns a count that increases whenever the value of a variable changes.
+     * <p/>
+     * This allows results derived from variables to be cached until a variable changes.
+     *
+     * @return the modification count, or {@code -1} if modifications aren't tracked, or derived results can't
+     *         currently be cached
+     */
+    default long getModificationCount()
+    {
+        return -1;
+    }
+
+    /**
+     * Registers a listener to be notified when variable values change.
+     * <p/>
+     * Changes made directly to the {@link #getProperties() properties} or by {@link #setOverrides(Overrides)} are
+     * not reported.
+     * <p/>
+     * This implementation does nothing, for implementations that don't report changes.
+     *
+     * @param listener the listener to add
+     */
+    default void addChangeListener(VariableChangeListener listener)
+    {
+    }
+
+    /**
+     * Removes a change listener.
+     * <p/>
+     * This implementation does nothing, for implementations that don't report changes.
+     *
+     * @param listener the listener to remove
+     */
+    default void removeChangeListener(VariableChangeListener listener)
+    {
+    }
+
     /**
      * Sets the current rules engine
      *
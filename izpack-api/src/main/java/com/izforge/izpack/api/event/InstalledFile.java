@@ -0,0 +1,71 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.izforge.izpack.api.event;
+
+import com.izforge.izpack.api.data.PackFile;
+
+import java.io.File;
+
+/**
+ * A file installed from a pack, as passed to {@link InstallerListener#afterFiles}.
+ */
+public class InstalledFile
+{
+    /**
+     * The installed file.
+     */
+    private final File file;
+
+    /**
+     * The corresponding pack file.
+     */
+    private final PackFile packFile;
+
+    /**
+     * Constructs an {@code InstalledFile}.
+     *
+     * @param file     the installed file
+     * @param packFile the corresponding pack file
+     */
+    public InstalledFile(File file, PackFile packFile)
+    {
+        this.file = file;
+        this.packFile = packFile;
+    }
+
+    /**
+     * Returns the installed file.
+     *
+     * @return the installed file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Returns the corresponding pack file.
+     *
+     * @return the pack file
+     */
+    public PackFile getPackFile()
+    {
+        return packFile;
+    }
+}
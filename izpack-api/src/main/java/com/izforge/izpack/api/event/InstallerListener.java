@@ -27,19 +27,57 @@ import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.api.exception.IzPackException;
 
 import java.io.File;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * <p>
  * Implementations of this class are used to handle customizing installation. The defined methods
  * are called from the unpacker at different, well defined points of installation.
  * </p>
+ * <p>
+ * File listeners may restrict the per-file notifications they receive using {@link #getFileEvents()} and
+ * {@link #isFileListener(PackFile, Pack)}, and may receive installed files in batches via
+ * {@link #afterFiles(List, Pack)} rather than one at a time.
+ * </p>
  *
  * @author Klaus Bartz
  * @author Tim Anderson
  */
 public interface InstallerListener extends InstallationListener
 {
+    /**
+     * The per-file notifications that a {@link #isFileListener() file listener} may receive.
+     */
+    enum FileEvent
+    {
+        /**
+         * {@link InstallerListener#beforeDir} notifications.
+         */
+        BEFORE_DIR,
+
+        /**
+         * {@link InstallerListener#afterDir} notifications.
+         */
+        AFTER_DIR,
+
+        /**
+         * {@link InstallerListener#beforeFile} notifications.
+         */
+        BEFORE_FILE,
+
+        /**
+         * {@link InstallerListener#afterFile} notifications.
+         */
+        AFTER_FILE,
+
+        /**
+         * {@link InstallerListener#afterFiles} notifications.
+         */
+        AFTER_FILES
+    }
+
     /**
      * Invoked before packs are installed.
      *
@@ -121,4 +159,52 @@ public interface InstallerListener extends InstallationListener
      * @throws IzPackException for any error
      */
     void afterFile(File file, PackFile packFile, Pack pack);
+
+    /**
+     * Invoked after a batch of files has been installed.
+     * <p/>
+     * This is only invoked if {@link #getFileEvents()} includes {@link FileEvent#AFTER_FILES}. Files are passed
+     * in installation order, and all files of a pack are passed before {@link #afterPack} is invoked for it.
+     *
+     * @param files the installed files
+     * @param pack  the pack that the files come from
+     * @throws IzPackException for any error
+     */
+    default void afterFiles(List<InstalledFile> files, Pack pack)
+    {
+    }
+
+    /**
+     * Returns the per-file notifications that the listener should receive, if it is a
+     * {@link #isFileListener() file listener}.
+     * <p/>
+     * Directories are created in a single step unless a listener requires {@link FileEvent#BEFORE_DIR} or
+     * {@link FileEvent#AFTER_DIR} notifications.
+     * <p/>
+     * This implementation returns all of the individual file and directory notifications.
+     *
+     * @return the notifications
+     */
+    default Set<FileEvent> getFileEvents()
+    {
+        return EnumSet.of(FileEvent.BEFORE_DIR, FileEvent.AFTER_DIR, FileEvent.BEFORE_FILE, FileEvent.AFTER_FILE);
+    }
+
+    /**
+     * Determines if the listener should be notified of the installation of a particular pack file.
+     * <p/>
+     * This allows listeners to restrict notifications to e.g. those files matching path patterns, or having
+     * particular {@link PackFile#getAdditionals() additional data}. It is only invoked for
+     * {@link #isFileListener() file listeners}.
+     * <p/>
+     * This implementation returns {@code true}.
+     *
+     * @param packFile the pack file
+     * @param pack     the pack that {@code packFile} comes from
+     * @return {@code true} if the listener should be notified of the pack file, otherwise {@code false}
+     */
+    default boolean isFileListener(PackFile packFile, Pack pack)
+    {
+        return true;
+    }
 }
@@ -57,6 +57,23 @@ public interface ProgressListener
      */
     void progress(int subStep, String message);
 
+    /**
+     * Invoked to notify progress in bytes, across all the steps of an action.
+     * <p/>
+     * This is invoked in addition to the step notifications, by actions that can measure their progress in bytes,
+     * such as unpacking. It is invoked periodically rather than per sub-step, and once the action is complete.
+     * <p/>
+     * This implementation does nothing.
+     *
+     * @param bytes           the number of bytes processed so far
+     * @param totalBytes      the total number of bytes to process
+     * @param bytesPerSecond  the current throughput, or {@code 0} if it is not yet known
+     * @param remainingMillis the estimated time remaining in milliseconds, or {@code -1} if it is not yet known
+     */
+    default void progressBytes(long bytes, long totalBytes, long bytesPerSecond, long remainingMillis)
+    {
+    }
+
     /**
      * Invoked when an action restarts.
      *
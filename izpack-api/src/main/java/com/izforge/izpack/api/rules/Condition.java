@@ -100,6 +100,20 @@ public abstract class Condition implements Serializable
      */
     public abstract void makeXMLData(IXMLElement conditionRoot);
 
+    /**
+     * Determines if the condition may change its result even though no variable has changed.
+     * <p/>
+     * The result of a condition that isn't volatile is cached by the rules engine until a variable changes.
+     * Conditions that depend on anything other than variables, such as files, pack selections or Java fields, must
+     * be volatile.
+     *
+     * @return {@code true} if the condition must be evaluated every time. This implementation returns {@code true}
+     */
+    public boolean isVolatile()
+    {
+        return true;
+    }
+
     /**
      * This element will be called when the order of variable resolutions is 
      * determined.
@@ -43,4 +43,10 @@ public abstract class ConditionReference extends Condition
     public Set<String> getVarRefs() {
         return referencedCondition.getVarRefs();
     }
+
+    @Override
+    public boolean isVolatile()
+    {
+        return referencedCondition == null || referencedCondition.isVolatile();
+    }
 }
@@ -49,4 +49,17 @@ public abstract class ConditionWithMultipleOperands extends Condition
         }
         return vars;
     }
+
+    @Override
+    public boolean isVolatile()
+    {
+        for (Condition condition : nestedConditions)
+        {
+            if (condition == null || condition.isVolatile())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,71 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.substitutor;
+
+import java.util.Set;
+
+
+/**
+ * A string that has been parsed once into literal text and variable references.
+ * <p/>
+ * Rendering a template resolves the references against the current variable values, so a template can be rendered
+ * repeatedly as variables change, without the string being parsed again.
+ */
+public interface SubstitutionTemplate
+{
+
+    /**
+     * Returns the string the template was parsed from.
+     *
+     * @return the source string
+     */
+    String getSource();
+
+    /**
+     * Returns the escaping type applied to substituted values.
+     *
+     * @return the substitution type
+     */
+    SubstitutionType getType();
+
+    /**
+     * Returns the names of the IzPack variables referenced by the template.
+     * <p/>
+     * References to environment variables and system properties are not included.
+     *
+     * @return the referenced variable names. An empty set if there are none
+     */
+    Set<String> getVariableNames();
+
+    /**
+     * Determines if the template contains any variable references, including references to environment variables
+     * and system properties.
+     *
+     * @return {@code true} if the template contains references, {@code false} if it always renders to its source
+     */
+    boolean hasReferences();
+
+    /**
+     * Substitutes the current variable values into the template.
+     *
+     * @return the string with substituted variables
+     */
+    String render();
+}
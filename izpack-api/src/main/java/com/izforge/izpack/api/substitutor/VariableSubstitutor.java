@@ -70,6 +70,26 @@ public interface VariableSubstitutor extends Serializable
      */
     String substitute(String str, SubstitutionType type);
 
+    /**
+     * Returns a template for the specified string, using plain escaping.
+     *
+     * @param str the string to parse
+     * @return the template for the string
+     */
+    SubstitutionTemplate getTemplate(String str);
+
+    /**
+     * Returns a template for the specified string.
+     * <p/>
+     * Templates are cached by source and type, so callers that substitute the same string repeatedly only parse it
+     * once.
+     *
+     * @param str  the string to parse
+     * @param type the escaping type or null for plain
+     * @return the template for the string
+     */
+    SubstitutionTemplate getTemplate(String str, SubstitutionType type);
+
     /**
      * Substitutes the variables found in the specified input stream. Escapes special characters
      * using file type specific escaping if necessary.
@@ -837,6 +837,7 @@ public class CompilerConfig
             boolean loose = Boolean.parseBoolean(packElement.getAttribute("loose", "false"));
             String description = xmlCompilerHelper.requireChildNamed(packElement, "description").getContent();
             boolean hidden = Boolean.parseBoolean(packElement.getAttribute("hidden", "false"));
+            boolean hardLinks = Boolean.parseBoolean(packElement.getAttribute("hardlinks", "false"));
             boolean required = hidden ? true : xmlCompilerHelper.requireYesNoAttribute(packElement, "required");
             if (!required)
             {
@@ -867,6 +868,7 @@ public class CompilerConfig
                 pack.setCondition(conditionId);
             }
             pack.setHidden(hidden);
+            pack.setHardLinks(hardLinks);
 
             // unverified
             // if the pack belongs to an excludeGroup it's not preselected by default
@@ -1285,6 +1287,7 @@ public class CompilerConfig
             List<OsModel> osList = OsConstraintHelper.getOsList(executableNode); // TODO: unverified
             int executionStage = ExecutableFile.NEVER, type = ExecutableFile.BIN, onFailure = ExecutableFile.ASK;
             boolean keepFile;
+            boolean inProcess;
 
             String val = executableNode.getAttribute("stage", "never");
             if ("postinstall".equalsIgnoreCase(val))
@@ -1334,6 +1337,14 @@ public class CompilerConfig
             val = executableNode.getAttribute("keep");
             keepFile = Boolean.parseBoolean(val);
 
+            // whether to run a jar executable inside the installer JVM
+            val = executableNode.getAttribute("inprocess");
+            inProcess = Boolean.parseBoolean(val);
+            if (inProcess && type != ExecutableFile.JAR)
+            {
+                throw new CompilerException("Attribute 'inprocess' allowed for type 'jar' only");
+            }
+
             // get arguments for this executable
             IXMLElement args = executableNode.getFirstChildNamed("args");
             List<String> argsList = new ArrayList<String>();
@@ -1348,7 +1359,7 @@ public class CompilerConfig
             if (target != null)
             {
                 addNewExecutableFile(pack, target, conditionId, osList, executionStage, type, mainClass,
-                        onFailure, keepFile, argsList);
+                        onFailure, keepFile, inProcess, argsList);
                 logMarkFileExecutable(target);
             }
             for (IXMLElement fileSetElement : executableNode.getChildrenNamed("fileset"))
@@ -1358,7 +1369,7 @@ public class CompilerConfig
                 for (String filePath : includedFiles)
                 {
                     addNewExecutableFile(pack, filePath, conditionId, osList, executionStage, type, mainClass,
-                            onFailure, keepFile, argsList);
+                            onFailure, keepFile, inProcess, argsList);
                     logMarkFileExecutable(filePath);
                 }
             }
@@ -1366,8 +1377,8 @@ public class CompilerConfig
     }
 
     private void addNewExecutableFile(PackInfo pack, String target, String condition, List<OsModel> osList,
-            int executionStage, int type, String mainClass, int onFailure, boolean keepFile, List<String> argsList
-            ) throws CompilerException
+            int executionStage, int type, String mainClass, int onFailure, boolean keepFile, boolean inProcess,
+            List<String> argsList) throws CompilerException
     {
         ExecutableFile executable = new ExecutableFile();
         executable.path = target;
@@ -1378,6 +1389,7 @@ public class CompilerConfig
         executable.mainClass = mainClass;
         executable.onFailure = onFailure;
         executable.keepFile = keepFile;
+        executable.inProcess = inProcess;
         for (String arg : argsList)
         {
             executable.argList.add(arg);
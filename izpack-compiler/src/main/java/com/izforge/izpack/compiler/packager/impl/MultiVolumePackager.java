@@ -30,6 +30,7 @@ import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.merge.CompilerPathResolver;
 import com.izforge.izpack.core.io.FileSpanningOutputStream;
+import com.izforge.izpack.core.io.VolumeIndex;
 import com.izforge.izpack.api.data.PackInfo;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
@@ -84,6 +85,14 @@ public class MultiVolumePackager extends PackagerBase
      */
     private long maxVolumeSize = FileSpanningOutputStream.DEFAULT_VOLUME_SIZE;
 
+    /**
+     * The no. of uncompressed bytes after which a new compressed block is started, at the next file boundary.
+     * <p/>
+     * The installer can only start decompressing at the start of a block, so this limits the data it must read
+     * through to reach a file.
+     */
+    private static final long SYNC_INTERVAL = FileSpanningOutputStream.MB;
+
     /**
      * The configuration attribute to specify the volume size.
      */
@@ -186,15 +195,19 @@ public class MultiVolumePackager extends PackagerBase
         logger.fine("Subsequent volume size: " + maxVolumeSize);
 
         File volume = new File(getInfo().getInstallerBase() + ".pak").getAbsoluteFile();
-        int volumes = writePacks(installerJar, packs, volume);
+        FileSpanningOutputStream volumeStream = new FileSpanningOutputStream(volume, maxFirstVolumeSize,
+                                                                             maxVolumeSize);
+        int volumes = writePacks(installerJar, packs, volumeStream, volume);
+        VolumeIndex volumeIndex = volumeStream.getIndex();
 
         // write metadata for reading in volumes
-        logger.fine("Written " + volumes + " volumes");
+        logger.fine("Written " + volumes + " volumes, with " + volumeIndex.size() + " compressed blocks");
 
         installerJar.putNextEntry(new ZipEntry(RESOURCES_PATH + "volumes.info"));
         ObjectOutputStream out = new ObjectOutputStream(installerJar);
         out.writeInt(volumes);
         out.writeUTF(volume.getName());
+        volumeIndex.write(out);
         out.flush();
         installerJar.closeEntry();
 
@@ -209,13 +222,14 @@ public class MultiVolumePackager extends PackagerBase
     /**
      * Writes packs to one or more <em>.pak</em> volumes.
      *
-     * @param packs  the packs to write
-     * @param volume the first volume
+     * @param packs   the packs to write
+     * @param volumes the volumes to write to. This is closed on return
+     * @param volume  the first volume
      * @return the no. of volumes written
      */
-    private int writePacks(JarOutputStream installerJar, List<PackInfo> packs, File volume) throws IOException
+    private int writePacks(JarOutputStream installerJar, List<PackInfo> packs, FileSpanningOutputStream volumes,
+                           File volume) throws IOException
     {
-        FileSpanningOutputStream volumes = new FileSpanningOutputStream(volume, maxFirstVolumeSize, maxVolumeSize);
         File targetDir = volume.getParentFile();
         if (targetDir == null)
         {
@@ -252,6 +266,9 @@ public class MultiVolumePackager extends PackagerBase
         logger.fine("Writing Pack: " + name);
         ZipEntry entry = new ZipEntry(RESOURCES_PATH + "packs/pack-" + name);
 
+        // start each pack in a new compressed block, so that deselected packs can be skipped without reading them
+        volumes.sync();
+
         installerJar.putNextEntry(entry);
         ObjectOutputStream packStream = new ObjectOutputStream(installerJar);
 
@@ -325,6 +342,11 @@ public class MultiVolumePackager extends PackagerBase
      */
     private void writePackFile(File file, FileSpanningOutputStream volumes, XPackFile packFile) throws IOException
     {
+        VolumeIndex index = volumes.getIndex();
+        if (volumes.getFilePointer() - index.getPosition(index.size() - 1) >= SYNC_INTERVAL)
+        {
+            volumes.sync();
+        }
         long beforePosition = volumes.getFilePointer();
         packFile.setArchiveFilePosition(beforePosition);
 
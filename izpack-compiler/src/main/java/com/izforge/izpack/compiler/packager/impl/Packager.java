@@ -32,6 +32,7 @@ import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.merge.CompilerPathResolver;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
+import com.izforge.izpack.util.FileUtil;
 import com.izforge.izpack.util.NoCloseOutputStream;
 import com.izforge.izpack.util.StreamSupport;
 import org.apache.commons.compress.java.util.jar.Pack200;
@@ -198,6 +199,12 @@ public class Packager extends PackagerBase
                     packJar.close();
                 }
             }
+            if (packSeparateJars())
+            {
+                // record the jar size and checksum so web installers can verify and resume downloads
+                Path jarFile = Paths.get(getInfo().getInstallerBase() + ".pack-" + pack.getName() + ".jar");
+                pack.setJar(Files.size(jarFile), FileUtil.sha256(jarFile));
+            }
 
             IXMLElement child = new XMLElementImpl("pack", root);
             child.setAttribute("name", pack.getName());
@@ -23,21 +23,50 @@ package com.izforge.izpack.core.data;
 
 import com.izforge.izpack.api.data.DynamicVariable;
 import com.izforge.izpack.api.data.Overrides;
+import com.izforge.izpack.api.data.Value;
+import com.izforge.izpack.api.data.VariableChange;
+import com.izforge.izpack.api.data.VariableChangeListener;
 import com.izforge.izpack.api.data.Variables;
 import com.izforge.izpack.api.exception.InstallerException;
 import com.izforge.izpack.api.exception.IzPackException;
+import com.izforge.izpack.api.data.ValueFilter;
 import com.izforge.izpack.api.rules.RulesEngine;
+import com.izforge.izpack.api.substitutor.SubstitutionTemplate;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import com.izforge.izpack.core.variable.utils.ValueCache;
 import com.izforge.izpack.core.variable.utils.ValueUtils;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
 /**
  * Default implementation of the {@link Variables} interface.
+ * <p/>
+ * This is thread safe. Reads don't lock: the variables are held in {@link Properties}, which are backed by a
+ * concurrent map. Writes are serialized on the properties. While dynamic variables are being
+ * {@link #refresh() refreshed}, the changes made by the refresh are only visible to the refreshing thread, and are
+ * published to other threads together once the refresh completes.
  *
  * @author Tim Anderson
  */
@@ -52,7 +81,7 @@ public class DefaultVariables implements Variables
     /**
      * The forced override values.
      */
-    private Overrides overrides;
+    private volatile Overrides overrides;
 
     /**
      * The dynamic variables.
@@ -72,7 +101,56 @@ public class DefaultVariables implements Variables
     /**
      * Maps variable names to their stack of blocker objects.
      */
-    private transient Map<String, Deque<Object>> blockedVariableNameStacks = new HashMap<String, Deque<Object>>();
+    private transient Map<String, Deque<Object>> blockedVariableNameStacks
+            = new ConcurrentHashMap<String, Deque<Object>>();
+
+    /**
+     * The thread refreshing dynamic variables, or {@code null} if no refresh is in progress.
+     */
+    private volatile Thread refreshThread;
+
+    /**
+     * The values set by the refresh in progress, not yet visible to other threads. Only accessed by the
+     * {@link #refreshThread}. A {@code null} value indicates that the variable has been unset.
+     */
+    private final Map<String, String> staged = new LinkedHashMap<String, String>();
+
+    /**
+     * The last evaluation of each non-volatile dynamic variable, used to skip re-evaluation if its inputs are
+     * unchanged.
+     */
+    private final Map<DynamicVariable, Evaluation> evaluations = new IdentityHashMap<DynamicVariable, Evaluation>();
+
+    /**
+     * Incremented each time the value of a variable changes.
+     */
+    private final AtomicLong modifications = new AtomicLong();
+
+    /**
+     * The change listeners.
+     */
+    private final List<VariableChangeListener> listeners = new CopyOnWriteArrayList<VariableChangeListener>();
+
+    /**
+     * The changes collected during a refresh, keyed on variable name, or {@code null} if changes are reported as
+     * they are made. Guarded by {@link #listeners}.
+     */
+    private Map<String, VariableChange> batch;
+
+    /**
+     * The number of nested refreshes collecting changes. Guarded by {@link #listeners}.
+     */
+    private int batchDepth;
+
+    /**
+     * The executor used to evaluate independent dynamic variables concurrently. Created on demand.
+     */
+    private ExecutorService executor;
+
+    /**
+     * The maximum number of dynamic variables evaluated concurrently.
+     */
+    private static final int MAX_CONCURRENT_EVALUATIONS = 4;
 
 
     /**
@@ -118,12 +196,44 @@ public class DefaultVariables implements Variables
      */
     @Override
     public void set(String name, String value)
+    {
+        String previous;
+        if (isRefreshing())
+        {
+            previous = get(name);
+            staged.put(name, value);
+        }
+        else
+        {
+            synchronized (properties)
+            {
+                previous = get(name);
+                write(name, value);
+            }
+        }
+
+        if (!Objects.equals(previous, value))
+        {
+            changed(name, previous, value);
+        }
+    }
+
+    /**
+     * Writes a variable to the properties.
+     * <p/>
+     * The caller must hold the lock on the properties.
+     *
+     * @param name  the variable name
+     * @param value the variable value. May be {@code null}
+     */
+    private void write(String name, String value)
     {
         // Prevent from re-applying when pressing Previous button in panel
         // but preserve user values made at the panel where Previous has been pressed
-        if (overrides != null)
+        Overrides current = overrides;
+        if (current != null)
         {
-            overrides.remove(name);
+            current.remove(name);
         }
 
         if (value != null)
@@ -138,6 +248,16 @@ public class DefaultVariables implements Variables
         }
     }
 
+    /**
+     * Determines if the current thread is refreshing dynamic variables.
+     *
+     * @return {@code true} if the current thread is refreshing dynamic variables
+     */
+    private boolean isRefreshing()
+    {
+        return refreshThread == Thread.currentThread();
+    }
+
     /**
      * Returns the value of the specified variable.
      *
@@ -147,7 +267,12 @@ public class DefaultVariables implements Variables
     @Override
     public String get(String name)
     {
-        return containsOverride(name) ? overrides.fetch(name) : properties.getProperty(name);
+        if (isRefreshing() && staged.containsKey(name))
+        {
+            return staged.get(name);
+        }
+        Overrides current = overrides;
+        return (current != null && current.containsKey(name)) ? current.fetch(name) : properties.getProperty(name);
     }
 
     /**
@@ -159,8 +284,14 @@ public class DefaultVariables implements Variables
     @Override
     public String get(String name, String defaultValue)
     {
+        if (isRefreshing() && staged.containsKey(name))
+        {
+            String value = staged.get(name);
+            return (value != null) ? value : defaultValue;
+        }
         final String value = properties.getProperty(name, defaultValue);
-        return containsOverride(name) ? overrides.fetch(name, value) : value;
+        Overrides current = overrides;
+        return (current != null && current.containsKey(name)) ? current.fetch(name, value) : value;
     }
 
     /**
@@ -315,7 +446,90 @@ public class DefaultVariables implements Variables
         Set<DynamicVariable> checkedVariables = new HashSet<DynamicVariable>();
         Set<String> unsetVariables = new HashSet<String>();
         Set<String> setVariables = new HashSet<String>();
+        Map<DynamicVariable, Future<Evaluation>> prefetched = Collections.emptyMap();
+        boolean outermost = !isRefreshing();
+        ValueCache.startRefresh();
+        refreshThread = Thread.currentThread();
+        startBatch();
+        try
+        {
+            prefetched = prefetch();
+            refresh(prefetched, checkedVariables, unsetVariables, setVariables);
+
+            for (String key : unsetVariables)
+            {
+                // Don't unset dynamic variable from one definition, which
+                // are set to a value from another one during this refresh
+                if (!setVariables.contains(key))
+                {
+                    if (get(key)!=null)
+                    {
+                        set(key, null);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            for (Future<Evaluation> future : prefetched.values())
+            {
+                future.cancel(false);
+            }
+            if (outermost)
+            {
+                publish();
+            }
+            endBatch();
+            ValueCache.endRefresh();
+        }
+
+        for (DynamicVariable variable : checkedVariables)
+        {
+            variable.setChecked();
+        }
+    }
+
+    /**
+     * Makes the changes made by a refresh visible to other threads.
+     */
+    private void publish()
+    {
+        try
+        {
+            boolean modified = false;
+            synchronized (properties)
+            {
+                for (Map.Entry<String, String> entry : staged.entrySet())
+                {
+                    String name = entry.getKey();
+                    modified |= !Objects.equals(properties.getProperty(name), entry.getValue());
+                    write(name, entry.getValue());
+                }
+            }
+            if (modified)
+            {
+                // invalidate anything derived from the previously published values
+                modifications.incrementAndGet();
+            }
+        }
+        finally
+        {
+            staged.clear();
+            refreshThread = null;
+        }
+    }
 
+    /**
+     * Evaluates each dynamic variable in turn.
+     *
+     * @param prefetched       the concurrently evaluated variables
+     * @param checkedVariables collects the variables to mark checked once all variables are evaluated
+     * @param unsetVariables   collects the names of variables to unset
+     * @param setVariables     collects the names of variables that were set
+     */
+    private void refresh(Map<DynamicVariable, Future<Evaluation>> prefetched, Set<DynamicVariable> checkedVariables,
+                         Set<String> unsetVariables, Set<String> setVariables)
+    {
         for (DynamicVariable variable : dynamicVariables)
         {
             String name = variable.getName();
@@ -329,7 +543,7 @@ public class DefaultVariables implements Variables
                         String newValue;
                         try
                         {
-                            newValue = variable.evaluate(replacer);
+                            newValue = evaluate(variable, prefetched.get(variable));
                         }
                         catch (IzPackException exception)
                         {
@@ -362,7 +576,8 @@ public class DefaultVariables implements Variables
                     }
                     else
                     {
-                        String previousValue = properties.getProperty(name);
+                        String previousValue = isRefreshing() && staged.containsKey(name)
+                                ? staged.get(name) : properties.getProperty(name);
                         if (previousValue != null)
                         {
                             set(name, previousValue); // Set here for properly set conditions
@@ -383,28 +598,211 @@ public class DefaultVariables implements Variables
                 logger.fine("Dynamic variable '" + name + "' blocked from changing due to user input");
             }
         }
+    }
+
+    /**
+     * Starts evaluating dynamic variables that are expensive to evaluate, and that don't depend on any other dynamic
+     * variable, on a bounded pool of threads.
+     * <p/>
+     * Such variables would see the same variable values wherever they are evaluated in the refresh, so their
+     * evaluation can overlap, rather than stalling the refresh one after another. Their results are only used if the
+     * strings they substituted are unchanged when the variable is reached in the refresh; otherwise the variable is
+     * evaluated again in sequence.
+     *
+     * @return the variables being evaluated, and their pending evaluations
+     */
+    private Map<DynamicVariable, Future<Evaluation>> prefetch()
+    {
+        Map<DynamicVariable, Future<Evaluation>> result = new IdentityHashMap<DynamicVariable, Future<Evaluation>>();
+        Set<String> names = new HashSet<String>();
+        for (DynamicVariable variable : dynamicVariables)
+        {
+            names.add(variable.getName());
+        }
+        List<DynamicVariable> candidates = new ArrayList<DynamicVariable>();
+        for (DynamicVariable variable : dynamicVariables)
+        {
+            if (isIndependent(variable, names))
+            {
+                candidates.add(variable);
+            }
+        }
+        if (candidates.size() > 1)
+        {
+            ExecutorService service = getExecutor();
+            for (final DynamicVariable variable : candidates)
+            {
+                result.put(variable, service.submit(new Callable<Evaluation>()
+                {
+                    @Override
+                    public Evaluation call() throws Exception
+                    {
+                        TrackingSubstitutor tracker = new TrackingSubstitutor(replacer);
+                        String value = variable.evaluate(tracker);
+                        return tracker.isComplete() ? new Evaluation(variable, tracker.getTemplates(),
+                                                                     tracker.getRendered(), value) : null;
+                    }
+                }));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Determines if a dynamic variable may be evaluated concurrently with others.
+     *
+     * @param variable the variable
+     * @param names    the names of all dynamic variables
+     * @return {@code true} if the variable is expensive to evaluate, will be evaluated by this refresh, and neither
+     *         it nor its condition references a dynamic variable
+     */
+    private boolean isIndependent(DynamicVariable variable, Set<String> names)
+    {
+        String name = variable.getName();
+        if (variable.getValue() == null || variable.isCheckonce() || isCacheable(variable)
+                || isBlockedVariableName(name) || containsOverride(name))
+        {
+            return false;
+        }
+        String conditionId = variable.getConditionid();
+        if (conditionId != null && (rules == null || !rules.isConditionTrue(conditionId)))
+        {
+            return false;
+        }
+        return Collections.disjoint(variable.getVarRefs(rules), names);
+    }
 
-        for (String key : unsetVariables)
+    /**
+     * Returns the executor used to evaluate dynamic variables concurrently.
+     *
+     * @return the executor
+     */
+    private ExecutorService getExecutor()
+    {
+        if (executor == null)
         {
-            // Don't unset dynamic variable from one definition, which
-            // are set to a value from another one during this refresh
-            if (!setVariables.contains(key))
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                    MAX_CONCURRENT_EVALUATIONS, MAX_CONCURRENT_EVALUATIONS, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
             {
-                if (get(key)!=null)
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable)
                 {
-                    set(key, null);
+                    Thread thread = new Thread(runnable, "IzPack-DynamicVariables-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
                 }
+            });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    /**
+     * Evaluates a dynamic variable, using the result of its concurrent evaluation if that is still current.
+     *
+     * @param variable   the variable to evaluate
+     * @param prefetched the concurrent evaluation. May be {@code null}
+     * @return the variable value. May be {@code null}
+     * @throws Exception if the variable cannot be evaluated
+     */
+    private String evaluate(DynamicVariable variable, Future<Evaluation> prefetched) throws Exception
+    {
+        if (prefetched != null)
+        {
+            Evaluation evaluation = null;
+            try
+            {
+                evaluation = prefetched.get();
+            }
+            catch (ExecutionException exception)
+            {
+                // evaluate again in sequence, so that failures are reported as they would be otherwise
+                logger.log(Level.FINE, "Concurrent evaluation of dynamic variable '" + variable.getName()
+                        + "' failed", exception.getCause());
+            }
+            if (evaluation != null && evaluation.isCurrent(variable))
+            {
+                return evaluation.getResult();
             }
         }
+        return evaluate(variable);
+    }
 
-        for (DynamicVariable variable : checkedVariables)
+    /**
+     * Evaluates a dynamic variable.
+     * <p/>
+     * If the variable's value and filters aren't volatile, the strings they substituted are recorded. On subsequent
+     * refreshes, the previous result is returned if those strings still substitute to the same text, as evaluating
+     * the variable again would yield the same result. Evaluation order is unchanged, so each variable still sees the
+     * values set by the variables preceding it.
+     *
+     * @param variable the variable to evaluate
+     * @return the variable value. May be {@code null}
+     * @throws Exception if the variable cannot be evaluated
+     */
+    private String evaluate(DynamicVariable variable) throws Exception
+    {
+        if (variable.isCheckonce() || !isCacheable(variable))
         {
-            variable.setChecked();
+            evaluations.remove(variable);
+            return variable.evaluate(replacer);
+        }
+
+        Evaluation previous = evaluations.get(variable);
+        if (previous != null && previous.isCurrent(variable))
+        {
+            logger.fine("Dynamic variable '" + variable.getName() + "' unchanged");
+            return previous.getResult();
+        }
+
+        TrackingSubstitutor tracker = new TrackingSubstitutor(replacer);
+        String result = variable.evaluate(tracker);
+        if (tracker.isComplete())
+        {
+            evaluations.put(variable, new Evaluation(variable, tracker.getTemplates(), tracker.getRendered(), result));
         }
+        else
+        {
+            evaluations.remove(variable);
+        }
+        return result;
+    }
+
+    /**
+     * Determines if the result of evaluating a dynamic variable depends only on the strings it substitutes.
+     *
+     * @param variable the variable
+     * @return {@code true} if neither the value nor any filter is volatile
+     */
+    private boolean isCacheable(DynamicVariable variable)
+    {
+        if (variable.getValue() == null || variable.getValue().isVolatile())
+        {
+            return false;
+        }
+        List<ValueFilter> filters = variable.getFilters();
+        if (filters != null)
+        {
+            for (ValueFilter filter : filters)
+            {
+                if (filter.isVolatile())
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
 
     /**
      * Exposes the variables as properties.
+     * <p/>
+     * The properties are live, and don't include changes made by a refresh in progress on another thread. Use
+     * {@link #getSnapshot()} to iterate over the variables while they may be changed.
      *
      * @return the variables
      */
@@ -414,16 +812,164 @@ public class DefaultVariables implements Variables
         return properties;
     }
 
+    /**
+     * Returns a copy of the variables, consistent with respect to concurrent changes.
+     * <p/>
+     * The copy never reflects part of a refresh.
+     *
+     * @return a copy of the variables
+     */
+    @Override
+    public Properties getSnapshot()
+    {
+        return (Properties) properties.clone();
+    }
+
     @Override
     public boolean containsOverride(String name)
     {
-        return (overrides != null) && overrides.containsKey(name);
+        Overrides current = overrides;
+        return (current != null) && current.containsKey(name);
     }
 
     @Override
     public void setOverrides(Overrides overrides)
     {
         this.overrides = overrides;
+        modifications.incrementAndGet();
+    }
+
+    /**
+     * Returns a count that increases whenever the value of a variable changes.
+     * <p/>
+     * Changes made directly to the {@link #getProperties() properties} are not counted. While dynamic variables are
+     * being refreshed, the refreshing thread sees values that other threads don't, so {@code -1} is returned to
+     * prevent results derived from either view being cached.
+     *
+     * @return the modification count, or {@code -1} if a refresh is in progress
+     */
+    @Override
+    public long getModificationCount()
+    {
+        return (refreshThread != null) ? -1 : modifications.get();
+    }
+
+    /**
+     * Registers a listener to be notified when variable values change.
+     *
+     * @param listener the listener to add
+     */
+    @Override
+    public void addChangeListener(VariableChangeListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a change listener.
+     *
+     * @param listener the listener to remove
+     */
+    @Override
+    public void removeChangeListener(VariableChangeListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Records a change to a variable, notifying listeners unless changes are being collected by a refresh.
+     *
+     * @param name     the variable name
+     * @param oldValue the previous value. May be {@code null}
+     * @param newValue the new value. May be {@code null}
+     */
+    private void changed(String name, String oldValue, String newValue)
+    {
+        if (!isRefreshing())
+        {
+            // staged values are counted when they are published
+            modifications.incrementAndGet();
+        }
+        List<VariableChange> changes = null;
+        synchronized (listeners)
+        {
+            if (batch != null && isRefreshing())
+            {
+                VariableChange previous = batch.get(name);
+                batch.put(name, new VariableChange(name, previous != null ? previous.getOldValue() : oldValue,
+                                                   newValue));
+            }
+            else if (!listeners.isEmpty())
+            {
+                changes = Collections.singletonList(new VariableChange(name, oldValue, newValue));
+            }
+        }
+        if (changes != null)
+        {
+            notifyListeners(changes);
+        }
+    }
+
+    /**
+     * Starts collecting changes, to report them together.
+     */
+    private void startBatch()
+    {
+        synchronized (listeners)
+        {
+            if (batchDepth++ == 0)
+            {
+                batch = new LinkedHashMap<String, VariableChange>();
+            }
+        }
+    }
+
+    /**
+     * Stops collecting changes, and notifies listeners of those variables whose values differ from when collection
+     * started.
+     */
+    private void endBatch()
+    {
+        List<VariableChange> changes = new ArrayList<VariableChange>();
+        synchronized (listeners)
+        {
+            if (--batchDepth > 0)
+            {
+                return;
+            }
+            for (VariableChange change : batch.values())
+            {
+                if (!Objects.equals(change.getOldValue(), change.getNewValue()))
+                {
+                    changes.add(change);
+                }
+            }
+            batch = null;
+        }
+        if (!changes.isEmpty())
+        {
+            notifyListeners(Collections.unmodifiableList(changes));
+        }
+    }
+
+    /**
+     * Notifies listeners of changes.
+     *
+     * @param changes the changes
+     */
+    private void notifyListeners(List<VariableChange> changes)
+    {
+        for (VariableChangeListener listener : listeners)
+        {
+            try
+            {
+                listener.variablesChanged(changes);
+            }
+            catch (RuntimeException exception)
+            {
+                logger.log(Level.WARNING, "Variable change listener failed: " + exception.getMessage(), exception);
+            }
+        }
     }
 
     @Override
@@ -442,10 +988,14 @@ public class DefaultVariables implements Variables
                 Deque<Object> blockerStack = blockedVariableNameStacks.get(name);
                 if (blockerStack == null)
                 {
-                    blockerStack = new ArrayDeque<Object>();
+                    Deque<Object> created = new ConcurrentLinkedDeque<Object>();
+                    blockerStack = blockedVariableNameStacks.putIfAbsent(name, created);
+                    if (blockerStack == null)
+                    {
+                        blockerStack = created;
+                    }
                 }
                 blockerStack.push(blocker);
-                blockedVariableNameStacks.put(name, blockerStack);
             }
         }
     }
@@ -489,4 +1039,174 @@ public class DefaultVariables implements Variables
         }
         return blockedVariableNames;
     }
+
+    /**
+     * The result of evaluating a dynamic variable, and the substitutions it depended on.
+     */
+    private static class Evaluation
+    {
+        private final Value value;
+        private final List<ValueFilter> filters;
+        private final List<SubstitutionTemplate> templates;
+        private final List<String> rendered;
+        private final String result;
+
+        Evaluation(DynamicVariable variable, List<SubstitutionTemplate> templates, List<String> rendered,
+                   String result)
+        {
+            this.value = variable.getValue();
+            this.filters = (variable.getFilters() != null) ? new ArrayList<ValueFilter>(variable.getFilters()) : null;
+            this.templates = templates;
+            this.rendered = rendered;
+            this.result = result;
+        }
+
+        /**
+         * Determines if the evaluation still applies to a variable.
+         *
+         * @param variable the variable
+         * @return {@code true} if the variable is unchanged, and each substituted string renders the same as before
+         */
+        boolean isCurrent(DynamicVariable variable)
+        {
+            if (value != variable.getValue() || !isSame(filters, variable.getFilters()))
+            {
+                return false;
+            }
+            for (int i = 0; i < templates.size(); ++i)
+            {
+                if (!templates.get(i).render().equals(rendered.get(i)))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        String getResult()
+        {
+            return result;
+        }
+
+        private boolean isSame(List<ValueFilter> previous, List<ValueFilter> current)
+        {
+            if (previous == null || current == null)
+            {
+                return previous == current;
+            }
+            if (previous.size() != current.size())
+            {
+                return false;
+            }
+            for (int i = 0; i < previous.size(); ++i)
+            {
+                if (previous.get(i) != current.get(i))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A substitutor that records the strings substituted through it.
+     * <p/>
+     * Only string substitution can be recorded. If any other method is used, the record is incomplete.
+     */
+    private static class TrackingSubstitutor implements VariableSubstitutor
+    {
+        private static final long serialVersionUID = 4318375126463409856L;
+
+        private final VariableSubstitutor substitutor;
+        private final List<SubstitutionTemplate> templates = new ArrayList<SubstitutionTemplate>();
+        private final List<String> rendered = new ArrayList<String>();
+        private boolean complete = true;
+
+        TrackingSubstitutor(VariableSubstitutor substitutor)
+        {
+            this.substitutor = substitutor;
+        }
+
+        public boolean isComplete()
+        {
+            return complete;
+        }
+
+        public List<SubstitutionTemplate> getTemplates()
+        {
+            return templates;
+        }
+
+        public List<String> getRendered()
+        {
+            return rendered;
+        }
+
+        @Override
+        public void setBracesRequired(boolean braces)
+        {
+            complete = false;
+            substitutor.setBracesRequired(braces);
+        }
+
+        @Override
+        public String substitute(String str)
+        {
+            return substitute(str, SubstitutionType.TYPE_PLAIN);
+        }
+
+        @Override
+        public String substitute(String str, SubstitutionType type)
+        {
+            if (str == null)
+            {
+                return null;
+            }
+            SubstitutionTemplate template = substitutor.getTemplate(str, type);
+            String result = template.render();
+            if (template.hasReferences())
+            {
+                templates.add(template);
+                rendered.add(result);
+            }
+            return result;
+        }
+
+        @Override
+        public SubstitutionTemplate getTemplate(String str)
+        {
+            complete = false;
+            return substitutor.getTemplate(str);
+        }
+
+        @Override
+        public SubstitutionTemplate getTemplate(String str, SubstitutionType type)
+        {
+            complete = false;
+            return substitutor.getTemplate(str, type);
+        }
+
+        @Override
+        public int substitute(InputStream in, OutputStream out, SubstitutionType type, String encoding)
+                throws Exception
+        {
+            complete = false;
+            return substitutor.substitute(in, out, type, encoding);
+        }
+
+        @Override
+        public String substitute(InputStream in, SubstitutionType type) throws Exception
+        {
+            complete = false;
+            return substitutor.substitute(in, type);
+        }
+
+        @Override
+        public int substitute(Reader reader, Writer writer, SubstitutionType type) throws Exception
+        {
+            complete = false;
+            return substitutor.substitute(reader, writer, type);
+        }
+    }
 }
@@ -0,0 +1,571 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.api.data.Pack;
+
+
+/**
+ * Reads and writes the information about installed packs and variables, stored in the
+ * {@link com.izforge.izpack.api.data.InstallData#INSTALLATION_INFORMATION} file of an installation.
+ * <p/>
+ * The file starts with a header, followed by records appended by each installation into the same directory. A pack
+ * record holds the application version and the name of each pack installed. A variables record holds the variables
+ * that were added, changed or removed by the installation, removals being recorded without a value. Each record is prefixed by its type and length, so that variables
+ * can be skipped when only the installed packs are required, and an incomplete trailing record left by an interrupted
+ * installation is ignored.
+ * <p/>
+ * Files written by earlier versions, which used Java serialization, are still read, and are converted on the next
+ * {@link #append append}.
+ */
+public class InstallationInformation
+{
+
+    /**
+     * The format identifier.
+     */
+    private static final int MAGIC = 0x495A4949; // IZII
+
+    /**
+     * The format version.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The header size, in bytes.
+     */
+    private static final int HEADER_SIZE = 5;
+
+    /**
+     * The record header size, in bytes.
+     */
+    private static final int RECORD_HEADER_SIZE = 5;
+
+    /**
+     * Pack record type.
+     */
+    private static final byte PACKS = 1;
+
+    /**
+     * Variables record type.
+     */
+    private static final byte VARIABLES = 2;
+
+    /**
+     * The first bytes of a Java serialization stream.
+     */
+    private static final int SERIALIZATION_MAGIC = 0xACED;
+
+    /**
+     * The installed packs, keyed on name, in the order they were first installed.
+     */
+    private final Map<String, Pack> packs = new LinkedHashMap<String, Pack>();
+
+    /**
+     * The application version each pack was last installed with, keyed on pack name.
+     */
+    private final Map<String, String> versions = new HashMap<String, String>();
+
+    /**
+     * The variables.
+     */
+    private final Properties variables = new Properties();
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(InstallationInformation.class.getName());
+
+
+    /**
+     * Constructs an empty {@code InstallationInformation}.
+     */
+    private InstallationInformation()
+    {
+    }
+
+    /**
+     * Reads the installed packs and variables.
+     *
+     * @param file the file to read
+     * @return the installation information
+     * @throws IOException if the file cannot be read or is not in a supported format
+     */
+    public static InstallationInformation read(File file) throws IOException
+    {
+        return read(file, true);
+    }
+
+    /**
+     * Reads the installed packs only. The variables of the returned instance are empty.
+     *
+     * @param file the file to read
+     * @return the installation information
+     * @throws IOException if the file cannot be read or is not in a supported format
+     */
+    public static InstallationInformation readPacks(File file) throws IOException
+    {
+        return read(file, false);
+    }
+
+    /**
+     * Returns the installed packs.
+     * <p/>
+     * Apart from packs read from files written by earlier versions, only the pack name, language pack identifier and
+     * description are populated.
+     *
+     * @return the installed packs, in the order they were first installed
+     */
+    public List<Pack> getPacks()
+    {
+        return new ArrayList<Pack>(packs.values());
+    }
+
+    /**
+     * Returns the application version a pack was last installed with.
+     *
+     * @param pack the pack name
+     * @return the application version, or {@code null} if the pack isn't installed, or the version is unknown
+     */
+    public String getVersion(String pack)
+    {
+        return versions.get(pack);
+    }
+
+    /**
+     * Returns the variables.
+     *
+     * @return the variables at the time of the last installation
+     */
+    public Properties getVariables()
+    {
+        return variables;
+    }
+
+    /**
+     * Appends the packs and variables of an installation.
+     * <p/>
+     * The file is created if it doesn't exist, and converted if it was written by an earlier version. Only the
+     * variables that differ from those already recorded are written; recorded variables that are no longer present
+     * are written as removed.
+     *
+     * @param file      the file to append to
+     * @param version   the application version. May be {@code null}
+     * @param installed the installed packs
+     * @param variables the variables
+     * @throws IOException for any I/O error, or if the existing file is not in a supported format
+     */
+    public static void append(File file, String version, Collection<Pack> installed, Properties variables)
+            throws IOException
+    {
+        if (isLegacy(file))
+        {
+            migrate(file);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                                                    StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            InstallationInformation previous = new InstallationInformation();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            long end;
+            if (channel.size() == 0)
+            {
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                end = 0;
+            }
+            else
+            {
+                end = previous.load(channel, true);
+                channel.truncate(end);
+            }
+
+            writePacks(bytes, version, installed);
+            Map<String, String> changed = new LinkedHashMap<String, String>();
+            for (String name : variables.stringPropertyNames())
+            {
+                String value = variables.getProperty(name);
+                if (!value.equals(previous.variables.getProperty(name)))
+                {
+                    changed.put(name, value);
+                }
+            }
+            for (String name : previous.variables.stringPropertyNames())
+            {
+                if (variables.getProperty(name) == null)
+                {
+                    changed.put(name, null);
+                }
+            }
+            if (!changed.isEmpty())
+            {
+                writeVariables(bytes, changed);
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining())
+            {
+                end += channel.write(buffer, end);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Converts a file written by an earlier version to the current format.
+     *
+     * @param file the file to convert
+     * @return {@code true} if the file was converted, {@code false} if it didn't need converting
+     * @throws IOException for any I/O error, or if the file cannot be read
+     */
+    public static boolean migrate(File file) throws IOException
+    {
+        if (!isLegacy(file))
+        {
+            return false;
+        }
+        logger.fine("Converting installation information " + file);
+        InstallationInformation legacy = new InstallationInformation();
+        legacy.readLegacy(file);
+
+        File tmp = new File(file.getPath() + ".tmp");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writePacks(bytes, null, legacy.packs.values());
+        Map<String, String> variables = new LinkedHashMap<String, String>();
+        for (String name : legacy.variables.stringPropertyNames())
+        {
+            variables.put(name, legacy.variables.getProperty(name));
+        }
+        writeVariables(bytes, variables);
+        Files.write(tmp.toPath(), bytes.toByteArray());
+        try
+        {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException exception)
+        {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return true;
+    }
+
+    /**
+     * Reads installation information.
+     *
+     * @param file          the file to read
+     * @param readVariables if {@code true} read the variables, otherwise skip them
+     * @return the installation information
+     * @throws IOException if the file cannot be read or is not in a supported format
+     */
+    private static InstallationInformation read(File file, boolean readVariables) throws IOException
+    {
+        InstallationInformation result = new InstallationInformation();
+        if (isLegacy(file))
+        {
+            result.readLegacy(file);
+            if (!readVariables)
+            {
+                result.variables.clear();
+            }
+        }
+        else
+        {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+            {
+                result.load(channel, readVariables);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads records.
+     *
+     * @param channel       the channel to read from
+     * @param readVariables if {@code true} read the variables, otherwise skip them
+     * @return the position after the last complete record
+     * @throws IOException for any I/O error, or if the channel is not in the expected format
+     */
+    private long load(FileChannel channel, boolean readVariables) throws IOException
+    {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(Math.max(HEADER_SIZE, RECORD_HEADER_SIZE));
+        header.limit(HEADER_SIZE);
+        if (!readFully(channel, header, 0))
+        {
+            throw new IOException("Invalid installation information");
+        }
+        header.flip();
+        if (header.getInt() != MAGIC)
+        {
+            throw new IOException("Invalid installation information");
+        }
+        int version = header.get();
+        if (version != VERSION)
+        {
+            throw new IOException("Unsupported installation information version: " + version);
+        }
+
+        long position = HEADER_SIZE;
+        while (position < size)
+        {
+            header.clear();
+            header.limit(RECORD_HEADER_SIZE);
+            if (!readFully(channel, header, position))
+            {
+                break;
+            }
+            header.flip();
+            byte type = header.get();
+            int length = header.getInt();
+            long next = position + RECORD_HEADER_SIZE + length;
+            if (length < 0 || next > size)
+            {
+                break;
+            }
+            if (type == PACKS || (type == VARIABLES && readVariables))
+            {
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(channel, payload, position + RECORD_HEADER_SIZE);
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload.array()));
+                if (type == PACKS)
+                {
+                    readPacks(in);
+                }
+                else
+                {
+                    readVariables(in);
+                }
+            }
+            position = next;
+        }
+        if (position < size)
+        {
+            logger.warning("Ignoring incomplete installation information record at offset " + position);
+        }
+        return position;
+    }
+
+    private void readPacks(DataInputStream in) throws IOException
+    {
+        String version = readString(in);
+        int count = in.readInt();
+        for (int i = 0; i < count; ++i)
+        {
+            String name = readString(in);
+            String langPackId = readString(in);
+            String description = readString(in);
+            if (!packs.containsKey(name))
+            {
+                packs.put(name, new Pack(name, langPackId, description, null, null, false, false, false, null,
+                                         false, 0));
+            }
+            versions.put(name, version);
+        }
+    }
+
+    private void readVariables(DataInputStream in) throws IOException
+    {
+        int count = in.readInt();
+        for (int i = 0; i < count; ++i)
+        {
+            String name = readString(in);
+            String value = readString(in);
+            if (value != null)
+            {
+                variables.setProperty(name, value);
+            }
+            else
+            {
+                variables.remove(name);
+            }
+        }
+    }
+
+    /**
+     * Reads a file written by an earlier version.
+     *
+     * @param file the file to read
+     * @throws IOException if the file cannot be read
+     */
+    private void readLegacy(File file) throws IOException
+    {
+        try (InputStream in = new FileInputStream(file); ObjectInputStream oin = new ObjectInputStream(in))
+        {
+            //noinspection unchecked
+            List<Pack> installed = (List<Pack>) oin.readObject();
+            for (Pack pack : installed)
+            {
+                if (!packs.containsKey(pack.getName()))
+                {
+                    packs.put(pack.getName(), pack);
+                }
+            }
+            Properties properties;
+            try
+            {
+                properties = (Properties) oin.readObject();
+            }
+            catch (EOFException exception)
+            {
+                // written without variables
+                return;
+            }
+            for (String name : properties.stringPropertyNames())
+            {
+                variables.setProperty(name, properties.getProperty(name));
+            }
+        }
+        catch (ClassNotFoundException | ClassCastException exception)
+        {
+            throw new IOException("Failed to read installation information: " + file, exception);
+        }
+    }
+
+    private static void writePacks(ByteArrayOutputStream bytes, String version, Collection<Pack> installed)
+            throws IOException
+    {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        writeString(out, version);
+        out.writeInt(installed.size());
+        for (Pack pack : installed)
+        {
+            writeString(out, pack.getName());
+            writeString(out, pack.getLangPackId());
+            writeString(out, pack.getDescription());
+        }
+        writeRecord(bytes, PACKS, payload);
+    }
+
+    private static void writeVariables(ByteArrayOutputStream bytes, Map<String, String> variables) throws IOException
+    {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeInt(variables.size());
+        for (Map.Entry<String, String> entry : variables.entrySet())
+        {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+        writeRecord(bytes, VARIABLES, payload);
+    }
+
+    private static void writeRecord(ByteArrayOutputStream bytes, byte type, ByteArrayOutputStream payload)
+            throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        out.writeInt(payload.size());
+        payload.writeTo(out);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        if (value == null)
+        {
+            out.writeInt(-1);
+        }
+        else
+        {
+            byte[] data = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(data.length);
+            out.write(data);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        byte[] data = new byte[length];
+        in.readFully(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Determines if a file was written by an earlier version, using Java serialization.
+     *
+     * @param file the file
+     * @return {@code true} if the file exists and starts with the Java serialization stream magic number
+     * @throws IOException for any I/O error
+     */
+    private static boolean isLegacy(File file) throws IOException
+    {
+        if (!file.isFile())
+        {
+            return false;
+        }
+        try (InputStream in = new FileInputStream(file))
+        {
+            int b1 = in.read();
+            int b2 = in.read();
+            return b1 >= 0 && b2 >= 0 && ((b1 << 8) | b2) == SERIALIZATION_MAGIC;
+        }
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            int read = channel.read(buffer, position);
+            if (read < 0)
+            {
+                return false;
+            }
+            position += read;
+        }
+        return true;
+    }
+}
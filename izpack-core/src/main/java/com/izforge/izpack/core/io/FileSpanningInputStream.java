@@ -54,6 +54,11 @@ public class FileSpanningInputStream extends InputStream
      */
     private long filePointer;
 
+    /**
+     * The positions where decompression may start. May be {@code null}
+     */
+    private VolumeIndex index;
+
 
     /**
      * The logger.
@@ -85,6 +90,61 @@ public class FileSpanningInputStream extends InputStream
         spanningInputStream.setLocator(locator);
     }
 
+    /**
+     * Sets the volume index, used to {@link #seek(long) seek} without decompressing intervening data.
+     *
+     * @param index the index, as returned by {@link FileSpanningOutputStream#getIndex()}. May be {@code null}
+     */
+    public void setIndex(VolumeIndex index)
+    {
+        this.index = index;
+    }
+
+    /**
+     * Moves to the specified offset in the uncompressed stream.
+     * <p/>
+     * If there is a volume index, and a compressed block starts between the current position and the target, the
+     * volume holding that block is opened directly, and only the data between the start of the block and the target
+     * is decompressed. Without an index, the stream can only move forwards.
+     *
+     * @param position the absolute offset into the volumes
+     * @throws IOException if the position cannot be reached, or for any other I/O error
+     */
+    public void seek(long position) throws IOException
+    {
+        if (index != null)
+        {
+            int entry = index.find(position);
+            if (entry >= 0 && (position < filePointer || index.getPosition(entry) > filePointer))
+            {
+                if (logger.isLoggable(Level.FINE))
+                {
+                    logger.fine("Seeking to " + position + " via block at " + index.getPosition(entry) + " in volume "
+                                        + index.getVolume(entry));
+                }
+                spanningInputStream.open(index.getVolume(entry), index.getOffset(entry));
+                zippedInputStream = new GZIPInputStream(spanningInputStream);
+                filePointer = index.getPosition(entry);
+            }
+        }
+        if (position < filePointer)
+        {
+            throw new IOException("Cannot seek back to " + position + " from " + filePointer);
+        }
+        long remaining = position - filePointer;
+        while (remaining > 0)
+        {
+            long skipped = zippedInputStream.skip(remaining);
+            if (skipped <= 0)
+            {
+                throw new IOException("Expected to skip: " + (position - filePointer) + " in stream but skipped: "
+                                              + (position - filePointer - remaining));
+            }
+            remaining -= skipped;
+        }
+        filePointer = position;
+    }
+
     /**
      * (non-Javadoc)
      *
@@ -207,7 +267,7 @@ public class FileSpanningInputStream extends InputStream
         /**
          * The current volume stream.
          */
-        private InputStream stream;
+        private FileInputStream stream;
 
         /**
          * The base path to each volume.
@@ -331,6 +391,26 @@ public class FileSpanningInputStream extends InputStream
             return read;
         }
 
+        /**
+         * Returns an estimate of the no. of bytes that can be read without blocking.
+         * <p/>
+         * This is non-zero while there are volumes left to read, so that {@code GZIPInputStream} reads the
+         * compressed blocks following the current one.
+         *
+         * @return an estimate of the no. of bytes that can be read
+         * @throws IOException for any I/O error
+         */
+        @Override
+        public int available() throws IOException
+        {
+            int result = stream.available();
+            if (result == 0 && index + 1 < volumes)
+            {
+                result = 1;
+            }
+            return result;
+        }
+
         /**
          * Returns the volume being read.
          *
@@ -370,50 +450,78 @@ public class FileSpanningInputStream extends InputStream
             }
             else
             {
-                // the next volume name
-                String volumePath = basePath + "." + (index + 1);
-                File volume = new File(volumePath);
-                boolean found = false;
-                while (!found)
+                openVolume(index + 1);
+                result = true;
+            }
+            return result;
+        }
+
+        /**
+         * Opens a volume, and positions the stream at the specified offset within it.
+         *
+         * @param volumeIndex the index of the volume, where {@code 0} is the first volume
+         * @param offset      the offset within the volume
+         * @throws CorruptVolumeException  if the magic no. of the volume does not match that expected
+         * @throws VolumeNotFoundException if the volume was not found
+         * @throws IOException             for any other I/O error
+         */
+        public void open(int volumeIndex, long offset) throws IOException
+        {
+            if (volumeIndex != index)
+            {
+                openVolume(volumeIndex);
+            }
+            stream.getChannel().position(offset);
+        }
+
+        /**
+         * Opens a volume, prompting for it via the locator if it cannot be found.
+         *
+         * @param volumeIndex the index of the volume, where {@code 0} is the first volume
+         * @throws CorruptVolumeException  if the magic no. of the volume does not match that expected
+         * @throws VolumeNotFoundException if the volume was not found
+         */
+        private void openVolume(int volumeIndex) throws IOException
+        {
+            String volumePath = (volumeIndex == 0) ? basePath : basePath + "." + volumeIndex;
+            File volume = new File(volumePath);
+            boolean found = false;
+            while (!found)
+            {
+                if (volume.exists())
                 {
-                    if (volume.exists())
+                    try
                     {
-                        try
+                        // try to open new stream to the volume
+                        IOUtils.closeQuietly(stream);
+                        stream = new FileInputStream(volume);
+                        current = volume;
+                        checkMagicNumber();
+                        found = true;
+                    }
+                    catch (CorruptVolumeException exception)
+                    {
+                        if (locator == null)
                         {
-                            // try to open new stream to next volume
-                            IOUtils.closeQuietly(stream);
-                            stream = new FileInputStream(volume);
-                            current = volume;
-                            checkMagicNumber();
-                            found = true;
+                            throw exception;
                         }
-                        catch (CorruptVolumeException exception)
+                        else
                         {
-                            if (locator == null)
-                            {
-                                throw exception;
-                            }
-                            else
-                            {
-                                volume = locator.getVolume(volume.getAbsolutePath(), true);
-                            }
+                            volume = locator.getVolume(volume.getAbsolutePath(), true);
                         }
                     }
-                    else if (locator != null)
-                    {
-                        volume = locator.getVolume(volume.getAbsolutePath(), false);
-                    }
-                    else
-                    {
-                        throw new VolumeNotFoundException("Volume not found: " + volume.getAbsolutePath(),
-                                                          volume.getAbsolutePath());
-                    }
                 }
-
-                ++index;
-                result = true;
+                else if (locator != null)
+                {
+                    volume = locator.getVolume(volume.getAbsolutePath(), false);
+                }
+                else
+                {
+                    throw new VolumeNotFoundException("Volume not found: " + volume.getAbsolutePath(),
+                                                      volume.getAbsolutePath());
+                }
             }
-            return result;
+            index = volumeIndex;
         }
 
         /**
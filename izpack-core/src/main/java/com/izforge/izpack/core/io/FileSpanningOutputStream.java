@@ -68,10 +68,16 @@ public class FileSpanningOutputStream extends OutputStream
     private SpanningOutputStream spanningOutputStream;
 
     /**
-     * The stream that .
+     * The stream that compresses the current block. This is {@code null} following a {@link #sync()}, until the
+     * next write.
      */
     private GZIPOutputStream gzipOutputStream;
 
+    /**
+     * The positions where each compressed block starts.
+     */
+    private final VolumeIndex index = new VolumeIndex();
+
     /**
      * The current offset in the (uncompressed) output stream.
      */
@@ -127,9 +133,40 @@ public class FileSpanningOutputStream extends OutputStream
     public FileSpanningOutputStream(File volume, long maxFirstVolumeSize, long maxVolumeSize) throws IOException
     {
         spanningOutputStream = new SpanningOutputStream(volume, maxFirstVolumeSize, maxVolumeSize);
+        index.add(0, 0, spanningOutputStream.getByteCount());
         gzipOutputStream = new GZIPOutputStream(spanningOutputStream);
     }
 
+    /**
+     * Ends the current compressed block, so that data written after this can be decompressed without reading the
+     * data that precedes it.
+     * <p/>
+     * The position of the next block is recorded in the {@link #getIndex() index}. This is a no-op if nothing has been
+     * written since the last call.
+     *
+     * @throws IOException for any I/O error
+     */
+    public void sync() throws IOException
+    {
+        if (gzipOutputStream != null && filePointer > index.getPosition(index.size() - 1))
+        {
+            gzipOutputStream.finish();
+            gzipOutputStream = null;
+        }
+    }
+
+    /**
+     * Returns the positions where decompression may start.
+     * <p/>
+     * There is one entry for the start of the stream, and one for each {@link #sync()}.
+     *
+     * @return the volume index
+     */
+    public VolumeIndex getIndex()
+    {
+        return index;
+    }
+
     /**
      * @see java.io.OutputStream#close()
      */
@@ -137,7 +174,14 @@ public class FileSpanningOutputStream extends OutputStream
     public void close() throws IOException
     {
         flush();
-        gzipOutputStream.close();
+        if (gzipOutputStream != null)
+        {
+            gzipOutputStream.close();
+        }
+        else
+        {
+            spanningOutputStream.close();
+        }
     }
 
     /**
@@ -146,7 +190,7 @@ public class FileSpanningOutputStream extends OutputStream
     @Override
     public void write(byte[] b, int off, int len) throws IOException
     {
-        gzipOutputStream.write(b, off, len);
+        getCompressedStream().write(b, off, len);
         // increase filePointer by written bytes
         filePointer += len;
     }
@@ -170,7 +214,7 @@ public class FileSpanningOutputStream extends OutputStream
     @Override
     public void write(int b) throws IOException
     {
-        gzipOutputStream.write(b);
+        getCompressedStream().write(b);
         // increase filePointer by written byte
         filePointer++;
     }
@@ -183,7 +227,14 @@ public class FileSpanningOutputStream extends OutputStream
     @Override
     public void flush() throws IOException
     {
-        gzipOutputStream.flush();
+        if (gzipOutputStream != null)
+        {
+            gzipOutputStream.flush();
+        }
+        else
+        {
+            spanningOutputStream.flush();
+        }
     }
 
     /**
@@ -206,6 +257,22 @@ public class FileSpanningOutputStream extends OutputStream
         return filePointer;
     }
 
+    /**
+     * Returns the stream compressing the current block, starting a new block following a {@link #sync()}.
+     *
+     * @return the stream
+     * @throws IOException for any I/O error
+     */
+    private GZIPOutputStream getCompressedStream() throws IOException
+    {
+        if (gzipOutputStream == null)
+        {
+            index.add(filePointer, spanningOutputStream.getVolumes() - 1, spanningOutputStream.getByteCount());
+            gzipOutputStream = new GZIPOutputStream(spanningOutputStream);
+        }
+        return gzipOutputStream;
+    }
+
     /**
      * Helper to format the volume magic number.
      *
@@ -0,0 +1,207 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * The positions in a set of volumes written by {@link FileSpanningOutputStream} where decompression may start.
+ * <p/>
+ * Each entry maps an offset in the uncompressed stream to the volume, and the offset within that volume, where a
+ * compressed block starts. This allows {@link FileSpanningInputStream#seek(long)} to open the volume holding a file
+ * directly, rather than decompressing everything that precedes it.
+ *
+ * @see FileSpanningOutputStream#sync()
+ */
+public class VolumeIndex
+{
+
+    /**
+     * The uncompressed offsets, in ascending order.
+     */
+    private long[] positions = new long[16];
+
+    /**
+     * The volume holding each block.
+     */
+    private int[] volumes = new int[16];
+
+    /**
+     * The offset of each block within its volume.
+     */
+    private long[] offsets = new long[16];
+
+    /**
+     * The no. of entries.
+     */
+    private int size;
+
+
+    /**
+     * Adds an entry.
+     *
+     * @param position the offset in the uncompressed stream. Must be greater than that of the previous entry
+     * @param volume   the index of the volume where the compressed block starts
+     * @param offset   the offset of the compressed block within the volume
+     */
+    public void add(long position, int volume, long offset)
+    {
+        if (size > 0 && position <= positions[size - 1])
+        {
+            throw new IllegalArgumentException("Position " + position + " must be greater than "
+                                                       + positions[size - 1]);
+        }
+        if (size == positions.length)
+        {
+            positions = Arrays.copyOf(positions, size * 2);
+            volumes = Arrays.copyOf(volumes, size * 2);
+            offsets = Arrays.copyOf(offsets, size * 2);
+        }
+        positions[size] = position;
+        volumes[size] = volume;
+        offsets[size] = offset;
+        ++size;
+    }
+
+    /**
+     * Returns the no. of entries.
+     *
+     * @return the no. of entries
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the entry with the greatest position less than or equal to the specified position.
+     *
+     * @param position the offset in the uncompressed stream
+     * @return the entry number, or {@code -1} if there is none
+     */
+    public int find(long position)
+    {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            if (positions[mid] <= position)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Returns the uncompressed offset of an entry.
+     *
+     * @param entry the entry number
+     * @return the offset in the uncompressed stream
+     */
+    public long getPosition(int entry)
+    {
+        return positions[entry];
+    }
+
+    /**
+     * Returns the volume of an entry.
+     *
+     * @param entry the entry number
+     * @return the index of the volume, where {@code 0} is the first volume
+     */
+    public int getVolume(int entry)
+    {
+        return volumes[entry];
+    }
+
+    /**
+     * Returns the offset of an entry within its volume.
+     *
+     * @param entry the entry number
+     * @return the offset within the volume
+     */
+    public long getOffset(int entry)
+    {
+        return offsets[entry];
+    }
+
+    /**
+     * Writes the index.
+     *
+     * @param out the output to write to
+     * @throws IOException for any I/O error
+     */
+    public void write(DataOutput out) throws IOException
+    {
+        out.writeInt(size);
+        for (int i = 0; i < size; ++i)
+        {
+            out.writeLong(positions[i]);
+            out.writeInt(volumes[i]);
+            out.writeLong(offsets[i]);
+        }
+    }
+
+    /**
+     * Reads an index.
+     *
+     * @param in the input to read from
+     * @return the index
+     * @throws IOException for any I/O error
+     */
+    public static VolumeIndex read(DataInput in) throws IOException
+    {
+        VolumeIndex result = new VolumeIndex();
+        int count = in.readInt();
+        for (int i = 0; i < count; ++i)
+        {
+            result.add(in.readLong(), in.readInt(), in.readLong());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the entries as a list, for diagnostic purposes.
+     *
+     * @return the entries, formatted as <em>position@volume:offset</em>
+     */
+    @Override
+    public String toString()
+    {
+        List<String> result = new ArrayList<String>(size);
+        for (int i = 0; i < size; ++i)
+        {
+            result.add(positions[i] + "@" + volumes[i] + ":" + offsets[i]);
+        }
+        return result.toString();
+    }
+}
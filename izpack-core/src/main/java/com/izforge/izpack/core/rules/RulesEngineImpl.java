@@ -26,10 +26,12 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import com.izforge.izpack.api.adaptator.IXMLElement;
@@ -78,6 +80,23 @@ public class RulesEngineImpl implements RulesEngine
     private final Map<String, String> optionalPackConditions = new HashMap<>();
     private final Map<String, Condition> conditionsMap = new HashMap<>();
     private final Set<ConditionReference> refConditions = new HashSet<>();
+
+    /**
+     * Conditions parsed from expressions, keyed on expression. Cleared whenever a condition is added, as an
+     * expression may resolve differently afterwards.
+     */
+    private final Map<String, Condition> expressions = new ConcurrentHashMap<>();
+
+    /**
+     * The results of non-volatile conditions, valid while the variables modification count equals
+     * {@link #resultsModificationCount}.
+     */
+    private final Map<Condition, Boolean> results = new IdentityHashMap<>();
+
+    /**
+     * The variables modification count at which {@link #results} were evaluated.
+     */
+    private long resultsModificationCount = -1;
     private final InstallData installData;
     private final ConditionContainer container;
 
@@ -131,6 +150,7 @@ public class RulesEngineImpl implements RulesEngine
                 resolveBuiltinConditions(condition);
             }
         }
+        conditionsChanged();
     }
 
     /**
@@ -169,6 +189,7 @@ public class RulesEngineImpl implements RulesEngine
                 result.setInstallData(installData);
                 result.readFromXML(condition);
                 conditionsMap.put(id, result);
+                conditionsChanged();
                 if (result instanceof ConditionReference)
                 {
                     refConditions.add((ConditionReference) result);
@@ -195,6 +216,7 @@ public class RulesEngineImpl implements RulesEngine
         {
             refCondition.resolveReference();
         }
+        conditionsChanged();
     }
 
     /**
@@ -227,6 +249,7 @@ public class RulesEngineImpl implements RulesEngine
                     {
                         resolveBuiltinConditions(cond);
                         conditionsMap.put(condid, cond);
+                        conditionsChanged();
                     }
                 }
             }
@@ -268,6 +291,8 @@ public class RulesEngineImpl implements RulesEngine
      * A condition ID as defined in the install.xml
      * A simple expression with !,+,|,\
      * A complex expression with !,&&,||,\\ - must begin with char @
+     * <p/>
+     * Expressions are parsed once, and the resulting condition reused until the conditions change.
      *
      * @param id ID to find in the conditionMap
      * @return the condition. May be <tt>null</tt>
@@ -278,13 +303,26 @@ public class RulesEngineImpl implements RulesEngine
         Condition result = conditionsMap.get(id);
         if (result == null)
         {
-            if (id.startsWith("@"))
+            result = expressions.get(id);
+            if (result != null)
             {
-                result = parseComplexCondition(id.substring(1));
+                // callers may have evaluated the condition against other installation data
+                result.setInstallData(installData);
             }
             else
             {
-                result = getConditionByExpr(new StringBuffer(id));
+                if (id.startsWith("@"))
+                {
+                    result = parseComplexCondition(id.substring(1));
+                }
+                else
+                {
+                    result = getConditionByExpr(new StringBuffer(id));
+                }
+                if (result != null)
+                {
+                    expressions.put(id, result);
+                }
             }
         }
         return result;
@@ -327,6 +365,15 @@ public class RulesEngineImpl implements RulesEngine
         return false;
     }
 
+    /**
+     * Determines if a condition is true.
+     * <p/>
+     * The results of conditions that aren't {@link Condition#isVolatile() volatile} are cached until a variable
+     * changes, or the conditions change.
+     *
+     * @param cond the condition
+     * @return {@code true} if the condition is true
+     */
     @Override
     public boolean isConditionTrue(Condition cond)
     {
@@ -334,7 +381,41 @@ public class RulesEngineImpl implements RulesEngine
         {
             cond.setInstallData(this.installData);
         }
-        return cond.isTrue();
+        if (installData == null || cond.getInstallData() != installData || installData.getVariables() == null
+                || cond.isVolatile())
+        {
+            return cond.isTrue();
+        }
+        Variables variables = installData.getVariables();
+        long modificationCount = variables.getModificationCount();
+        if (modificationCount < 0)
+        {
+            return cond.isTrue();
+        }
+        synchronized (results)
+        {
+            if (modificationCount != resultsModificationCount)
+            {
+                results.clear();
+                resultsModificationCount = modificationCount;
+            }
+            Boolean result = results.get(cond);
+            if (result != null)
+            {
+                return result;
+            }
+        }
+        boolean result = cond.isTrue();
+        synchronized (results)
+        {
+            // don't cache the result if a variable changed while it was evaluated
+            if (modificationCount == resultsModificationCount
+                    && modificationCount == variables.getModificationCount())
+            {
+                results.put(cond, result);
+            }
+        }
+        return result;
     }
 
     /**
@@ -450,6 +531,7 @@ public class RulesEngineImpl implements RulesEngine
             else
             {
                 conditionsMap.put(id, condition);
+                conditionsChanged();
             }
         }
         else
@@ -853,6 +935,18 @@ public class RulesEngineImpl implements RulesEngine
         return result;
     }
 
+    /**
+     * Discards cached expressions and results, after the conditions have changed.
+     */
+    private void conditionsChanged()
+    {
+        expressions.clear();
+        synchronized (results)
+        {
+            results.clear();
+        }
+    }
+
     /**
      * Recursively replaces any built-in conditions referenced by the supplied condition with those held by this.
      *
@@ -934,5 +1028,10 @@ public class RulesEngineImpl implements RulesEngine
             return new HashSet<>(0);
         }
 
+        @Override
+        public boolean isVolatile()
+        {
+            return false;
+        }
     }
 }
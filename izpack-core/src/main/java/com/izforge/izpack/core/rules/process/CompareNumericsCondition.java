@@ -87,6 +87,12 @@ public class CompareNumericsCondition extends CompareCondition
         return result;
     }
 
+    @Override
+    public boolean isVolatile()
+    {
+        return false;
+    }
+
     @Override
     public Set<String> getVarRefs() {
         return ValueUtils.parseUnresolvedVariableNames(this.operand1,
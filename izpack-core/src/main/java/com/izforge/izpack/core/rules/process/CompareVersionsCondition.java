@@ -125,6 +125,12 @@ public class CompareVersionsCondition extends CompareCondition
         return result;
     }
 
+    @Override
+    public boolean isVolatile()
+    {
+        return false;
+    }
+
     @Override
     public Set<String> getVarRefs() {
         return ValueUtils.parseUnresolvedVariableNames(this.operand1,
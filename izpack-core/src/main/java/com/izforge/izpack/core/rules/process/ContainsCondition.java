@@ -241,6 +241,12 @@ public class ContainsCondition extends Condition {
     }
   }
 
+    @Override
+    public boolean isVolatile()
+    {
+        return contentType != ContentType.STRING && contentType != ContentType.VARIABLE;
+    }
+
     @Override
     public Set<String> getVarRefs() {
         HashSet<String> vars = new HashSet<String>(2);
@@ -202,6 +202,12 @@ public class EmptyCondition extends Condition
         }
     }
 
+    @Override
+    public boolean isVolatile()
+    {
+        return contentType != ContentType.STRING && contentType != ContentType.VARIABLE;
+    }
+
     @Override
     public Set<String> getVarRefs() {
         HashSet<String> vars = new HashSet<String>(2);
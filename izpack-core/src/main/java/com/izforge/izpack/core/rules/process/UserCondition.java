@@ -110,6 +110,12 @@ public class UserCondition extends Condition
 
     }
 
+    @Override
+    public boolean isVolatile()
+    {
+        return false;
+    }
+
     @Override
     public Set<String> getVarRefs() {
         return new HashSet<String>(1);
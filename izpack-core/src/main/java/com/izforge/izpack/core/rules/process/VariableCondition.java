@@ -138,6 +138,12 @@ public class VariableCondition extends Condition
         conditionRoot.addChild(valueEl);
     }
 
+    @Override
+    public boolean isVolatile()
+    {
+        return false;
+    }
+
     @Override
     public Set<String> getVarRefs() {
         HashSet<String> vars = new HashSet<String>(2);
@@ -0,0 +1,127 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.substitutor;
+
+import com.izforge.izpack.api.data.Variables;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+
+
+/**
+ * A variable reference parsed by {@link VariableSubstitutorReader}.
+ * <p/>
+ * A reference is resolved against the variables each time it is substituted, so it may be parsed once and reused.
+ */
+final class VariableReference
+{
+
+    /**
+     * The variable name, or {@code null} if the reference isn't a plausible variable.
+     */
+    private final String name;
+
+    /**
+     * Determines if the name was enclosed in braces.
+     */
+    private final boolean inBraces;
+
+    /**
+     * The text of the reference, substituted if the variable can't be resolved.
+     */
+    private final String text;
+
+
+    /**
+     * Constructs a {@code VariableReference}.
+     *
+     * @param name     the variable name, or {@code null} if the reference isn't a plausible variable
+     * @param inBraces determines if the name was enclosed in braces
+     * @param text     the text of the reference, substituted if the variable can't be resolved
+     */
+    VariableReference(String name, boolean inBraces, String text)
+    {
+        this.name = name;
+        this.inBraces = inBraces;
+        this.text = text;
+    }
+
+    /**
+     * Returns the name of the IzPack variable that the reference resolves against.
+     *
+     * @return the variable name, or {@code null} if the reference isn't to an IzPack variable. This is the case for
+     *         environment variables and system properties
+     */
+    String getVariableName()
+    {
+        return (name != null && !isEnvironment() && !isSystem() && !isCompatibilitySystem()) ? name : null;
+    }
+
+    /**
+     * Resolves the reference.
+     *
+     * @param variables the variables
+     * @param type      the substitution type. May be {@code null}
+     * @return the escaped value, or the text of the reference if it can't be resolved
+     */
+    String resolve(Variables variables, SubstitutionType type)
+    {
+        String value = null;
+        if (name != null)
+        {
+            // check for environment variables
+            if (isEnvironment())
+            {
+                value = System.getenv(name.substring(4, name.length() - 1));
+                if (value == null)
+                {
+                    value = "";
+                }
+            }
+            else if (isSystem())
+            {
+                value = System.getProperty(name.substring(7, name.length() - 1));
+            }
+            // TODO: Compatibility mode - to be removed in future
+            else if (isCompatibilitySystem())
+            {
+                value = System.getProperty(name.substring(7).replace('_', '.'));
+            }
+            else
+            {
+                value = variables.get(name);
+            }
+        }
+        return (value == null) ? text : VariableSubstitutorReader.escapeSpecialChars(value, type);
+    }
+
+    private boolean isEnvironment()
+    {
+        return inBraces && name.startsWith("ENV[") && (name.lastIndexOf(']') == name.length() - 1);
+    }
+
+    private boolean isSystem()
+    {
+        return inBraces && name.startsWith("SYSTEM[") && (name.lastIndexOf(']') == name.length() - 1);
+    }
+
+    private boolean isCompatibilitySystem()
+    {
+        return inBraces && name.startsWith("SYSTEM_") && name.length() > 7;
+    }
+}
@@ -21,8 +21,10 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Serializable;
-import java.io.StringReader;
 import java.io.Writer;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,6 +32,7 @@ import org.apache.commons.io.IOUtils;
 
 import com.izforge.izpack.api.data.Variables;
 import com.izforge.izpack.api.exception.IzPackException;
+import com.izforge.izpack.api.substitutor.SubstitutionTemplate;
 import com.izforge.izpack.api.substitutor.SubstitutionType;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 
@@ -55,6 +58,11 @@ public class VariableSubstitutorImpl implements VariableSubstitutor, Serializabl
 
     private static final Logger logger = Logger.getLogger(VariableSubstitutorImpl.class.getName());
 
+    /**
+     * The maximum no. of templates cached per substitution type. The cache is cleared when this is exceeded.
+     */
+    static final int MAX_CACHED_TEMPLATES = 4096;
+
     /**
      * The replacement variables
      */
@@ -77,6 +85,11 @@ public class VariableSubstitutorImpl implements VariableSubstitutor, Serializabl
      */
     private boolean bracesRequired = false;
 
+    /**
+     * The cached templates, keyed on substitution type and source. Lazily created.
+     */
+    private transient Map<SubstitutionType, Map<String, VariableSubstitutorTemplate>> templates;
+
     /**
      * Get whether this substitutor requires braces.
      */
@@ -89,9 +102,13 @@ public class VariableSubstitutorImpl implements VariableSubstitutor, Serializabl
      * Specify whether this substitutor requires braces.
      */
     @Override
-    public void setBracesRequired(boolean braces)
+    public synchronized void setBracesRequired(boolean braces)
     {
-        bracesRequired = braces;
+        if (braces != bracesRequired)
+        {
+            bracesRequired = braces;
+            templates = null;
+        }
     }
 
     /**
@@ -125,17 +142,66 @@ public class VariableSubstitutorImpl implements VariableSubstitutor, Serializabl
             return null;
         }
 
-        // Create reader and write for the strings
+        // Nothing to do if there is no variable start character
+        if (str.indexOf(VariableSubstitutorReader.getVariableStart(type)) == -1)
+        {
+            return str;
+        }
+
+        return getTemplate(str, type).render();
+    }
 
-        try
+    /**
+     * Returns a template for the specified string, using plain escaping.
+     *
+     * @param str the string to parse
+     * @return the template for the string
+     */
+    @Override
+    public SubstitutionTemplate getTemplate(String str)
+    {
+        return getTemplate(str, SubstitutionType.TYPE_PLAIN);
+    }
+
+    /**
+     * Returns a template for the specified string.
+     * <p/>
+     * Templates are cached by source and type. The cache is discarded if it grows beyond
+     * {@link #MAX_CACHED_TEMPLATES} entries for a type, or if {@link #setBracesRequired(boolean)} changes the parsing
+     * rules.
+     *
+     * @param str  the string to parse
+     * @param type the escaping type or null for plain
+     * @return the template for the string
+     * @throws IzPackException if the string cannot be parsed
+     */
+    @Override
+    public SubstitutionTemplate getTemplate(String str, SubstitutionType type)
+    {
+        if (type == null)
         {
-            return IOUtils.toString(new VariableSubstitutorReader(new StringReader(str), variables, type, bracesRequired));
+            type = SubstitutionType.getDefault();
         }
-        catch (IOException e)
+        Map<String, VariableSubstitutorTemplate> cache = getTemplates(type);
+        VariableSubstitutorTemplate result = cache.get(str);
+        if (result == null)
         {
-            logger.log(Level.SEVERE, "Error when substituting variables", e);
-            throw new IzPackException(e);
+            try
+            {
+                result = new VariableSubstitutorTemplate(str, type, variables, bracesRequired);
+            }
+            catch (IOException e)
+            {
+                logger.log(Level.SEVERE, "Error when substituting variables", e);
+                throw new IzPackException(e);
+            }
+            if (cache.size() >= MAX_CACHED_TEMPLATES)
+            {
+                cache.clear();
+            }
+            cache.put(str, result);
         }
+        return result;
     }
 
     /**
@@ -189,4 +255,26 @@ public class VariableSubstitutorImpl implements VariableSubstitutor, Serializabl
         return IOUtils.copy(new VariableSubstitutorReader(reader, variables, type, bracesRequired), writer);
     }
 
+    /**
+     * Returns the template cache for a substitution type.
+     *
+     * @param type the substitution type
+     * @return the template cache
+     */
+    private synchronized Map<String, VariableSubstitutorTemplate> getTemplates(SubstitutionType type)
+    {
+        if (templates == null)
+        {
+            templates = new EnumMap<SubstitutionType, Map<String, VariableSubstitutorTemplate>>(
+                    SubstitutionType.class);
+        }
+        Map<String, VariableSubstitutorTemplate> result = templates.get(type);
+        if (result == null)
+        {
+            result = new ConcurrentHashMap<String, VariableSubstitutorTemplate>();
+            templates.put(type, result);
+        }
+        return result;
+    }
+
 }
@@ -82,8 +82,8 @@ public class VariableSubstitutorInputStream extends InputStream
             int count = 0;
             while (count < buff.length)
             {
-                int curChar = substitutorReader.read();
-                if (curChar == -1)
+                int read = substitutorReader.read(buff, count, buff.length - count);
+                if (read == -1)
                 {
                     lastSegment = true;
                     if (count == 0) {
@@ -91,13 +91,32 @@ public class VariableSubstitutorInputStream extends InputStream
                     }
                     break;
                 }
-                buff[count++] = (char) curChar;
+                count += read;
             }
             buffer = String.valueOf(buff, 0, count).getBytes(encoding);
         }
         return buffer[index++] & 0xff;
     }
 
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+        int first = read();
+        if (first == -1)
+        {
+            return -1;
+        }
+        b[off] = (byte) first;
+        int count = Math.min(len - 1, buffer.length - index);
+        System.arraycopy(buffer, index, b, off + 1, count);
+        index += count;
+        return count + 1;
+    }
+
     @Override
     public void close() throws IOException
     {
@@ -21,16 +21,53 @@ import com.izforge.izpack.api.substitutor.SubstitutionType;
 import com.izforge.izpack.util.IoHelper;
 
 import java.io.IOException;
-import java.io.PushbackReader;
 import java.io.Reader;
 import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * An input reader which resolves IzPack variables on the fly
+ * An input reader which resolves IzPack variables on the fly.
+ * <p/>
+ * The source is read in blocks. Runs of characters that cannot start a variable are copied in bulk by
+ * {@link #read(char[], int, int)}; only variable references are processed a character at a time.
  */
 public class VariableSubstitutorReader extends Reader
 {
-    private PushbackReader pushbackReader = null;
+    /**
+     * Indicates there is no pushed back character.
+     */
+    private static final int NONE = -2;
+
+    /**
+     * The source reader.
+     */
+    private final Reader source;
+
+    /**
+     * The default size of {@link #buffer}.
+     */
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * Block of characters read from the source.
+     */
+    private final char[] buffer;
+
+    /**
+     * The position of the next character in {@link #buffer}.
+     */
+    private int position;
+
+    /**
+     * The number of valid characters in {@link #buffer}.
+     */
+    private int limit;
+
+    /**
+     * A character pushed back while parsing a variable, or {@link #NONE}.
+     */
+    private int pushback = NONE;
     /**
      * The replacement variables
      */
@@ -53,13 +90,29 @@ public class VariableSubstitutorReader extends Reader
 
     public VariableSubstitutorReader(Reader source, Variables variables, SubstitutionType type, boolean bracesRequired)
     {
-        this(source, variables, type);
-        this.bracesRequired = bracesRequired;
+        this(source, variables, type, bracesRequired, DEFAULT_BUFFER_SIZE);
     }
 
     public VariableSubstitutorReader(Reader source, Variables variables, SubstitutionType type)
     {
-        this.pushbackReader = new PushbackReader(source);
+        this(source, variables, type, false, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a reader with a specific block size, to avoid allocating a full block for short sources.
+     *
+     * @param source         the source reader
+     * @param variables      the replacement variables
+     * @param type           the substitution type. May be {@code null}
+     * @param bracesRequired whether braces are required for substitution
+     * @param bufferSize     the number of characters to read from the source at a time
+     */
+    VariableSubstitutorReader(Reader source, Variables variables, SubstitutionType type, boolean bracesRequired,
+                              int bufferSize)
+    {
+        this.source = source;
+        this.buffer = new char[Math.max(bufferSize, 1)];
+        this.bracesRequired = bracesRequired;
         this.variables = variables;
         this.type = type;
         if (type == null)
@@ -68,23 +121,36 @@ public class VariableSubstitutorReader extends Reader
         }
 
         // determine character which starts (and ends) a variable
+        variable_start = getVariableStart(type);
+        if (type == SubstitutionType.TYPE_ANT)
+        {
+            variable_end = '@';
+        }
+    }
+
+    /**
+     * Returns the character which starts a variable for a substitution type.
+     *
+     * @param type the substitution type. May be {@code null}
+     * @return the variable start character
+     */
+    static char getVariableStart(SubstitutionType type)
+    {
+        if (type == null)
+        {
+            type = SubstitutionType.getDefault();
+        }
         switch (type)
         {
             case TYPE_SHELL:
-                variable_start = '%';
-                break;
+                return '%';
 
             case TYPE_AT:
-                variable_start = '@';
-                break;
-
             case TYPE_ANT:
-                variable_start = '@';
-                variable_end = '@';
-                break;
+                return '@';
 
             default:
-                break;
+                return '$';
         }
     }
 
@@ -123,18 +189,81 @@ public class VariableSubstitutorReader extends Reader
             }
         }
 
-        int data = pushbackReader.read();
+        int data = next();
         if(data != variable_start) return data;
 
-        data = pushbackReader.read();
+        VariableReference reference = parseReference();
+        if (reference == null)
+        {
+            return variable_start;
+        }
+        varValue = reference.resolve(variables, type);
+
+        if(varValue.length() == 0){
+            return read();
+        }
+
+        return varValue.charAt(varValueIndex++);
+    }
+
+    /**
+     * Parses the source into literal text and variable references, without resolving any variables.
+     *
+     * @return the segments of the source. Each is either a {@code String} or a {@link VariableReference}
+     * @throws IOException for any I/O error
+     */
+    List<Object> parse() throws IOException
+    {
+        List<Object> segments = new ArrayList<Object>();
+        StringBuilder literal = new StringBuilder();
+        int data;
+        while ((data = next()) != -1)
+        {
+            if (data != variable_start)
+            {
+                literal.append((char) data);
+                continue;
+            }
+            VariableReference reference = parseReference();
+            if (reference == null)
+            {
+                literal.append(variable_start);
+                continue;
+            }
+            if (literal.length() > 0)
+            {
+                segments.add(literal.toString());
+                literal.setLength(0);
+            }
+            segments.add(reference);
+        }
+        if (literal.length() > 0)
+        {
+            segments.add(literal.toString());
+        }
+        return segments;
+    }
+
+    /**
+     * Parses a variable reference, following a variable start character.
+     * <p/>
+     * The structure of a reference doesn't depend on the values of variables, so it can be resolved later.
+     *
+     * @return the reference, or {@code null} if braces are required but not present, in which case the variable
+     *         start character is literal text
+     * @throws IOException for any I/O error
+     */
+    private VariableReference parseReference() throws IOException
+    {
+        int data = next();
         if (data == '{')
         {
             inBraces = true;
         }
         else if (bracesRequired)
         {
-            pushbackReader.unread(data);
-            return variable_start;
+            unread(data);
+            return null;
         }
 
         varNameBuffer.delete(0, varNameBuffer.length());
@@ -144,7 +273,7 @@ public class VariableSubstitutorReader extends Reader
             varNameBuffer.append((char) data);
         }
 
-        data = pushbackReader.read();
+        data = next();
         while (
                 data >= ' ' && (inBraces && data != '}')
                 || (inBraces && ((data == '[') || (data == ']')))
@@ -152,45 +281,18 @@ public class VariableSubstitutorReader extends Reader
         )
         {
             varNameBuffer.append((char) data);
-            data = pushbackReader.read();
+            data = next();
         }
 
         boolean variable = wasItPlausibleVariableName(data);
         String name = varNameBuffer.toString();
-        if (variable && name.length() > 0)
-        {
-            // check for environment variables
-            if (inBraces && name.startsWith("ENV[")
-                    && (name.lastIndexOf(']') == name.length() - 1))
-            {
-                varValue = System.getenv(name.substring(4, name.length() - 1));
-                if (varValue == null)
-                {
-                    varValue = "";
-                }
-            }
-            else if (inBraces && name.startsWith("SYSTEM[")
-                    && (name.lastIndexOf(']') == name.length() - 1))
-            {
-                varValue = System.getProperty(name.substring(7, name.length() - 1));
-            }
-            // TODO: Compatibility mode - to be removed in future
-            else if (inBraces && name.startsWith("SYSTEM_") && name.length() > 7)
-            {
-                varValue = System.getProperty(name.substring(7).replace('_', '.'));
-            }
-            else
-            {
-                varValue = variables.get(name);
-            }
-        }
 
         boolean unclosedBraces = false;
         if (data <= ' ')
         {
             if (data != -1)
             {
-                pushbackReader.unread(data);
+                unread(data);
             }
             unclosedBraces = true;
         } else if (
@@ -198,29 +300,18 @@ public class VariableSubstitutorReader extends Reader
                 || (!isAllowedCharInVariableName(data) && data != '}' && data != variable_end)
                 )
         {
-            pushbackReader.unread(data);
-        }
-
-        if(varValue == null)
-        {
-            varValue = variable_start
-                    + (inBraces ? "{" : "")
-                    + varNameBuffer.toString()
-                    + (inBraces && !unclosedBraces ? "}" : "")
-                    + (variable_end != '\0' && variable ? variable_end : "");
-        }
-        else
-        {
-            varValue = escapeSpecialChars(varValue);
+            unread(data);
         }
 
+        String text = variable_start
+                + (inBraces ? "{" : "")
+                + name
+                + (inBraces && !unclosedBraces ? "}" : "")
+                + (variable_end != '\0' && variable ? variable_end : "");
+        VariableReference reference = new VariableReference((variable && name.length() > 0) ? name : null,
+                                                            inBraces, text);
         inBraces = false;
-
-        if(varValue.length() == 0){
-            return read();
-        }
-
-        return varValue.charAt(varValueIndex++);
+        return reference;
     }
 
     private boolean wasItPlausibleVariableName(int data) throws IOException
@@ -235,7 +326,7 @@ public class VariableSubstitutorReader extends Reader
             {
                 return false;
             }
-            int nextData = pushbackReader.read();
+            int nextData = next();
             if (nextData == -1)
             {
                 return false;
@@ -244,7 +335,7 @@ public class VariableSubstitutorReader extends Reader
             {
                 return true;
             }
-            pushbackReader.unread(nextData);
+            unread(nextData);
             return false;
         }
         return variable_end == data;
@@ -257,24 +348,61 @@ public class VariableSubstitutorReader extends Reader
 
     @Override
     public int read(char cbuf[], int off, int len) throws IOException {
-        int charsRead = 0;
-        for(int i=0; i<len; i++){
-            int nextChar = read();
-            if(nextChar == -1) {
-                if(charsRead == 0){
-                    charsRead = -1;
+        int count = 0;
+        while (count < len)
+        {
+            if (varValue != null && varValueIndex < varValue.length())
+            {
+                // copy the pending substituted value
+                int n = Math.min(len - count, varValue.length() - varValueIndex);
+                varValue.getChars(varValueIndex, varValueIndex + n, cbuf, off + count);
+                varValueIndex += n;
+                count += n;
+                continue;
+            }
+            if (pushback == NONE && position == limit)
+            {
+                // don't block for more input if some has already been returned
+                if (count > 0 && !source.ready())
+                {
+                    break;
                 }
+                if (!fill())
+                {
+                    break;
+                }
+            }
+            if (pushback == NONE)
+            {
+                // copy the run of characters up to the next variable start in bulk
+                int end = Math.min(limit, position + (len - count));
+                int start = position;
+                while (position < end && buffer[position] != variable_start)
+                {
+                    position++;
+                }
+                int n = position - start;
+                System.arraycopy(buffer, start, cbuf, off + count, n);
+                count += n;
+                if (position == end)
+                {
+                    continue;
+                }
+            }
+            // a pushed back character, or a potential variable
+            int nextChar = read();
+            if (nextChar == -1)
+            {
                 break;
             }
-            charsRead = i + 1;
-            cbuf[off + i] = (char) nextChar;
+            cbuf[off + count++] = (char) nextChar;
         }
-        return charsRead;
+        return (count == 0 && len > 0) ? -1 : count;
     }
 
     @Override
     public void close() throws IOException {
-        this.pushbackReader.close();
+        this.source.close();
     }
 
     @Override
@@ -284,7 +412,8 @@ public class VariableSubstitutorReader extends Reader
 
     @Override
     public boolean ready() throws IOException {
-        return this.pushbackReader.ready();
+        return (varValue != null && varValueIndex < varValue.length()) || pushback != NONE || position < limit
+                || this.source.ready();
     }
 
     @Override
@@ -302,6 +431,59 @@ public class VariableSubstitutorReader extends Reader
         throw new RuntimeException("Operation Not Supported");
     }
 
+    /**
+     * Returns the next character from the source.
+     *
+     * @return the next character, or {@code -1} if the end of the source has been reached
+     * @throws IOException for any I/O error
+     */
+    private int next() throws IOException
+    {
+        if (pushback != NONE)
+        {
+            int result = pushback;
+            pushback = NONE;
+            return result;
+        }
+        if (position == limit && !fill())
+        {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    /**
+     * Pushes back a character, so it is returned by the next call to {@link #next()}.
+     *
+     * @param c the character
+     */
+    private void unread(int c)
+    {
+        if (pushback != NONE)
+        {
+            throw new IllegalStateException("Pushback buffer overflow");
+        }
+        pushback = c;
+    }
+
+    /**
+     * Reads the next block of characters from the source.
+     *
+     * @return {@code true} if characters were read, {@code false} if the end of the source has been reached
+     * @throws IOException for any I/O error
+     */
+    private boolean fill() throws IOException
+    {
+        int n;
+        do
+        {
+            n = source.read(buffer, 0, buffer.length);
+        }
+        while (n == 0);
+        position = 0;
+        limit = Math.max(n, 0);
+        return n > 0;
+    }
 
     private static boolean isAllowedCharInVariableName(int c)
     {
@@ -317,9 +499,10 @@ public class VariableSubstitutorReader extends Reader
      * Escapes the special characters in the specified string using file type specific rules.
      *
      * @param str  the string to check for special characters
+     * @param type the substitution type. May be {@code null}
      * @return the string with the special characters properly escaped
      */
-    private String escapeSpecialChars(String str)
+    static String escapeSpecialChars(String str, SubstitutionType type)
     {
         StringBuffer buffer;
         int len;
@@ -0,0 +1,162 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.substitutor;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.izforge.izpack.api.data.Variables;
+import com.izforge.izpack.api.substitutor.SubstitutionTemplate;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+
+
+/**
+ * A {@link SubstitutionTemplate} parsed by {@link VariableSubstitutorReader}.
+ * <p/>
+ * Rendering produces the same result as substituting the source with a {@link VariableSubstitutorReader}.
+ */
+class VariableSubstitutorTemplate implements SubstitutionTemplate
+{
+
+    /**
+     * The source string.
+     */
+    private final String source;
+
+    /**
+     * The substitution type.
+     */
+    private final SubstitutionType type;
+
+    /**
+     * The variables to resolve references against.
+     */
+    private final Variables variables;
+
+    /**
+     * The segments of the source. Each is either a literal {@code String} or a {@link VariableReference}.
+     */
+    private final Object[] segments;
+
+    /**
+     * The referenced IzPack variable names.
+     */
+    private final Set<String> names;
+
+    /**
+     * Determines if the source contains references.
+     */
+    private final boolean references;
+
+
+    /**
+     * Constructs a {@code VariableSubstitutorTemplate}.
+     *
+     * @param source         the source string
+     * @param type           the substitution type. May be {@code null}
+     * @param variables      the variables to resolve references against
+     * @param bracesRequired determines if braces are required for substitution
+     * @throws IOException for any I/O error
+     */
+    VariableSubstitutorTemplate(String source, SubstitutionType type, Variables variables, boolean bracesRequired)
+            throws IOException
+    {
+        this.source = source;
+        this.type = (type != null) ? type : SubstitutionType.getDefault();
+        this.variables = variables;
+        int bufferSize = Math.max(1, Math.min(source.length(), VariableSubstitutorReader.DEFAULT_BUFFER_SIZE));
+        List<Object> parsed = new VariableSubstitutorReader(new StringReader(source), variables, this.type,
+                                                            bracesRequired, bufferSize).parse();
+        segments = parsed.toArray();
+
+        Set<String> referenced = new LinkedHashSet<String>();
+        boolean found = false;
+        for (Object segment : segments)
+        {
+            if (segment instanceof VariableReference)
+            {
+                found = true;
+                String name = ((VariableReference) segment).getVariableName();
+                if (name != null)
+                {
+                    referenced.add(name);
+                }
+            }
+        }
+        names = Collections.unmodifiableSet(referenced);
+        references = found;
+    }
+
+    @Override
+    public String getSource()
+    {
+        return source;
+    }
+
+    @Override
+    public SubstitutionType getType()
+    {
+        return type;
+    }
+
+    @Override
+    public Set<String> getVariableNames()
+    {
+        return names;
+    }
+
+    @Override
+    public boolean hasReferences()
+    {
+        return references;
+    }
+
+    @Override
+    public String render()
+    {
+        if (!references)
+        {
+            return source;
+        }
+        StringBuilder result = new StringBuilder(source.length() + 16);
+        for (Object segment : segments)
+        {
+            if (segment instanceof VariableReference)
+            {
+                result.append(((VariableReference) segment).resolve(variables, type));
+            }
+            else
+            {
+                result.append((String) segment);
+            }
+        }
+        return result.toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return source;
+    }
+}
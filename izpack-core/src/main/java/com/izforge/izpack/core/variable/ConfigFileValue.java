@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -43,6 +44,7 @@ import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.api.config.Config;
 import com.izforge.izpack.api.config.Ini;
 import com.izforge.izpack.api.config.Options;
+import com.izforge.izpack.core.variable.utils.ValueCache;
 
 public abstract class ConfigFileValue extends ValueImpl implements Serializable
 {
@@ -150,13 +152,46 @@ public abstract class ConfigFileValue extends ValueImpl implements Serializable
     protected String resolve(InputStream in, VariableSubstitutor... substitutors)
             throws Exception
     {
-        Config config;
-        String _key_ = key;
-        for (VariableSubstitutor substitutor : substitutors)
+        return resolve(in, substitute(key, substitutors), substitute(section, substitutors));
+    }
+
+    /**
+     * Resolves the value from a configuration file, reusing the result of a previous resolution if the file, the key
+     * and the section are unchanged.
+     *
+     * @param location     the substituted file path
+     * @param entryname    the substituted archive entry name, or {@code null} if the file isn't an archive
+     * @param source       opens the configuration stream
+     * @param substitutors the variable substitutors
+     * @return the value. May be {@code null}
+     * @throws Exception if the value cannot be resolved
+     */
+    protected String resolve(String location, String entryname, final Callable<InputStream> source,
+                             VariableSubstitutor... substitutors) throws Exception
+    {
+        final String _key_ = substitute(key, substitutors);
+        final String _section_ = (type == CONFIGFILE_TYPE_INI) ? substitute(section, substitutors) : null;
+        return ValueCache.get(new Callable<String>()
         {
-            _key_ = substitutor.substitute(_key_);
-        }
+            @Override
+            public String call() throws Exception
+            {
+                InputStream in = source.call();
+                try
+                {
+                    return resolve(in, _key_, _section_);
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+        }, getClass(), ValueCache.fileKey(location), entryname, type, _section_, _key_, escape);
+    }
 
+    private String resolve(InputStream in, String _key_, String _section_) throws Exception
+    {
+        Config config;
         switch (type)
         {
             case CONFIGFILE_TYPE_OPTIONS:
@@ -169,11 +204,6 @@ public abstract class ConfigFileValue extends ValueImpl implements Serializable
                 config = Config.getGlobal().clone();
                 config.setEscape(isEscape());
                 Ini ini;
-                String _section_ = section;
-                for (VariableSubstitutor substitutor : substitutors)
-                {
-                    _section_ = substitutor.substitute(_section_);
-                }
                 ini = new Ini(in, config);
                 return ini.get(_section_, _key_);
             case CONFIGFILE_TYPE_XML:
@@ -183,6 +213,15 @@ public abstract class ConfigFileValue extends ValueImpl implements Serializable
         }
     }
 
+    private static String substitute(String value, VariableSubstitutor... substitutors)
+    {
+        for (VariableSubstitutor substitutor : substitutors)
+        {
+            value = substitutor.substitute(value);
+        }
+        return value;
+    }
+
     private static String parseXPath(InputStream in, String expression, String separator)
             throws ParserConfigurationException, SAXException, IOException, XPathExpressionException
     {
@@ -85,4 +85,10 @@ public class EnvironmentValue extends ValueImpl implements Serializable
         return parseUnresolvedVariableNames(variable);
     }
 
+    @Override
+    public boolean isVolatile()
+    {
+        return false;
+    }
+
 }
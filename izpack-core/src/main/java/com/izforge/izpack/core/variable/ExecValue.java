@@ -22,10 +22,14 @@
 package com.izforge.izpack.core.variable;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
+import com.izforge.izpack.api.exception.IzPackException;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import com.izforge.izpack.core.variable.utils.ValueCache;
 import com.izforge.izpack.util.FileExecutor;
 import com.izforge.izpack.util.OsVersion;
 
@@ -124,8 +128,42 @@ public class ExecValue extends ValueImpl implements Serializable
             }
             _cmd_[i] = _cmdarg_;
         }
+        final String[] command = _cmd_;
+        final String directory = _dir_;
+        try
+        {
+            return ValueCache.getDuringRefresh(new Callable<String>()
+            {
+                @Override
+                public String call()
+                {
+                    return execute(command, directory);
+                }
+            }, ExecValue.class, Arrays.asList(command), directory, useStdErr);
+        }
+        catch (RuntimeException exception)
+        {
+            throw exception;
+        }
+        catch (Exception exception)
+        {
+            throw new IzPackException(exception);
+        }
+    }
+
+    /**
+     * Executes a command.
+     * <p/>
+     * The output is cached by {@link ValueCache} for the duration of a refresh of dynamic variables.
+     *
+     * @param command   the substituted command line
+     * @param directory the substituted working directory. May be {@code null}
+     * @return the command output, or {@code null} if the command failed
+     */
+    private String execute(String[] command, String directory)
+    {
         String[] execOut = new String[2];
-        int ret = new FileExecutor().executeCommand(_cmd_, execOut, _dir_);
+        int ret = new FileExecutor().executeCommand(command, execOut, directory);
         if (ret == 0)
         {
             if (useStdErr)
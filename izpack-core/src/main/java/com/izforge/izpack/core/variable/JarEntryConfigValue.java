@@ -23,6 +23,7 @@ import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 
 import java.io.InputStream;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.zip.ZipException;
@@ -56,7 +57,15 @@ public class JarEntryConfigValue extends ZipEntryConfigFileValue
         {
             _entryname_ = substitutor.substitute(_entryname_);
         }
-        return super.resolve(getJarEntryInputStream(_filename_, _entryname_), substitutors);
+        final String filename = _filename_, entryname = _entryname_;
+        return resolve(filename, entryname, new Callable<InputStream>()
+        {
+            @Override
+            public InputStream call() throws Exception
+            {
+                return getJarEntryInputStream(filename, entryname);
+            }
+        }, substitutors);
     }
 
     private InputStream getJarEntryInputStream(String filename, String entryname) throws Exception
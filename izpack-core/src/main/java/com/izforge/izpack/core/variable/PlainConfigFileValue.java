@@ -24,8 +24,10 @@ package com.izforge.izpack.core.variable;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 
 import java.io.FileInputStream;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 public class PlainConfigFileValue extends ConfigFileValue implements Serializable
 {
@@ -77,7 +79,15 @@ public class PlainConfigFileValue extends ConfigFileValue implements Serializabl
         {
             _location_ = substitutor.substitute(_location_);
         }
-        return resolve(new FileInputStream(_location_), substitutors);
+        final String location = _location_;
+        return resolve(location, null, new Callable<InputStream>()
+        {
+            @Override
+            public InputStream call() throws Exception
+            {
+                return new FileInputStream(location);
+            }
+        }, substitutors);
     }
 
     @Override
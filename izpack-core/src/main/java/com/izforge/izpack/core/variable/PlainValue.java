@@ -84,4 +84,10 @@ public class PlainValue extends ValueImpl implements Serializable
     {
         return parseUnresolvedVariableNames(value);
     }
+
+    @Override
+    public boolean isVolatile()
+    {
+        return false;
+    }
 }
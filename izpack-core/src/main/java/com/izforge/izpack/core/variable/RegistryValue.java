@@ -23,10 +23,12 @@ package com.izforge.izpack.core.variable;
 
 import java.io.Serializable;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.util.OsVersion;
 import com.izforge.izpack.api.config.Reg;
+import com.izforge.izpack.core.variable.utils.ValueCache;
 
 
 public class RegistryValue extends ValueImpl implements Serializable
@@ -126,35 +128,30 @@ public class RegistryValue extends ValueImpl implements Serializable
             throw new Exception("Registry access allowed only on Windows OS");
         }
 
-        Reg reg = null;
-        Reg.Key regkey = null;
-        if (key != null)
+        if (key == null)
         {
-        	String _key_ = key;
-            for (VariableSubstitutor substitutor : substitutors)
-            {
-                _key_ = substitutor.substitute(_key_);
-            }
-            
-            if (reg == null)
-            {
-            	// If the regRoot is not provided, load the portion of the registry indicated by regKey
-                reg = new Reg(_key_);
-            }        
-            regkey = reg.get(_key_);            
+            return null;
         }
-        if (regkey != null)
+        String _key_ = key;
+        String _value_ = value;
+        for (VariableSubstitutor substitutor : substitutors)
+        {
+            _key_ = substitutor.substitute(_key_);
+            _value_ = substitutor.substitute(_value_);
+        }
+        final String regKey = _key_;
+        final String regValue = _value_;
+        resolvedValue = ValueCache.getDuringRefresh(new Callable<String>()
         {
-            String _value_ = value;
-            for (VariableSubstitutor substitutor : substitutors)
+            @Override
+            public String call() throws Exception
             {
-                _value_ = substitutor.substitute(_value_);
+                // If the regRoot is not provided, load the portion of the registry indicated by regKey
+                Reg.Key regkey = new Reg(regKey).get(regKey);
+                return (regkey != null) ? regkey.get(regValue) : null;
             }
-            resolvedValue = regkey.get(_value_);
-            return resolvedValue;
-        }
-
-        return null;
+        }, RegistryValue.class, regKey, regValue);
+        return resolvedValue;
     }
 
     @Override
@@ -21,6 +21,7 @@ package com.izforge.izpack.core.variable;
 
 import java.io.InputStream;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
@@ -95,7 +96,15 @@ public class ZipEntryConfigFileValue extends ConfigFileValue
         {
             _entryname_ = substitutor.substitute(_entryname_);
         }
-        return super.resolve(getZipEntryInputStream(_filename_, _entryname_), substitutors);
+        final String filename = _filename_, entryname = _entryname_;
+        return resolve(filename, entryname, new Callable<InputStream>()
+        {
+            @Override
+            public InputStream call() throws Exception
+            {
+                return getZipEntryInputStream(filename, entryname);
+            }
+        }, substitutors);
     }
 
     private InputStream getZipEntryInputStream(String filename, String entryname) throws Exception
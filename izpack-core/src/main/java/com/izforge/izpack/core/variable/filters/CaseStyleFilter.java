@@ -53,6 +53,12 @@ public class CaseStyleFilter implements ValueFilter
         }
     }
 
+    @Override
+    public boolean isVolatile()
+    {
+        return false;
+    }
+
     @Override
     public String toString()
     {
@@ -44,6 +44,12 @@ public class LocationFilter implements ValueFilter
         return FilenameUtils.concat(_baseDir_, value);
     }
 
+    @Override
+    public boolean isVolatile()
+    {
+        return false;
+    }
+
     @Override
     public String toString()
     {
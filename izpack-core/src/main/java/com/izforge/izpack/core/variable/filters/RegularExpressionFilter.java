@@ -158,6 +158,12 @@ public class RegularExpressionFilter implements ValueFilter
         return processor.execute();
     }
 
+    @Override
+    public boolean isVolatile()
+    {
+        return false;
+    }
+
     @Override
     public String toString()
     {
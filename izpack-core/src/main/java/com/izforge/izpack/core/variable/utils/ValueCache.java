@@ -0,0 +1,236 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.variable.utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+
+/**
+ * Caches the results of expensive dynamic values, such as the output of processes and the contents of configuration
+ * files, so that they are not resolved again each time dynamic variables are refreshed.
+ * <p/>
+ * Results are keyed by the resolved inputs of a value, i.e. after variable substitution. Results returned by
+ * {@link #get} are kept across refreshes, so their keys must include the {@link #fileKey(String) modification time
+ * and size} of the files they are read from, in order for changes to be picked up. Values that depend on system state
+ * that can't be checked cheaply, such as process output or the registry, should use {@link #getDuringRefresh}
+ * instead, which only shares results within a single refresh of dynamic variables.
+ * <p/>
+ * Concurrent requests for the same key are resolved once. Failures are not cached.
+ */
+public final class ValueCache
+{
+
+    /**
+     * The maximum number of cached results.
+     */
+    static final int MAX_ENTRIES = 256;
+
+    /**
+     * The cached results, in least recently used order.
+     */
+    private static final Map<List<Object>, FutureTask<String>> results = createCache();
+
+    /**
+     * The results cached for the refresh in progress, in least recently used order.
+     */
+    private static final Map<List<Object>, FutureTask<String>> refreshResults = createCache();
+
+    /**
+     * The number of refreshes in progress. Guarded by {@link #refreshResults}.
+     */
+    private static int refreshes;
+
+    /**
+     * Prevent instantiation.
+     */
+    private ValueCache()
+    {
+    }
+
+    /**
+     * Returns the cached result for a key, resolving it if it isn't cached.
+     *
+     * @param resolver the resolver, invoked if there is no cached result
+     * @param key      the resolved inputs of the value. Elements must implement {@code equals()} and
+     *                 {@code hashCode()}; use {@link Arrays#asList} for arrays
+     * @return the result. May be {@code null}
+     * @throws Exception if the value cannot be resolved
+     */
+    public static String get(Callable<String> resolver, Object... key) throws Exception
+    {
+        return get(results, false, resolver, key);
+    }
+
+    /**
+     * Returns the result cached for a key by the refresh in progress, resolving it if it isn't cached.
+     * <p/>
+     * If no refresh is in progress, the value is always resolved.
+     *
+     * @param resolver the resolver, invoked if there is no cached result
+     * @param key      the resolved inputs of the value. Elements must implement {@code equals()} and
+     *                 {@code hashCode()}; use {@link Arrays#asList} for arrays
+     * @return the result. May be {@code null}
+     * @throws Exception if the value cannot be resolved
+     */
+    public static String getDuringRefresh(Callable<String> resolver, Object... key) throws Exception
+    {
+        return get(refreshResults, true, resolver, key);
+    }
+
+    /**
+     * Invoked when dynamic variables start refreshing.
+     * <p/>
+     * The results cached by {@link #getDuringRefresh} are discarded when the outermost refresh starts and ends.
+     */
+    public static void startRefresh()
+    {
+        synchronized (refreshResults)
+        {
+            if (refreshes++ == 0)
+            {
+                refreshResults.clear();
+            }
+        }
+    }
+
+    /**
+     * Invoked when dynamic variables finish refreshing.
+     */
+    public static void endRefresh()
+    {
+        synchronized (refreshResults)
+        {
+            if (--refreshes == 0)
+            {
+                refreshResults.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns a key component that identifies the current state of a file.
+     *
+     * @param path the file path
+     * @return the absolute path, modification time and size of the file
+     */
+    public static List<Object> fileKey(String path)
+    {
+        File file = new File(path);
+        return Arrays.<Object>asList(file.getAbsolutePath(), file.lastModified(), file.length());
+    }
+
+    /**
+     * Discards all cached results.
+     */
+    public static void clear()
+    {
+        synchronized (results)
+        {
+            results.clear();
+        }
+        synchronized (refreshResults)
+        {
+            refreshResults.clear();
+        }
+    }
+
+    /**
+     * Returns the cached result for a key, resolving it if it isn't cached.
+     *
+     * @param cache     the cache
+     * @param refreshed if {@code true}, only cache the result while a refresh is in progress
+     * @param resolver  the resolver, invoked if there is no cached result
+     * @param key       the resolved inputs of the value
+     * @return the result. May be {@code null}
+     * @throws Exception if the value cannot be resolved
+     */
+    private static String get(Map<List<Object>, FutureTask<String>> cache, boolean refreshed,
+                              Callable<String> resolver, Object... key) throws Exception
+    {
+        List<Object> entryKey = new ArrayList<Object>(Arrays.asList(key));
+        FutureTask<String> task;
+        boolean owner = false;
+        synchronized (cache)
+        {
+            if (refreshed && refreshes == 0)
+            {
+                return resolver.call();
+            }
+            task = cache.get(entryKey);
+            if (task == null)
+            {
+                task = new FutureTask<String>(resolver);
+                cache.put(entryKey, task);
+                owner = true;
+            }
+        }
+        if (owner)
+        {
+            task.run();
+        }
+        try
+        {
+            return task.get();
+        }
+        catch (ExecutionException exception)
+        {
+            synchronized (cache)
+            {
+                if (cache.get(entryKey) == task)
+                {
+                    cache.remove(entryKey);
+                }
+            }
+            Throwable cause = exception.getCause();
+            if (cause instanceof Exception)
+            {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @return a new cache, holding at most {@link #MAX_ENTRIES} results
+     */
+    private static Map<List<Object>, FutureTask<String>> createCache()
+    {
+        return new LinkedHashMap<List<Object>, FutureTask<String>>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 5209482373528519716L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, FutureTask<String>> eldest)
+            {
+                return size() > MAX_ENTRIES;
+            }
+        };
+    }
+}
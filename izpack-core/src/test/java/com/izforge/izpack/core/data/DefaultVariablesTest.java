@@ -29,12 +29,18 @@ import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.FileUtils;
+import org.junit.Assume;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -44,19 +50,25 @@ import com.izforge.izpack.api.data.AutomatedInstallData;
 import com.izforge.izpack.api.data.DynamicVariable;
 import com.izforge.izpack.api.data.Overrides;
 import com.izforge.izpack.api.data.Panel;
+import com.izforge.izpack.api.data.ValueFilter;
+import com.izforge.izpack.api.data.VariableChange;
+import com.izforge.izpack.api.data.VariableChangeListener;
 import com.izforge.izpack.api.data.Variables;
 import com.izforge.izpack.api.exception.InstallerException;
 import com.izforge.izpack.api.rules.Condition;
+import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.container.DefaultContainer;
 import com.izforge.izpack.core.rules.ConditionContainer;
 import com.izforge.izpack.core.rules.RulesEngineImpl;
 import com.izforge.izpack.core.rules.process.ExistsCondition;
 import com.izforge.izpack.core.rules.process.VariableCondition;
 import com.izforge.izpack.core.variable.ConfigFileValue;
+import com.izforge.izpack.core.variable.ExecValue;
 import com.izforge.izpack.core.variable.PlainConfigFileValue;
 import com.izforge.izpack.core.variable.PlainValue;
 import com.izforge.izpack.test.Container;
 import com.izforge.izpack.test.junit.PicoRunner;
+import com.izforge.izpack.util.OsVersion;
 import com.izforge.izpack.util.Platforms;
 
 import jakarta.inject.Inject;
@@ -195,6 +207,30 @@ public class DefaultVariablesTest
         assertEquals(9999, variables.getLong("notALong", 9999));
     }
 
+    /**
+     * Verifies that {@link Variables#getModificationCount()} increases only when a value changes.
+     */
+    @Test
+    public void testModificationCount()
+    {
+        long count = variables.getModificationCount();
+        variables.set("var1", "value1");
+        assertEquals(count + 1, variables.getModificationCount());
+        variables.set("var1", "value1");
+        assertEquals(count + 1, variables.getModificationCount());
+        variables.set("var1", null);
+        assertEquals(count + 2, variables.getModificationCount());
+        variables.set("var1", null);
+        assertEquals(count + 2, variables.getModificationCount());
+
+        // a refresh that changes variables counts once, when it publishes its changes to other threads
+        variables.add(createDynamic("var2", "dynamic"));
+        variables.refresh();
+        assertEquals(count + 3, variables.getModificationCount());
+        variables.refresh();
+        assertEquals(count + 3, variables.getModificationCount());
+    }
+
     /**
      * Tests the {@link Variables#replace(String)} method.
      */
@@ -650,6 +686,363 @@ public class DefaultVariablesTest
         assertEquals("newValue", variables.get(blockedVar));
     }
 
+    /**
+     * Verifies that dynamic variables are only re-evaluated if a variable they substitute has changed, unless their
+     * value or a filter is volatile.
+     */
+    @Test
+    public void testIncrementalRefresh()
+    {
+        variables.set("base", "one");
+        DynamicVariable dependent = createDynamic("dependent", "${base}/lib");
+        CountingFilter dependentFilter = new CountingFilter(false);
+        dependent.addFilter(dependentFilter);
+        DynamicVariable constant = createDynamic("constant", "fixed");
+        CountingFilter constantFilter = new CountingFilter(false);
+        constant.addFilter(constantFilter);
+        DynamicVariable chained = createDynamic("chained", "${dependent}.jar");
+        CountingFilter chainedFilter = new CountingFilter(false);
+        chained.addFilter(chainedFilter);
+        DynamicVariable volatileVar = createDynamic("volatile", "${base}");
+        CountingFilter volatileFilter = new CountingFilter(true);
+        volatileVar.addFilter(volatileFilter);
+        variables.add(dependent);
+        variables.add(constant);
+        variables.add(chained);
+        variables.add(volatileVar);
+
+        variables.refresh();
+        assertEquals("one/lib", variables.get("dependent"));
+        assertEquals("one/lib.jar", variables.get("chained"));
+        assertEquals(1, dependentFilter.count);
+        assertEquals(1, constantFilter.count);
+        assertEquals(1, chainedFilter.count);
+        assertEquals(1, volatileFilter.count);
+
+        // nothing changed, so only the volatile variable is evaluated
+        variables.refresh();
+        assertEquals(1, dependentFilter.count);
+        assertEquals(1, constantFilter.count);
+        assertEquals(1, chainedFilter.count);
+        assertEquals(2, volatileFilter.count);
+
+        // the change propagates to the chained variable in the same refresh
+        variables.set("base", "two");
+        variables.refresh();
+        assertEquals("two/lib", variables.get("dependent"));
+        assertEquals("two/lib.jar", variables.get("chained"));
+        assertEquals("two", variables.get("volatile"));
+        assertEquals(2, dependentFilter.count);
+        assertEquals(1, constantFilter.count);
+        assertEquals(2, chainedFilter.count);
+        assertEquals(3, volatileFilter.count);
+
+        // a variable overwritten since the last refresh is restored without being re-evaluated
+        variables.set("dependent", "user");
+        variables.refresh();
+        assertEquals("two/lib", variables.get("dependent"));
+        assertEquals("two/lib.jar", variables.get("chained"));
+        assertEquals(2, dependentFilter.count);
+        assertEquals(2, chainedFilter.count);
+
+        // changes made directly to the properties are detected
+        variables.getProperties().setProperty("base", "three");
+        variables.refresh();
+        assertEquals("three/lib.jar", variables.get("chained"));
+        assertEquals(3, dependentFilter.count);
+    }
+
+    /**
+     * Verifies that expensive dynamic variables that don't depend on other dynamic variables are evaluated
+     * concurrently, and that variables depending on them still see their values.
+     */
+    @Test
+    public void testConcurrentRefresh()
+    {
+        variables.set("base", "one");
+        CountDownLatch latch = new CountDownLatch(2);
+        DynamicVariable first = createDynamic("first", "${base}/a");
+        LatchFilter firstFilter = new LatchFilter(latch);
+        first.addFilter(firstFilter);
+        DynamicVariable second = createDynamic("second", "${base}/b");
+        LatchFilter secondFilter = new LatchFilter(latch);
+        second.addFilter(secondFilter);
+        DynamicVariable dependent = createDynamic("dependent", "${first}+${second}");
+        variables.add(first);
+        variables.add(second);
+        variables.add(dependent);
+
+        variables.refresh();
+        assertEquals("one/a", variables.get("first"));
+        assertEquals("one/b", variables.get("second"));
+        assertEquals("one/a+one/b", variables.get("dependent"));
+
+        // each filter only returns once both have been invoked, so they must have been evaluated concurrently
+        assertTrue(firstFilter.concurrent);
+        assertTrue(secondFilter.concurrent);
+    }
+
+    /**
+     * Verifies that listeners are notified of changes made by {@link Variables#set}, and of the net changes made by
+     * {@link Variables#refresh()} in a single batch.
+     */
+    @Test
+    public void testChangeListener()
+    {
+        final List<List<VariableChange>> batches = new ArrayList<List<VariableChange>>();
+        VariableChangeListener listener = new VariableChangeListener()
+        {
+            @Override
+            public void variablesChanged(List<VariableChange> changes)
+            {
+                batches.add(changes);
+            }
+        };
+        variables.addChangeListener(listener);
+
+        variables.set("var", "a");
+        variables.set("var", "a");
+        assertEquals(1, batches.size());
+        checkChange(batches.get(0).get(0), "var", null, "a");
+
+        // "dyn" is set twice, "var" is changed and changed back, and "other" is unchanged
+        variables.set("other", "x");
+        variables.add(createDynamic("dyn", "first"));
+        variables.add(createDynamic("dyn", "${var}/second"));
+        variables.add(createDynamic("var", "b"));
+        variables.add(createDynamic("var", "a"));
+        variables.add(createDynamic("other", "x"));
+        batches.clear();
+        variables.refresh();
+        assertEquals(1, batches.size());
+        assertEquals(1, batches.get(0).size());
+        checkChange(batches.get(0).get(0), "dyn", null, "a/second");
+
+        // no changes, so no notification
+        batches.clear();
+        variables.refresh();
+        assertTrue(batches.isEmpty());
+
+        variables.removeChangeListener(listener);
+        variables.set("var", "c");
+        assertTrue(batches.isEmpty());
+    }
+
+    private void checkChange(VariableChange change, String name, String oldValue, String newValue)
+    {
+        assertEquals(name, change.getName());
+        assertEquals(oldValue, change.getOldValue());
+        assertEquals(newValue, change.getNewValue());
+    }
+
+    /**
+     * Verifies that other threads don't see the intermediate values of a refresh in progress, and see all of its
+     * changes once it completes.
+     */
+    @Test
+    public void testRefreshIsolation() throws Exception
+    {
+        final CountDownLatch refreshing = new CountDownLatch(1);
+        final CountDownLatch read = new CountDownLatch(1);
+        variables.add(createDynamic("dyn", "first"));
+        DynamicVariable second = createDynamic("dyn", "second");
+        second.addFilter(new ValueFilter()
+        {
+            @Override
+            public String filter(String value, VariableSubstitutor... substitutors) throws Exception
+            {
+                refreshing.countDown();
+                assertTrue(read.await(10, TimeUnit.SECONDS));
+                return value;
+            }
+
+            @Override
+            public void validate()
+            {
+            }
+        });
+        variables.add(second);
+        variables.add(createDynamic("other", "${dyn}"));
+
+        Thread refresh = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                variables.refresh();
+            }
+        });
+        refresh.start();
+        assertTrue(refreshing.await(10, TimeUnit.SECONDS));
+        assertNull(variables.get("dyn"));
+        assertFalse(variables.getSnapshot().containsKey("dyn"));
+        read.countDown();
+        refresh.join(10000);
+
+        assertEquals("second", variables.get("dyn"));
+        assertEquals("second", variables.get("other"));
+    }
+
+    /**
+     * Verifies that variables can be set and read from multiple threads.
+     */
+    @Test
+    public void testConcurrentAccess() throws Exception
+    {
+        final int threads = 4;
+        final int count = 1000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        final AtomicInteger changes = new AtomicInteger();
+        variables.addChangeListener(new VariableChangeListener()
+        {
+            @Override
+            public void variablesChanged(List<VariableChange> changed)
+            {
+                changes.addAndGet(changed.size());
+            }
+        });
+        long modifications = variables.getModificationCount();
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int i = 0; i < threads; ++i)
+        {
+            final String prefix = "thread" + i + ".";
+            Thread worker = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for (int j = 0; j < count; ++j)
+                        {
+                            variables.set(prefix + j, Integer.toString(j));
+                            assertEquals(Integer.toString(j), variables.get(prefix + j));
+                            variables.getSnapshot();
+                        }
+                    }
+                    catch (Throwable exception)
+                    {
+                        synchronized (errors)
+                        {
+                            errors.add(exception);
+                        }
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers)
+        {
+            worker.join(30000);
+        }
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertEquals(threads * count, changes.get());
+        assertEquals(modifications + threads * count, variables.getModificationCount());
+        assertEquals(Integer.toString(count - 1), variables.get("thread" + (threads - 1) + "." + (count - 1)));
+    }
+
+    /**
+     * Verifies that the output of a command is shared by the variables that run it within a refresh, but that the
+     * command is run again by the next refresh.
+     */
+    @Test
+    public void testExecValueRefresh() throws IOException
+    {
+        Assume.assumeTrue(OsVersion.IS_UNIX);
+        File value = rootFolder.newFile("value.txt");
+        File runs = rootFolder.newFile("runs.txt");
+        FileUtils.writeStringToFile(value, "a", "UTF-8");
+        String[] command = {"-c", "echo run >> '" + runs.getPath() + "'; cat '" + value.getPath() + "'"};
+        DynamicVariableImpl first = new DynamicVariableImpl();
+        first.setName("first");
+        first.setValue(new ExecValue(command, null, true, false));
+        DynamicVariableImpl second = new DynamicVariableImpl();
+        second.setName("second");
+        second.setValue(new ExecValue(command, null, true, false));
+        variables.add(first);
+        variables.add(second);
+
+        variables.refresh();
+        assertEquals("a", variables.get("first").trim());
+        assertEquals("a", variables.get("second").trim());
+        assertEquals(1, FileUtils.readLines(runs, "UTF-8").size());
+
+        FileUtils.writeStringToFile(value, "b", "UTF-8");
+        variables.refresh();
+        assertEquals("b", variables.get("first").trim());
+        assertEquals("b", variables.get("second").trim());
+        assertEquals(2, FileUtils.readLines(runs, "UTF-8").size());
+    }
+
+    /**
+     * A volatile filter that waits for a latch shared with other filters.
+     */
+    private static class LatchFilter implements ValueFilter
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final CountDownLatch latch;
+
+        private volatile boolean concurrent;
+
+        LatchFilter(CountDownLatch latch)
+        {
+            this.latch = latch;
+        }
+
+        @Override
+        public String filter(String value, VariableSubstitutor... substitutors) throws Exception
+        {
+            latch.countDown();
+            concurrent = latch.await(10, TimeUnit.SECONDS);
+            return value;
+        }
+
+        @Override
+        public void validate()
+        {
+        }
+    }
+
+    /**
+     * A filter that passes its input through unchanged, counting invocations.
+     */
+    private static class CountingFilter implements ValueFilter
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean isVolatile;
+
+        private int count;
+
+        CountingFilter(boolean isVolatile)
+        {
+            this.isVolatile = isVolatile;
+        }
+
+        @Override
+        public String filter(String value, VariableSubstitutor... substitutors)
+        {
+            ++count;
+            return value;
+        }
+
+        @Override
+        public void validate()
+        {
+        }
+
+        @Override
+        public boolean isVolatile()
+        {
+            return isVolatile;
+        }
+    }
+
     /**
      * Creates a dynamic variable with Checkonce set.
      *
@@ -0,0 +1,193 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.api.data.Pack;
+
+
+/**
+ * Tests {@link InstallationInformation}.
+ */
+public class InstallationInformationTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that installations are appended, and that packs can be read without the variables.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testAppend() throws IOException
+    {
+        File file = new File(temporaryFolder.getRoot(), ".installationinformation");
+        InstallationInformation.append(file, "1.0", Arrays.asList(createPack("core"), createPack("docs")),
+                                       createVariables("INSTALL_PATH", "/opt/app", "APP_VER", "1.0"));
+        long size = file.length();
+        InstallationInformation.append(file, "1.1", Arrays.asList(createPack("samples"), createPack("docs")),
+                                       createVariables("INSTALL_PATH", "/opt/app", "APP_VER", "1.1"));
+        assertTrue(file.length() > size);
+
+        InstallationInformation information = InstallationInformation.read(file);
+        assertEquals(Arrays.asList("core", "docs", "samples"), getNames(information.getPacks()));
+        assertEquals("1.0", information.getVersion("core"));
+        assertEquals("1.1", information.getVersion("docs"));
+        assertEquals("core.id", information.getPacks().get(0).getLangPackId());
+        assertEquals("/opt/app", information.getVariables().getProperty("INSTALL_PATH"));
+        assertEquals("1.1", information.getVariables().getProperty("APP_VER"));
+
+        InstallationInformation packs = InstallationInformation.readPacks(file);
+        assertEquals(Arrays.asList("core", "docs", "samples"), getNames(packs.getPacks()));
+        assertTrue(packs.getVariables().isEmpty());
+    }
+
+    /**
+     * Verifies that variables that are no longer defined by a later installation are removed.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testRemovedVariables() throws IOException
+    {
+        File file = new File(temporaryFolder.getRoot(), ".installationinformation");
+        InstallationInformation.append(file, "1.0", Arrays.asList(createPack("core")),
+                                       createVariables("INSTALL_PATH", "/opt/app", "LEGACY", "yes"));
+        InstallationInformation.append(file, "1.1", Arrays.asList(createPack("core")),
+                                       createVariables("INSTALL_PATH", "/opt/app"));
+
+        InstallationInformation information = InstallationInformation.read(file);
+        assertEquals("/opt/app", information.getVariables().getProperty("INSTALL_PATH"));
+        assertNull(information.getVariables().getProperty("LEGACY"));
+        assertEquals(1, information.getVariables().size());
+
+        InstallationInformation.append(file, "1.2", Arrays.asList(createPack("core")),
+                                       createVariables("INSTALL_PATH", "/opt/app", "LEGACY", "again"));
+        information = InstallationInformation.read(file);
+        assertEquals("again", information.getVariables().getProperty("LEGACY"));
+    }
+
+    /**
+     * Verifies that an incomplete trailing record is ignored, and overwritten by the next append.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testIncompleteRecord() throws IOException
+    {
+        File file = new File(temporaryFolder.getRoot(), ".installationinformation");
+        InstallationInformation.append(file, "1.0", Arrays.asList(createPack("core")),
+                                       createVariables("APP_VER", "1.0"));
+        long size = file.length();
+        InstallationInformation.append(file, "1.1", Arrays.asList(createPack("docs")),
+                                       createVariables("APP_VER", "1.1"));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            raf.setLength(size + 3);
+        }
+
+        InstallationInformation information = InstallationInformation.read(file);
+        assertEquals(Arrays.asList("core"), getNames(information.getPacks()));
+        assertEquals("1.0", information.getVariables().getProperty("APP_VER"));
+
+        InstallationInformation.append(file, "1.2", Arrays.asList(createPack("samples")),
+                                       createVariables("APP_VER", "1.2"));
+        information = InstallationInformation.read(file);
+        assertEquals(Arrays.asList("core", "samples"), getNames(information.getPacks()));
+        assertEquals("1.2", information.getVariables().getProperty("APP_VER"));
+    }
+
+    /**
+     * Verifies that files written using Java serialization are read, and converted on append.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testMigrate() throws IOException
+    {
+        File file = new File(temporaryFolder.getRoot(), ".installationinformation");
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file)))
+        {
+            out.writeObject(new ArrayList<Pack>(Arrays.asList(createPack("core"), createPack("docs"))));
+            out.writeObject(createVariables("INSTALL_PATH", "/opt/app"));
+        }
+
+        InstallationInformation information = InstallationInformation.read(file);
+        assertEquals(Arrays.asList("core", "docs"), getNames(information.getPacks()));
+        assertNull(information.getVersion("core"));
+        assertEquals("/opt/app", information.getVariables().getProperty("INSTALL_PATH"));
+
+        InstallationInformation.append(file, "2.0", Arrays.asList(createPack("samples")),
+                                       createVariables("INSTALL_PATH", "/opt/app"));
+        assertFalse(InstallationInformation.migrate(file));
+        information = InstallationInformation.read(file);
+        assertEquals(Arrays.asList("core", "docs", "samples"), getNames(information.getPacks()));
+        assertEquals("2.0", information.getVersion("samples"));
+        assertEquals("/opt/app", information.getVariables().getProperty("INSTALL_PATH"));
+    }
+
+    private Pack createPack(String name)
+    {
+        return new Pack(name, name + ".id", name + " description", null, null, false, true, false, null, true, 0);
+    }
+
+    private Properties createVariables(String... pairs)
+    {
+        Properties result = new Properties();
+        for (int i = 0; i < pairs.length; i += 2)
+        {
+            result.setProperty(pairs[i], pairs[i + 1]);
+        }
+        return result;
+    }
+
+    private List<String> getNames(List<Pack> packs)
+    {
+        List<String> result = new ArrayList<String>();
+        for (Pack pack : packs)
+        {
+            result.add(pack.getName());
+        }
+        return result;
+    }
+}
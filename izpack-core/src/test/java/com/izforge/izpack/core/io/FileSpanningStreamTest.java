@@ -161,6 +161,69 @@ public class FileSpanningStreamTest
         spanningInputStream.close();
     }
 
+    /**
+     * Tests the {@link FileSpanningOutputStream#sync()} and {@link FileSpanningInputStream#seek(long)} methods.
+     * <p/>
+     * This verifies that the volumes can be read sequentially, and that seeking via the volume index opens the volume
+     * holding the data directly.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testSeek() throws IOException
+    {
+        File volume = new File(temporaryFolder.getRoot(), "volume");
+        FileSpanningOutputStream spanningOutputStream = new FileSpanningOutputStream(volume, 1024);
+
+        // write 20 blocks of 5K of random data
+        byte[] written = new byte[100000];
+        new Random().nextBytes(written);
+        for (int i = 0; i < 20; ++i)
+        {
+            spanningOutputStream.sync();
+            spanningOutputStream.write(written, i * 5000, 5000);
+        }
+        spanningOutputStream.close();
+        int volumes = spanningOutputStream.getVolumes();
+        VolumeIndex index = spanningOutputStream.getIndex();
+        assertEquals(20, index.size());
+
+        // read the volumes sequentially
+        FileSpanningInputStream spanningInputStream = new FileSpanningInputStream(volume, volumes);
+        byte[] read = new byte[written.length];
+        assertEquals(read.length, spanningInputStream.read(read));
+        assertArrayEquals(written, read);
+        assertEquals(-1, spanningInputStream.read());
+        spanningInputStream.close();
+
+        // remove the volumes between the first and the one holding block 15, to verify they aren't read
+        int entry = index.find(75100);
+        assertEquals(15, entry);
+        assertEquals(75000, index.getPosition(entry));
+        assertTrue(index.getVolume(entry) > 2);
+        for (int i = 1; i < index.getVolume(entry); ++i)
+        {
+            File file = new File(volume.getPath() + "." + i);
+            assertTrue(file.renameTo(new File(file.getPath() + ".bak")));
+        }
+
+        spanningInputStream = new FileSpanningInputStream(volume, volumes);
+        spanningInputStream.setIndex(index);
+        spanningInputStream.seek(75100);
+        assertEquals(75100, spanningInputStream.getFilePointer());
+        read = new byte[1000];
+        assertEquals(read.length, spanningInputStream.read(read));
+        for (int i = 0; i < read.length; ++i)
+        {
+            assertEquals(written[75100 + i], read[i]);
+        }
+
+        // seek back into the first volume
+        spanningInputStream.seek(10);
+        assertEquals(written[10], (byte) spanningInputStream.read());
+        spanningInputStream.close();
+    }
+
     /**
      * Writes 10GB of random data and verifies it can be read back in.
      *
@@ -0,0 +1,330 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.rules;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.izforge.izpack.api.adaptator.IXMLElement;
+import com.izforge.izpack.api.data.AutomatedInstallData;
+import com.izforge.izpack.api.rules.Condition;
+import com.izforge.izpack.core.data.DefaultVariables;
+import com.izforge.izpack.core.data.DynamicVariableImpl;
+import com.izforge.izpack.core.rules.logic.NotCondition;
+import com.izforge.izpack.core.rules.process.JavaCondition;
+import com.izforge.izpack.core.variable.PlainValue;
+import com.izforge.izpack.util.Platforms;
+
+
+/**
+ * Tests the caching performed by {@link RulesEngineImpl}.
+ */
+public class RulesEngineCacheTest
+{
+
+    /**
+     * The variables.
+     */
+    private DefaultVariables variables;
+
+    /**
+     * The rules engine.
+     */
+    private RulesEngineImpl engine;
+
+
+    /**
+     * Sets up the test case.
+     */
+    @Before
+    public void setUp()
+    {
+        variables = new DefaultVariables();
+        engine = new RulesEngineImpl(new AutomatedInstallData(variables, Platforms.LINUX), null);
+        variables.setRules(engine);
+
+        Map<String, Condition> conditions = new HashMap<String, Condition>();
+        Condition alwaysFalse = new JavaCondition();
+        conditions.put("false", alwaysFalse);
+        conditions.put("true", NotCondition.createFromCondition(alwaysFalse, engine));
+        engine.readConditionMap(conditions);
+    }
+
+    /**
+     * Verifies that expressions are parsed once, and parsed again after the conditions change.
+     */
+    @Test
+    public void testExpressionCache()
+    {
+        Condition complex = engine.getCondition("@true && !false");
+        assertSame(complex, engine.getCondition("@true && !false"));
+        assertTrue(complex.isTrue());
+
+        Condition simple = engine.getCondition("true+!false");
+        assertSame(simple, engine.getCondition("true+!false"));
+        assertTrue(simple.isTrue());
+
+        // an expression referencing an unknown condition isn't cached
+        assertNull(engine.getCondition("@true && other"));
+
+        Condition other = NotCondition.createFromCondition(engine.getCondition("true"), engine);
+        other.setId("other");
+        engine.addCondition(other);
+        Condition reparsed = engine.getCondition("@true && !false");
+        assertNotSame(complex, reparsed);
+        assertTrue(reparsed.isTrue());
+        Condition now = engine.getCondition("@true && other");
+        assertNotNull(now);
+        assertFalse(now.isTrue());
+    }
+
+    /**
+     * Verifies that results of non-volatile conditions are cached until a variable changes, and that volatile
+     * conditions are always evaluated.
+     */
+    @Test
+    public void testResultCache()
+    {
+        CountingCondition cached = new CountingCondition(false);
+        cached.setId("cached");
+        CountingCondition notCached = new CountingCondition(true);
+        notCached.setId("notCached");
+        engine.addCondition(cached);
+        engine.addCondition(notCached);
+        variables.set("var", "a");
+
+        assertTrue(engine.isConditionTrue("cached"));
+        assertTrue(engine.isConditionTrue("cached"));
+        assertTrue(engine.isConditionTrue("notCached"));
+        assertTrue(engine.isConditionTrue("notCached"));
+        assertEquals(1, cached.count);
+        assertEquals(2, notCached.count);
+
+        // setting the same value isn't a change
+        variables.set("var", "a");
+        assertTrue(engine.isConditionTrue("cached"));
+        assertEquals(1, cached.count);
+
+        variables.set("var", "b");
+        assertFalse(engine.isConditionTrue("cached"));
+        assertEquals(2, cached.count);
+
+        // a compound condition is only cached if all of its operands are non-volatile
+        assertFalse(engine.isConditionTrue("@notCached || cached"));
+        assertFalse(engine.isConditionTrue("@notCached || cached"));
+        assertEquals(4, notCached.count);
+    }
+
+    /**
+     * Verifies that while dynamic variables are being refreshed, a condition evaluated by the refreshing thread
+     * against the values it has set isn't reused by other threads, which still see the previous values, and
+     * vice versa.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testResultCacheDuringRefresh() throws Exception
+    {
+        CountingCondition cached = new CountingCondition(false);
+        cached.setId("cached");
+        engine.addCondition(cached);
+        GateCondition gate = new GateCondition(engine, "cached");
+        gate.setId("gate");
+        engine.addCondition(gate);
+        variables.set("var", "b");
+
+        variables.add(createDynamic("var", "a", null));
+        variables.add(createDynamic("gated", "set", "gate"));
+        variables.add(createDynamic("after", "set", "cached"));
+
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread refresh = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    variables.refresh();
+                }
+                catch (Throwable exception)
+                {
+                    failure.set(exception);
+                }
+            }
+        });
+        refresh.start();
+        try
+        {
+            assertTrue(gate.entered.await(10, TimeUnit.SECONDS));
+
+            // the refresh has set var=a, but not published it
+            assertTrue(gate.result);
+            assertEquals("b", variables.get("var"));
+            assertFalse(engine.isConditionTrue("cached"));
+            assertFalse(engine.isConditionTrue("cached"));
+        }
+        finally
+        {
+            gate.release.countDown();
+            refresh.join(10000);
+        }
+        assertNull(failure.get());
+        assertEquals("set", variables.get("gated"));
+        assertEquals("set", variables.get("after"));
+        assertEquals("a", variables.get("var"));
+        assertTrue(engine.isConditionTrue("cached"));
+    }
+
+    private static DynamicVariableImpl createDynamic(String name, String value, String conditionId)
+    {
+        DynamicVariableImpl result = new DynamicVariableImpl();
+        result.setName(name);
+        result.setValue(new PlainValue(value));
+        result.setConditionid(conditionId);
+        return result;
+    }
+
+    /**
+     * A volatile condition that evaluates another condition, and then blocks the thread evaluating it until
+     * released.
+     */
+    private static class GateCondition extends Condition
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final transient RulesEngineImpl engine;
+
+        private final String conditionId;
+
+        private final transient CountDownLatch entered = new CountDownLatch(1);
+
+        private final transient CountDownLatch release = new CountDownLatch(1);
+
+        private volatile boolean result;
+
+        GateCondition(RulesEngineImpl engine, String conditionId)
+        {
+            this.engine = engine;
+            this.conditionId = conditionId;
+        }
+
+        @Override
+        public boolean isTrue()
+        {
+            result = engine.isConditionTrue(conditionId);
+            entered.countDown();
+            try
+            {
+                return release.await(10, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException exception)
+            {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        @Override
+        public boolean isVolatile()
+        {
+            return true;
+        }
+
+        @Override
+        public void readFromXML(IXMLElement xmlcondition)
+        {
+        }
+
+        @Override
+        public void makeXMLData(IXMLElement conditionRoot)
+        {
+        }
+
+        @Override
+        public Set<String> getVarRefs()
+        {
+            return new HashSet<String>();
+        }
+    }
+
+    /**
+     * A condition that is true if the variable "var" is "a", counting evaluations.
+     */
+    private static class CountingCondition extends Condition
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean isVolatile;
+
+        private int count;
+
+        CountingCondition(boolean isVolatile)
+        {
+            this.isVolatile = isVolatile;
+        }
+
+        @Override
+        public boolean isTrue()
+        {
+            ++count;
+            return "a".equals(getInstallData().getVariable("var"));
+        }
+
+        @Override
+        public boolean isVolatile()
+        {
+            return isVolatile;
+        }
+
+        @Override
+        public void readFromXML(IXMLElement xmlcondition)
+        {
+        }
+
+        @Override
+        public void makeXMLData(IXMLElement conditionRoot)
+        {
+        }
+
+        @Override
+        public Set<String> getVarRefs()
+        {
+            return new HashSet<String>(Arrays.asList("var"));
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.substitutor;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.izforge.izpack.api.data.Variables;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.core.data.DefaultVariables;
+
+
+/**
+ * Compares the bulk substitution engine with character at a time substitution.
+ * <p/>
+ * The <em>perCharacter</em> benchmarks drive {@link VariableSubstitutorReader#read()} for every character, which is
+ * how all substitution was performed before bulk reads were supported. The <em>bulk</em> benchmarks use
+ * {@link VariableSubstitutorImpl#substitute(String, SubstitutionType)}, which skips strings without a variable start
+ * character and otherwise copies unchanged runs with {@link VariableSubstitutorReader#read(char[], int, int)}.
+ * <p/>
+ * This is not run as part of the build. Run it from the test class path with:
+ * <pre>
+ * java -cp &lt;test class path&gt; com.izforge.izpack.core.substitutor.VariableSubstitutorBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VariableSubstitutorBenchmark
+{
+    /**
+     * The input to substitute.
+     */
+    @Param({"path", "literal", "document"})
+    public String input;
+
+    private String text;
+
+    private Variables variables;
+
+    private VariableSubstitutorImpl substitutor;
+
+    @Setup
+    public void setUp()
+    {
+        Properties properties = new Properties();
+        properties.put("INSTALL_PATH", "/opt/product");
+        properties.put("APP_NAME", "Product");
+        properties.put("APP_VER", "1.0.0");
+        variables = new DefaultVariables(properties);
+        substitutor = new VariableSubstitutorImpl(variables);
+
+        if ("path".equals(input))
+        {
+            text = "${INSTALL_PATH}/lib/product-${APP_VER}.jar";
+        }
+        else if ("literal".equals(input))
+        {
+            text = "lib/ext/product-core.jar";
+        }
+        else
+        {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < 2000; ++i)
+            {
+                builder.append("# configuration entry ").append(i).append(" for the application server\n");
+                if (i % 20 == 0)
+                {
+                    builder.append("home.").append(i).append("=${INSTALL_PATH}/").append("$APP_NAME\n");
+                }
+            }
+            text = builder.toString();
+        }
+    }
+
+    @Benchmark
+    public String bulk()
+    {
+        return substitutor.substitute(text, SubstitutionType.TYPE_PLAIN);
+    }
+
+    @Benchmark
+    public String perCharacter() throws IOException
+    {
+        VariableSubstitutorReader reader = new VariableSubstitutorReader(new StringReader(text), variables,
+                                                                         SubstitutionType.TYPE_PLAIN, false);
+        StringBuilder result = new StringBuilder();
+        int c;
+        while ((c = reader.read()) != -1)
+        {
+            result.append((char) c);
+        }
+        return result.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(VariableSubstitutorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
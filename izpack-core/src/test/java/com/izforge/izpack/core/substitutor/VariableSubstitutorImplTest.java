@@ -20,7 +20,15 @@
 package com.izforge.izpack.core.substitutor;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Properties;
 
 import com.izforge.izpack.api.data.Variables;
@@ -29,6 +37,7 @@ import org.hamcrest.core.Is;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.izforge.izpack.api.substitutor.SubstitutionTemplate;
 import com.izforge.izpack.api.substitutor.SubstitutionType;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 
@@ -46,6 +55,8 @@ public class VariableSubstitutorImplTest
 
     private VariableSubstitutor variableSubstitutor;
 
+    private Variables variables;
+
     @Before
     public void setupVariableSubstitutor()
     {
@@ -54,10 +65,131 @@ public class VariableSubstitutorImplTest
         properties.put("MY_PROP2", "two");
         properties.put("PHRASE", "वसुधैव कुटुम्बकम्");
         properties.put("MEANING", "The world is a family");
-        Variables variables = new DefaultVariables(properties);
+        properties.put("EMPTY", "");
+        properties.put("SPECIAL", " a\t<b>&'\"\\");
+        variables = new DefaultVariables(properties);
         variableSubstitutor = new VariableSubstitutorImpl(variables);
     }
 
+    @Test
+    public void shouldReturnSameStringWithoutVariableStart() throws Exception
+    {
+        String str = "no variables here";
+        assertSame(str, variableSubstitutor.substitute(str, SubstitutionType.TYPE_PLAIN));
+        String at = "costs $5";
+        assertSame(at, variableSubstitutor.substitute(at, SubstitutionType.TYPE_ANT));
+        assertSame(at, variableSubstitutor.substitute(at, SubstitutionType.TYPE_SHELL));
+    }
+
+    /**
+     * Verifies that bulk reads produce the same output as reading a character at a time, for all substitution
+     * types, including variables that straddle the reader's internal block boundary.
+     */
+    @Test
+    public void shouldMatchSingleCharacterReads() throws Exception
+    {
+        char[] padding = new char[8190];
+        Arrays.fill(padding, 'x');
+        String[] inputs = {
+                "", "$", "$$", "${", "${MY_PROP", "$MY_PROP", "${MY_PROP}x", "$MY_PROP2$MY_PRO", "$$$MY_PROP2$MY_PRO",
+                "@MY_PROP@@MY_PROP2@", "@{MY_PROP}@ and @MY_PROP2@", "@{MY_PROP}", "%MY_PROP%MY_PROP2",
+                "${EMPTY}${SPECIAL}$SPECIAL", "a ${MY_PROP b", "${ENV[NO_SUCH_VARIABLE_IZPACK]}", "${unknown} $unknown",
+                new String(padding) + "${MY_PROP}" + new String(padding) + "$MY_PROP2",
+                new String(padding) + "@MY_PROP@" + new String(padding) + "%MY_PROP2"
+        };
+        for (SubstitutionType type : SubstitutionType.values())
+        {
+            for (boolean braces : new boolean[]{false, true})
+            {
+                for (String input : inputs)
+                {
+                    StringBuilder expected = new StringBuilder();
+                    VariableSubstitutorReader single = new VariableSubstitutorReader(new StringReader(input),
+                                                                                     variables, type, braces);
+                    int c;
+                    while ((c = single.read()) != -1)
+                    {
+                        expected.append((char) c);
+                    }
+
+                    StringBuilder actual = new StringBuilder();
+                    VariableSubstitutorReader bulk = new VariableSubstitutorReader(new StringReader(input),
+                                                                                   variables, type, braces);
+                    char[] buffer = new char[7];
+                    int read;
+                    while ((read = bulk.read(buffer, 0, buffer.length)) != -1)
+                    {
+                        actual.append(buffer, 0, read);
+                    }
+                    assertEquals(type + " " + input, expected.toString(), actual.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Verifies that rendering a template produces the same output as the reader, for all substitution types.
+     */
+    @Test
+    public void shouldRenderTemplatesLikeReader() throws Exception
+    {
+        String[] inputs = {
+                "", "$", "$$", "${", "${MY_PROP", "$MY_PROP", "${MY_PROP}x", "$MY_PROP2$MY_PRO", "$$$MY_PROP2$MY_PRO",
+                "@MY_PROP@@MY_PROP2@", "@{MY_PROP}@ and @MY_PROP2@", "@{MY_PROP}", "%MY_PROP%MY_PROP2",
+                "${EMPTY}${SPECIAL}$SPECIAL", "a ${MY_PROP b", "${ENV[NO_SUCH_VARIABLE_IZPACK]}", "${unknown} $unknown",
+                "${SYSTEM[user.dir]}/$ {MY_PROP}", "x\n$MY_PROP\t${MY_PROP2}\r\n"
+        };
+        for (SubstitutionType type : SubstitutionType.values())
+        {
+            for (boolean braces : new boolean[]{false, true})
+            {
+                VariableSubstitutorImpl substitutor = new VariableSubstitutorImpl(variables);
+                substitutor.setBracesRequired(braces);
+                for (String input : inputs)
+                {
+                    StringBuilder expected = new StringBuilder();
+                    VariableSubstitutorReader reader = new VariableSubstitutorReader(new StringReader(input),
+                                                                                     variables, type, braces);
+                    int c;
+                    while ((c = reader.read()) != -1)
+                    {
+                        expected.append((char) c);
+                    }
+                    assertEquals(type + " " + input, expected.toString(),
+                                 substitutor.getTemplate(input, type).render());
+                }
+            }
+        }
+    }
+
+    /**
+     * Verifies that templates report the variables they reference, are cached by source and type, and reflect
+     * variable changes when rendered again.
+     */
+    @Test
+    public void shouldCacheTemplates() throws Exception
+    {
+        SubstitutionTemplate template = variableSubstitutor.getTemplate(
+                "${MY_PROP}/$MY_PROP2/${ENV[HOME]}/${SYSTEM[user.dir]}/${MY_PROP}/$unknown");
+        assertEquals(new HashSet<String>(Arrays.asList("MY_PROP", "MY_PROP2", "unknown")),
+                     template.getVariableNames());
+        assertTrue(template.hasReferences());
+        assertSame(template, variableSubstitutor.getTemplate(template.getSource()));
+        assertSame(template, variableSubstitutor.getTemplate(template.getSource(), null));
+        assertNotSame(template, variableSubstitutor.getTemplate(template.getSource(), SubstitutionType.TYPE_XML));
+
+        SubstitutionTemplate path = variableSubstitutor.getTemplate("$MY_PROP/lib");
+        assertEquals("one/lib", path.render());
+        variables.set("MY_PROP", "three");
+        assertEquals("three/lib", path.render());
+        assertEquals("three/lib", variableSubstitutor.substitute("$MY_PROP/lib"));
+
+        SubstitutionTemplate literal = variableSubstitutor.getTemplate("lib/ext");
+        assertFalse(literal.hasReferences());
+        assertTrue(literal.getVariableNames().isEmpty());
+        assertEquals("lib/ext", literal.render());
+    }
+
     @Test
     public void shouldNotSubstitute() throws Exception
     {
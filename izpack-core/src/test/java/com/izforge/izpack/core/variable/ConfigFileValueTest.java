@@ -15,6 +15,10 @@ import java.util.zip.ZipOutputStream;
 
 import junit.framework.Assert;
 
+import com.izforge.izpack.api.substitutor.VariableSubstitutor;
+import com.izforge.izpack.core.data.DefaultVariables;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -122,6 +126,23 @@ public class ConfigFileValueTest
         }
     }
 
+    /**
+     * Verifies that resolved values are cached until the file changes.
+     */
+    @Test
+    public void testCachedConfigFileValue() throws Exception
+    {
+        VariableSubstitutor substitutor = new VariableSubstitutorImpl(new DefaultVariables());
+        PlainConfigFileValue value = new PlainConfigFileValue(properties.getPath(), ConfigFileValue.CONFIGFILE_TYPE_OPTIONS, null, "test.path", false);
+        Assert.assertEquals("C:\\mypath\\myfile", value.resolve(substitutor));
+        Assert.assertEquals("C:\\mypath\\myfile", value.resolve(substitutor));
+
+        BufferedWriter out = new BufferedWriter(new FileWriter(properties));
+        out.write("test.path = C:\\otherpath\n");
+        out.close();
+        Assert.assertEquals("C:\\otherpath", value.resolve(substitutor));
+    }
+
     @After
     public void cleanUp() {
        Assert.assertTrue(properties.exists());
@@ -22,10 +22,17 @@
 package com.izforge.izpack.event;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.event.InstalledFile;
 import com.izforge.izpack.api.exception.InstallerException;
 import com.izforge.izpack.event.AbstractProgressInstallerListener;
 import com.izforge.izpack.util.FileExecutor;
@@ -34,12 +41,19 @@ import com.izforge.izpack.util.OsVersion;
 /**
  * <p>InstallerListener for file and directory permissions
  * on Unix.</p>
+ * <p>Only pack files with permissions are of interest. Files are processed in batches, changing the permissions
+ * of all files with the same mode with a single <tt>chmod</tt> invocation.</p>
  *
  * @author Klaus Bartz
  */
 public class ChmodInstallerListener extends AbstractProgressInstallerListener
 {
 
+    /**
+     * The maximum number of paths passed to a single <tt>chmod</tt> invocation.
+     */
+    private static final int MAX_PATHS = 100;
+
     /**
      * Constructs an {@code ChmodInstallerListener}.
      *
@@ -61,25 +75,78 @@ public class ChmodInstallerListener extends AbstractProgressInstallerListener
         return true;
     }
 
+    /**
+     * Returns the per-file notifications that the listener should receive.
+     *
+     * @return {@link FileEvent#AFTER_DIR} and {@link FileEvent#AFTER_FILES}
+     */
+    @Override
+    public Set<FileEvent> getFileEvents()
+    {
+        return EnumSet.of(FileEvent.AFTER_DIR, FileEvent.AFTER_FILES);
+    }
+
+    /**
+     * Determines if the listener should be notified of the installation of a pack file.
+     *
+     * @param packFile the pack file
+     * @param pack     the pack that {@code packFile} comes from
+     * @return {@code true} if the pack file has file or directory permissions
+     */
+    @Override
+    public boolean isFileListener(PackFile packFile, Pack pack)
+    {
+        Map<?, ?> additionals = packFile.getAdditionals();
+        return additionals != null
+                && (additionals.get("permission.file") != null || additionals.get("permission.dir") != null);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void afterFile(File filePath, PackFile pf, Pack pack)
     {
-        if (pf.getAdditionals() == null)
+        int fileVal = getFilePermissions(pf);
+        if (fileVal != -1)
         {
-            return;
+            chmod(filePath, fileVal);
         }
-        Object file = pf.getAdditionals().get("permission.file");
-        int fileVal = -1;
-        if (file != null && file instanceof Integer)
+    }
+
+    /**
+     * Invoked after a batch of files has been installed.
+     * <p/>
+     * This changes the permissions of all files with the same mode in a single <tt>chmod</tt> invocation.
+     *
+     * @param files the installed files
+     * @param pack  the pack that the files come from
+     */
+    @Override
+    public void afterFiles(List<InstalledFile> files, Pack pack)
+    {
+        Map<Integer, List<String>> paths = new LinkedHashMap<Integer, List<String>>();
+        for (InstalledFile file : files)
         {
-            fileVal = (Integer) file;
+            int fileVal = getFilePermissions(file.getPackFile());
+            if (fileVal != -1)
+            {
+                List<String> list = paths.get(fileVal);
+                if (list == null)
+                {
+                    list = new ArrayList<String>();
+                    paths.put(fileVal, list);
+                }
+                list.add(file.getFile().getAbsolutePath());
+            }
         }
-        if (fileVal != -1)
+        for (Map.Entry<Integer, List<String>> entry : paths.entrySet())
         {
-            chmod(filePath, fileVal);
+            List<String> list = entry.getValue();
+            for (int i = 0; i < list.size(); i += MAX_PATHS)
+            {
+                chmod(list.subList(i, Math.min(i + MAX_PATHS, list.size())), entry.getKey());
+            }
         }
     }
 
@@ -114,22 +181,52 @@ public class ChmodInstallerListener extends AbstractProgressInstallerListener
         }
     }
 
-    private void chmod(File path, int permissions)
+    /**
+     * Returns the file permissions of a pack file.
+     *
+     * @param packFile the pack file
+     * @return the file permissions, or {@code -1} if none are specified
+     */
+    private int getFilePermissions(PackFile packFile)
     {
-        String pathSep = System.getProperty("path.separator");
-        if (OsVersion.IS_WINDOWS)
+        if (packFile.getAdditionals() == null)
         {
-            throw new InstallerException("Sorry, chmod not supported yet on windows; use this class OS dependant.");
+            return -1;
         }
+        Object file = packFile.getAdditionals().get("permission.file");
+        int fileVal = -1;
+        if (file != null && file instanceof Integer)
+        {
+            fileVal = (Integer) file;
+        }
+        return fileVal;
+    }
+
+    private void chmod(File path, int permissions)
+    {
         if (path == null)
         // Oops this is an error, but in this example we ignore it ...
         {
             return;
         }
+        List<String> paths = new ArrayList<String>();
+        paths.add(path.getAbsolutePath());
+        chmod(paths, permissions);
+    }
+
+    private void chmod(List<String> paths, int permissions)
+    {
+        if (OsVersion.IS_WINDOWS)
+        {
+            throw new InstallerException("Sorry, chmod not supported yet on windows; use this class OS dependant.");
+        }
         String permStr = Integer.toOctalString(permissions);
-        String[] params = {"chmod", permStr, path.getAbsolutePath()};
+        List<String> params = new ArrayList<String>(paths.size() + 2);
+        params.add("chmod");
+        params.add(permStr);
+        params.addAll(paths);
         String[] output = new String[2];
         FileExecutor fe = new FileExecutor();
-        fe.executeCommand(params, output);
+        fe.executeCommand(params.toArray(new String[params.size()]), output);
     }
 }
@@ -29,6 +29,7 @@ import com.izforge.izpack.installer.automation.AutomatedInstaller;
 import com.izforge.izpack.installer.console.ConsoleInstallerAction;
 import com.izforge.izpack.installer.container.impl.AutomatedInstallerContainer;
 import com.izforge.izpack.installer.container.impl.InstallerContainer;
+import com.izforge.izpack.installer.timing.InstallTimings;
 import com.izforge.izpack.logging.FileFormatter;
 import com.izforge.izpack.util.Debug;
 import com.izforge.izpack.util.LogUtils;
@@ -151,6 +152,7 @@ public class Installer
             String media = null;
             String defaultsFile = null;
             String logFileName = null;
+            boolean timingReport = false;
 
             while (args_it.hasNext())
             {
@@ -170,6 +172,9 @@ public class Installer
                     } else if ("-stacktrace".equalsIgnoreCase(arg))
                     {
                         Debug.setSTACKTRACE(true);
+                    } else if ("-timing-report".equalsIgnoreCase(arg))
+                    {
+                        timingReport = true;
                     } else if ("-console".equalsIgnoreCase(arg))
                     {
                         type = INSTALLER_CONSOLE;
@@ -243,6 +248,12 @@ public class Installer
             }
 
             initializeLogging(logFileName);
+            if (timingReport)
+            {
+                // write the report next to the log file if one was specified, else next to the install log
+                File logDir = (logFileName != null) ? new File(logFileName).getAbsoluteFile().getParentFile() : null;
+                InstallTimings.enable(logDir);
+            }
 
             if (args.length != 0)
             {
@@ -0,0 +1,484 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipException;
+
+
+/**
+ * Writes a jar by copying the compressed entries of other jars as is, without inflating and deflating them.
+ * <p/>
+ * Only the information required to locate and extract entries is copied; extra fields and comments are dropped.
+ * ZIP64 archives are not supported.
+ */
+class RawJarWriter implements Closeable
+{
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+
+    private static final int CENTRAL_HEADER = 0x02014b50;
+
+    private static final int END_HEADER = 0x06054b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+
+    private static final int CENTRAL_HEADER_SIZE = 46;
+
+    private static final int END_HEADER_SIZE = 22;
+
+    /**
+     * Indicates that sizes and CRC follow the entry data in a data descriptor.
+     */
+    private static final int FLAG_DATA_DESCRIPTOR = 0x08;
+
+    /**
+     * Indicates that the entry name is UTF-8 encoded.
+     */
+    private static final int FLAG_UTF8 = 0x800;
+
+    /**
+     * The largest value representable without ZIP64 extensions.
+     */
+    private static final long MAX_32 = 0xFFFFFFFFL;
+
+    /**
+     * The output channel.
+     */
+    private final FileChannel out;
+
+    /**
+     * The central directory, written on close.
+     */
+    private final ByteArrayOutputStream central = new ByteArrayOutputStream();
+
+    /**
+     * The names of the entries written.
+     */
+    private final Set<String> names = new HashSet<String>();
+
+    /**
+     * The number of entries written.
+     */
+    private int count;
+
+
+    /**
+     * Constructs a {@code RawJarWriter}.
+     *
+     * @param file the jar to write
+     * @throws IOException if the jar cannot be created
+     */
+    public RawJarWriter(File file) throws IOException
+    {
+        out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                               StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Copies the entries of an archive with the specified path.
+     * <p/>
+     * Entries whose names have already been written are skipped.
+     *
+     * @param archive     the archive to copy from
+     * @param path        the path. If it ends in a <em>/</em>, all entries under it are copied, else the entry with
+     *                    the exact name
+     * @param destination the path to copy to, or {@code null} to use the same path
+     * @return the number of entries copied
+     * @throws IOException for any I/O error
+     */
+    public int copy(Archive archive, String path, String destination) throws IOException
+    {
+        int result = 0;
+        boolean prefix = path.endsWith("/");
+        for (Entry entry : archive.getEntries())
+        {
+            String name = entry.name;
+            if (prefix ? name.startsWith(path) : name.equals(path))
+            {
+                if (destination != null)
+                {
+                    name = prefix ? destination + name.substring(path.length()) : destination;
+                }
+                if (copy(archive, entry, name))
+                {
+                    ++result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copies all entries of an archive.
+     * <p/>
+     * Entries whose names have already been written are skipped.
+     *
+     * @param archive the archive to copy from
+     * @throws IOException for any I/O error
+     */
+    public void copyAll(Archive archive) throws IOException
+    {
+        for (Entry entry : archive.getEntries())
+        {
+            copy(archive, entry, entry.name);
+        }
+    }
+
+    /**
+     * Writes the central directory and closes the jar.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            long offset = out.position();
+            write(ByteBuffer.wrap(central.toByteArray()));
+            ByteBuffer end = allocate(END_HEADER_SIZE);
+            end.putInt(END_HEADER);
+            end.putShort((short) 0);
+            end.putShort((short) 0);
+            end.putShort((short) count);
+            end.putShort((short) count);
+            end.putInt(central.size());
+            end.putInt((int) offset);
+            end.putShort((short) 0);
+            end.flip();
+            write(end);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Copies an entry.
+     *
+     * @param archive the archive to copy from
+     * @param entry   the entry
+     * @param name    the name to copy the entry to
+     * @return {@code true} if the entry was copied, {@code false} if an entry with the same name exists
+     * @throws IOException for any I/O error
+     */
+    private boolean copy(Archive archive, Entry entry, String name) throws IOException
+    {
+        if (!names.add(name))
+        {
+            return false;
+        }
+        if (count == 0xFFFF)
+        {
+            throw new ZipException("Too many entries");
+        }
+        long offset = out.position();
+        if (offset > MAX_32)
+        {
+            throw new ZipException("Jar too large");
+        }
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int flags = entry.flags & ~FLAG_DATA_DESCRIPTOR & ~FLAG_UTF8;
+        if (nameBytes.length != name.length())
+        {
+            flags |= FLAG_UTF8;
+        }
+
+        ByteBuffer local = allocate(LOCAL_HEADER_SIZE + nameBytes.length);
+        local.putInt(LOCAL_HEADER);
+        local.putShort((short) entry.versionNeeded);
+        local.putShort((short) flags);
+        putCommon(local, entry, nameBytes);
+        local.putShort((short) 0);
+        local.put(nameBytes);
+        local.flip();
+        write(local);
+
+        long position = archive.getDataOffset(entry);
+        long remaining = entry.compressedSize;
+        while (remaining > 0)
+        {
+            long transferred = archive.channel.transferTo(position, remaining, out);
+            if (transferred <= 0)
+            {
+                throw new ZipException("Unexpected end of " + archive.file + " reading " + entry.name);
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+
+        ByteBuffer header = allocate(CENTRAL_HEADER_SIZE + nameBytes.length);
+        header.putInt(CENTRAL_HEADER);
+        header.putShort((short) entry.versionMadeBy);
+        header.putShort((short) entry.versionNeeded);
+        header.putShort((short) flags);
+        putCommon(header, entry, nameBytes);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) entry.internalAttributes);
+        header.putInt(entry.externalAttributes);
+        header.putInt((int) offset);
+        header.put(nameBytes);
+        central.write(header.array(), 0, header.position());
+        ++count;
+        return true;
+    }
+
+    /**
+     * Writes the header fields common to local and central headers, up to and including the name length.
+     */
+    private void putCommon(ByteBuffer buffer, Entry entry, byte[] name)
+    {
+        buffer.putShort((short) entry.method);
+        buffer.putInt(entry.dosTime);
+        buffer.putInt(entry.crc);
+        buffer.putInt((int) entry.compressedSize);
+        buffer.putInt((int) entry.size);
+        buffer.putShort((short) name.length);
+    }
+
+    private void write(ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            out.write(buffer);
+        }
+    }
+
+    private static ByteBuffer allocate(int size)
+    {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Opens an archive to copy entries from.
+     *
+     * @param file the archive
+     * @return the archive
+     * @throws IOException if the archive cannot be read, or uses ZIP64 extensions
+     */
+    public static Archive open(File file) throws IOException
+    {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try
+        {
+            return new Archive(file, channel);
+        }
+        catch (IOException exception)
+        {
+            channel.close();
+            throw exception;
+        }
+    }
+
+    /**
+     * An archive entry, as described by the central directory.
+     */
+    private static class Entry
+    {
+        String name;
+        int versionMadeBy;
+        int versionNeeded;
+        int flags;
+        int method;
+        int dosTime;
+        int crc;
+        long compressedSize;
+        long size;
+        int internalAttributes;
+        int externalAttributes;
+        long offset;
+    }
+
+    /**
+     * An archive to copy entries from.
+     */
+    public static class Archive implements Closeable
+    {
+
+        /**
+         * The archive file.
+         */
+        private final File file;
+
+        /**
+         * The archive channel.
+         */
+        private final FileChannel channel;
+
+        /**
+         * The entries, in central directory order.
+         */
+        private final List<Entry> entries = new ArrayList<Entry>();
+
+        /**
+         * Constructs an {@code Archive}, reading its central directory.
+         *
+         * @param file    the archive file
+         * @param channel the archive channel
+         * @throws IOException if the archive cannot be read, or uses ZIP64 extensions
+         */
+        private Archive(File file, FileChannel channel) throws IOException
+        {
+            this.file = file;
+            this.channel = channel;
+            long size = channel.size();
+            int tail = (int) Math.min(size, END_HEADER_SIZE + 0xFFFF);
+            ByteBuffer buffer = read(size - tail, tail);
+            int end = -1;
+            for (int i = tail - END_HEADER_SIZE; i >= 0; --i)
+            {
+                if (buffer.getInt(i) == END_HEADER)
+                {
+                    end = i;
+                    break;
+                }
+            }
+            if (end < 0)
+            {
+                throw new ZipException("Not a zip file: " + file);
+            }
+            int total = buffer.getShort(end + 10) & 0xFFFF;
+            long centralSize = buffer.getInt(end + 12) & MAX_32;
+            long centralOffset = buffer.getInt(end + 16) & MAX_32;
+            if (total == 0xFFFF || centralSize == MAX_32 || centralOffset == MAX_32)
+            {
+                throw new ZipException("ZIP64 archives are not supported: " + file);
+            }
+            ByteBuffer central = read(centralOffset, (int) centralSize);
+            for (int i = 0; i < total; ++i)
+            {
+                if (central.remaining() < CENTRAL_HEADER_SIZE || central.getInt() != CENTRAL_HEADER)
+                {
+                    throw new ZipException("Invalid central directory in " + file);
+                }
+                Entry entry = new Entry();
+                entry.versionMadeBy = central.getShort() & 0xFFFF;
+                entry.versionNeeded = central.getShort() & 0xFFFF;
+                entry.flags = central.getShort() & 0xFFFF;
+                entry.method = central.getShort() & 0xFFFF;
+                entry.dosTime = central.getInt();
+                entry.crc = central.getInt();
+                entry.compressedSize = central.getInt() & MAX_32;
+                entry.size = central.getInt() & MAX_32;
+                int nameLength = central.getShort() & 0xFFFF;
+                int extraLength = central.getShort() & 0xFFFF;
+                int commentLength = central.getShort() & 0xFFFF;
+                central.getShort(); // disk number
+                entry.internalAttributes = central.getShort() & 0xFFFF;
+                entry.externalAttributes = central.getInt();
+                entry.offset = central.getInt() & MAX_32;
+                byte[] name = new byte[nameLength];
+                central.get(name);
+                central.position(central.position() + extraLength + commentLength);
+                if (entry.compressedSize == MAX_32 || entry.size == MAX_32 || entry.offset == MAX_32)
+                {
+                    throw new ZipException("ZIP64 archives are not supported: " + file);
+                }
+                if ((entry.flags & 0x01) != 0)
+                {
+                    throw new ZipException("Encrypted entries are not supported: " + file);
+                }
+                entry.name = new String(name, StandardCharsets.UTF_8);
+                entries.add(entry);
+            }
+        }
+
+        /**
+         * Determines if the archive contains an entry with the specified path.
+         *
+         * @param path the path. If it ends in a <em>/</em>, any entry under it matches
+         * @return {@code true} if the archive contains a matching entry
+         */
+        public boolean contains(String path)
+        {
+            boolean prefix = path.endsWith("/");
+            for (Entry entry : entries)
+            {
+                if (prefix ? entry.name.startsWith(path) : entry.name.equals(path))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Closes the archive.
+         *
+         * @throws IOException for any I/O error
+         */
+        @Override
+        public void close() throws IOException
+        {
+            channel.close();
+        }
+
+        List<Entry> getEntries()
+        {
+            return Collections.unmodifiableList(entries);
+        }
+
+        /**
+         * Returns the offset of the compressed data of an entry.
+         */
+        long getDataOffset(Entry entry) throws IOException
+        {
+            ByteBuffer header = read(entry.offset, LOCAL_HEADER_SIZE);
+            if (header.getInt(0) != LOCAL_HEADER)
+            {
+                throw new ZipException("Invalid local header for " + entry.name + " in " + file);
+            }
+            int nameLength = header.getShort(26) & 0xFFFF;
+            int extraLength = header.getShort(28) & 0xFFFF;
+            return entry.offset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+        }
+
+        private ByteBuffer read(long position, int length) throws IOException
+        {
+            ByteBuffer buffer = allocate(length);
+            while (buffer.hasRemaining())
+            {
+                if (channel.read(buffer, position + buffer.position()) < 0)
+                {
+                    throw new ZipException("Unexpected end of " + file);
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
@@ -5,15 +5,21 @@ import com.izforge.izpack.api.merge.Mergeable;
 import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.data.CustomData;
 import com.izforge.izpack.api.data.ExecutableFile;
+import com.izforge.izpack.installer.timing.InstallTimings;
 import com.izforge.izpack.merge.resolve.PathResolver;
 import com.izforge.izpack.util.IoHelper;
+import com.izforge.izpack.util.file.CompactPathLog;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.apache.commons.io.IOUtils;
 
 import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -24,6 +30,10 @@ import java.util.logging.Logger;
 
 /**
  * Writes uninstall data to an executable jar file.
+ * <p/>
+ * When the installer is running from a jar, the uninstaller classes and resources are copied from it without
+ * recompressing them, using {@link RawJarWriter}. The uninstall data is written to a temporary jar first, and then
+ * appended. Otherwise, classes and resources are merged from the class path.
  */
 @ApplicationScoped
 public class UninstallDataWriter
@@ -53,6 +63,16 @@ public class UninstallDataWriter
      */
     private FileOutputStream jarStream;
 
+    /**
+     * The installer jar to copy the uninstaller skeleton from, or {@code null} if it is merged from the class path.
+     */
+    private RawJarWriter.Archive installerJar;
+
+    /**
+     * The temporary jar holding the uninstall data when copying from the installer jar, else {@code null}.
+     */
+    private File dataJar;
+
     /**
      * The rules engine.
      */
@@ -117,7 +137,7 @@ public class UninstallDataWriter
     public boolean write()
     {
         boolean result = false;
-        try
+        try (InstallTimings.Timer timer = InstallTimings.phase("writeUninstaller"))
         {
             BufferedWriter extLogWriter = getExternalLogFile();
             createOutputJar();
@@ -136,6 +156,11 @@ public class UninstallDataWriter
             writeHideForceOption();
 
             jar.close();
+            if (installerJar != null)
+            {
+                writeCopiedJar();
+            }
+            timer.addBytes(new File(uninstallData.getUninstallerJarFilename()).length());
             result = true;
         }
         catch (Throwable t)
@@ -143,6 +168,10 @@ public class UninstallDataWriter
             logger.log(Level.SEVERE, t.getMessage(), t);
             destroyJar(); // don't keep the jar - it may be incomplete or corrupted
         }
+        finally
+        {
+            closeInstallerJar();
+        }
         return result;
     }
 
@@ -163,6 +192,7 @@ public class UninstallDataWriter
             }
             logfile = IoHelper.translatePath(logfile, installData.getVariables());
             File outFile = new File(logfile);
+            InstallTimings.setInstallDirectory(outFile.getParentFile());
             if (!outFile.getParentFile().exists())
             {
                 if (!outFile.getParentFile().mkdirs())
@@ -190,6 +220,8 @@ public class UninstallDataWriter
 
     /**
      * Writes the uninstaller skeleton.
+     * <p/>
+     * Classes and resources available in the installer jar are copied later, by {@link #writeCopiedJar()}.
      *
      * @throws IOException for any I/O error
      * @throws com.izforge.izpack.api.exception.IzPackException
@@ -197,35 +229,18 @@ public class UninstallDataWriter
      */
     private void writeJarSkeleton() throws IOException
     {
-        List<Mergeable> uninstallerMerge = pathResolver.getMergeableFromPath("com/izforge/izpack/uninstaller/");
-        uninstallerMerge.addAll(pathResolver.getMergeableFromPath("uninstaller-META-INF/", "META-INF/"));
-        uninstallerMerge.addAll(pathResolver.getMergeableFromPath("com/izforge/izpack/api/"));
-        uninstallerMerge.addAll(pathResolver.getMergeableFromPath("com/izforge/izpack/data/"));
-        uninstallerMerge.addAll(pathResolver.getMergeableFromPath("com/izforge/izpack/core/"));
-        uninstallerMerge.addAll(pathResolver.getMergeableFromPath("com/izforge/izpack/util/"));
-        uninstallerMerge.addAll(pathResolver.getMergeableFromPath("com/izforge/izpack/logging/"));
-        uninstallerMerge.addAll(pathResolver.getMergeableFromPath("com/izforge/izpack/gui/"));
-        uninstallerMerge.addAll(pathResolver.getMergeableFromPath("com/izforge/izpack/img/"));
-        uninstallerMerge.addAll(pathResolver.getMergeableFromPath("org/picocontainer/"));
-        uninstallerMerge.addAll(pathResolver.getMergeableFromPath("org/apache/commons/io/"));
-
-        //required by console uninstaller
-        uninstallerMerge.addAll(pathResolver.getMergeableFromPath("jline/"));
-        uninstallerMerge.addAll(pathResolver.getMergeableFromPath("org/fusesource/"));
-
-        if (!uninstallData.getUninstallerListeners().isEmpty())
-        {
-            uninstallerMerge.addAll(pathResolver.getMergeableFromPath("com/izforge/izpack/event/"));
-        }
-        if (rules.isConditionTrue("izpack.windowsinstall"))
-        {
-            uninstallerMerge.addAll(pathResolver.getMergeableFromPath("com/izforge/izpack/core/os/"));
-            uninstallerMerge.addAll(pathResolver.getMergeableFromPath("com/coi/tools/os/"));
-        }
-
-        for (Mergeable mergeable : uninstallerMerge)
+        for (Map.Entry<String, String> path : getSkeletonPaths().entrySet())
         {
-            mergeable.merge(jar);
+            if (installerJar == null || !installerJar.contains(path.getKey()))
+            {
+                List<Mergeable> mergeables = (path.getValue() == null)
+                        ? pathResolver.getMergeableFromPath(path.getKey())
+                        : pathResolver.getMergeableFromPath(path.getKey(), path.getValue());
+                for (Mergeable mergeable : mergeables)
+                {
+                    mergeable.merge(jar);
+                }
+            }
         }
 
         if (installData.getInfo().isPrivilegedExecutionRequiredUninstaller())
@@ -253,19 +268,115 @@ public class UninstallDataWriter
                 }
             }
         }
+    }
+
+    /**
+     * Returns the paths of the classes and resources making up the uninstaller skeleton.
+     *
+     * @return the paths, mapped to their destination paths, or {@code null} if they are unchanged. Paths ending
+     *         in <em>/</em> include everything under them
+     */
+    private Map<String, String> getSkeletonPaths()
+    {
+        Map<String, String> paths = new LinkedHashMap<String, String>();
+        paths.put("uninstaller-META-INF/", "META-INF/");
+        paths.put("com/izforge/izpack/uninstaller/", null);
+        paths.put("com/izforge/izpack/api/", null);
+        paths.put("com/izforge/izpack/data/", null);
+        paths.put("com/izforge/izpack/core/", null);
+        paths.put("com/izforge/izpack/util/", null);
+        paths.put("com/izforge/izpack/logging/", null);
+        paths.put("com/izforge/izpack/gui/", null);
+        paths.put("com/izforge/izpack/img/", null);
+        paths.put("org/picocontainer/", null);
+        paths.put("org/apache/commons/io/", null);
+
+        //required by console uninstaller
+        paths.put("jline/", null);
+        paths.put("org/fusesource/", null);
+
+        if (!uninstallData.getUninstallerListeners().isEmpty())
+        {
+            paths.put("com/izforge/izpack/event/", null);
+        }
+        if (rules.isConditionTrue("izpack.windowsinstall"))
+        {
+            paths.put("com/izforge/izpack/core/os/", null);
+            paths.put("com/coi/tools/os/", null);
+        }
 
         // We put the langpack
-        List<Mergeable> langPack = pathResolver.getMergeableFromPath("resources/langpacks/"
-                                                                             + installData.getLocaleISO3() + ".xml",
-                                                                     "langpack.xml");
-        for (Mergeable mergeable : langPack)
+        paths.put("resources/langpacks/" + installData.getLocaleISO3() + ".xml", "langpack.xml");
+        return paths;
+    }
+
+    /**
+     * Writes the uninstaller jar by copying the uninstaller skeleton from the installer jar, followed by the
+     * uninstall data.
+     *
+     * @throws IOException for any I/O error
+     */
+    private void writeCopiedJar() throws IOException
+    {
+        File target = new File(uninstallData.getUninstallerJarFilename());
+        try (RawJarWriter writer = new RawJarWriter(target);
+             RawJarWriter.Archive data = RawJarWriter.open(dataJar))
         {
-            mergeable.merge(jar);
+            for (Map.Entry<String, String> path : getSkeletonPaths().entrySet())
+            {
+                writer.copy(installerJar, path.getKey(), path.getValue());
+            }
+            writer.copyAll(data);
+        }
+        if (!dataJar.delete())
+        {
+            logger.warning("Failed to delete " + dataJar);
+        }
+        dataJar = null;
+    }
+
+    /**
+     * Opens the jar the installer is running from, to copy the uninstaller skeleton from.
+     *
+     * @return the installer jar, or {@code null} if the installer isn't running from a jar, or it can't be read
+     */
+    private RawJarWriter.Archive openInstallerJar()
+    {
+        try
+        {
+            CodeSource codeSource = getClass().getProtectionDomain().getCodeSource();
+            if (codeSource != null)
+            {
+                URI uri = codeSource.getLocation().toURI();
+                if ("file".equals(uri.getScheme()))
+                {
+                    File file = new File(uri).getAbsoluteFile();
+                    if (file.isFile() && file.getName().endsWith(".jar"))
+                    {
+                        return RawJarWriter.open(file);
+                    }
+                }
+            }
+        }
+        catch (URISyntaxException | IOException | IllegalArgumentException exception)
+        {
+            logger.log(Level.FINE, "Cannot copy uninstaller from installer jar, merging from class path",
+                       exception);
         }
+        return null;
+    }
+
+    private void closeInstallerJar()
+    {
+        IOUtils.closeQuietly(installerJar);
+        installerJar = null;
     }
 
     /**
      * Writes the file log.
+     * <p/>
+     * The <em>install.log</em> entry holds the installation path. The files to uninstall are written to the
+     * <em>install.paths</em> entry in the {@link CompactPathLog} format, ready to be read in deletion order.
      *
      * @param extLogWriter the external log writer. May be <tt>null</tt>
      * @throws IOException for any I/O error
@@ -278,39 +389,28 @@ public class UninstallDataWriter
         BufferedWriter logWriter = new BufferedWriter(new OutputStreamWriter(jar));
         logWriter.write(installData.getInstallPath());
         logWriter.newLine();
-        Iterator<String> iter = files.iterator();
+        logWriter.flush();
+        jar.closeEntry();
+
+        jar.putNextEntry(new JarEntry("install.paths"));
+        CompactPathLog.write(files, jar);
+        jar.closeEntry();
+
         if (extLogWriter != null)
         {
-            // Write intern (in uninstaller.jar) and extern log file.
+            // Write extern log file.
+            Iterator<String> iter = files.iterator();
             while (iter.hasNext())
             {
-                String txt = iter.next();
-                logWriter.write(txt);
-                extLogWriter.write(txt);
+                extLogWriter.write(iter.next());
                 if (iter.hasNext())
                 {
-                    logWriter.newLine();
                     extLogWriter.newLine();
                 }
             }
-            logWriter.flush();
             extLogWriter.flush();
             extLogWriter.close();
         }
-        else
-        {
-            while (iter.hasNext())
-            {
-                String txt = iter.next();
-                logWriter.write(txt);
-                if (iter.hasNext())
-                {
-                    logWriter.newLine();
-                }
-            }
-            logWriter.flush();
-        }
-        jar.closeEntry();
     }
 
     /**
@@ -525,8 +625,18 @@ public class UninstallDataWriter
         uninstallData.setUninstallerJarFilename(jarPath);
         uninstallData.setUninstallerPath(dirPath);
 
-        // Create the jar file
-        jarStream = new FileOutputStream(jarPath);
+        // Create the jar file. If the skeleton can be copied from the installer jar, the uninstall data is written
+        // to a temporary jar and appended afterwards
+        installerJar = openInstallerJar();
+        if (installerJar != null)
+        {
+            dataJar = new File(jarPath + ".tmp");
+            jarStream = new FileOutputStream(dataJar);
+        }
+        else
+        {
+            jarStream = new FileOutputStream(jarPath);
+        }
         jar = new JarOutputStream(new BufferedOutputStream(jarStream));
         jar.setLevel(9);
         uninstallData.addFile(jarPath, true);
@@ -539,6 +649,11 @@ public class UninstallDataWriter
     {
         IOUtils.closeQuietly(jar);
         IOUtils.closeQuietly(jarStream); // if jar cannot be closed, then need to close underlying stream
+        if (dataJar != null && dataJar.exists() && !dataJar.delete())
+        {
+            logger.warning("Failed to delete incomplete uninstall information: " + dataJar);
+        }
+        dataJar = null;
         String path = uninstallData.getUninstallerJarFilename();
         if (path != null)
         {
@@ -32,7 +32,10 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.util.Enumeration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.prefs.Preferences;
 
@@ -51,6 +54,8 @@ import javax.swing.ListSelectionModel;
 
 import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.data.Panel;
+import com.izforge.izpack.api.data.VariableChange;
+import com.izforge.izpack.api.data.VariableChangeListener;
 import com.izforge.izpack.api.rules.Condition;
 import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.gui.ButtonFactory;
@@ -73,13 +78,31 @@ public class Debugger extends WindowAdapter
     private final ConditionHistoryTableModel conditionhistorymodel;
     private final Preferences preferences;
 
-    private Properties lasttimevariables;
+    /**
+     * The variables changed since the last panel switch, keyed on name. Guarded by itself.
+     */
+    private final Map<String, VariableChange> changes = new LinkedHashMap<String, VariableChange>();
 
     public Debugger(InstallData installdata, IconsDatabase icons, RulesEngine rules, Color buttonsHColor)
     {
         idata = installdata;
         this.rules = rules;
-        lasttimevariables = (Properties) idata.getVariables().getProperties().clone();
+        idata.getVariables().addChangeListener(new VariableChangeListener()
+        {
+            @Override
+            public void variablesChanged(List<VariableChange> changed)
+            {
+                synchronized (changes)
+                {
+                    for (VariableChange change : changed)
+                    {
+                        VariableChange previous = changes.get(change.getName());
+                        changes.put(change.getName(), previous == null ? change : new VariableChange(
+                                change.getName(), previous.getOldValue(), change.getNewValue()));
+                    }
+                }
+            }
+        });
         this.icons = icons;
         this.buttonsHColor = buttonsHColor;
         this.variablesmodel = new VariableHistoryTableModel();
@@ -91,9 +114,10 @@ public class Debugger extends WindowAdapter
 
     private void init()
     {
-        for (String variableName : lasttimevariables.stringPropertyNames())
+        Properties variables = idata.getVariables().getSnapshot();
+        for (String variableName : variables.stringPropertyNames())
         {
-            variablesmodel.setValue(variableName, lasttimevariables.getProperty(variableName), "initial value");
+            variablesmodel.setValue(variableName, variables.getProperty(variableName), "initial value");
         }
         updateConditionsHistory("initial value");
     }
@@ -101,7 +125,6 @@ public class Debugger extends WindowAdapter
     private void debugVariables(Panel nextpanelmetadata, Panel lastpanelmetadata)
     {
         getChangedVariables(nextpanelmetadata, lastpanelmetadata);
-        lasttimevariables = (Properties) idata.getVariables().getProperties().clone();
     }
 
     private void debugConditions(Panel nextpanelmetadata, Panel lastpanelmetadata)
@@ -125,40 +148,45 @@ public class Debugger extends WindowAdapter
 
     private Properties getChangedVariables(Panel nextpanelmetadata, Panel lastpanelmetadata)
     {
-        Properties currentvariables = (Properties) idata.getVariables().getProperties().clone();
+        List<VariableChange> pending;
+        synchronized (changes)
+        {
+            pending = new ArrayList<VariableChange>(changes.values());
+            changes.clear();
+        }
         Properties changedvariables = new Properties();
 
         variablesmodel.clearState();
         // check for changed and new variables
-        Enumeration currentvariableskeys = currentvariables.keys();
-        boolean changes = false;
-        while (currentvariableskeys.hasMoreElements())
+        boolean changed = false;
+        for (VariableChange change : pending)
         {
-            String key = (String) currentvariableskeys.nextElement();
-            String currentvalue = currentvariables.getProperty(key);
-            String oldvalue = lasttimevariables.getProperty(key);
+            String key = change.getName();
+            String currentvalue = change.getNewValue();
+            String oldvalue = change.getOldValue();
 
+            if (currentvalue == null || currentvalue.equals(oldvalue))
+            {
+                continue;
+            }
             if ((oldvalue == null))
             {
                 variablesmodel.setValue(key, currentvalue, lastpanelmetadata != null ?
                                 "new after panel " + lastpanelmetadata.getPanelId() :
                                 "new on first panel ");
-                changes = true;
+                changed = true;
                 changedvariables.put(key, currentvalue);
             }
             else
             {
-                if (!currentvalue.equals(oldvalue))
-                {
-                    variablesmodel.setValue(key, currentvalue, lastpanelmetadata != null ?
-                            "changed value after panel " + lastpanelmetadata.getPanelId() :
-                            "changed value on first panel ");
-                    changes = true;
-                    changedvariables.put(key, currentvalue);
-                }
+                variablesmodel.setValue(key, currentvalue, lastpanelmetadata != null ?
+                        "changed value after panel " + lastpanelmetadata.getPanelId() :
+                        "changed value on first panel ");
+                changed = true;
+                changedvariables.put(key, currentvalue);
             }
         }
-        if (changes)
+        if (changed)
         {
             variablesmodel.fireTableDataChanged();
         }
@@ -167,7 +195,7 @@ public class Debugger extends WindowAdapter
 
     private void modifyVariableManually(String name, String value)
     {
-        lasttimevariables = (Properties) idata.getVariables().getProperties().clone();
+        discardChange(name);
         variablesmodel.setValue(name, value, "modified manually");
         variablesmodel.fireTableDataChanged();
         updateConditionsHistory("after manual modification of variable " + name);
@@ -175,12 +203,25 @@ public class Debugger extends WindowAdapter
 
     private void removeVariableManually(String name)
     {
-        lasttimevariables = (Properties) idata.getVariables().getProperties().clone();
+        discardChange(name);
         variablesmodel.removeValue(name, "removed manually");
         variablesmodel.fireTableDataChanged();
         updateConditionsHistory("after manual modification of variable " + name);
     }
 
+    /**
+     * Discards a change made by the debugger itself, so it isn't reported again on the next panel switch.
+     *
+     * @param name the variable name
+     */
+    private void discardChange(String name)
+    {
+        synchronized (changes)
+        {
+            changes.remove(name);
+        }
+    }
+
     private static boolean isSet(String value)
     {
         return  value != null && !value.isEmpty();
@@ -24,7 +24,9 @@ package com.izforge.izpack.installer.event;
 import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.event.InstalledFile;
 import com.izforge.izpack.api.event.InstallerListener;
+import com.izforge.izpack.api.event.InstallerListener.FileEvent;
 import com.izforge.izpack.api.event.ProgressListener;
 import com.izforge.izpack.api.exception.InstallerException;
 import com.izforge.izpack.api.exception.IzPackException;
@@ -33,20 +35,36 @@ import com.izforge.izpack.api.handler.AbstractUIHandler;
 import com.izforge.izpack.api.handler.Prompt;
 import com.izforge.izpack.api.resource.Messages;
 import com.izforge.izpack.core.handler.PromptUIHandler;
+import com.izforge.izpack.installer.timing.InstallTimings;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 
 /**
  * A container for {@link InstallerListener}s that supports notifying each registered listener.
+ * <p/>
+ * File and directory notifications are only sent to those listeners that have requested them via
+ * {@link InstallerListener#getFileEvents()} and {@link InstallerListener#isFileListener(PackFile, Pack)}.
+ * Installed files are collected and passed to {@link InstallerListener#afterFiles} in batches of up to
+ * {@link #BATCH_SIZE}.
+ * <p/>
+ * Each notification is timed using {@link InstallTimings}.
  *
  * @author Tim Anderson
  */
 public class InstallerListeners
 {
 
+    /**
+     * The maximum number of files passed to {@link InstallerListener#afterFiles}.
+     */
+    public static final int BATCH_SIZE = 1000;
+
     /**
      * The listeners.
      */
@@ -58,6 +76,22 @@ public class InstallerListeners
      */
     private final List<InstallerListener> fileListeners = new ArrayList<InstallerListener>();
 
+    /**
+     * The file listeners, keyed on the notifications they receive.
+     */
+    private final Map<FileEvent, List<InstallerListener>> eventListeners
+            = new EnumMap<FileEvent, List<InstallerListener>>(FileEvent.class);
+
+    /**
+     * The installed files not yet passed to {@link InstallerListener#afterFiles}.
+     */
+    private final List<InstalledFile> batch = new ArrayList<InstalledFile>();
+
+    /**
+     * The pack that the batched files come from.
+     */
+    private Pack batchPack;
+
     /**
      * The installation data.
      */
@@ -79,6 +113,10 @@ public class InstallerListeners
     {
         this.installData = installData;
         this.prompt = prompt;
+        for (FileEvent event : FileEvent.values())
+        {
+            eventListeners.put(event, new ArrayList<InstallerListener>());
+        }
     }
 
     /**
@@ -137,6 +175,10 @@ public class InstallerListeners
                 if (listener.isFileListener())
                 {
                     fileListeners.add(listener);
+                    for (FileEvent event : listener.getFileEvents())
+                    {
+                        eventListeners.get(event).add(listener);
+                    }
                 }
             }
                 catch (IzPackException ize)
@@ -157,7 +199,7 @@ public class InstallerListeners
     {
         for (InstallerListener l : listeners)
         {
-            try
+            try (InstallTimings.Timer timer = InstallTimings.listener(l, "beforePacks", null))
             {
                 l.beforePacks(packs, listener);
             }
@@ -179,7 +221,7 @@ public class InstallerListeners
     {
         for (InstallerListener l : listeners)
         {
-            try
+            try (InstallTimings.Timer timer = InstallTimings.listener(l, "beforePack", pack.getName()))
             {
                 l.beforePack(pack);
             }
@@ -200,6 +242,22 @@ public class InstallerListeners
         return !fileListeners.isEmpty();
     }
 
+    /**
+     * Determines if any listener should be notified of directory creation for a pack file.
+     * <p/>
+     * If not, the directory and its parents may be created in a single step.
+     *
+     * @param packFile the pack file
+     * @param pack     the pack that {@code packFile} comes from
+     * @return <tt>true</tt> if a listener has requested {@link FileEvent#BEFORE_DIR} or {@link FileEvent#AFTER_DIR}
+     *         notifications for the pack file
+     */
+    public boolean isDirListener(PackFile packFile, Pack pack)
+    {
+        return isInterested(eventListeners.get(FileEvent.BEFORE_DIR), packFile, pack)
+                || isInterested(eventListeners.get(FileEvent.AFTER_DIR), packFile, pack);
+    }
+
     /**
      * Invoked before a directory is created.
      *
@@ -210,9 +268,13 @@ public class InstallerListeners
      */
     public void beforeDir(File dir, PackFile packFile, Pack pack) throws InstallerException
     {
-        for (InstallerListener l : fileListeners)
+        for (InstallerListener l : eventListeners.get(FileEvent.BEFORE_DIR))
         {
-            try
+            if (!l.isFileListener(packFile, pack))
+            {
+                continue;
+            }
+            try (InstallTimings.Timer timer = InstallTimings.listener(l, "beforeDir", pack.getName()))
             {
                 l.beforeDir(dir, packFile, pack);
             }
@@ -233,9 +295,13 @@ public class InstallerListeners
      */
     public void afterDir(File dir, PackFile packFile, Pack pack) throws InstallerException
     {
-        for (InstallerListener l : fileListeners)
+        for (InstallerListener l : eventListeners.get(FileEvent.AFTER_DIR))
         {
-            try
+            if (!l.isFileListener(packFile, pack))
+            {
+                continue;
+            }
+            try (InstallTimings.Timer timer = InstallTimings.listener(l, "afterDir", pack.getName()))
             {
                 l.afterDir(dir, packFile, pack);
             }
@@ -249,7 +315,8 @@ public class InstallerListeners
     /**
      * Invoked before a file is installed.
      * <p/>
-     * This implementation only invokes those listeners whose {@link #isFileListener()} returns <tt>true</tt>.
+     * This implementation only invokes those listeners that have requested {@link FileEvent#BEFORE_FILE}
+     * notifications for the file.
      *
      * @param file     the file
      * @param packFile corresponding pack file
@@ -258,9 +325,13 @@ public class InstallerListeners
      */
     public void beforeFile(File file, PackFile packFile, Pack pack) throws InstallerException
     {
-        for (InstallerListener l : fileListeners)
+        for (InstallerListener l : eventListeners.get(FileEvent.BEFORE_FILE))
         {
-            try
+            if (!l.isFileListener(packFile, pack))
+            {
+                continue;
+            }
+            try (InstallTimings.Timer timer = InstallTimings.listener(l, "beforeFile", pack.getName()))
             {
                 l.beforeFile(file, packFile, pack);
             }
@@ -274,7 +345,9 @@ public class InstallerListeners
     /**
      * Invoked after a file is installed.
      * <p/>
-     * This implementation only invokes those listeners whose {@link #isFileListener()} returns <tt>true</tt>.
+     * This implementation only invokes those listeners that have requested {@link FileEvent#AFTER_FILE}
+     * notifications for the file. The file is also queued for listeners that have requested
+     * {@link FileEvent#AFTER_FILES} notifications.
      *
      * @param file     the file
      * @param packFile corresponding pack file
@@ -283,9 +356,13 @@ public class InstallerListeners
      */
     public void afterFile(File file, PackFile packFile, Pack pack) throws InstallerException
     {
-        for (InstallerListener l : fileListeners)
+        for (InstallerListener l : eventListeners.get(FileEvent.AFTER_FILE))
         {
-            try
+            if (!l.isFileListener(packFile, pack))
+            {
+                continue;
+            }
+            try (InstallTimings.Timer timer = InstallTimings.listener(l, "afterFile", pack.getName()))
             {
                 l.afterFile(file, packFile, pack);
             }
@@ -294,6 +371,51 @@ public class InstallerListeners
                 handleError(ize);
             }
         }
+        if (!eventListeners.get(FileEvent.AFTER_FILES).isEmpty())
+        {
+            if (batchPack != pack || batch.size() >= BATCH_SIZE)
+            {
+                afterFiles();
+            }
+            batchPack = pack;
+            batch.add(new InstalledFile(file, packFile));
+        }
+    }
+
+    /**
+     * Passes any queued files to those listeners that have requested {@link FileEvent#AFTER_FILES}
+     * notifications.
+     * <p/>
+     * This is invoked automatically when the batch is full, and before {@link #afterPack} notifications.
+     *
+     * @throws InstallerException if a listener throws an exception
+     */
+    public void afterFiles() throws InstallerException
+    {
+        if (batch.isEmpty())
+        {
+            return;
+        }
+        List<InstalledFile> files = new ArrayList<InstalledFile>(batch);
+        Pack pack = batchPack;
+        batch.clear();
+        batchPack = null;
+        for (InstallerListener l : eventListeners.get(FileEvent.AFTER_FILES))
+        {
+            List<InstalledFile> interested = getInterested(l, files, pack);
+            if (interested.isEmpty())
+            {
+                continue;
+            }
+            try (InstallTimings.Timer timer = InstallTimings.listener(l, "afterFiles", pack.getName()))
+            {
+                l.afterFiles(interested, pack);
+            }
+            catch (IzPackException ize)
+            {
+                handleError(ize);
+            }
+        }
     }
 
     /**
@@ -304,9 +426,10 @@ public class InstallerListeners
      */
     public void afterPack(Pack pack) throws InstallerException
     {
+        afterFiles();
         for (InstallerListener l : listeners)
         {
-            try
+            try (InstallTimings.Timer timer = InstallTimings.listener(l, "afterPack", pack.getName()))
             {
                 l.afterPack(pack);
             }
@@ -326,9 +449,10 @@ public class InstallerListeners
      */
     public void afterPacks(List<Pack> packs, ProgressListener listener) throws InstallerException
     {
+        afterFiles();
         for (InstallerListener l : listeners)
         {
-            try
+            try (InstallTimings.Timer timer = InstallTimings.listener(l, "afterPacks", null))
             {
                 l.afterPacks(packs, listener);
             }
@@ -339,6 +463,55 @@ public class InstallerListeners
         }
     }
 
+    /**
+     * Determines if any of a list of listeners should be notified of a pack file.
+     *
+     * @param listeners the listeners
+     * @param packFile  the pack file
+     * @param pack      the pack that {@code packFile} comes from
+     * @return <tt>true</tt> if a listener should be notified
+     */
+    private boolean isInterested(List<InstallerListener> listeners, PackFile packFile, Pack pack)
+    {
+        for (InstallerListener l : listeners)
+        {
+            if (l.isFileListener(packFile, pack))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns those files that a listener should be notified of.
+     *
+     * @param listener the listener
+     * @param files    the files
+     * @param pack     the pack that the files come from
+     * @return the files that the listener should be notified of
+     */
+    private List<InstalledFile> getInterested(InstallerListener listener, List<InstalledFile> files, Pack pack)
+    {
+        List<InstalledFile> result = null;
+        for (int i = 0; i < files.size(); ++i)
+        {
+            InstalledFile file = files.get(i);
+            if (!listener.isFileListener(file.getPackFile(), pack))
+            {
+                if (result == null)
+                {
+                    result = new ArrayList<InstalledFile>(files.subList(0, i));
+                }
+            }
+            else if (result != null)
+            {
+                result.add(file);
+            }
+        }
+        return (result != null) ? result : Collections.unmodifiableList(files);
+    }
+
     private void handleError(IzPackException ize) throws IzPackException
     {
         Messages messages = installData.getMessages();
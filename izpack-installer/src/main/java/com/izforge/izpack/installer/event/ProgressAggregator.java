@@ -0,0 +1,355 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.event;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.izforge.izpack.api.event.ProgressListener;
+
+
+/**
+ * A {@link ProgressListener} that limits the rate at which sub-step progress is delivered to another listener.
+ * <p/>
+ * Installing many small files generates a sub-step notification per file, far more than a user interface can
+ * usefully display. This delivers at most one {@link #progress(int, String)} notification per interval, keeping only
+ * the latest of those that arrive in between. A pending notification is delivered once the interval has elapsed,
+ * even if no further notifications arrive.
+ * <p/>
+ * {@link #progressBytes Byte progress} is already periodic, and is passed through. All other notifications mark
+ * step or action boundaries, and are delivered immediately, after any pending notification. As a result, the
+ * listener always sees the final sub-step of each step, and the final state of the action.
+ * <p/>
+ * Notifications are delivered one at a time, but not necessarily on the thread that made them.
+ */
+public class ProgressAggregator implements ProgressListener
+{
+
+    /**
+     * The default minimum interval between sub-step notifications, in milliseconds, i.e. at most 30 per second.
+     */
+    public static final long DEFAULT_INTERVAL = 1000 / 30;
+
+    /**
+     * The listener to deliver notifications to.
+     */
+    private final ProgressListener listener;
+
+    /**
+     * The minimum interval between sub-step notifications, in nanoseconds.
+     */
+    private final long interval;
+
+    /**
+     * Delivers pending notifications once the interval has elapsed. Created on first use.
+     */
+    private ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * The scheduled delivery of the pending notification, or {@code null} if none is scheduled.
+     */
+    private ScheduledFuture<?> scheduled;
+
+    /**
+     * Identifies the most recently scheduled delivery.
+     */
+    private int scheduleId;
+
+    /**
+     * Determines if there is a pending sub-step notification.
+     */
+    private boolean pending;
+
+    /**
+     * The pending sub-step.
+     */
+    private int pendingSubStep;
+
+    /**
+     * The pending message.
+     */
+    private String pendingMessage;
+
+    /**
+     * The time when the last sub-step notification was delivered, in nanoseconds.
+     */
+    private long lastDelivery;
+
+    /**
+     * Determines if a sub-step notification has been delivered since the last boundary.
+     */
+    private boolean delivered;
+
+
+    /**
+     * Constructs a {@code ProgressAggregator} that delivers sub-step notifications at most
+     * {@link #DEFAULT_INTERVAL every 33ms}.
+     *
+     * @param listener the listener to deliver notifications to
+     */
+    public ProgressAggregator(ProgressListener listener)
+    {
+        this(listener, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Constructs a {@code ProgressAggregator}.
+     *
+     * @param listener the listener to deliver notifications to
+     * @param interval the minimum interval between sub-step notifications, in milliseconds
+     */
+    public ProgressAggregator(ProgressListener listener, long interval)
+    {
+        this.listener = listener;
+        this.interval = TimeUnit.MILLISECONDS.toNanos(interval);
+    }
+
+    /**
+     * Returns the listener that notifications are delivered to.
+     *
+     * @return the listener
+     */
+    public ProgressListener getListener()
+    {
+        return listener;
+    }
+
+    /**
+     * Invoked when an action starts.
+     *
+     * @param name  the name of the action
+     * @param steps the number of steps the action consists of
+     */
+    @Override
+    public synchronized void startAction(String name, int steps)
+    {
+        flush();
+        listener.startAction(name, steps);
+    }
+
+    /**
+     * Invoked when an action finishes.
+     */
+    @Override
+    public synchronized void stopAction()
+    {
+        flush();
+        listener.stopAction();
+    }
+
+    /**
+     * Invoked when an action step starts.
+     *
+     * @param stepName the name of the step
+     * @param step     the step number
+     * @param subSteps the number of sub-steps the step consists of
+     */
+    @Override
+    public synchronized void nextStep(String stepName, int step, int subSteps)
+    {
+        flush();
+        listener.nextStep(stepName, step, subSteps);
+    }
+
+    /**
+     * Sets the number of sub-steps.
+     *
+     * @param subSteps the number of sub-steps
+     */
+    @Override
+    public synchronized void setSubStepNo(int subSteps)
+    {
+        flush();
+        listener.setSubStepNo(subSteps);
+    }
+
+    /**
+     * Invoked to notify progress.
+     * <p/>
+     * As this increments the current step, it is delivered immediately.
+     *
+     * @param message a message describing the step
+     */
+    @Override
+    public synchronized void progress(String message)
+    {
+        flush();
+        listener.progress(message);
+    }
+
+    /**
+     * Invoked to notify progress.
+     * <p/>
+     * The notification is delivered immediately if the interval has elapsed since the last one was delivered,
+     * otherwise it replaces any pending notification.
+     *
+     * @param subStep the sub-step which will be performed next
+     * @param message an additional message describing the sub-step
+     */
+    @Override
+    public synchronized void progress(int subStep, String message)
+    {
+        long now = System.nanoTime();
+        long elapsed = now - lastDelivery;
+        if (!delivered || elapsed >= interval)
+        {
+            cancel();
+            pending = false;
+            deliver(subStep, message, now);
+        }
+        else
+        {
+            pending = true;
+            pendingSubStep = subStep;
+            pendingMessage = message;
+            if (scheduled == null)
+            {
+                final int id = ++scheduleId;
+                scheduled = getScheduler().schedule(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        deliverPending(id);
+                    }
+                }, interval - elapsed, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Invoked to notify progress in bytes.
+     * <p/>
+     * Byte progress is already reported periodically, so it is delivered immediately.
+     *
+     * @param bytes           the number of bytes processed so far
+     * @param totalBytes      the total number of bytes to process
+     * @param bytesPerSecond  the current throughput, or {@code 0} if it is not yet known
+     * @param remainingMillis the estimated time remaining in milliseconds, or {@code -1} if it is not yet known
+     */
+    @Override
+    public synchronized void progressBytes(long bytes, long totalBytes, long bytesPerSecond, long remainingMillis)
+    {
+        listener.progressBytes(bytes, totalBytes, bytesPerSecond, remainingMillis);
+    }
+
+    /**
+     * Invoked when an action restarts.
+     *
+     * @param name           the name of the action
+     * @param overallMessage a message describing the overall progress
+     * @param tip            a tip describing the current progress
+     * @param steps          the number of steps the action consists of
+     */
+    @Override
+    public synchronized void restartAction(String name, String overallMessage, String tip, int steps)
+    {
+        flush();
+        listener.restartAction(name, overallMessage, tip, steps);
+    }
+
+    /**
+     * Delivers the pending notification, if any, once the interval has elapsed.
+     *
+     * @param id the identifier of the scheduled delivery. If it has since been cancelled, this does nothing
+     */
+    private synchronized void deliverPending(int id)
+    {
+        if (id != scheduleId || scheduled == null)
+        {
+            return;
+        }
+        scheduled = null;
+        if (pending)
+        {
+            pending = false;
+            deliver(pendingSubStep, pendingMessage, System.nanoTime());
+        }
+    }
+
+    /**
+     * Delivers the pending notification, if any, ahead of a boundary notification.
+     * <p/>
+     * The next sub-step notification after the boundary is delivered immediately.
+     */
+    private void flush()
+    {
+        cancel();
+        if (pending)
+        {
+            pending = false;
+            listener.progress(pendingSubStep, pendingMessage);
+        }
+        pendingMessage = null;
+        delivered = false;
+    }
+
+    /**
+     * Delivers a sub-step notification.
+     *
+     * @param subStep the sub-step
+     * @param message the message
+     * @param now     the current time, in nanoseconds
+     */
+    private void deliver(int subStep, String message, long now)
+    {
+        lastDelivery = now;
+        delivered = true;
+        pendingMessage = null;
+        listener.progress(subStep, message);
+    }
+
+    /**
+     * Cancels any scheduled delivery.
+     */
+    private void cancel()
+    {
+        if (scheduled != null)
+        {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+    }
+
+    /**
+     * Returns the scheduler, creating it if required.
+     * <p/>
+     * The scheduler thread is a daemon, and terminates when idle.
+     *
+     * @return the scheduler
+     */
+    private ScheduledThreadPoolExecutor getScheduler()
+    {
+        if (scheduler == null)
+        {
+            scheduler = new ScheduledThreadPoolExecutor(1, runnable ->
+            {
+                Thread thread = new Thread(runnable, "IzPack-ProgressAggregator");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+            scheduler.setKeepAliveTime(1, TimeUnit.SECONDS);
+            scheduler.allowCoreThreadTimeOut(true);
+        }
+        return scheduler;
+    }
+}
@@ -33,6 +33,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
@@ -83,36 +84,13 @@ public class MultiVolumeFileUnpacker extends FileUnpacker
         // read in the position of this file
         long position = ((XPackFile) packFile).getArchiveFilePosition();
 
-        long filePointer = volumes.getFilePointer();
-        if (filePointer < position)
+        if (logger.isLoggable(Level.FINE))
         {
-            // need to skip to the correct position
-            logger.fine("Skipping bytes to get to file " + target.getName()
-                                + " (" + filePointer + "<" + position
-                                + ") target is: " + (position - filePointer));
-            skip(position - filePointer);
-        }
-
-        if (volumes.getFilePointer() > position)
-        {
-            throw new IOException("Error, can't access file in pack.");
+            logger.fine("Seeking to file " + target.getName() + " (" + volumes.getFilePointer() + " -> " + position
+                                + ")");
         }
+        volumes.seek(position);
 
         copy(packFile, volumes, target);
     }
-
-    /**
-     * Skips bytes in a stream.
-     *
-     * @param bytes the no. of bytes to skip
-     * @throws IOException for any I/O error, or if the no. of bytes skipped doesn't match that expected
-     */
-    protected void skip(long bytes) throws IOException
-    {
-        long skipped = volumes.skip(bytes);
-        if (skipped != bytes)
-        {
-            throw new IOException("Expected to skip: " + bytes + " in stream but skipped: " + skipped);
-        }
-    }
 }
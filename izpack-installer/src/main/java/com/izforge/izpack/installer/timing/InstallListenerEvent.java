@@ -0,0 +1,62 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.timing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+
+/**
+ * Flight recorder event for an invocation of an installer listener.
+ * <p/>
+ * As listeners may be notified of every file, only invocations of at least 1ms are recorded by default.
+ */
+@Name("com.izforge.izpack.InstallListener")
+@Label("Install Listener")
+@Category({"IzPack", "Installation"})
+@Description("An invocation of an installer listener")
+@StackTrace(false)
+@Threshold("1 ms")
+class InstallListenerEvent extends Event
+{
+
+    /**
+     * The listener class name.
+     */
+    @Label("Listener")
+    String listener;
+
+    /**
+     * The listener method.
+     */
+    @Label("Method")
+    String method;
+
+    /**
+     * The pack name, if the invocation applies to a pack.
+     */
+    @Label("Pack")
+    String pack;
+}
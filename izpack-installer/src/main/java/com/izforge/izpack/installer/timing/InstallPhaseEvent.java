@@ -0,0 +1,60 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.timing;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/**
+ * Flight recorder event for a phase of the installation, such as unpacking a pack or writing the uninstaller.
+ */
+@Name("com.izforge.izpack.InstallPhase")
+@Label("Install Phase")
+@Category({"IzPack", "Installation"})
+@Description("A phase of the installation")
+@StackTrace(false)
+class InstallPhaseEvent extends Event
+{
+
+    /**
+     * The phase name.
+     */
+    @Label("Phase")
+    String phase;
+
+    /**
+     * The pack name, if the phase applies to a pack.
+     */
+    @Label("Pack")
+    String pack;
+
+    /**
+     * The number of bytes processed.
+     */
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
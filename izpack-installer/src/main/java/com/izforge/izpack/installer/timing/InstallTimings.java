@@ -0,0 +1,581 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.timing;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Records how long the phases of an installation take.
+ * <p/>
+ * Phases, such as unpacking a pack, parsing files or writing the uninstaller, and invocations of installer
+ * listeners are timed using {@link Timer timers}. Timings are:
+ * <ul>
+ * <li>emitted as Java Flight Recorder events, when a recording is in progress. See {@link InstallPhaseEvent} and
+ * {@link InstallListenerEvent}</li>
+ * <li>collected into a JSON report, if {@link #enable enabled} via the {@code -timing-report} installer
+ * option. The report is written to {@link #REPORT_NAME} when the installer exits</li>
+ * </ul>
+ * When neither is active, timers do nothing.
+ */
+public final class InstallTimings
+{
+
+    /**
+     * The report file name.
+     */
+    public static final String REPORT_NAME = "install-timing.json";
+
+    /**
+     * Determines if the flight recorder is available. It may be missing from custom runtimes.
+     */
+    private static final boolean JFR_AVAILABLE = isJfrAvailable();
+
+    /**
+     * A timer that does nothing.
+     */
+    private static final Timer DISABLED = new Timer(null, null, null, null, null);
+
+    /**
+     * The report, or {@code null} if reporting is disabled.
+     */
+    private static volatile Report report;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(InstallTimings.class.getName());
+
+
+    /**
+     * Prevent instantiation.
+     */
+    private InstallTimings()
+    {
+    }
+
+    /**
+     * Enables the timing report, to be written when the installer exits.
+     *
+     * @param directory the directory to write the report to. If {@code null}, it is written to the
+     *                  {@link #setInstallDirectory installation directory}
+     */
+    public static synchronized void enable(File directory)
+    {
+        if (report == null)
+        {
+            final Report current = start(directory);
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    write(current);
+                }
+            }, "IzPack-TimingReport"));
+        }
+    }
+
+    /**
+     * Determines if the timing report is enabled.
+     *
+     * @return {@code true} if the timing report is enabled
+     */
+    public static boolean isEnabled()
+    {
+        return report != null;
+    }
+
+    /**
+     * Sets the directory to write the report to, if none was specified when the report was enabled.
+     *
+     * @param directory the directory, typically that holding the install log
+     */
+    public static void setInstallDirectory(File directory)
+    {
+        Report current = report;
+        if (current != null)
+        {
+            current.installDirectory = directory;
+        }
+    }
+
+    /**
+     * Starts timing a phase.
+     *
+     * @param phase the phase name
+     * @return the timer. Close it when the phase completes
+     */
+    public static Timer phase(String phase)
+    {
+        return phase(phase, null);
+    }
+
+    /**
+     * Starts timing a phase of a pack.
+     *
+     * @param phase the phase name
+     * @param pack  the pack name. May be {@code null}
+     * @return the timer. Close it when the phase completes
+     */
+    public static Timer phase(String phase, String pack)
+    {
+        Object event = JFR_AVAILABLE ? JfrEvents.beginPhase() : null;
+        Report current = report;
+        if (event == null && current == null)
+        {
+            return DISABLED;
+        }
+        return new Timer(current, event, phase, pack, null);
+    }
+
+    /**
+     * Records the accumulated duration of a phase that was spread over many short operations, such as syncing each
+     * file as it is written.
+     * <p/>
+     * The duration is only added to the report. No flight recorder event is emitted, as the operations weren't
+     * contiguous.
+     *
+     * @param phase    the phase name
+     * @param pack     the pack name. May be {@code null}
+     * @param duration the accumulated duration, in nanoseconds
+     */
+    public static void record(String phase, String pack, long duration)
+    {
+        Report current = report;
+        if (current != null)
+        {
+            long end = System.nanoTime();
+            current.addPhase(phase, pack, end - duration, end, 0);
+        }
+    }
+
+    /**
+     * Starts timing a listener invocation.
+     *
+     * @param listener the listener
+     * @param method   the listener method
+     * @param pack     the pack name. May be {@code null}
+     * @return the timer. Close it when the invocation completes
+     */
+    public static Timer listener(Object listener, String method, String pack)
+    {
+        Object event = JFR_AVAILABLE ? JfrEvents.beginListener() : null;
+        Report current = report;
+        if (event == null && current == null)
+        {
+            return DISABLED;
+        }
+        return new Timer(current, event, method, pack, listener.getClass().getName());
+    }
+
+    /**
+     * Returns the report as JSON.
+     *
+     * @return the report, or {@code null} if reporting is disabled
+     */
+    public static String toJSON()
+    {
+        Report current = report;
+        return (current != null) ? current.toJSON() : null;
+    }
+
+    /**
+     * Starts collecting timings, without writing them on exit.
+     *
+     * @param directory the directory to write the report to. May be {@code null}
+     * @return the report
+     */
+    static synchronized Report start(File directory)
+    {
+        report = new Report(directory);
+        return report;
+    }
+
+    /**
+     * Disables the timing report, discarding any timings. For testing purposes.
+     */
+    static synchronized void reset()
+    {
+        report = null;
+    }
+
+    /**
+     * Writes a report.
+     *
+     * @param report the report
+     */
+    private static void write(Report report)
+    {
+        File directory = (report.directory != null) ? report.directory : report.installDirectory;
+        if (directory == null)
+        {
+            logger.warning("Cannot write " + REPORT_NAME + ": installation directory not known");
+            return;
+        }
+        File file = new File(directory, REPORT_NAME);
+        try
+        {
+            Files.createDirectories(directory.toPath());
+            try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))
+            {
+                writer.write(report.toJSON());
+            }
+            logger.info("Wrote timing report " + file);
+        }
+        catch (IOException exception)
+        {
+            logger.log(Level.WARNING, "Failed to write timing report " + file, exception);
+        }
+    }
+
+    private static boolean isJfrAvailable()
+    {
+        try
+        {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        }
+        catch (ClassNotFoundException | LinkageError exception)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Times a phase or listener invocation.
+     */
+    public static final class Timer implements AutoCloseable
+    {
+
+        /**
+         * The report to add the timing to. May be {@code null}.
+         */
+        private final Report report;
+
+        /**
+         * The flight recorder event. May be {@code null}.
+         */
+        private final Object event;
+
+        /**
+         * The phase or listener method name.
+         */
+        private final String name;
+
+        /**
+         * The pack name. May be {@code null}.
+         */
+        private final String pack;
+
+        /**
+         * The listener class name, or {@code null} if this times a phase.
+         */
+        private final String listener;
+
+        /**
+         * The start time, in nanoseconds.
+         */
+        private final long start;
+
+        /**
+         * The number of bytes processed.
+         */
+        private long bytes;
+
+        /**
+         * Constructs a {@code Timer}.
+         *
+         * @param report   the report. May be {@code null}
+         * @param event    the flight recorder event. May be {@code null}
+         * @param name     the phase or listener method name
+         * @param pack     the pack name. May be {@code null}
+         * @param listener the listener class name, or {@code null} if this times a phase
+         */
+        private Timer(Report report, Object event, String name, String pack, String listener)
+        {
+            this.report = report;
+            this.event = event;
+            this.name = name;
+            this.pack = pack;
+            this.listener = listener;
+            start = (report != null) ? System.nanoTime() : 0;
+        }
+
+        /**
+         * Adds to the number of bytes processed in the phase.
+         *
+         * @param bytes the number of bytes
+         */
+        public void addBytes(long bytes)
+        {
+            this.bytes += bytes;
+        }
+
+        /**
+         * Stops the timer, recording the timing.
+         */
+        @Override
+        public void close()
+        {
+            if (event != null)
+            {
+                if (listener == null)
+                {
+                    JfrEvents.commitPhase(event, name, pack, bytes);
+                }
+                else
+                {
+                    JfrEvents.commitListener(event, listener, name, pack);
+                }
+            }
+            if (report != null)
+            {
+                long end = System.nanoTime();
+                if (listener == null)
+                {
+                    report.addPhase(name, pack, start, end, bytes);
+                }
+                else
+                {
+                    report.addListener(listener, name, pack, end - start);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates and commits flight recorder events.
+     * <p/>
+     * This is only loaded if the flight recorder is available.
+     */
+    private static final class JfrEvents
+    {
+
+        static Object beginPhase()
+        {
+            InstallPhaseEvent event = new InstallPhaseEvent();
+            if (!event.isEnabled())
+            {
+                return null;
+            }
+            event.begin();
+            return event;
+        }
+
+        static Object beginListener()
+        {
+            InstallListenerEvent event = new InstallListenerEvent();
+            if (!event.isEnabled())
+            {
+                return null;
+            }
+            event.begin();
+            return event;
+        }
+
+        static void commitPhase(Object object, String phase, String pack, long bytes)
+        {
+            InstallPhaseEvent event = (InstallPhaseEvent) object;
+            event.end();
+            if (event.shouldCommit())
+            {
+                event.phase = phase;
+                event.pack = pack;
+                event.bytes = bytes;
+                event.commit();
+            }
+        }
+
+        static void commitListener(Object object, String listener, String method, String pack)
+        {
+            InstallListenerEvent event = (InstallListenerEvent) object;
+            event.end();
+            if (event.shouldCommit())
+            {
+                event.listener = listener;
+                event.method = method;
+                event.pack = pack;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Collects timings for the JSON report.
+     */
+    static final class Report
+    {
+
+        /**
+         * The directory to write the report to. May be {@code null}.
+         */
+        private final File directory;
+
+        /**
+         * The installation directory, used if no directory was specified.
+         */
+        private volatile File installDirectory;
+
+        /**
+         * The time the report was enabled.
+         */
+        private final Instant started = Instant.now();
+
+        /**
+         * The time the report was enabled, in nanoseconds.
+         */
+        private final long startNanos = System.nanoTime();
+
+        /**
+         * The phases, in order of completion.
+         */
+        private final List<String> phases = new ArrayList<String>();
+
+        /**
+         * The listener timings, keyed on listener, method and pack.
+         */
+        private final Map<List<String>, long[]> listeners = new LinkedHashMap<List<String>, long[]>();
+
+        Report(File directory)
+        {
+            this.directory = directory;
+        }
+
+        synchronized void addPhase(String phase, String pack, long start, long end, long bytes)
+        {
+            StringBuilder entry = new StringBuilder("{\"phase\": ").append(quote(phase));
+            if (pack != null)
+            {
+                entry.append(", \"pack\": ").append(quote(pack));
+            }
+            entry.append(", \"startMillis\": ").append(millis(start - startNanos));
+            entry.append(", \"durationMillis\": ").append(millis(end - start));
+            if (bytes > 0)
+            {
+                entry.append(", \"bytes\": ").append(bytes);
+            }
+            phases.add(entry.append('}').toString());
+        }
+
+        synchronized void addListener(String listener, String method, String pack, long duration)
+        {
+            List<String> key = new ArrayList<String>(3);
+            key.add(listener);
+            key.add(method);
+            key.add(pack);
+            long[] totals = listeners.get(key);
+            if (totals == null)
+            {
+                totals = new long[2];
+                listeners.put(key, totals);
+            }
+            ++totals[0];
+            totals[1] += duration;
+        }
+
+        synchronized String toJSON()
+        {
+            StringBuilder result = new StringBuilder("{\n");
+            result.append("  \"started\": ").append(quote(started.toString())).append(",\n");
+            result.append("  \"elapsedMillis\": ").append(millis(System.nanoTime() - startNanos)).append(",\n");
+            result.append("  \"phases\": [");
+            String separator = "\n    ";
+            for (String phase : phases)
+            {
+                result.append(separator).append(phase);
+                separator = ",\n    ";
+            }
+            result.append("\n  ],\n");
+            result.append("  \"listeners\": [");
+            separator = "\n    ";
+            for (Map.Entry<List<String>, long[]> entry : listeners.entrySet())
+            {
+                List<String> key = entry.getKey();
+                result.append(separator);
+                result.append("{\"listener\": ").append(quote(key.get(0)));
+                result.append(", \"method\": ").append(quote(key.get(1)));
+                if (key.get(2) != null)
+                {
+                    result.append(", \"pack\": ").append(quote(key.get(2)));
+                }
+                result.append(", \"calls\": ").append(entry.getValue()[0]);
+                result.append(", \"durationMillis\": ").append(millis(entry.getValue()[1])).append('}');
+                separator = ",\n    ";
+            }
+            result.append("\n  ]\n}\n");
+            return result.toString();
+        }
+
+        private static String millis(long nanos)
+        {
+            return String.format(Locale.ROOT, "%.3f", nanos / 1000000.0);
+        }
+
+        private static String quote(String value)
+        {
+            StringBuilder result = new StringBuilder(value.length() + 2).append('"');
+            for (int i = 0; i < value.length(); ++i)
+            {
+                char ch = value.charAt(i);
+                switch (ch)
+                {
+                    case '"':
+                        result.append("\\\"");
+                        break;
+                    case '\\':
+                        result.append("\\\\");
+                        break;
+                    case '\n':
+                        result.append("\\n");
+                        break;
+                    case '\r':
+                        result.append("\\r");
+                        break;
+                    case '\t':
+                        result.append("\\t");
+                        break;
+                    default:
+                        if (ch < 0x20)
+                        {
+                            result.append(String.format("\\u%04x", (int) ch));
+                        }
+                        else
+                        {
+                            result.append(ch);
+                        }
+                }
+            }
+            return result.append('"').toString();
+        }
+    }
+}
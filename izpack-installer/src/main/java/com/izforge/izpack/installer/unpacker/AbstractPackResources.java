@@ -22,12 +22,24 @@
 package com.izforge.izpack.installer.unpacker;
 
 import com.izforge.izpack.api.data.InstallData;
+import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.exception.ResourceException;
 import com.izforge.izpack.api.exception.ResourceInterruptedException;
 import com.izforge.izpack.api.exception.ResourceNotFoundException;
 import com.izforge.izpack.api.resource.Resources;
+import com.izforge.izpack.installer.web.PackDownloader;
+import com.izforge.izpack.util.IoHelper;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 
 /**
@@ -42,6 +54,22 @@ public abstract class AbstractPackResources implements PackResources
      */
     protected static final String WEB_TEMP_SUB_PATH = "/IzpackWebTemp";
 
+    /**
+     * Variable specifying the maximum number of bytes of packs that web installers download ahead of the pack being
+     * unpacked. A value of {@code 0} disables downloading ahead.
+     */
+    public static final String PREFETCH_BUDGET = "izpack.web.prefetch.budget";
+
+    /**
+     * The default prefetch budget, in bytes.
+     */
+    private static final long DEFAULT_PREFETCH_BUDGET = 512L * 1024 * 1024;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(AbstractPackResources.class.getName());
+
     /**
      * The resources.
      */
@@ -52,6 +80,11 @@ public abstract class AbstractPackResources implements PackResources
      */
     private final InstallData installData;
 
+    /**
+     * The web pack downloader. Created on first use.
+     */
+    private PackDownloader downloader;
+
     /**
      * Constructs an {@code AbstractPackResources}.
      *
@@ -106,6 +139,24 @@ public abstract class AbstractPackResources implements PackResources
         return resources.getInputStream(name);
     }
 
+    /**
+     * Stops any web pack downloads still in progress.
+     */
+    @Override
+    public void close()
+    {
+        PackDownloader downloader;
+        synchronized (this)
+        {
+            downloader = this.downloader;
+            this.downloader = null;
+        }
+        if (downloader != null)
+        {
+            downloader.close();
+        }
+    }
+
     /**
      * Returns a stream to a local pack.
      *
@@ -128,6 +179,161 @@ public abstract class AbstractPackResources implements PackResources
      */
     protected abstract InputStream getWebPackStream(String name, String webDirURL);
 
+    /**
+     * Returns the local copy of a pack jar, located in the same directory as the installer jar.
+     *
+     * @param name the pack name
+     * @return the local pack jar. This may not exist
+     */
+    protected File getLocalPackFile(String name)
+    {
+        File installerBase = new File(installData.getInfo().getInstallerBase());
+        return new File(installerBase.getParentFile(), getPackFileName(name));
+    }
+
+    /**
+     * Opens a pack in the web directory.
+     * <p/>
+     * The pack is streamed as it is downloaded, so that it can be unpacked while the remainder is still arriving.
+     * Selected packs that follow it and aren't available locally start downloading in the background, as long as
+     * their combined size is within the {@link #PREFETCH_BUDGET prefetch budget}. Downloads are verified against the
+     * size and checksum recorded for each pack at compile time, and cached in the web temporary directory.
+     *
+     * @param name      the pack name
+     * @param webDirURL the web URL to load the pack from
+     * @return a stream to the pack
+     * @throws IOException if the pack cannot be downloaded
+     */
+    protected InputStream openWebPack(String name, String webDirURL) throws IOException
+    {
+        PackDownloader downloader;
+        synchronized (this)
+        {
+            if (this.downloader == null)
+            {
+                String tempFolder = IoHelper.translatePath(installData.getInfo().getUninstallerPath()
+                                                                   + WEB_TEMP_SUB_PATH, installData.getVariables());
+                this.downloader = new PackDownloader(new File(tempFolder), PackDownloader.DEFAULT_CONCURRENCY);
+            }
+            downloader = this.downloader;
+        }
+
+        Pack current = null;
+        long budget = getPrefetchBudget();
+        long ahead = 0;
+        for (Pack pack : installData.getSelectedPacks())
+        {
+            if (current == null)
+            {
+                if (pack.getName().equals(name))
+                {
+                    current = pack;
+                }
+            }
+            else if (budget > 0 && !getLocalPackFile(pack.getName()).exists())
+            {
+                ahead += pack.getJarSize();
+                if (ahead > budget)
+                {
+                    break;
+                }
+                downloader.download(getPackURI(pack.getName(), webDirURL), pack.getJarSize(),
+                                    pack.getJarChecksum());
+            }
+        }
+        if (current == null)
+        {
+            for (Pack pack : installData.getAllPacks())
+            {
+                if (pack.getName().equals(name))
+                {
+                    current = pack;
+                    break;
+                }
+            }
+        }
+
+        long size = (current != null) ? current.getJarSize() : 0;
+        String checksum = (current != null) ? current.getJarChecksum() : null;
+        URI uri = getPackURI(name, webDirURL);
+        ZipInputStream result = new ZipInputStream(new BufferedInputStream(downloader.openStream(uri, size, checksum)));
+        String entryName = "packs/pack-" + name;
+        try
+        {
+            ZipEntry entry;
+            while ((entry = result.getNextEntry()) != null)
+            {
+                if (entry.getName().equals(entryName))
+                {
+                    return result;
+                }
+            }
+        }
+        catch (IOException exception)
+        {
+            result.close();
+            throw exception;
+        }
+        result.close();
+        throw new FileNotFoundException(entryName + " not found in " + uri);
+    }
+
+    /**
+     * Returns the maximum number of bytes of packs to download ahead of the pack being unpacked.
+     *
+     * @return the prefetch budget, in bytes
+     */
+    private long getPrefetchBudget()
+    {
+        String value = installData.getVariable(PREFETCH_BUDGET);
+        if (value != null)
+        {
+            try
+            {
+                return Long.parseLong(value.trim());
+            }
+            catch (NumberFormatException exception)
+            {
+                logger.warning("Invalid " + PREFETCH_BUDGET + ": " + value);
+            }
+        }
+        return DEFAULT_PREFETCH_BUDGET;
+    }
+
+    /**
+     * Returns the URI of a pack jar in the web directory.
+     *
+     * @param name      the pack name
+     * @param webDirURL the web directory URL
+     * @return the pack jar URI
+     * @throws IOException if the URI is invalid
+     */
+    protected URI getPackURI(String name, String webDirURL) throws IOException
+    {
+        try
+        {
+            URI file = new URI(null, null, getPackFileName(name), null);
+            return new URI(webDirURL.endsWith("/") ? webDirURL : webDirURL + "/").resolve(file);
+        }
+        catch (URISyntaxException exception)
+        {
+            throw new IOException("Invalid pack URL for " + name + " in " + webDirURL, exception);
+        }
+    }
+
+    /**
+     * Returns the file name of a pack jar.
+     *
+     * @param name the pack name
+     * @return the pack jar file name
+     */
+    private String getPackFileName(String name)
+    {
+        String baseName = installData.getInfo().getInstallerBase();
+        baseName = baseName.substring(Math.max(baseName.lastIndexOf('/'), baseName.lastIndexOf('\\')) + 1);
+        return baseName + ".pack-" + name + ".jar";
+    }
+
     /**
      * Returns the installation data.
      *
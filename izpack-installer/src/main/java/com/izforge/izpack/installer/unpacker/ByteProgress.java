@@ -0,0 +1,197 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.util.concurrent.TimeUnit;
+
+import com.izforge.izpack.api.event.ProgressListener;
+
+
+/**
+ * Tracks the number of bytes unpacked, and reports it with the throughput and estimated time remaining to a
+ * {@link ProgressListener#progressBytes progress listener}.
+ * <p/>
+ * Bytes are counted against the uncompressed {@link com.izforge.izpack.api.data.PackFile#length() length} of the
+ * pack files. Within a file, the count is advanced as data is copied, so that large files show progress; once the
+ * file is complete, the count is set to exactly include the file's length, whether it was copied, skipped or not
+ * overwritten.
+ * <p/>
+ * Reports are made at most every {@link #REPORT_INTERVAL 100ms}. Throughput is smoothed over recent samples, so that
+ * the estimate follows changes in speed without jumping between files.
+ */
+public class ByteProgress
+{
+
+    /**
+     * The minimum interval between reports, in milliseconds.
+     */
+    static final long REPORT_INTERVAL = 100;
+
+    /**
+     * The minimum interval between throughput samples, in milliseconds.
+     */
+    static final long SAMPLE_INTERVAL = 500;
+
+    /**
+     * The weight given to the most recent throughput sample.
+     */
+    private static final double SMOOTHING = 0.3;
+
+    /**
+     * The listener to report to.
+     */
+    private final ProgressListener listener;
+
+    /**
+     * The total number of bytes.
+     */
+    private final long total;
+
+    /**
+     * The number of bytes of completed files.
+     */
+    private long completed;
+
+    /**
+     * The number of bytes of the current file.
+     */
+    private long current;
+
+    /**
+     * The time of the last report, in nanoseconds.
+     */
+    private long lastReport;
+
+    /**
+     * The time of the last throughput sample, in nanoseconds.
+     */
+    private long lastSample;
+
+    /**
+     * The byte count at the last throughput sample.
+     */
+    private long lastSampleBytes;
+
+    /**
+     * The smoothed throughput, in bytes per second, or {@code -1} if there have been no samples.
+     */
+    private double rate = -1;
+
+
+    /**
+     * Constructs a {@code ByteProgress}.
+     *
+     * @param listener the listener to report to
+     * @param total    the total number of bytes
+     */
+    public ByteProgress(ProgressListener listener, long total)
+    {
+        this.listener = listener;
+        this.total = total;
+        lastSample = System.nanoTime();
+        lastReport = lastSample;
+    }
+
+    /**
+     * Returns the total number of bytes.
+     *
+     * @return the total number of bytes
+     */
+    public long getTotal()
+    {
+        return total;
+    }
+
+    /**
+     * Returns the number of bytes processed.
+     *
+     * @return the number of bytes processed
+     */
+    public long getBytes()
+    {
+        return Math.min(completed + current, total);
+    }
+
+    /**
+     * Invoked as data of the current file is copied.
+     *
+     * @param bytes the number of bytes copied
+     */
+    public void copied(long bytes)
+    {
+        current += bytes;
+        update(false);
+    }
+
+    /**
+     * Invoked when a file is complete.
+     *
+     * @param length the uncompressed length of the file
+     */
+    public void fileCompleted(long length)
+    {
+        completed += length;
+        current = 0;
+        update(false);
+    }
+
+    /**
+     * Reports the final state, with all bytes processed.
+     */
+    public void finish()
+    {
+        completed = Math.max(completed, total);
+        current = 0;
+        update(true);
+    }
+
+    /**
+     * Samples the throughput and reports progress, if the intervals have elapsed.
+     *
+     * @param force if {@code true}, report regardless of the interval
+     */
+    private void update(boolean force)
+    {
+        long now = System.nanoTime();
+        long bytes = getBytes();
+        long sampleElapsed = now - lastSample;
+        if (sampleElapsed >= TimeUnit.MILLISECONDS.toNanos(SAMPLE_INTERVAL))
+        {
+            double sample = (bytes - lastSampleBytes) * (double) TimeUnit.SECONDS.toNanos(1) / sampleElapsed;
+            rate = (rate < 0) ? sample : SMOOTHING * sample + (1 - SMOOTHING) * rate;
+            lastSample = now;
+            lastSampleBytes = bytes;
+        }
+        if (force || now - lastReport >= TimeUnit.MILLISECONDS.toNanos(REPORT_INTERVAL))
+        {
+            lastReport = now;
+            long remaining = -1;
+            if (bytes >= total)
+            {
+                remaining = 0;
+            }
+            else if (rate > 0)
+            {
+                remaining = (long) ((total - bytes) * 1000 / rate);
+            }
+            listener.progressBytes(bytes, total, (rate > 0) ? (long) rate : 0, remaining);
+        }
+    }
+}
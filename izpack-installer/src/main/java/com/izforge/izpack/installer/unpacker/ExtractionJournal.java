@@ -0,0 +1,414 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import com.izforge.izpack.api.data.PackFile;
+
+
+/**
+ * Records the pack files that have been extracted, so that an interrupted installation can be resumed without
+ * extracting them again.
+ * <p/>
+ * The journal is an append-only file in the installation directory. It starts with a header identifying the
+ * installer, followed by a record for each extracted file holding:
+ * <ul>
+ * <li>the target path</li>
+ * <li>the length and last-modified timestamp of the pack file</li>
+ * <li>the length and last-modified timestamp of the target, once written</li>
+ * </ul>
+ * Each record is checksummed, so that a record torn by a crash is ignored, along with any that follow it. A journal
+ * written by a different installer is discarded.
+ * <p/>
+ * A file is only considered extracted if it still has the recorded length and timestamp, and the pack file is
+ * unchanged. Records are {@link #add added} to a buffer, and only written to the journal on {@link #commit}, so
+ * that they can be committed once the files they describe have been {@link FileSync synced}.
+ * <p/>
+ * Only the length and timestamp of a file are checked, not its content. Resuming is therefore only safe after a
+ * system crash or power loss with the {@link FileSync.Mode#BATCH batch} or {@link FileSync.Mode#STRICT strict}
+ * durability modes. With {@link FileSync.Mode#NONE none}, neither files nor records are forced to storage, so a
+ * record may survive a crash that loses the data of the file it describes. Content that depends on variables, such as
+ * parsable files, must not be recorded, as the variables may differ when the installation is resumed.
+ */
+public class ExtractionJournal implements Closeable
+{
+
+    /**
+     * The journal file name.
+     */
+    public static final String NAME = ".installationjournal";
+
+    /**
+     * The journal format identifier.
+     */
+    private static final int MAGIC = 0x495A4A4E; // IZJN
+
+    /**
+     * The journal format version.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The journal file.
+     */
+    private final File file;
+
+    /**
+     * The channel to append records to.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The records read from the journal, keyed on target path. Each holds the pack file length and timestamp,
+     * and the target length and timestamp.
+     */
+    private final Map<String, long[]> entries = new HashMap<String, long[]>();
+
+    /**
+     * The records pending commit.
+     */
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    /**
+     * Determines if writing the journal failed, in which case no further records are written.
+     */
+    private boolean failed;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(ExtractionJournal.class.getName());
+
+
+    /**
+     * Constructs an {@code ExtractionJournal}.
+     *
+     * @param file    the journal file
+     * @param channel the channel to append records to
+     */
+    private ExtractionJournal(File file, FileChannel channel)
+    {
+        this.file = file;
+        this.channel = channel;
+    }
+
+    /**
+     * Opens a journal, creating it if it doesn't exist.
+     * <p/>
+     * If the journal was written by a different installer, or is unreadable, it is discarded.
+     *
+     * @param file the journal file
+     * @param id   identifies the installer
+     * @return the journal
+     * @throws IOException if the journal cannot be opened
+     */
+    public static ExtractionJournal open(File file, String id) throws IOException
+    {
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                               StandardOpenOption.WRITE);
+        ExtractionJournal result = new ExtractionJournal(file, channel);
+        try
+        {
+            long position = result.load(id);
+            if (position < 0)
+            {
+                channel.truncate(0);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeUTF(id);
+                position = write(channel, bytes.toByteArray(), 0);
+            }
+            else if (position < channel.size())
+            {
+                logger.warning("Ignoring incomplete extraction journal record at offset " + position);
+                channel.truncate(position);
+            }
+            channel.position(position);
+        }
+        catch (IOException exception)
+        {
+            channel.close();
+            throw exception;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the journal file.
+     *
+     * @return the journal file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Returns the number of files read from the journal when it was opened.
+     *
+     * @return the number of files
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Determines if a pack file was extracted by an earlier run of the installer.
+     *
+     * @param packFile the pack file
+     * @param target   the file the pack file is extracted to
+     * @return {@code true} if the target was written from the same pack file, and hasn't changed since
+     */
+    public boolean isExtracted(PackFile packFile, File target)
+    {
+        long[] entry = entries.isEmpty() ? null : entries.get(target.getAbsolutePath());
+        return entry != null && entry[0] == packFile.length() && entry[1] == packFile.lastModified()
+                && target.isFile() && entry[2] == target.length() && entry[3] == target.lastModified();
+    }
+
+    /**
+     * Records that a pack file has been extracted. The record is written to the journal by the next
+     * {@link #commit}.
+     *
+     * @param packFile the pack file
+     * @param target   the file the pack file was extracted to
+     */
+    public void add(PackFile packFile, File target)
+    {
+        if (failed)
+        {
+            return;
+        }
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeUTF(target.getAbsolutePath());
+            out.writeLong(packFile.length());
+            out.writeLong(packFile.lastModified());
+            out.writeLong(target.length());
+            out.writeLong(target.lastModified());
+            byte[] payload = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+
+            DataOutputStream record = new DataOutputStream(pending);
+            record.writeInt(payload.length);
+            record.write(payload);
+            record.writeInt((int) crc.getValue());
+        }
+        catch (IOException exception)
+        {
+            fail(exception);
+        }
+    }
+
+    /**
+     * Writes pending records to the journal.
+     * <p/>
+     * Failures are logged rather than propagated, as the journal only serves to speed up a resumed installation.
+     * No further records are written after a failure.
+     *
+     * @param force if {@code true}, force the records to storage
+     */
+    public void commit(boolean force)
+    {
+        if (failed || pending.size() == 0)
+        {
+            return;
+        }
+        try
+        {
+            channel.position(write(channel, pending.toByteArray(), channel.position()));
+            if (force)
+            {
+                channel.force(false);
+            }
+        }
+        catch (IOException exception)
+        {
+            fail(exception);
+        }
+        finally
+        {
+            pending.reset();
+        }
+    }
+
+    /**
+     * Closes the journal, without committing pending records.
+     */
+    @Override
+    public void close()
+    {
+        try
+        {
+            channel.close();
+        }
+        catch (IOException exception)
+        {
+            logger.log(Level.FINE, "Failed to close " + file, exception);
+        }
+    }
+
+    /**
+     * Closes and deletes the journal, once installation has completed.
+     */
+    public void delete()
+    {
+        close();
+        try
+        {
+            Files.deleteIfExists(file.toPath());
+        }
+        catch (IOException exception)
+        {
+            logger.warning("Failed to delete extraction journal " + file + ": " + exception);
+        }
+    }
+
+    /**
+     * Loads the records from the journal.
+     *
+     * @param id identifies the installer
+     * @return the position after the last valid record, or {@code -1} if the journal is empty, invalid, or was
+     *         written by a different installer
+     * @throws IOException for any I/O error
+     */
+    private long load(String id) throws IOException
+    {
+        long size = channel.size();
+        if (size == 0 || size > Integer.MAX_VALUE)
+        {
+            return -1;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0)
+        {
+            // read the whole journal
+        }
+        byte[] bytes = buffer.array();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, buffer.position()));
+        try
+        {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION || !id.equals(in.readUTF()))
+            {
+                logger.info("Discarding extraction journal " + file + " written by another installer");
+                return -1;
+            }
+        }
+        catch (IOException exception)
+        {
+            return -1;
+        }
+
+        long position = buffer.position() - in.available();
+        CRC32 crc = new CRC32();
+        while (in.available() >= 4)
+        {
+            int length = in.readInt();
+            if (length < 0 || in.available() < length + 4)
+            {
+                break;
+            }
+            int offset = (int) position + 4;
+            in.skipBytes(length);
+            crc.reset();
+            crc.update(bytes, offset, length);
+            if (in.readInt() != (int) crc.getValue())
+            {
+                break;
+            }
+            if (!readRecord(new DataInputStream(new ByteArrayInputStream(bytes, offset, length))))
+            {
+                break;
+            }
+            position = offset + length + 4;
+        }
+        if (!entries.isEmpty())
+        {
+            logger.info("Resuming installation: " + entries.size() + " files recorded in " + file);
+        }
+        return position;
+    }
+
+    /**
+     * Reads a record.
+     *
+     * @param in the record payload
+     * @return {@code true} if the record was read, {@code false} if it is malformed
+     */
+    private boolean readRecord(DataInputStream in)
+    {
+        try
+        {
+            String path = in.readUTF();
+            entries.put(path, new long[]{in.readLong(), in.readLong(), in.readLong(), in.readLong()});
+            return true;
+        }
+        catch (IOException exception)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Disables the journal after a write failure.
+     *
+     * @param exception the cause of the failure
+     */
+    private void fail(IOException exception)
+    {
+        failed = true;
+        pending.reset();
+        logger.log(Level.WARNING, "Failed to write extraction journal " + file
+                + ". The installation cannot be resumed if interrupted", exception);
+    }
+
+    private static long write(FileChannel channel, byte[] bytes, long position) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining())
+        {
+            position += channel.write(buffer, position);
+        }
+        return position;
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.util.OsVersion;
+
+
+/**
+ * Forces unpacked files to storage, according to a {@link Mode durability mode}.
+ * <p/>
+ * In {@link Mode#BATCH batch} mode, written files and their directories are collected, and synced by
+ * {@link #sync()} in parallel once a pack has been unpacked. In {@link Mode#STRICT strict} mode, each file and its
+ * directory are synced as soon as the file has been written.
+ * <p/>
+ * Directories can't be synced on Windows, where only files are synced. Files removed since they were written, such as
+ * executables that are deleted once run, are skipped.
+ */
+public class FileSync
+{
+
+    /**
+     * Variable specifying the durability mode. One of {@code none}, {@code batch} or {@code strict}.
+     */
+    public static final String DURABILITY = "izpack.durability";
+
+    /**
+     * The durability modes.
+     */
+    public enum Mode
+    {
+        /**
+         * Files are left to the operating system to write.
+         */
+        NONE,
+
+        /**
+         * Files and their directories are synced once each pack has been unpacked.
+         */
+        BATCH,
+
+        /**
+         * Each file and its directory are synced as soon as the file has been written.
+         */
+        STRICT
+    }
+
+    /**
+     * The maximum number of threads used to sync a batch.
+     */
+    private static final int MAX_THREADS = 8;
+
+    /**
+     * The minimum number of paths in a batch before syncing in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 16;
+
+    /**
+     * The durability mode.
+     */
+    private final Mode mode;
+
+    /**
+     * The files pending sync, in batch mode.
+     */
+    private final Set<File> files = new LinkedHashSet<File>();
+
+    /**
+     * The directories pending sync, in batch mode.
+     */
+    private final Set<File> directories = new LinkedHashSet<File>();
+
+    /**
+     * The time spent syncing, in nanoseconds.
+     */
+    private long nanos;
+
+    /**
+     * The no. of files synced.
+     */
+    private int count;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(FileSync.class.getName());
+
+
+    /**
+     * Constructs a {@code FileSync}.
+     *
+     * @param mode the durability mode
+     */
+    public FileSync(Mode mode)
+    {
+        this.mode = mode;
+    }
+
+    /**
+     * Parses a durability mode.
+     *
+     * @param value the mode name. May be {@code null}
+     * @return the corresponding mode, or {@link Mode#NONE} if the value is {@code null} or not a valid mode
+     */
+    public static Mode parse(String value)
+    {
+        if (value != null && value.trim().length() != 0)
+        {
+            try
+            {
+                return Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            }
+            catch (IllegalArgumentException exception)
+            {
+                logger.warning("Invalid " + DURABILITY + ": " + value);
+            }
+        }
+        return Mode.NONE;
+    }
+
+    /**
+     * Returns the durability mode.
+     *
+     * @return the durability mode
+     */
+    public Mode getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * Invoked when a file has been written.
+     * <p/>
+     * In strict mode, the file and its directory are synced immediately. In batch mode, they are synced by the next
+     * call to {@link #sync()}.
+     *
+     * @param file the file
+     * @param out  the stream the file was written with, if it is still open. May be {@code null}
+     * @throws IOException if the file cannot be synced
+     */
+    public void written(File file, OutputStream out) throws IOException
+    {
+        if (mode == Mode.STRICT)
+        {
+            long start = System.nanoTime();
+            if (out instanceof FileOutputStream)
+            {
+                out.flush();
+                ((FileOutputStream) out).getFD().sync();
+            }
+            else
+            {
+                syncFile(file);
+            }
+            syncDirectory(file.getAbsoluteFile().getParentFile());
+            nanos += System.nanoTime() - start;
+            ++count;
+        }
+        else if (mode == Mode.BATCH)
+        {
+            files.add(file);
+            directories.add(file.getAbsoluteFile().getParentFile());
+        }
+    }
+
+    /**
+     * Syncs the files and directories written since the last call, in batch mode.
+     * <p/>
+     * Files are synced before directories, so that a directory entry never refers to content that isn't on storage.
+     *
+     * @throws IOException if a file cannot be synced
+     */
+    public void sync() throws IOException
+    {
+        if (files.isEmpty())
+        {
+            return;
+        }
+        long start = System.nanoTime();
+        try
+        {
+            sync(files, false);
+            sync(directories, true);
+            count += files.size();
+        }
+        finally
+        {
+            files.clear();
+            directories.clear();
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Returns the time spent syncing since the last {@link #reset()}.
+     *
+     * @return the time, in nanoseconds
+     */
+    public long getNanos()
+    {
+        return nanos;
+    }
+
+    /**
+     * Returns the no. of files synced since the last {@link #reset()}.
+     *
+     * @return the no. of files
+     */
+    public int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Resets the statistics.
+     */
+    public void reset()
+    {
+        nanos = 0;
+        count = 0;
+    }
+
+    /**
+     * Syncs files or directories, in parallel if there are enough of them.
+     *
+     * @param paths       the paths to sync
+     * @param directories if {@code true}, the paths are directories
+     * @throws IOException if a file cannot be synced
+     */
+    private void sync(Collection<File> paths, final boolean directories) throws IOException
+    {
+        if (paths.size() < PARALLEL_THRESHOLD)
+        {
+            for (File path : paths)
+            {
+                sync(path, directories);
+            }
+            return;
+        }
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(paths.size());
+        for (final File path : paths)
+        {
+            tasks.add(new Callable<Void>()
+            {
+                @Override
+                public Void call() throws IOException
+                {
+                    sync(path, directories);
+                    return null;
+                }
+            });
+        }
+        int threads = Math.min(MAX_THREADS, Math.max(2, Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new SyncThreadFactory());
+        try
+        {
+            for (Future<Void> future : executor.invokeAll(tasks))
+            {
+                future.get();
+            }
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while syncing files", exception);
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to sync files", cause);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void sync(File path, boolean directory) throws IOException
+    {
+        if (directory)
+        {
+            syncDirectory(path);
+        }
+        else
+        {
+            syncFile(path);
+        }
+    }
+
+    /**
+     * Syncs a file.
+     * <p/>
+     * The file is opened for reading, so that read-only files can be synced. On Windows, it is opened for writing,
+     * as Windows requires write access to flush a file. Read-only files can't be synced there, and are skipped.
+     *
+     * @param file the file
+     * @throws IOException if the file cannot be synced
+     */
+    private static void syncFile(File file) throws IOException
+    {
+        StandardOpenOption access = OsVersion.IS_WINDOWS ? StandardOpenOption.WRITE : StandardOpenOption.READ;
+        try (FileChannel channel = FileChannel.open(file.toPath(), access))
+        {
+            channel.force(true);
+        }
+        catch (NoSuchFileException exception)
+        {
+            logger.fine("Cannot sync " + file + " as it no longer exists");
+        }
+        catch (AccessDeniedException exception)
+        {
+            if (!OsVersion.IS_WINDOWS || file.canWrite())
+            {
+                throw exception;
+            }
+            logger.fine("Cannot sync read-only file " + file);
+        }
+    }
+
+    /**
+     * Syncs a directory, so that the entries of files created in it are on storage.
+     * <p/>
+     * Failures are logged rather than propagated, as not all platforms and file systems support this.
+     *
+     * @param dir the directory. May be {@code null}
+     */
+    private static void syncDirectory(File dir)
+    {
+        if (dir == null || OsVersion.IS_WINDOWS)
+        {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ))
+        {
+            channel.force(true);
+        }
+        catch (IOException exception)
+        {
+            logger.fine("Cannot sync directory " + dir + ": " + exception);
+        }
+    }
+
+    /**
+     * Creates daemon threads for parallel syncing.
+     */
+    private static class SyncThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "IzPack - Sync-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -23,11 +23,14 @@ package com.izforge.izpack.installer.unpacker;
 
 import com.izforge.izpack.api.data.Blockable;
 import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.ParsableFile;
 import com.izforge.izpack.api.exception.InstallerException;
+import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.util.os.FileQueue;
 import com.izforge.izpack.util.os.FileQueueMove;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 
 import java.io.*;
 import java.util.logging.Logger;
@@ -68,6 +71,26 @@ public abstract class FileUnpacker
      */
     private boolean queued;
 
+    /**
+     * The parsable file to substitute variables in while copying. May be {@code null}.
+     */
+    private ParsableFile parsable;
+
+    /**
+     * The variable substitutor, used when {@link #parsable} is set.
+     */
+    private VariableSubstitutor substitutor;
+
+    /**
+     * The byte progress to advance as data is copied. May be {@code null}.
+     */
+    private ByteProgress progress;
+
+    /**
+     * Syncs written files according to the durability mode. May be {@code null}.
+     */
+    private FileSync sync;
+
     /**
      * The logger.
      */
@@ -108,6 +131,40 @@ public abstract class FileUnpacker
         return queued;
     }
 
+    /**
+     * Substitutes variables in the unpacked file as it is written, rather than re-reading it once unpacked.
+     * <p/>
+     * The encoding and substitution type of the parsable file are honoured.
+     *
+     * @param parsable    the parsable file describing the substitution. May be {@code null}
+     * @param substitutor the variable substitutor
+     */
+    public void setParsable(ParsableFile parsable, VariableSubstitutor substitutor)
+    {
+        this.parsable = parsable;
+        this.substitutor = substitutor;
+    }
+
+    /**
+     * Sets the byte progress to advance as data is copied.
+     *
+     * @param progress the byte progress. May be {@code null}
+     */
+    public void setProgress(ByteProgress progress)
+    {
+        this.progress = progress;
+    }
+
+    /**
+     * Sets the file sync to notify once a file has been written.
+     *
+     * @param sync the file sync. May be {@code null}
+     */
+    public void setSync(FileSync sync)
+    {
+        this.sync = sync;
+    }
+
     /**
      * Copies an input stream to a target, setting its timestamp to that of the pack file.
      * <p/>
@@ -126,6 +183,10 @@ public abstract class FileUnpacker
         byte[] buffer = new byte[5120];
         long bytesCopied = 0;
         long bytesToCopy = (file.isBackReference() ? file.getLinkedPackFile().length() : file.length());
+        if (parsable != null)
+        {
+            return parse(file, in, out, bytesToCopy);
+        }
         logger.fine("|- Copying to file system (size: " + bytesToCopy + " bytes)");
         try
         {
@@ -136,8 +197,14 @@ public abstract class FileUnpacker
                     // operation cancelled
                     throw new InterruptedIOException("Copy operation cancelled");
                 }
-                bytesCopied = copy(file, buffer, in, out, bytesCopied);
+                long copied = copy(file, buffer, in, out, bytesCopied);
+                if (progress != null)
+                {
+                    progress.copied(copied - bytesCopied);
+                }
+                bytesCopied = copied;
             }
+            written(out);
         }
         finally
         {
@@ -149,6 +216,72 @@ public abstract class FileUnpacker
         return bytesCopied;
     }
 
+    /**
+     * Copies an input stream to a target, substituting variables as per the {@link #setParsable parsable file}.
+     * <p/>
+     * The last modified timestamp is not set, as the content differs from that of the pack file.
+     *
+     * @param file        the pack file
+     * @param in          the pack file stream
+     * @param out         the stream to write to
+     * @param bytesToCopy the number of bytes to read from the pack file stream
+     * @return the number of bytes read from the pack file stream
+     * @throws InterruptedIOException if the copy operation is cancelled
+     * @throws IOException            for any I/O error
+     * @throws InstallerException     if substitution fails
+     */
+    private long parse(PackFile file, InputStream in, OutputStream out, long bytesToCopy) throws IOException
+    {
+        logger.fine("|- Copying to file system with variable substitution (size: " + bytesToCopy + " bytes)");
+        long bytesCopied;
+        try
+        {
+            if (cancellable.isCancelled())
+            {
+                throw new InterruptedIOException("Copy operation cancelled");
+            }
+            BoundedInputStream bounded = BoundedInputStream.builder()
+                    .setInputStream(in)
+                    .setMaxCount(bytesToCopy)
+                    .setPropagateClose(false)
+                    .get();
+            String encoding = parsable.getEncoding();
+            Reader reader = new BufferedReader(encoding != null ? new InputStreamReader(bounded, encoding)
+                                                       : new InputStreamReader(bounded), 5120);
+            Writer writer = new BufferedWriter(encoding != null ? new OutputStreamWriter(out, encoding)
+                                                       : new OutputStreamWriter(out), 5120);
+            substitutor.substitute(reader, writer, parsable.getType());
+            writer.flush();
+            bytesCopied = bounded.getCount();
+            if (bytesCopied == bytesToCopy)
+            {
+                written(out);
+            }
+        }
+        catch (IOException exception)
+        {
+            throw exception;
+        }
+        catch (Exception exception)
+        {
+            throw new InstallerException("Failed to parse: " + parsable.getPath(), exception);
+        }
+        finally
+        {
+            IOUtils.closeQuietly(out);
+        }
+        if (bytesCopied != bytesToCopy)
+        {
+            throw new IOException("Unexpected end of stream (installer corrupted?)");
+        }
+
+        if (isBlockable(file))
+        {
+            queue();
+        }
+        return bytesCopied;
+    }
+
     /**
      * Invoked after copying is complete to set the last modified timestamp, and queue blockable files.
      *
@@ -190,6 +323,20 @@ public abstract class FileUnpacker
         return bytesCopied;
     }
 
+    /**
+     * Notifies the {@link #setSync file sync} that the target has been written.
+     *
+     * @param out the stream to the actual target
+     * @throws IOException if the target cannot be synced
+     */
+    private void written(OutputStream out) throws IOException
+    {
+        if (sync != null)
+        {
+            sync.written((tmpTarget != null) ? tmpTarget : target, out);
+        }
+    }
+
     /**
      * Reads up to <tt>maxBytes</tt> bytes to the specified buffer.
      *
@@ -11,6 +11,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
+import java.net.ConnectException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.logging.Logger;
@@ -44,36 +45,42 @@ public class GUIPackResources extends AbstractPackResources
         InputStream result;
 
         InstallData installData = getInstallData();
-        String baseName = installData.getInfo().getInstallerBase();
-        File installerDir = new File(baseName).getParentFile();
-
-        baseName = baseName.substring(baseName.lastIndexOf(baseName.contains("\\") ? '\\' :'/') + 1);
-        String packFileName = baseName + ".pack-" + name + ".jar";
         String path;
 
         // Look first in same directory as primary jar, then download it if not found
-        File packLocalFile = new File(installerDir, packFileName);
+        File packLocalFile = getLocalPackFile(name);
         if (packLocalFile.exists() && packLocalFile.canRead())
         {
             logger.info("Found local pack " + packLocalFile.getAbsolutePath());
-            try {
-
-                path = "jar:" + packLocalFile.toURI().toURL() + "!/packs/pack-" + name;
-            } catch(MalformedURLException exception) {
-                throw new ResourceException("Malformed URL", exception);
-            }
         }
         else
         {
-            String packURL = webDirURL + "/" + baseName + ".pack-" + name + ".jar";
-            logger.info("Downloading remote pack " + packURL);
-            String tempFolder = IoHelper.translatePath(installData.getInfo().getUninstallerPath()
-                    + WEB_TEMP_SUB_PATH, installData.getVariables());
-            String tempFile;
+            logger.info("Downloading remote pack " + name + " from " + webDirURL);
+            try
+            {
+                return openWebPack(name, webDirURL);
+            }
+            catch (ConnectException exception)
+            {
+                // fall back to the accessor, which prompts for proxy settings
+                logger.info("Failed to connect to " + webDirURL + ", retrying via proxy settings: "
+                                    + exception.getMessage());
+            }
+            catch (InterruptedIOException exception)
+            {
+                throw new ResourceInterruptedException("Retrieval of " + webDirURL + " interrupted", exception);
+            }
+            catch (IOException exception)
+            {
+                throw new ResourceException("Failed to read " + webDirURL, exception);
+            }
+
             try
             {
-                tempFile = WebRepositoryAccessor.getCachedUrl(packURL, tempFolder);
-                packLocalFile = new File(tempFile);
+                String packURL = getPackURI(name, webDirURL).toString();
+                String tempFolder = IoHelper.translatePath(installData.getInfo().getUninstallerPath()
+                        + WEB_TEMP_SUB_PATH, installData.getVariables());
+                packLocalFile = new File(WebRepositoryAccessor.getCachedUrl(packURL, tempFolder));
             }
             catch (InterruptedIOException exception)
             {
@@ -83,8 +90,15 @@ public class GUIPackResources extends AbstractPackResources
             {
                 throw new ResourceException("Failed to read " + webDirURL, exception);
             }
+        }
 
-            path = "jar:" + packLocalFile.getPath() + "!/packs/pack-" + name;
+        try
+        {
+            path = "jar:" + packLocalFile.toURI().toURL() + "!/packs/pack-" + name;
+        }
+        catch (MalformedURLException exception)
+        {
+            throw new ResourceException("Malformed URL", exception);
         }
 
         try
@@ -57,4 +57,11 @@ public interface PackResources
      * @throws ResourceException            for any other resource error
      */
     InputStream getInputStream(String name);
+
+    /**
+     * Releases any resources held to retrieve packs, such as background downloads.
+     * <p/>
+     * Invoked once unpacking has completed.
+     */
+    void close();
 }
\ No newline at end of file
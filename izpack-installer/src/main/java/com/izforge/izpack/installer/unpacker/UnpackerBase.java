@@ -22,6 +22,7 @@
 
 package com.izforge.izpack.installer.unpacker;
 
+import com.izforge.izpack.api.data.Blockable;
 import com.izforge.izpack.api.data.ExecutableFile;
 import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.data.OverrideType;
@@ -44,12 +45,15 @@ import com.izforge.izpack.api.resource.Messages;
 import com.izforge.izpack.api.resource.Resources;
 import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
+import com.izforge.izpack.core.data.InstallationInformation;
 import com.izforge.izpack.core.handler.ProgressHandler;
 import com.izforge.izpack.core.handler.PromptUIHandler;
 import com.izforge.izpack.core.resource.ResourceManager;
 import com.izforge.izpack.installer.bootstrap.Installer;
 import com.izforge.izpack.installer.data.UninstallData;
 import com.izforge.izpack.installer.event.InstallerListeners;
+import com.izforge.izpack.installer.event.ProgressAggregator;
+import com.izforge.izpack.installer.timing.InstallTimings;
 import com.izforge.izpack.installer.util.InstallPathHelper;
 import com.izforge.izpack.installer.util.PackHelper;
 import com.izforge.izpack.util.FileExecutor;
@@ -58,26 +62,27 @@ import com.izforge.izpack.util.IoHelper;
 import com.izforge.izpack.util.LogUtils;
 import com.izforge.izpack.util.NoCloseInputStream;
 import com.izforge.izpack.util.PlatformModelMatcher;
-import com.izforge.izpack.util.file.DirectoryScanner;
 import com.izforge.izpack.util.file.GlobPatternMapper;
-import com.izforge.izpack.util.file.types.FileSet;
 import com.izforge.izpack.util.os.FileQueue;
 import org.apache.commons.io.IOUtils;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 import java.util.logging.Level;
@@ -162,6 +167,11 @@ public abstract class UnpackerBase implements IUnpacker
      */
     private ProgressListener listener;
 
+    /**
+     * Tracks the number of bytes unpacked.
+     */
+    private ByteProgress byteProgress;
+
     /**
      * The prompt.
      */
@@ -205,6 +215,51 @@ public abstract class UnpackerBase implements IUnpacker
      */
     private Messages packMessages;
 
+    /**
+     * The parsable files of the current pack, keyed on their translated path, that may have their variables
+     * substituted while being extracted.
+     */
+    private final Map<String, ParsableFile> extractParsables = new HashMap<String, ParsableFile>();
+
+    /**
+     * The parsable files of the current pack whose variables were substituted during extraction.
+     */
+    private final Set<ParsableFile> extractedParsables = new HashSet<ParsableFile>();
+
+    /**
+     * The payloads that back references in {@link Pack#isHardLinks() hard link} packs refer to, keyed as per
+     * {@link #getPayload(PackFile)}.
+     */
+    private final Set<String> linkedPayloads = new HashSet<String>();
+
+    /**
+     * The files holding an unmodified copy of a linked payload, keyed on payload.
+     */
+    private final Map<String, File> installedPayloads = new HashMap<String, File>();
+
+    /**
+     * The payload last written to each file, so that {@link #installedPayloads} entries can be discarded when the
+     * file is overwritten.
+     */
+    private final Map<File, String> payloadTargets = new HashMap<File, String>();
+
+    /**
+     * Syncs written files according to the {@link FileSync#DURABILITY durability mode}. Created when unpacking
+     * starts.
+     */
+    private FileSync fileSync;
+
+    /**
+     * Records extracted files, so that an interrupted installation can be resumed. May be {@code null}.
+     */
+    private ExtractionJournal journal;
+
+    /**
+     * The translated paths of the parsable files of the packs being unpacked. These are never resumed from the
+     * {@link #journal}, as their content depends on variables that may have changed since the interrupted run.
+     */
+    private final Set<String> parsablePaths = new HashSet<String>();
+
     /**
      * Constructs an <tt>UnpackerBase</tt>.
      *
@@ -248,13 +303,17 @@ public abstract class UnpackerBase implements IUnpacker
 
     /**
      * Sets the progress listener.
+     * <p/>
+     * Per-file progress notifications are {@link ProgressAggregator coalesced}, so that installing many small files
+     * doesn't flood the listener.
      *
      * @param listener the progress listener
      */
     @Override
     public void setProgressListener(ProgressListener listener)
     {
-        this.listener = listener;
+        this.listener = (listener == null || listener instanceof ProgressAggregator) ? listener
+                : new ProgressAggregator(listener);
     }
 
     /**
@@ -315,9 +374,13 @@ public abstract class UnpackerBase implements IUnpacker
 
             selectedPacks = installData.getSelectedPacks();
 
-            preUnpack(selectedPacks);
-            unpack(packsInfo, queue);
-            postUnpack(selectedPacks, queue);
+            try (InstallTimings.Timer timer = InstallTimings.phase("install"))
+            {
+                preUnpack(selectedPacks);
+                unpack(packsInfo, queue);
+                postUnpack(selectedPacks, queue);
+                timer.addBytes(byteProgress.getBytes());
+            }
         }
         catch (Exception exception)
         {
@@ -475,6 +538,7 @@ public abstract class UnpackerBase implements IUnpacker
             }
             installData.setInstallPath(installPath);
         }
+        InstallTimings.setInstallDirectory(new File(installPath));
         listener.startAction("Unpacking", packs.size());
         listeners.beforePacks(packs, listener);
     }
@@ -490,6 +554,37 @@ public abstract class UnpackerBase implements IUnpacker
     protected void unpack(List<PackInfo> packs, FileQueue queue) throws InstallerException
     {
         int count = packs.size();
+        long totalBytes = 0;
+        for (PackInfo packInfo : packs)
+        {
+            Pack pack = packInfo.getPack();
+            if (shouldUnpack(pack))
+            {
+                for (PackFile packFile : packInfo.getPackFiles())
+                {
+                    if (!packFile.isDirectory())
+                    {
+                        totalBytes += packFile.length();
+                        if (pack.isHardLinks() && !pack.isLoose() && packFile.isBackReference())
+                        {
+                            linkedPayloads.add(getPayload(packFile));
+                        }
+                    }
+                }
+                for (ParsableFile parsableFile : packInfo.getParsables())
+                {
+                    String path = IoHelper.translatePath(parsableFile.getPath(), variables);
+                    parsablePaths.add(new File(path).getAbsolutePath());
+                }
+            }
+        }
+        byteProgress = new ByteProgress(listener, totalBytes);
+        fileSync = new FileSync(FileSync.parse(installData.getVariable(FileSync.DURABILITY)));
+        if (fileSync.getMode() != FileSync.Mode.NONE)
+        {
+            logger.info("Durability mode: " + fileSync.getMode().name().toLowerCase(Locale.ROOT));
+        }
+        openJournal();
         for (int i = 0; i < count; i++)
         {
             PackInfo packInfo = packs.get(i);
@@ -501,25 +596,82 @@ public abstract class UnpackerBase implements IUnpacker
                 List<ExecutableFile> executables = new ArrayList<ExecutableFile>();
                 List<UpdateCheck> updateChecks = new ArrayList<UpdateCheck>();
 
+                String name = pack.getName();
                 listeners.beforePack(pack, i);
-                unpack(packInfo, i, queue, parsables, executables, updateChecks);
+                try (InstallTimings.Timer timer = InstallTimings.phase("unpack", name))
+                {
+                    long bytes = byteProgress.getBytes();
+                    unpack(packInfo, i, queue, parsables, executables, updateChecks);
+                    timer.addBytes(byteProgress.getBytes() - bytes);
+                }
                 checkInterrupt();
 
                 logger.fine("Found " + parsables.size() + " parsable files");
-                parseFiles(parsables);
+                try (InstallTimings.Timer timer = InstallTimings.phase("parseFiles", name))
+                {
+                    parseFiles(parsables);
+                }
                 checkInterrupt();
 
+                // sync before executables and update checks run, as they may remove installed files
+                syncFiles(name);
+
                 logger.fine("Found " + executables.size() + " executable files");
-                executeFiles(executables);
+                try (InstallTimings.Timer timer = InstallTimings.phase("executeFiles", name))
+                {
+                    executeFiles(executables);
+                }
                 checkInterrupt();
 
                 // update checks should be done _after_ uninstaller was put, so we don't delete it. TODO
-                performUpdateChecks(updateChecks);
+                try (InstallTimings.Timer timer = InstallTimings.phase("performUpdateChecks", name))
+                {
+                    performUpdateChecks(updateChecks);
+                }
                 checkInterrupt();
 
                 listeners.afterPack(pack);
             }
         }
+        byteProgress.finish();
+    }
+
+    /**
+     * Syncs the files written by a pack, and reports the time taken.
+     * <p/>
+     * In batch mode, this syncs the files. In strict mode, files have already been synced as they were written, so
+     * only the accumulated time is reported.
+     *
+     * @param pack the pack name
+     * @throws InstallerException if the files cannot be synced
+     */
+    private void syncFiles(String pack)
+    {
+        if (fileSync.getMode() == FileSync.Mode.BATCH)
+        {
+            try (InstallTimings.Timer timer = InstallTimings.phase("sync", pack))
+            {
+                fileSync.sync();
+            }
+            catch (IOException exception)
+            {
+                throw new InstallerException("Failed to sync files of pack: " + pack, exception);
+            }
+            if (journal != null)
+            {
+                journal.commit(true);
+            }
+        }
+        else if (fileSync.getMode() == FileSync.Mode.STRICT)
+        {
+            InstallTimings.record("sync", pack, fileSync.getNanos());
+        }
+        if (fileSync.getCount() != 0)
+        {
+            logger.fine("Synced " + fileSync.getCount() + " files of pack " + pack + " in "
+                                + TimeUnit.NANOSECONDS.toMillis(fileSync.getNanos()) + "ms");
+        }
+        fileSync.reset();
     }
 
     /**
@@ -544,7 +696,15 @@ public abstract class UnpackerBase implements IUnpacker
             selectedPacks = installData.getSelectedPacks();
             listener.nextStep(stepName, selectedPacks.indexOf(pack) + 1, len);
 
-            in = resources.getPackStream(pack.getName());
+            initExtractParsables(packInfo);
+            if (isExtracted(packInfo))
+            {
+                logger.info("Pack " + pack.getName() + " already extracted, resuming after it");
+            }
+            else
+            {
+                in = resources.getPackStream(pack.getName());
+            }
 
             for (int i = 0; i < len; i++)
             {
@@ -558,14 +718,19 @@ public abstract class UnpackerBase implements IUnpacker
                     unpack(packFile, in, i + 1, pack, queue);
                 } else
                 {
-                    if (!isDirectory)
+                    if (!isDirectory && in != null)
                     {
                         // condition is not fulfilled, so skip it in main stream
                         skip(packFile, pack, in);
                     }
                 }
+                if (!isDirectory && byteProgress != null)
+                {
+                    byteProgress.fileCompleted(packFile.length());
+                }
             }
             readParsableFiles(packInfo, parsables);
+            parsables.removeAll(extractedParsables);
             readExecutableFiles(packInfo, executables);
             readUpdateChecks(packInfo, updateChecks);
         }
@@ -579,10 +744,63 @@ public abstract class UnpackerBase implements IUnpacker
         }
         finally
         {
+            extractParsables.clear();
+            extractedParsables.clear();
             IOUtils.closeQuietly(in);
         }
     }
 
+    /**
+     * Determines if all the files of a pack that should be unpacked were extracted by an interrupted installation,
+     * so that the pack stream needn't be read.
+     *
+     * @param packInfo the pack info
+     * @return {@code true} if all the files of the pack are recorded in the journal, and unchanged
+     */
+    private boolean isExtracted(PackInfo packInfo)
+    {
+        if (journal == null || journal.size() == 0)
+        {
+            return false;
+        }
+        for (PackFile packFile : packInfo.getPackFiles())
+        {
+            if (!packFile.isDirectory() && shouldUnpack(packFile))
+            {
+                File target = new File(IoHelper.translatePath(packFile.getTargetPath(), variables));
+                if (!isResumable(target) || !journal.isExtracted(packFile, target))
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects the {@link ParsableFile parsable files} of a pack whose variables can be substituted while they are
+     * extracted, so they are written once rather than extracted and then re-written by the {@link ScriptParser}.
+     * <p/>
+     * The same condition and platform rules as {@link #readParsableFiles} and {@link ScriptParser} apply. Parsable
+     * files that aren't extracted from the pack are still parsed once the pack has been unpacked.
+     *
+     * @param packInfo the pack info of the current pack
+     */
+    protected void initExtractParsables(PackInfo packInfo)
+    {
+        extractParsables.clear();
+        extractedParsables.clear();
+        for (ParsableFile parsableFile : packInfo.getParsables())
+        {
+            if ((!parsableFile.hasCondition() || isConditionTrue(parsableFile.getCondition()))
+                    && matcher.matchesCurrentPlatform(parsableFile.getOsConstraints()))
+            {
+                String path = IoHelper.translatePath(parsableFile.getPath(), variables);
+                extractParsables.put(new File(path).getAbsolutePath(), parsableFile);
+            }
+        }
+    }
+
     /**
      * Determines if a file should be unpacked.
      *
@@ -642,8 +860,12 @@ public abstract class UnpackerBase implements IUnpacker
 
         listener.progress(fileNo, path);
 
+        if (isResumable(target) && journal.isExtracted(packFile, target))
+        {
+            resume(packFile, target, packInputStream, pack);
+        }
         // if this file exists and should not be overwritten, check what to do
-        if (target.exists() && (packFile.override() != OverrideType.OVERRIDE_TRUE) && !isOverwriteFile(packFile, target))
+        else if (target.exists() && (packFile.override() != OverrideType.OVERRIDE_TRUE) && !isOverwriteFile(packFile, target))
         {
             if (!packFile.isBackReference() && !pack.isLoose())
             {
@@ -658,6 +880,92 @@ public abstract class UnpackerBase implements IUnpacker
         }
     }
 
+    /**
+     * Skips a pack file extracted by an interrupted installation, as if it had just been extracted.
+     *
+     * @param packFile        the pack file
+     * @param target          the extracted file
+     * @param packInputStream the pack file input stream. May be {@code null}
+     * @param pack            the pack that the pack file comes from
+     * @throws IOException for any I/O error
+     */
+    private void resume(PackFile packFile, File target, InputStream packInputStream, Pack pack) throws IOException
+    {
+        logger.fine("|- Already extracted - skipping");
+        if (packInputStream != null)
+        {
+            skip(packFile, pack, packInputStream);
+        }
+        discardPayload(target);
+        if (!pack.isLoose())
+        {
+            String payload = getPayload(packFile);
+            if (payload != null && linkedPayloads.contains(payload) && !installedPayloads.containsKey(payload))
+            {
+                installedPayloads.put(payload, target);
+                payloadTargets.put(target, payload);
+            }
+        }
+        listeners.afterFile(target, packFile, pack);
+    }
+
+    /**
+     * Records an extracted file in the journal, unless it is parsable.
+     * <p/>
+     * Unless the durability mode is batch, the record is committed immediately. In strict mode, the file has already
+     * been synced, so the record is forced to storage too. In batch mode, records are committed once the pack's
+     * files have been synced. With no durability mode, neither is forced, so the journal only survives the installer
+     * being interrupted, not a system crash.
+     *
+     * @param packFile the pack file
+     * @param target   the extracted file
+     */
+    private void addToJournal(PackFile packFile, File target)
+    {
+        if (isResumable(target))
+        {
+            journal.add(packFile, target);
+            if (fileSync.getMode() != FileSync.Mode.BATCH)
+            {
+                journal.commit(fileSync.getMode() == FileSync.Mode.STRICT);
+            }
+        }
+    }
+
+    /**
+     * Determines if a file may be resumed from the extraction journal, if an earlier run extracted it.
+     * <p/>
+     * Parsable files are always extracted again, as the journal can't tell if the variables substituted into them
+     * have changed.
+     *
+     * @param target the file
+     * @return {@code true} if the file may be resumed
+     */
+    private boolean isResumable(File target)
+    {
+        return journal != null && !parsablePaths.contains(target.getAbsolutePath());
+    }
+
+    /**
+     * Opens the extraction journal in the installation directory.
+     * <p/>
+     * If it cannot be opened, installation proceeds without it.
+     */
+    private void openJournal()
+    {
+        File file = new File(installData.getInstallPath(), ExtractionJournal.NAME);
+        String id = installData.getInfo().getAppName() + " " + installData.getInfo().getAppVersion();
+        try
+        {
+            journal = ExtractionJournal.open(file, id);
+        }
+        catch (IOException exception)
+        {
+            logger.log(Level.WARNING, "Failed to open extraction journal " + file
+                    + ". The installation cannot be resumed if interrupted", exception);
+        }
+    }
+
     /**
      * Extracts a pack file.
      *
@@ -673,6 +981,21 @@ public abstract class UnpackerBase implements IUnpacker
     protected void extract(PackFile packFile, File target, InputStream packInputStream, Pack pack, FileQueue queue)
             throws IOException
     {
+        String payload = pack.isLoose() ? null : getPayload(packFile);
+        ParsableFile parsable = extractParsables.get(target.getAbsolutePath());
+        discardPayload(target);
+        if (pack.isHardLinks() && packFile.isBackReference() && parsable == null
+                && packFile.blockable() == Blockable.BLOCKABLE_NONE && link(payload, target))
+        {
+            if (fileSync != null)
+            {
+                fileSync.written(target, null);
+            }
+            addToJournal(packFile, target);
+            listeners.afterFile(target, packFile, pack);
+            return;
+        }
+
         InputStream packStream = null;
         try
         {
@@ -694,12 +1017,29 @@ public abstract class UnpackerBase implements IUnpacker
             }
 
             unpacker = createFileUnpacker(packFile, pack, queue, cancellable);
+            unpacker.setProgress(byteProgress);
+            unpacker.setSync(fileSync);
+            if (parsable != null)
+            {
+                unpacker.setParsable(parsable, variableSubstitutor);
+            }
             logger.fine("|- Extracting file using " + unpacker.getClass().getName() + ")");
             unpacker.unpack(packFile, packStream, target);
+            if (parsable != null)
+            {
+                extractedParsables.add(parsable);
+            }
             checkInterrupt();
 
             if (!unpacker.isQueued())
             {
+                if (parsable == null && payload != null && linkedPayloads.contains(payload)
+                        && !installedPayloads.containsKey(payload))
+                {
+                    installedPayloads.put(payload, target);
+                    payloadTargets.put(target, payload);
+                }
+                addToJournal(packFile, target);
                 listeners.afterFile(target, packFile, pack);
             }
         }
@@ -712,6 +1052,79 @@ public abstract class UnpackerBase implements IUnpacker
         }
     }
 
+    /**
+     * Returns a key identifying the content of a pack file.
+     * <p/>
+     * A back reference has the same key as the pack file it refers to.
+     *
+     * @param packFile the pack file
+     * @return the key, or {@code null} if the content isn't stored in a pack stream
+     */
+    private static String getPayload(PackFile packFile)
+    {
+        PackFile source = packFile.isBackReference() ? packFile.getLinkedPackFile() : packFile;
+        String resource = source.getStreamResourceName();
+        return (resource != null) ? resource + "@" + source.getStreamOffset() : null;
+    }
+
+    /**
+     * Discards any payload recorded against a file that is about to be overwritten.
+     *
+     * @param target the file
+     */
+    private void discardPayload(File target)
+    {
+        if (!payloadTargets.isEmpty())
+        {
+            String payload = payloadTargets.remove(target);
+            if (payload != null)
+            {
+                installedPayloads.remove(payload);
+            }
+        }
+    }
+
+    /**
+     * Creates a file as a hard link to an installed copy of its payload.
+     * <p/>
+     * If the file system doesn't support hard links, or refuses to create one, the installed copy is copied instead.
+     *
+     * @param payload the payload. May be {@code null}
+     * @param target  the file to create
+     * @return {@code true} if the file was created, {@code false} if it needs to be extracted
+     */
+    private boolean link(String payload, File target)
+    {
+        File source = (payload != null) ? installedPayloads.get(payload) : null;
+        if (source == null || !source.isFile())
+        {
+            return false;
+        }
+        Path link = target.toPath();
+        try
+        {
+            Files.deleteIfExists(link);
+            try
+            {
+                Files.createLink(link, source.toPath());
+                logger.fine("|- Linked to " + source);
+            }
+            catch (UnsupportedOperationException | IOException exception)
+            {
+                logger.fine("|- Cannot link to " + source + " (" + exception + "), copying");
+                Files.copy(source.toPath(), link, StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.COPY_ATTRIBUTES);
+            }
+        }
+        catch (IOException exception)
+        {
+            logger.log(Level.WARNING, "Failed to copy " + source + " to " + target + ", extracting instead",
+                       exception);
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Skips a pack file.
      *
@@ -775,7 +1188,10 @@ public abstract class UnpackerBase implements IUnpacker
         // commit the file queue if there are potentially blocked files
         if (queue != null && !queue.isEmpty())
         {
-            queue.execute();
+            try (InstallTimings.Timer timer = InstallTimings.phase("fileQueue"))
+            {
+                queue.execute();
+            }
             installData.setRebootNecessary(queue.isRebootNecessary());
         }
         checkInterrupt();
@@ -784,7 +1200,17 @@ public abstract class UnpackerBase implements IUnpacker
         checkInterrupt();
 
         // write installation information
-        writeInstallationInformation();
+        try (InstallTimings.Timer timer = InstallTimings.phase("writeInstallationInformation"))
+        {
+            writeInstallationInformation();
+        }
+
+        // installation can no longer be resumed
+        if (journal != null)
+        {
+            journal.delete();
+            journal = null;
+        }
 
         // unpacking complete
         listener.stopAction();
@@ -792,10 +1218,18 @@ public abstract class UnpackerBase implements IUnpacker
 
     /**
      * Invoked after unpacking has completed, in order to clean up.
+     * <p/>
+     * The pack resources are closed.
      */
     protected void cleanup()
     {
         state = State.READY;
+        resources.close();
+        if (journal != null)
+        {
+            journal.close();
+            journal = null;
+        }
     }
 
     /**
@@ -904,7 +1338,8 @@ public abstract class UnpackerBase implements IUnpacker
     /**
      * Creates a directory including any necessary but nonexistent parent directories, associated with a pack file.
      * <p/>
-     * If {@link InstallerListener}s are registered, these will be notified for each directory created.
+     * If {@link InstallerListener}s have requested directory notifications for the pack file, these will be notified
+     * for each directory created. Otherwise, the directories are created in a single step.
      *
      * @param dir  the directory to create
      * @param file the pack file
@@ -915,7 +1350,7 @@ public abstract class UnpackerBase implements IUnpacker
     {
         if (!dir.exists())
         {
-            if (!listeners.isFileListener())
+            if (!listeners.isDirListener(file, pack))
             {
                 // Create it in one step.
                 if (!dir.mkdirs())
@@ -956,6 +1391,11 @@ public abstract class UnpackerBase implements IUnpacker
                 try
                 {
                     parser.parse(file);
+                    File parsed = new File(file.getPath());
+                    if (fileSync != null && parsed.isFile())
+                    {
+                        fileSync.written(parsed, null);
+                    }
                 }
                 catch (Exception exception)
                 {
@@ -1034,75 +1474,37 @@ public abstract class UnpackerBase implements IUnpacker
         {
             logger.info("Cleaning up the target folder ...");
 
-            File absoluteInstallPath = new File(installData.getInstallPath()).getAbsoluteFile();
-            FileSet fileset = new FileSet();
-            List<File> filesToDelete = new ArrayList<File>();
-            List<File> dirsToDelete = new ArrayList<File>();
-
-            try
+            List<String> includes = new ArrayList<String>();
+            List<String> excludes = new ArrayList<String>();
+            for (UpdateCheck check : checks)
             {
-                fileset.setDir(absoluteInstallPath);
-
-                for (UpdateCheck check : checks)
+                if (check.includesList != null)
                 {
-                    if (check.includesList != null)
+                    for (String include : check.includesList)
                     {
-                        for (String include : check.includesList)
-                        {
-                            fileset.createInclude().setName(variableSubstitutor.substitute(include));
-                        }
-                    }
-
-                    if (check.excludesList != null)
-                    {
-                        for (String exclude : check.excludesList)
-                        {
-                            fileset.createExclude().setName(variableSubstitutor.substitute(exclude));
-                        }
+                        includes.add(variableSubstitutor.substitute(include));
                     }
                 }
-                DirectoryScanner scanner = fileset.getDirectoryScanner();
-                scanner.scan();
-                String[] srcFiles = scanner.getIncludedFiles();
-                String[] srcDirs = scanner.getIncludedDirectories();
 
-                Set<File> installedFiles = new TreeSet<File>();
-
-                for (String name : uninstallData.getInstalledFilesList())
+                if (check.excludesList != null)
                 {
-                    File file = new File(name);
-
-                    if (!file.isAbsolute())
+                    for (String exclude : check.excludesList)
                     {
-                        file = new File(absoluteInstallPath, name);
+                        excludes.add(variableSubstitutor.substitute(exclude));
                     }
-
-                    installedFiles.add(file);
                 }
-                for (String srcFile : srcFiles)
-                {
-                    File newFile = new File(scanner.getBasedir(), srcFile);
+            }
 
-                    // skip files we just installed
-                    if (!installedFiles.contains(newFile))
-                    {
-                        filesToDelete.add(newFile);
-                    }
-                }
-                for (String srcDir : srcDirs)
+            try
+            {
+                UpdateCheckCleaner cleaner = new UpdateCheckCleaner(new File(installData.getInstallPath()),
+                                                                    includes, excludes);
+                List<String> installed = new ArrayList<String>(uninstallData.getInstalledFilesList());
+                if (journal != null)
                 {
-                    // All directories except INSTALL_PATH
-                    if (!srcDir.isEmpty())
-                    {
-                        File newDir = new File(scanner.getBasedir(), srcDir);
-
-                        // skip directories we just installed
-                        if (!installedFiles.contains(newDir))
-                        {
-                            dirsToDelete.add(newDir);
-                        }
-                    }
+                    installed.add(journal.getFile().getPath());
                 }
+                cleaner.clean(installed);
             }
             catch (IzPackException exception)
             {
@@ -1112,48 +1514,6 @@ public abstract class UnpackerBase implements IUnpacker
             {
                 throw new IzPackException(exception);
             }
-
-            for (File f : filesToDelete)
-            {
-                if (!f.delete())
-                {
-                    logger.warning("Cleanup: Unable to delete file " + f);
-                } else
-                {
-                    logger.fine("Cleanup: Deleted file " + f);
-                }
-            }
-
-            // Sort directories, deepest path first to be able to
-            // delete recursively
-            Collections.sort(dirsToDelete);
-            Collections.reverse(dirsToDelete);
-
-            for (File d : dirsToDelete)
-            {
-                if (!d.exists())
-                {
-                    break;
-                }
-
-                // Don't try to delete non-empty directories, because they
-                // probably must have been implicitly created as parents
-                // of regular installation files
-                File[] files = d.listFiles();
-                if (files != null && files.length != 0)
-                {
-                    break;
-                }
-
-                // Only empty directories will be deleted
-                if (!d.delete())
-                {
-                    logger.warning("Cleanup: Unable to delete directory " + d);
-                } else
-                {
-                    logger.fine("Cleanup: Deleted directory " + d);
-                }
-            }
         }
     }
 
@@ -1173,8 +1533,6 @@ public abstract class UnpackerBase implements IUnpacker
         logger.fine("Writing installation information");
         String installDir = installData.getInstallPath();
 
-        List<Pack> installedPacks = new ArrayList<Pack>(selectedPacks);
-
         File installationInfo = new File(installDir + File.separator + InstallData.INSTALLATION_INFORMATION);
         if (!installationInfo.exists())
         {
@@ -1188,43 +1546,14 @@ public abstract class UnpackerBase implements IUnpacker
                     throw new InstallerException("Failed to create directory: " + dir);
                 }
             }
-            if (!installationInfo.createNewFile())
-            {
-                throw new InstallerException("Failed to create file: " + installationInfo);
-            }
-        } else
+        }
+        else
         {
             logger.fine("Previous installation information found");
-            // read in old information and update
-            FileInputStream fin = new FileInputStream(installationInfo);
-            ObjectInputStream oin = new ObjectInputStream(fin);
-
-            List<Pack> packs;
-            try
-            {
-                //noinspection unchecked
-                packs = (List<Pack>) oin.readObject();
-            }
-            catch (Exception exception)
-            {
-                throw new InstallerException("Failed to read previous installation information", exception);
-            }
-            finally
-            {
-                IOUtils.closeQuietly(oin);
-                IOUtils.closeQuietly(fin);
-            }
-            installedPacks.addAll(packs);
         }
-
-        FileOutputStream fout = new FileOutputStream(installationInfo);
-        ObjectOutputStream oout = new ObjectOutputStream(fout);
-        oout.writeObject(installedPacks);
-        oout.writeObject(variables.getProperties());
-
+        InstallationInformation.append(installationInfo, installData.getInfo().getAppVersion(), selectedPacks,
+                                       variables.getSnapshot());
         logger.fine("Writing installation information finished");
-        IOUtils.closeQuietly(oout);
-        IOUtils.closeQuietly(fout);
 
         uninstallData.addFile(installationInfo.getAbsolutePath(), true);
     }
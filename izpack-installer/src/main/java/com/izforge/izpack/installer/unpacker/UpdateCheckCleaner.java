@@ -0,0 +1,432 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.api.exception.IzPackException;
+import com.izforge.izpack.util.file.DirectoryScanner;
+import com.izforge.izpack.util.file.types.selectors.SelectorUtils;
+
+
+/**
+ * Removes files from an installation directory that match the patterns of the update checks, but weren't installed.
+ * <p/>
+ * The installation directory is walked once. Patterns have the same semantics as a
+ * {@link com.izforge.izpack.util.file.types.FileSet FileSet}, including the default excludes, and directories
+ * that cannot contain a matching file are not descended into. Symbolic links are not followed.
+ * <p/>
+ * Files are deleted in parallel. Directories are deleted afterwards, deepest first, and only if they are empty.
+ */
+class UpdateCheckCleaner
+{
+
+    /**
+     * The minimum number of files to delete before deleting in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    /**
+     * The installation directory.
+     */
+    private final Path installPath;
+
+    /**
+     * The normalised include patterns.
+     */
+    private final List<String> includes = new ArrayList<String>();
+
+    /**
+     * The normalised exclude patterns.
+     */
+    private final List<String> excludes = new ArrayList<String>();
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(UpdateCheckCleaner.class.getName());
+
+
+    /**
+     * Constructs an {@code UpdateCheckCleaner}.
+     *
+     * @param installPath the installation directory
+     * @param includes    the include patterns, relative to the installation directory. If empty, all files are
+     *                    included
+     * @param excludes    the exclude patterns, relative to the installation directory
+     */
+    public UpdateCheckCleaner(File installPath, Collection<String> includes, Collection<String> excludes)
+    {
+        this.installPath = installPath.getAbsoluteFile().toPath().normalize();
+        for (String include : includes)
+        {
+            this.includes.add(normalizePattern(include));
+        }
+        if (this.includes.isEmpty())
+        {
+            this.includes.add("**");
+        }
+        for (String exclude : excludes)
+        {
+            this.excludes.add(normalizePattern(exclude));
+        }
+        for (String exclude : DirectoryScanner.getDefaultExcludes())
+        {
+            this.excludes.add(normalizePattern(exclude));
+        }
+    }
+
+    /**
+     * Deletes the files and directories matching the patterns that weren't installed.
+     *
+     * @param installed the paths of the installed files and directories. Relative paths are relative to the
+     *                  installation directory
+     * @throws IzPackException if the installation directory cannot be read
+     */
+    public void clean(Collection<String> installed)
+    {
+        List<Path> files = new ArrayList<Path>();
+        List<Path> directories = new ArrayList<Path>();
+        scan(installed, files, directories);
+        deleteFiles(files);
+        deleteDirectories(directories);
+    }
+
+    /**
+     * Finds the files and directories matching the patterns that weren't installed.
+     *
+     * @param installed   the paths of the installed files and directories
+     * @param files       collects the files to delete
+     * @param directories collects the directories to delete. The installation directory is never included
+     * @throws IzPackException if the installation directory cannot be read
+     */
+    void scan(Collection<String> installed, final List<Path> files, final List<Path> directories)
+    {
+        final Set<Path> paths = new HashSet<Path>(installed.size() * 2);
+        for (String name : installed)
+        {
+            paths.add(installPath.resolve(Paths.get(name)).normalize());
+        }
+        if (!Files.isDirectory(installPath))
+        {
+            return;
+        }
+
+        try
+        {
+            Files.walkFileTree(installPath, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE,
+                               new SimpleFileVisitor<Path>()
+            {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+                {
+                    if (dir.equals(installPath))
+                    {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    String name = installPath.relativize(dir).toString();
+                    if (isSelected(name) && !paths.contains(dir))
+                    {
+                        directories.add(dir);
+                    }
+                    return couldHoldIncluded(name) && !contentsExcluded(name)
+                            ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                {
+                    if (isSelected(installPath.relativize(file).toString()) && !paths.contains(file))
+                    {
+                        files.add(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exception)
+                {
+                    logger.log(Level.WARNING, "Cleanup: Unable to read " + file, exception);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        catch (IOException exception)
+        {
+            throw new IzPackException("Failed to scan " + installPath, exception);
+        }
+    }
+
+    /**
+     * Deletes files, in parallel if there are enough of them.
+     * <p/>
+     * Files are partitioned by directory, so that no two threads update the same directory.
+     *
+     * @param files the files to delete
+     */
+    private void deleteFiles(List<Path> files)
+    {
+        if (files.size() < PARALLEL_THRESHOLD)
+        {
+            for (Path file : files)
+            {
+                deleteFile(file);
+            }
+            return;
+        }
+        Map<Path, List<Path>> partitions = new HashMap<Path, List<Path>>();
+        for (Path file : files)
+        {
+            List<Path> partition = partitions.get(file.getParent());
+            if (partition == null)
+            {
+                partition = new ArrayList<Path>();
+                partitions.put(file.getParent(), partition);
+            }
+            partition.add(file);
+        }
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (final List<Path> partition : partitions.values())
+        {
+            tasks.add(Executors.callable(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (Path file : partition)
+                    {
+                        deleteFile(file);
+                    }
+                }
+            }));
+        }
+        invokeAll(tasks);
+    }
+
+    /**
+     * Deletes empty directories, deepest first. Directories at the same depth are deleted concurrently.
+     *
+     * @param directories the directories to delete
+     */
+    private void deleteDirectories(List<Path> directories)
+    {
+        TreeMap<Integer, List<Path>> levels = new TreeMap<Integer, List<Path>>(Collections.reverseOrder());
+        for (Path dir : directories)
+        {
+            List<Path> level = levels.get(dir.getNameCount());
+            if (level == null)
+            {
+                level = new ArrayList<Path>();
+                levels.put(dir.getNameCount(), level);
+            }
+            level.add(dir);
+        }
+        for (List<Path> level : levels.values())
+        {
+            if (level.size() < PARALLEL_THRESHOLD)
+            {
+                for (Path dir : level)
+                {
+                    deleteDirectory(dir);
+                }
+            }
+            else
+            {
+                List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+                for (final Path dir : level)
+                {
+                    tasks.add(Executors.callable(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            deleteDirectory(dir);
+                        }
+                    }));
+                }
+                invokeAll(tasks);
+            }
+        }
+    }
+
+    private void deleteFile(Path file)
+    {
+        try
+        {
+            Files.delete(file);
+            logger.fine("Cleanup: Deleted file " + file);
+        }
+        catch (IOException exception)
+        {
+            logger.warning("Cleanup: Unable to delete file " + file);
+        }
+    }
+
+    private void deleteDirectory(Path dir)
+    {
+        try
+        {
+            Files.delete(dir);
+            logger.fine("Cleanup: Deleted directory " + dir);
+        }
+        catch (DirectoryNotEmptyException exception)
+        {
+            // Don't delete non-empty directories, because they probably must have been implicitly created as
+            // parents of regular installation files
+            logger.fine("Cleanup: Skipped non-empty directory " + dir);
+        }
+        catch (IOException exception)
+        {
+            logger.warning("Cleanup: Unable to delete directory " + dir);
+        }
+    }
+
+    private void invokeAll(List<Callable<Object>> tasks)
+    {
+        int threads = Math.min(tasks.size(), Math.max(2, Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new CleanerThreadFactory());
+        try
+        {
+            for (Future<Object> future : executor.invokeAll(tasks))
+            {
+                future.get();
+            }
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new IzPackException("Interrupted during cleanup", exception);
+        }
+        catch (ExecutionException exception)
+        {
+            throw new IzPackException("Cleanup failed", exception.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean isSelected(String name)
+    {
+        return matches(includes, name) && !matches(excludes, name);
+    }
+
+    /**
+     * Determines if a directory may contain paths matching an include pattern.
+     */
+    private boolean couldHoldIncluded(String name)
+    {
+        for (String include : includes)
+        {
+            if (SelectorUtils.matchPatternStart(include, name, true))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines if all the contents of a directory are excluded.
+     */
+    private boolean contentsExcluded(String name)
+    {
+        name = name + File.separator;
+        for (String exclude : excludes)
+        {
+            if (exclude.endsWith("**")
+                    && SelectorUtils.matchPath(exclude.substring(0, exclude.length() - 2), name, true))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(List<String> patterns, String name)
+    {
+        for (String pattern : patterns)
+        {
+            if (SelectorUtils.matchPath(pattern, name, true))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Normalises a pattern the same way as the {@link DirectoryScanner}.
+     */
+    private static String normalizePattern(String pattern)
+    {
+        String result = pattern.replace('/', File.separatorChar).replace('\\', File.separatorChar);
+        if (result.endsWith(File.separator))
+        {
+            result += "**";
+        }
+        return result;
+    }
+
+    /**
+     * Creates daemon threads for parallel deletion.
+     */
+    private static class CleanerThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "IzPack - Cleanup-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
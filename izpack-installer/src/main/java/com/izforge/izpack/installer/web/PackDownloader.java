@@ -0,0 +1,828 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.web;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.Authenticator;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.util.FileUtil;
+
+
+/**
+ * Downloads pack jars for web installers.
+ * <p/>
+ * Downloads run concurrently on a bounded pool of threads, and are stored in a cache directory, named after the
+ * last segment of their URI. While in progress, a download is written to a {@code .part} file; if it is interrupted,
+ * it is resumed using an HTTP range request. A download may be {@link #openStream read} while it is in progress, so
+ * that its content can be processed as it arrives.
+ * <p/>
+ * Downloads whose size or checksum is known are verified once complete. Only verified downloads are reused from the
+ * cache or resumed, as without a checksum there is no way to tell a stale file from a current one.
+ * <p/>
+ * A server that doesn't respond, or stops sending data mid-transfer, for longer than the stall timeout fails the
+ * transfer, which is then resumed like any other interrupted transfer.
+ */
+public class PackDownloader implements Closeable
+{
+
+    /**
+     * The default number of concurrent downloads.
+     */
+    public static final int DEFAULT_CONCURRENCY = 3;
+
+    /**
+     * The number of times an interrupted transfer is resumed before giving up.
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * The suffix of incomplete downloads.
+     */
+    private static final String PART_SUFFIX = ".part";
+
+    /**
+     * The default time to wait for a response, or for more data during a transfer, before giving up.
+     */
+    private static final Duration STALL_TIMEOUT = Duration.ofSeconds(60);
+
+    /**
+     * The cache directory.
+     */
+    private final Path directory;
+
+    /**
+     * The HTTP client.
+     */
+    private final HttpClient client;
+
+    /**
+     * The download threads.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Aborts transfers that have stalled.
+     */
+    private final ScheduledExecutorService watchdog;
+
+    /**
+     * The time to wait for a response, or for more data during a transfer.
+     */
+    private final Duration stallTimeout;
+
+    /**
+     * The downloads, keyed on URI.
+     */
+    private final Map<URI, Download> downloads = new ConcurrentHashMap<URI, Download>();
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(PackDownloader.class.getName());
+
+
+    /**
+     * Constructs a {@code PackDownloader}.
+     *
+     * @param directory   the cache directory
+     * @param concurrency the maximum number of concurrent downloads
+     */
+    public PackDownloader(File directory, int concurrency)
+    {
+        this(directory, concurrency, STALL_TIMEOUT);
+    }
+
+    /**
+     * Constructs a {@code PackDownloader}.
+     *
+     * @param directory    the cache directory
+     * @param concurrency  the maximum number of concurrent downloads
+     * @param stallTimeout the time to wait for a response, or for more data during a transfer
+     */
+    PackDownloader(File directory, int concurrency, Duration stallTimeout)
+    {
+        this.directory = directory.toPath();
+        this.stallTimeout = stallTimeout;
+        final AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(concurrency, runnable ->
+        {
+            Thread thread = new Thread(runnable, "IzPack-PackDownloader-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "IzPack-PackDownloader-Watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(30))
+                .proxy(ProxySelector.getDefault());
+        Authenticator authenticator = Authenticator.getDefault();
+        if (authenticator != null)
+        {
+            builder.authenticator(authenticator);
+        }
+        client = builder.build();
+    }
+
+    /**
+     * Starts downloading a file, if it isn't already being downloaded.
+     *
+     * @param uri      the file URI
+     * @param size     the expected size of the file, or {@code <= 0} if unknown
+     * @param checksum the expected hex encoded SHA-256 digest of the file. May be {@code null}
+     * @return the download
+     */
+    public Future<File> download(URI uri, long size, String checksum)
+    {
+        return start(uri, size, checksum).task;
+    }
+
+    /**
+     * Downloads a file, waiting for it to complete.
+     *
+     * @param uri      the file URI
+     * @param size     the expected size of the file, or {@code <= 0} if unknown
+     * @param checksum the expected hex encoded SHA-256 digest of the file. May be {@code null}
+     * @return the downloaded file
+     * @throws InterruptedIOException if the download is interrupted
+     * @throws IOException            if the download fails
+     */
+    public File get(URI uri, long size, String checksum) throws IOException
+    {
+        return start(uri, size, checksum).get();
+    }
+
+    /**
+     * Returns a stream to a file, which may be read while the file is still being downloaded.
+     * <p/>
+     * Reads block until the requested bytes have arrived. If the download fails, or has to be restarted from the
+     * beginning, reading fails with an {@code IOException}. As the content is only verified once the download is
+     * complete, a corrupt download is reported when the end of the stream is reached.
+     *
+     * @param uri      the file URI
+     * @param size     the expected size of the file, or {@code <= 0} if unknown
+     * @param checksum the expected hex encoded SHA-256 digest of the file. May be {@code null}
+     * @return a stream to the file
+     * @throws FileNotFoundException  if the file doesn't exist
+     * @throws InterruptedIOException if the download is interrupted
+     * @throws IOException            if the download cannot be started
+     */
+    public InputStream openStream(URI uri, long size, String checksum) throws IOException
+    {
+        Download download = start(uri, size, checksum);
+        return new DownloadInputStream(download, download.awaitStart());
+    }
+
+    /**
+     * Stops any downloads in progress.
+     */
+    @Override
+    public void close()
+    {
+        executor.shutdownNow();
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * Starts downloading a file, if it isn't already being downloaded.
+     *
+     * @param uri      the file URI
+     * @param size     the expected size of the file, or {@code <= 0} if unknown
+     * @param checksum the expected checksum of the file. May be {@code null}
+     * @return the download
+     */
+    private Download start(URI uri, long size, String checksum)
+    {
+        return downloads.computeIfAbsent(uri, key ->
+        {
+            Download download = new Download(uri, size, checksum);
+            executor.execute(download.task);
+            return download;
+        });
+    }
+
+    /**
+     * Downloads a file to the cache directory.
+     *
+     * @param download the download
+     * @return the downloaded file
+     * @throws IOException if the download fails
+     */
+    private File fetch(Download download) throws IOException
+    {
+        Files.createDirectories(directory);
+        URI uri = download.uri;
+        Path target = download.target;
+        Path part = download.part;
+        boolean verifiable = download.checksum != null;
+
+        if (verifiable && Files.exists(target))
+        {
+            if (isValid(target, download.size, download.checksum))
+            {
+                logger.info("Using cached pack " + target);
+                return target.toFile();
+            }
+            Files.delete(target);
+        }
+        if (!verifiable)
+        {
+            Files.deleteIfExists(part);
+        }
+
+        for (int attempt = 1; ; ++attempt)
+        {
+            try
+            {
+                transfer(download);
+                break;
+            }
+            catch (InterruptedIOException exception)
+            {
+                throw exception;
+            }
+            catch (IOException exception)
+            {
+                if (!verifiable || attempt == MAX_ATTEMPTS || exception instanceof FileNotFoundException)
+                {
+                    throw exception;
+                }
+                logger.info("Resuming download of " + uri + " after: " + exception.getMessage());
+            }
+        }
+
+        if (!isValid(part, download.size, download.checksum))
+        {
+            Files.deleteIfExists(part);
+            throw new IOException("Download of " + uri + " is corrupt: expected " + download.size
+                                          + " bytes with SHA-256 " + download.checksum);
+        }
+        try
+        {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException exception)
+        {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return target.toFile();
+    }
+
+    /**
+     * Transfers a file, resuming from the end of any partial download.
+     *
+     * @param download the download
+     * @throws IOException if the transfer fails
+     */
+    private void transfer(Download download) throws IOException
+    {
+        URI uri = download.uri;
+        Path part = download.part;
+        long offset = Files.exists(part) ? Files.size(part) : 0;
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).GET().timeout(stallTimeout);
+        if (offset > 0)
+        {
+            request.header("Range", "bytes=" + offset + "-");
+        }
+
+        HttpResponse<InputStream> response;
+        try
+        {
+            response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw (InterruptedIOException) new InterruptedIOException("Download of " + uri + " interrupted")
+                    .initCause(exception);
+        }
+
+        try (InputStream in = response.body())
+        {
+            int status = response.statusCode();
+            boolean append;
+            if (status == 206 && offset > 0)
+            {
+                append = true;
+            }
+            else if (status == 416 && offset > 0)
+            {
+                // the partial download is already complete
+                download.started(offset, false);
+                return;
+            }
+            else if (status == 200)
+            {
+                append = false;
+            }
+            else if (status == 404)
+            {
+                throw new FileNotFoundException(uri.toString());
+            }
+            else
+            {
+                throw new IOException("Failed to download " + uri + ": HTTP status " + status);
+            }
+
+            if (append)
+            {
+                logger.info("Resuming download of " + uri + " at byte " + offset);
+            }
+            StallWatch watch = new StallWatch(in);
+            long period = Math.max(1, stallTimeout.toMillis() / 4);
+            ScheduledFuture<?> check = watchdog.scheduleWithFixedDelay(watch, period, period, TimeUnit.MILLISECONDS);
+            try (OutputStream out = append
+                    ? Files.newOutputStream(part, StandardOpenOption.APPEND)
+                    : Files.newOutputStream(part))
+            {
+                // a full response replaces any partial content that readers may have seen
+                download.started(append ? offset : 0, !append && offset > 0);
+                byte[] buffer = new byte[65536];
+                int read;
+                while ((read = in.read(buffer)) != -1)
+                {
+                    if (Thread.currentThread().isInterrupted())
+                    {
+                        throw new InterruptedIOException("Download of " + uri + " interrupted");
+                    }
+                    out.write(buffer, 0, read);
+                    download.written(read);
+                    watch.progress();
+                }
+            }
+            catch (IOException exception)
+            {
+                if (watch.finish())
+                {
+                    throw new IOException("Download of " + uri + " stalled", exception);
+                }
+                throw exception;
+            }
+            finally
+            {
+                check.cancel(false);
+            }
+            if (watch.finish())
+            {
+                // closing the stream may have ended it early
+                throw new IOException("Download of " + uri + " stalled");
+            }
+        }
+    }
+
+    /**
+     * Determines if a file has the expected size and checksum.
+     *
+     * @param file     the file
+     * @param size     the expected size, or {@code <= 0} if unknown
+     * @param checksum the expected checksum. May be {@code null}
+     * @return {@code true} if the file matches
+     * @throws IOException if the file cannot be read
+     */
+    private boolean isValid(Path file, long size, String checksum) throws IOException
+    {
+        if (size > 0 && Files.size(file) != size)
+        {
+            return false;
+        }
+        return checksum == null || checksum.equalsIgnoreCase(FileUtil.sha256(file));
+    }
+
+    /**
+     * A download in progress or completed.
+     */
+    private final class Download
+    {
+        /**
+         * The file URI.
+         */
+        private final URI uri;
+
+        /**
+         * The expected size of the file, or {@code <= 0} if unknown.
+         */
+        private final long size;
+
+        /**
+         * The expected checksum of the file. May be {@code null}.
+         */
+        private final String checksum;
+
+        /**
+         * The downloaded file.
+         */
+        private final Path target;
+
+        /**
+         * The partially downloaded file.
+         */
+        private final Path part;
+
+        /**
+         * The download task.
+         */
+        private final FutureTask<File> task;
+
+        /**
+         * The number of bytes of the partial file that may be read, or {@code -1} if the transfer hasn't started.
+         */
+        private long available = -1;
+
+        /**
+         * Incremented each time the transfer restarts from the beginning.
+         */
+        private int generation;
+
+        /**
+         * Constructs a {@code Download}.
+         *
+         * @param uri      the file URI
+         * @param size     the expected size of the file, or {@code <= 0} if unknown
+         * @param checksum the expected checksum of the file. May be {@code null}
+         */
+        Download(URI uri, long size, String checksum)
+        {
+            this.uri = uri;
+            this.size = size;
+            this.checksum = checksum;
+            String path = uri.getPath();
+            String name = path.substring(path.lastIndexOf('/') + 1);
+            target = directory.resolve(name);
+            part = directory.resolve(name + PART_SUFFIX);
+            task = new FutureTask<File>(() -> fetch(this))
+            {
+                @Override
+                protected void done()
+                {
+                    synchronized (Download.this)
+                    {
+                        Download.this.notifyAll();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Invoked when a transfer starts writing to the partial file.
+         *
+         * @param offset    the number of bytes already in the partial file
+         * @param restarted if {@code true}, previously available bytes have been discarded
+         */
+        synchronized void started(long offset, boolean restarted)
+        {
+            if (restarted)
+            {
+                ++generation;
+            }
+            available = offset;
+            notifyAll();
+        }
+
+        /**
+         * Invoked when bytes have been written to the partial file.
+         *
+         * @param count the number of bytes written
+         */
+        synchronized void written(long count)
+        {
+            available += count;
+            notifyAll();
+        }
+
+        /**
+         * Waits for the download to complete.
+         *
+         * @return the downloaded file
+         * @throws IOException if the download fails or is interrupted
+         */
+        File get() throws IOException
+        {
+            try
+            {
+                return task.get();
+            }
+            catch (InterruptedException exception)
+            {
+                Thread.currentThread().interrupt();
+                throw (InterruptedIOException) new InterruptedIOException("Download of " + uri + " interrupted")
+                        .initCause(exception);
+            }
+            catch (ExecutionException exception)
+            {
+                // allow the download to be retried
+                downloads.remove(uri, this);
+                Throwable cause = exception.getCause();
+                if (cause instanceof IOException)
+                {
+                    throw (IOException) cause;
+                }
+                throw new IOException("Failed to download " + uri, cause);
+            }
+        }
+
+        /**
+         * Waits for the transfer to start writing to the partial file, or for the download to complete.
+         *
+         * @return the current generation
+         * @throws IOException if the download fails or is interrupted
+         */
+        int awaitStart() throws IOException
+        {
+            synchronized (this)
+            {
+                while (available < 0 && !task.isDone())
+                {
+                    waitForProgress();
+                }
+            }
+            if (task.isDone())
+            {
+                get();
+            }
+            synchronized (this)
+            {
+                return generation;
+            }
+        }
+
+        /**
+         * Waits until bytes beyond a position are available.
+         *
+         * @param position   the read position
+         * @param generation the generation being read
+         * @return the number of bytes of the partial file that may be read, or {@code -1} if the download is
+         *         complete and the downloaded file may be read in full
+         * @throws IOException if the download fails, restarts or is interrupted
+         */
+        long await(long position, int generation) throws IOException
+        {
+            synchronized (this)
+            {
+                while (available <= position && this.generation == generation && !task.isDone())
+                {
+                    waitForProgress();
+                }
+                if (this.generation != generation)
+                {
+                    throw new IOException("Download of " + uri + " restarted while it was being read");
+                }
+                if (!task.isDone())
+                {
+                    return available;
+                }
+            }
+            get();
+            return -1;
+        }
+
+        /**
+         * Waits for the download state to change.
+         *
+         * @throws InterruptedIOException if the thread is interrupted
+         */
+        private void waitForProgress() throws InterruptedIOException
+        {
+            try
+            {
+                wait();
+            }
+            catch (InterruptedException exception)
+            {
+                Thread.currentThread().interrupt();
+                throw (InterruptedIOException) new InterruptedIOException("Download of " + uri + " interrupted")
+                        .initCause(exception);
+            }
+        }
+    }
+
+    /**
+     * Closes a response body that hasn't delivered any data within the stall timeout, so that a read blocked on it
+     * returns.
+     */
+    private final class StallWatch implements Runnable
+    {
+        /**
+         * The response body.
+         */
+        private final InputStream in;
+
+        /**
+         * The time data was last received, in nanoseconds.
+         */
+        private volatile long lastProgress = System.nanoTime();
+
+        /**
+         * Determines if the transfer has stalled.
+         */
+        private boolean stalled;
+
+        /**
+         * Determines if the transfer has finished.
+         */
+        private boolean finished;
+
+        /**
+         * Constructs a {@code StallWatch}.
+         *
+         * @param in the response body
+         */
+        StallWatch(InputStream in)
+        {
+            this.in = in;
+        }
+
+        /**
+         * Invoked when data is received.
+         */
+        void progress()
+        {
+            lastProgress = System.nanoTime();
+        }
+
+        /**
+         * Invoked when the transfer finishes, successfully or not.
+         *
+         * @return {@code true} if the transfer was aborted because it stalled
+         */
+        synchronized boolean finish()
+        {
+            finished = true;
+            return stalled;
+        }
+
+        /**
+         * Closes the response body if no data has been received within the stall timeout.
+         */
+        @Override
+        public synchronized void run()
+        {
+            if (finished || stalled || System.nanoTime() - lastProgress < stallTimeout.toNanos())
+            {
+                return;
+            }
+            stalled = true;
+            try
+            {
+                in.close();
+            }
+            catch (IOException exception)
+            {
+                logger.fine("Failed to close stalled download: " + exception);
+            }
+        }
+    }
+
+    /**
+     * Reads a download while it is in progress.
+     */
+    private static class DownloadInputStream extends InputStream
+    {
+        /**
+         * The download.
+         */
+        private final Download download;
+
+        /**
+         * The generation of the download being read.
+         */
+        private final int generation;
+
+        /**
+         * The file channel, opened on the first read.
+         */
+        private FileChannel channel;
+
+        /**
+         * The read position.
+         */
+        private long position;
+
+        /**
+         * Constructs a {@code DownloadInputStream}.
+         *
+         * @param download   the download
+         * @param generation the generation of the download to read
+         */
+        DownloadInputStream(Download download, int generation)
+        {
+            this.download = download;
+            this.generation = generation;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            byte[] buffer = new byte[1];
+            int read = read(buffer, 0, 1);
+            return (read == -1) ? -1 : buffer[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException
+        {
+            if (length == 0)
+            {
+                return 0;
+            }
+            long available = download.await(position, generation);
+            if (channel == null)
+            {
+                channel = open(available == -1);
+            }
+            int max = (available == -1) ? length : (int) Math.min(length, available - position);
+            int read = channel.read(ByteBuffer.wrap(buffer, offset, max), position);
+            if (read > 0)
+            {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (channel != null)
+            {
+                channel.close();
+            }
+        }
+
+        /**
+         * Opens the partial file, or the downloaded file if the download is complete.
+         * <p/>
+         * Once open, the partial file remains readable after it is moved into place.
+         *
+         * @param complete if {@code true}, the download is complete
+         * @return the file channel
+         * @throws IOException if the file cannot be opened
+         */
+        private FileChannel open(boolean complete) throws IOException
+        {
+            if (!complete)
+            {
+                try
+                {
+                    return FileChannel.open(download.part, StandardOpenOption.READ);
+                }
+                catch (NoSuchFileException exception)
+                {
+                    // the download completed in the meantime
+                }
+            }
+            return FileChannel.open(download.get().toPath(), StandardOpenOption.READ);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Tests the {@link RawJarWriter}.
+ */
+public class RawJarWriterTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that entries can be copied by path, renamed, and combined from several jars, and that the result can
+     * be read both via the central directory and as a stream.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testCopy() throws IOException
+    {
+        File installer = createJar("installer.jar",
+                                   "uninstaller-META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\n\r\n",
+                                   "com/izforge/izpack/uninstaller/Destroyer.class", "destroyer",
+                                   "com/izforge/izpack/installer/Installer.class", "installer",
+                                   "resources/langpacks/eng.xml", "<langpack/>");
+        File data = createJar("data.jar", "install.log", "log", "langpack.xml", "duplicate");
+
+        File result = temporaryFolder.newFile("uninstaller.jar");
+        try (RawJarWriter writer = new RawJarWriter(result);
+             RawJarWriter.Archive skeleton = RawJarWriter.open(installer);
+             RawJarWriter.Archive archive = RawJarWriter.open(data))
+        {
+            assertTrue(skeleton.contains("com/izforge/izpack/uninstaller/"));
+            assertFalse(skeleton.contains("com/izforge/izpack/event/"));
+            assertEquals(1, writer.copy(skeleton, "uninstaller-META-INF/", "META-INF/"));
+            assertEquals(1, writer.copy(skeleton, "com/izforge/izpack/uninstaller/", null));
+            assertEquals(1, writer.copy(skeleton, "resources/langpacks/eng.xml", "langpack.xml"));
+            writer.copyAll(archive);
+        }
+
+        try (JarFile jar = new JarFile(result))
+        {
+            assertEquals("1.0", jar.getManifest().getMainAttributes().getValue("Manifest-Version"));
+            assertEquals("destroyer", read(jar, "com/izforge/izpack/uninstaller/Destroyer.class"));
+            assertEquals("<langpack/>", read(jar, "langpack.xml"));
+            assertEquals("log", read(jar, "install.log"));
+            assertNull(jar.getEntry("com/izforge/izpack/installer/Installer.class"));
+        }
+
+        List<String> names = new ArrayList<String>();
+        try (JarInputStream stream = new JarInputStream(new FileInputStream(result)))
+        {
+            assertEquals("1.0", stream.getManifest().getMainAttributes().getValue("Manifest-Version"));
+            JarEntry entry;
+            while ((entry = stream.getNextJarEntry()) != null)
+            {
+                names.add(entry.getName());
+                IOUtils.toByteArray(stream);
+            }
+        }
+        assertEquals(Arrays.asList("com/izforge/izpack/uninstaller/Destroyer.class", "langpack.xml", "install.log"),
+                     names);
+    }
+
+    private File createJar(String name, String... entries) throws IOException
+    {
+        File file = temporaryFolder.newFile(name);
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file)))
+        {
+            for (int i = 0; i < entries.length; i += 2)
+            {
+                out.putNextEntry(new ZipEntry(entries[i]));
+                out.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    private String read(JarFile jar, String name) throws IOException
+    {
+        try (InputStream in = jar.getInputStream(jar.getEntry(name)))
+        {
+            return new String(IOUtils.toByteArray(in), StandardCharsets.UTF_8);
+        }
+    }
+}
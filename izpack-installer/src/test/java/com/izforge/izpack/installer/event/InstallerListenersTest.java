@@ -0,0 +1,215 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.izforge.izpack.api.data.InstallData;
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.event.AbstractInstallerListener;
+import com.izforge.izpack.api.event.InstalledFile;
+import com.izforge.izpack.api.event.InstallerListener.FileEvent;
+import com.izforge.izpack.api.handler.Prompt;
+
+
+/**
+ * Tests the {@link InstallerListeners}.
+ */
+public class InstallerListenersTest
+{
+
+    /**
+     * Verifies that listeners only receive the notifications they requested, for the files they are interested in.
+     */
+    @Test
+    public void testInterest()
+    {
+        RecordingListener all = new RecordingListener(null, null);
+        RecordingListener txt = new RecordingListener(EnumSet.of(FileEvent.AFTER_FILE), ".txt");
+        InstallerListeners listeners = createListeners(all, txt);
+
+        Pack pack = createPack("core");
+        PackFile dir = createPackFile("lib");
+        PackFile jar = createPackFile("lib/a.jar");
+        PackFile text = createPackFile("readme.txt");
+
+        assertTrue(listeners.isDirListener(dir, pack));
+        listeners.beforeDir(new File("lib"), dir, pack);
+        listeners.afterDir(new File("lib"), dir, pack);
+        listeners.beforeFile(new File("lib/a.jar"), jar, pack);
+        listeners.afterFile(new File("lib/a.jar"), jar, pack);
+        listeners.beforeFile(new File("readme.txt"), text, pack);
+        listeners.afterFile(new File("readme.txt"), text, pack);
+
+        assertEquals(Arrays.asList("beforeDir lib", "afterDir lib", "beforeFile lib/a.jar", "afterFile lib/a.jar",
+                                   "beforeFile readme.txt", "afterFile readme.txt"), all.events);
+        assertEquals(Arrays.asList("afterFile readme.txt"), txt.events);
+    }
+
+    /**
+     * Verifies that directories may be created in a single step if no listener wants directory notifications.
+     */
+    @Test
+    public void testNoDirListener()
+    {
+        RecordingListener batch = new RecordingListener(EnumSet.of(FileEvent.AFTER_FILES), null);
+        InstallerListeners listeners = createListeners(batch);
+        assertTrue(listeners.isFileListener());
+        assertFalse(listeners.isDirListener(createPackFile("lib"), createPack("core")));
+    }
+
+    /**
+     * Verifies that installed files are batched per pack, and passed on before the pack completes.
+     */
+    @Test
+    public void testBatch()
+    {
+        RecordingListener batch = new RecordingListener(EnumSet.of(FileEvent.AFTER_FILES), ".jar");
+        InstallerListeners listeners = createListeners(batch);
+
+        Pack core = createPack("core");
+        Pack docs = createPack("docs");
+        int count = InstallerListeners.BATCH_SIZE + 1;
+        for (int i = 0; i < count; ++i)
+        {
+            String name = "lib/" + i + ".jar";
+            listeners.afterFile(new File(name), createPackFile(name), core);
+        }
+        listeners.afterFile(new File("readme.txt"), createPackFile("readme.txt"), core);
+        listeners.afterPack(core);
+        listeners.afterFile(new File("docs/a.jar"), createPackFile("docs/a.jar"), docs);
+        listeners.afterFile(new File("docs/b.txt"), createPackFile("docs/b.txt"), docs);
+        listeners.afterPack(docs);
+
+        assertEquals(Arrays.asList("afterFiles core " + InstallerListeners.BATCH_SIZE, "afterFiles core 1",
+                                   "afterFiles docs 1"), batch.events);
+    }
+
+    private InstallerListeners createListeners(RecordingListener... list)
+    {
+        InstallerListeners listeners = new InstallerListeners(mock(InstallData.class), mock(Prompt.class));
+        for (RecordingListener listener : list)
+        {
+            listeners.add(listener);
+        }
+        listeners.initialise();
+        return listeners;
+    }
+
+    private Pack createPack(String name)
+    {
+        Pack pack = mock(Pack.class);
+        when(pack.getName()).thenReturn(name);
+        return pack;
+    }
+
+    private PackFile createPackFile(String target)
+    {
+        PackFile packFile = mock(PackFile.class);
+        when(packFile.getTargetPath()).thenReturn(target);
+        return packFile;
+    }
+
+    /**
+     * Records notifications.
+     */
+    private static class RecordingListener extends AbstractInstallerListener
+    {
+        private final Set<FileEvent> fileEvents;
+
+        private final String suffix;
+
+        private final List<String> events = new ArrayList<String>();
+
+        /**
+         * Constructs a {@code RecordingListener}.
+         *
+         * @param fileEvents the events to request, or {@code null} to use the defaults
+         * @param suffix     the target path suffix of interest, or {@code null} for all files
+         */
+        RecordingListener(Set<FileEvent> fileEvents, String suffix)
+        {
+            this.fileEvents = fileEvents;
+            this.suffix = suffix;
+        }
+
+        @Override
+        public boolean isFileListener()
+        {
+            return true;
+        }
+
+        @Override
+        public Set<FileEvent> getFileEvents()
+        {
+            return (fileEvents != null) ? fileEvents : super.getFileEvents();
+        }
+
+        @Override
+        public boolean isFileListener(PackFile packFile, Pack pack)
+        {
+            return suffix == null || packFile.getTargetPath().endsWith(suffix);
+        }
+
+        @Override
+        public void beforeDir(File dir, PackFile packFile, Pack pack)
+        {
+            events.add("beforeDir " + packFile.getTargetPath());
+        }
+
+        @Override
+        public void afterDir(File dir, PackFile packFile, Pack pack)
+        {
+            events.add("afterDir " + packFile.getTargetPath());
+        }
+
+        @Override
+        public void beforeFile(File file, PackFile packFile, Pack pack)
+        {
+            events.add("beforeFile " + packFile.getTargetPath());
+        }
+
+        @Override
+        public void afterFile(File file, PackFile packFile, Pack pack)
+        {
+            events.add("afterFile " + packFile.getTargetPath());
+        }
+
+        @Override
+        public void afterFiles(List<InstalledFile> files, Pack pack)
+        {
+            events.add("afterFiles " + pack.getName() + " " + files.size());
+        }
+    }
+}
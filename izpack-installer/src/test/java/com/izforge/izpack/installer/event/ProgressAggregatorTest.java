@@ -0,0 +1,162 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.izforge.izpack.api.event.ProgressListener;
+
+
+/**
+ * Tests the {@link ProgressAggregator}.
+ */
+public class ProgressAggregatorTest
+{
+
+    /**
+     * Verifies that sub-step notifications within the interval are coalesced, and that boundaries and the final
+     * state are delivered exactly.
+     */
+    @Test
+    public void testCoalesce()
+    {
+        RecordingListener recorder = new RecordingListener();
+        ProgressAggregator aggregator = new ProgressAggregator(recorder, 60000);
+
+        aggregator.startAction("Unpacking", 2);
+        aggregator.nextStep("pack1", 1, 1000);
+        for (int i = 1; i <= 1000; ++i)
+        {
+            aggregator.progress(i, "file" + i);
+        }
+        aggregator.nextStep("pack2", 2, 500);
+        for (int i = 1; i <= 500; ++i)
+        {
+            aggregator.progress(i, "other" + i);
+        }
+        aggregator.stopAction();
+
+        List<String> expected = Arrays.asList(
+                "startAction Unpacking 2",
+                "nextStep pack1 1 1000",
+                "progress 1 file1",
+                "progress 1000 file1000",
+                "nextStep pack2 2 500",
+                "progress 1 other1",
+                "progress 500 other500",
+                "stopAction");
+        assertEquals(expected, recorder.getEvents());
+    }
+
+    /**
+     * Verifies that a pending notification is delivered once the interval elapses, even if no further
+     * notifications arrive.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testDeliverPendingAfterInterval() throws Exception
+    {
+        RecordingListener recorder = new RecordingListener();
+        ProgressAggregator aggregator = new ProgressAggregator(recorder, 20);
+
+        aggregator.nextStep("pack", 1, 3);
+        aggregator.progress(1, "a");
+        aggregator.progress(2, "b");
+        aggregator.progress(3, "c");
+
+        long timeout = System.currentTimeMillis() + 5000;
+        while (!recorder.getEvents().contains("progress 3 c") && System.currentTimeMillis() < timeout)
+        {
+            Thread.sleep(10);
+        }
+        List<String> events = recorder.getEvents();
+        assertTrue(events.size() <= 4);
+        assertEquals("progress 3 c", events.get(events.size() - 1));
+
+        // nothing further is delivered for the step
+        aggregator.stopAction();
+        events = recorder.getEvents();
+        assertEquals("progress 3 c", events.get(events.size() - 2));
+        assertEquals("stopAction", events.get(events.size() - 1));
+    }
+
+    /**
+     * Records notifications.
+     */
+    private static class RecordingListener implements ProgressListener
+    {
+        private final List<String> events = new ArrayList<String>();
+
+        public synchronized List<String> getEvents()
+        {
+            return new ArrayList<String>(events);
+        }
+
+        @Override
+        public synchronized void startAction(String name, int steps)
+        {
+            events.add("startAction " + name + " " + steps);
+        }
+
+        @Override
+        public synchronized void stopAction()
+        {
+            events.add("stopAction");
+        }
+
+        @Override
+        public synchronized void nextStep(String stepName, int step, int subSteps)
+        {
+            events.add("nextStep " + stepName + " " + step + " " + subSteps);
+        }
+
+        @Override
+        public synchronized void setSubStepNo(int subSteps)
+        {
+            events.add("setSubStepNo " + subSteps);
+        }
+
+        @Override
+        public synchronized void progress(String message)
+        {
+            events.add("progress " + message);
+        }
+
+        @Override
+        public synchronized void progress(int subStep, String message)
+        {
+            events.add("progress " + subStep + " " + message);
+        }
+
+        @Override
+        public synchronized void restartAction(String name, String overallMessage, String tip, int steps)
+        {
+            events.add("restartAction " + name);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.timing;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+
+/**
+ * Tests the {@link InstallTimings}.
+ */
+public class InstallTimingsTest
+{
+
+    /**
+     * Disables the report.
+     */
+    @After
+    public void tearDown()
+    {
+        InstallTimings.reset();
+    }
+
+    /**
+     * Verifies that no report is collected unless enabled.
+     */
+    @Test
+    public void testDisabled()
+    {
+        assertFalse(InstallTimings.isEnabled());
+        try (InstallTimings.Timer timer = InstallTimings.phase("unpack", "core"))
+        {
+            timer.addBytes(10);
+        }
+        assertNull(InstallTimings.toJSON());
+    }
+
+    /**
+     * Verifies that phases are reported individually, and listener invocations are aggregated.
+     */
+    @Test
+    public void testReport()
+    {
+        InstallTimings.start(null);
+        assertTrue(InstallTimings.isEnabled());
+
+        try (InstallTimings.Timer timer = InstallTimings.phase("unpack", "core \"base\""))
+        {
+            timer.addBytes(1024);
+        }
+        try (InstallTimings.Timer timer = InstallTimings.phase("writeInstallationInformation"))
+        {
+            timer.addBytes(0);
+        }
+        InstallTimings.record("sync", "core", 2500000);
+        Object listener = new Object();
+        for (int i = 0; i < 3; ++i)
+        {
+            try (InstallTimings.Timer timer = InstallTimings.listener(listener, "afterFile", "core"))
+            {
+                timer.addBytes(0);
+            }
+        }
+
+        String json = InstallTimings.toJSON();
+        assertTrue(json, json.contains("{\"phase\": \"unpack\", \"pack\": \"core \\\"base\\\"\", \"startMillis\": "));
+        assertTrue(json, json.contains(", \"bytes\": 1024}"));
+        assertTrue(json, json.contains("{\"phase\": \"writeInstallationInformation\", \"startMillis\": "));
+        assertTrue(json, json.contains("{\"phase\": \"sync\", \"pack\": \"core\", \"startMillis\": "));
+        assertTrue(json, json.contains(", \"durationMillis\": 2.500}"));
+        assertTrue(json, json.contains("{\"listener\": \"java.lang.Object\", \"method\": \"afterFile\", "
+                + "\"pack\": \"core\", \"calls\": 3, \"durationMillis\": "));
+    }
+}
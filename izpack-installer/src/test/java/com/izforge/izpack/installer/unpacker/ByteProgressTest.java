@@ -0,0 +1,89 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+
+import com.izforge.izpack.api.event.ProgressListener;
+
+
+/**
+ * Tests the {@link ByteProgress}.
+ */
+public class ByteProgressTest
+{
+
+    /**
+     * Verifies that partial copies are counted, that completed files are counted by their length, and that the
+     * final state is reported exactly.
+     */
+    @Test
+    public void testProgress()
+    {
+        ProgressListener listener = mock(ProgressListener.class);
+        ByteProgress progress = new ByteProgress(listener, 1000);
+
+        progress.copied(100);
+        progress.copied(150);
+        assertEquals(250, progress.getBytes());
+
+        // the file length is authoritative once the file completes
+        progress.fileCompleted(300);
+        assertEquals(300, progress.getBytes());
+
+        // skipped files count too
+        progress.fileCompleted(200);
+        assertEquals(500, progress.getBytes());
+
+        // the count never exceeds the total
+        progress.copied(5000);
+        assertEquals(1000, progress.getBytes());
+
+        progress.finish();
+        verify(listener).progressBytes(eq(1000L), eq(1000L), anyLong(), eq(0L));
+    }
+
+    /**
+     * Verifies that reports are rate limited.
+     */
+    @Test
+    public void testRateLimited()
+    {
+        ProgressListener listener = mock(ProgressListener.class);
+        ByteProgress progress = new ByteProgress(listener, 100000);
+        long start = System.nanoTime();
+        for (int i = 0; i < 10000; ++i)
+        {
+            progress.copied(10);
+        }
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        long expected = elapsed / ByteProgress.REPORT_INTERVAL + 1;
+        assertTrue(expected < 10000);
+        verify(listener, atMost((int) expected)).progressBytes(anyLong(), anyLong(), anyLong(), anyLong());
+    }
+}
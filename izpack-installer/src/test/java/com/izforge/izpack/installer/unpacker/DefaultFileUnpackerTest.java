@@ -22,10 +22,23 @@
 package com.izforge.izpack.installer.unpacker;
 
 
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.ParsableFile;
+import com.izforge.izpack.api.data.Variables;
+import com.izforge.izpack.api.data.binding.OsModel;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.core.data.DefaultVariables;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
 import com.izforge.izpack.util.os.FileQueue;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.junit.Test;
 
 import java.io.*;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
 
 
 /**
@@ -36,6 +49,41 @@ import java.io.*;
 public class DefaultFileUnpackerTest extends AbstractFileUnpackerTest
 {
 
+    /**
+     * Verifies that variables are substituted while a parsable file is unpacked, and that the pack stream is left
+     * positioned after the file.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testUnpackParsable() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File source = new File(baseDir, "source.txt");
+        FileUtils.writeStringToFile(source, "name=${name}\nplain=$\n", "UTF-8");
+        File target = getTargetFile(baseDir);
+
+        Variables variables = new DefaultVariables();
+        variables.set("name", "plut\u00f2");
+        ParsableFile parsable = new ParsableFile(target.getPath(), SubstitutionType.TYPE_PLAIN, "UTF-8",
+                                                 new ArrayList<OsModel>());
+
+        byte[] content = FileUtils.readFileToByteArray(source);
+        byte[] trailer = "next".getBytes("UTF-8");
+        ByteArrayOutputStream pack = new ByteArrayOutputStream();
+        pack.write(content);
+        pack.write(trailer);
+        InputStream packStream = new ByteArrayInputStream(pack.toByteArray());
+
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+        FileUnpacker unpacker = createUnpacker(baseDir, null);
+        unpacker.setParsable(parsable, new VariableSubstitutorImpl(variables));
+        unpacker.unpack(file, packStream, target);
+
+        assertEquals("name=plut\u00f2\nplain=$\n", FileUtils.readFileToString(target, "UTF-8"));
+        assertEquals("next", IOUtils.toString(packStream, "UTF-8"));
+    }
+
     /**
      * Creates a pack file stream.
      *
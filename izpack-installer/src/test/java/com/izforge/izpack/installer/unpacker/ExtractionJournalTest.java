@@ -0,0 +1,180 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackFile;
+
+
+/**
+ * Tests the {@link ExtractionJournal}.
+ */
+public class ExtractionJournalTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The journal file.
+     */
+    private File file;
+
+    /**
+     * Sets up the test case.
+     */
+    @Before
+    public void setUp()
+    {
+        file = new File(temporaryFolder.getRoot(), "install/" + ExtractionJournal.NAME);
+    }
+
+    /**
+     * Verifies that committed files are reported as extracted when the journal is reopened, until they change.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testResume() throws IOException
+    {
+        PackFile a = createPackFile("a.txt");
+        PackFile b = createPackFile("b.txt");
+        File targetA = createTarget("a.txt", "a");
+        File targetB = createTarget("b.txt", "b");
+
+        ExtractionJournal journal = ExtractionJournal.open(file, "app 1.0");
+        assertEquals(0, journal.size());
+        journal.add(a, targetA);
+        journal.commit(false);
+        journal.add(b, targetB);
+        journal.close();
+
+        journal = ExtractionJournal.open(file, "app 1.0");
+        assertEquals(1, journal.size());
+        assertTrue(journal.isExtracted(a, targetA));
+        assertFalse(journal.isExtracted(b, targetB));
+        journal.add(b, targetB);
+        journal.commit(true);
+        journal.close();
+
+        FileUtils.write(targetA, "changed", "UTF-8");
+        journal = ExtractionJournal.open(file, "app 1.0");
+        assertEquals(2, journal.size());
+        assertFalse(journal.isExtracted(a, targetA));
+        assertTrue(journal.isExtracted(b, targetB));
+        journal.delete();
+        assertFalse(file.exists());
+    }
+
+    /**
+     * Verifies that a journal written by another installer is discarded.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testDifferentInstaller() throws IOException
+    {
+        PackFile a = createPackFile("a.txt");
+        File target = createTarget("a.txt", "a");
+        ExtractionJournal journal = ExtractionJournal.open(file, "app 1.0");
+        journal.add(a, target);
+        journal.commit(false);
+        journal.close();
+
+        journal = ExtractionJournal.open(file, "app 2.0");
+        assertEquals(0, journal.size());
+        assertFalse(journal.isExtracted(a, target));
+        journal.close();
+    }
+
+    /**
+     * Verifies that a torn record is ignored, and overwritten by subsequent records.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testTornRecord() throws IOException
+    {
+        PackFile a = createPackFile("a.txt");
+        PackFile b = createPackFile("b.txt");
+        PackFile c = createPackFile("c.txt");
+        File targetA = createTarget("a.txt", "a");
+        File targetB = createTarget("b.txt", "b");
+        File targetC = createTarget("c.txt", "c");
+
+        ExtractionJournal journal = ExtractionJournal.open(file, "app 1.0");
+        journal.add(a, targetA);
+        journal.commit(false);
+        long size = file.length();
+        journal.add(b, targetB);
+        journal.commit(false);
+        journal.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            raf.setLength(file.length() - 3);
+        }
+
+        journal = ExtractionJournal.open(file, "app 1.0");
+        assertEquals(size, file.length());
+        assertTrue(journal.isExtracted(a, targetA));
+        assertFalse(journal.isExtracted(b, targetB));
+        journal.add(c, targetC);
+        journal.commit(false);
+        journal.close();
+
+        journal = ExtractionJournal.open(file, "app 1.0");
+        assertEquals(2, journal.size());
+        assertTrue(journal.isExtracted(c, targetC));
+        journal.close();
+    }
+
+    private PackFile createPackFile(String name) throws IOException
+    {
+        File source = new File(temporaryFolder.getRoot(), "source/" + name);
+        FileUtils.write(source, name, "UTF-8");
+        return new PackFile(source.getParentFile(), source, name, null, OverrideType.OVERRIDE_TRUE, null,
+                            Blockable.BLOCKABLE_NONE, null);
+    }
+
+    private File createTarget(String name, String content) throws IOException
+    {
+        File target = new File(temporaryFolder.getRoot(), "install/" + name);
+        FileUtils.write(target, content, "UTF-8");
+        return target;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Tests the {@link FileSync}.
+ */
+public class FileSyncTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that durability modes are parsed case-insensitively, defaulting to {@link FileSync.Mode#NONE}.
+     */
+    @Test
+    public void testParse()
+    {
+        assertEquals(FileSync.Mode.NONE, FileSync.parse(null));
+        assertEquals(FileSync.Mode.NONE, FileSync.parse(""));
+        assertEquals(FileSync.Mode.NONE, FileSync.parse("none"));
+        assertEquals(FileSync.Mode.BATCH, FileSync.parse("batch"));
+        assertEquals(FileSync.Mode.STRICT, FileSync.parse(" Strict "));
+        assertEquals(FileSync.Mode.NONE, FileSync.parse("always"));
+    }
+
+    /**
+     * Verifies that nothing is synced when durability is disabled.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testNone() throws IOException
+    {
+        FileSync sync = new FileSync(FileSync.Mode.NONE);
+        sync.written(create("a.txt"), null);
+        sync.sync();
+        assertEquals(0, sync.getCount());
+    }
+
+    /**
+     * Verifies that in batch mode, files are only synced by {@link FileSync#sync()}, including enough to be synced in
+     * parallel.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testBatch() throws IOException
+    {
+        FileSync sync = new FileSync(FileSync.Mode.BATCH);
+        for (int i = 0; i < 40; ++i)
+        {
+            sync.written(create("dir" + (i % 4) + "/file" + i), null);
+        }
+        assertEquals(0, sync.getCount());
+        sync.sync();
+        assertEquals(40, sync.getCount());
+        assertTrue(sync.getNanos() > 0);
+
+        sync.sync();
+        assertEquals(40, sync.getCount());
+
+        sync.reset();
+        assertEquals(0, sync.getCount());
+        assertEquals(0, sync.getNanos());
+    }
+
+    /**
+     * Verifies that in strict mode, files are synced as they are written.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testStrict() throws IOException
+    {
+        FileSync sync = new FileSync(FileSync.Mode.STRICT);
+        File file = new File(temporaryFolder.getRoot(), "b.txt");
+        try (FileOutputStream out = new FileOutputStream(file))
+        {
+            out.write(1);
+            sync.written(file, out);
+        }
+        sync.written(create("c.txt"), null);
+        assertEquals(2, sync.getCount());
+        assertTrue(sync.getNanos() > 0);
+    }
+
+    /**
+     * Verifies that files removed since they were written, such as executables deleted once run, are skipped.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testMissingFile() throws IOException
+    {
+        FileSync sync = new FileSync(FileSync.Mode.BATCH);
+        File file = create("removed.txt");
+        sync.written(file, null);
+        sync.written(create("kept.txt"), null);
+        assertTrue(file.delete());
+        sync.sync();
+        assertEquals(2, sync.getCount());
+
+        sync = new FileSync(FileSync.Mode.STRICT);
+        sync.written(new File(temporaryFolder.getRoot(), "missing"), null);
+        assertEquals(1, sync.getCount());
+    }
+
+    /**
+     * Verifies that read-only files can be synced.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testReadOnlyFile() throws IOException
+    {
+        File file = create("readonly.txt");
+        assertTrue(file.setReadOnly());
+        try
+        {
+            FileSync sync = new FileSync(FileSync.Mode.BATCH);
+            sync.written(file, null);
+            sync.sync();
+            assertEquals(1, sync.getCount());
+
+            sync = new FileSync(FileSync.Mode.STRICT);
+            sync.written(file, null);
+            assertEquals(1, sync.getCount());
+        }
+        finally
+        {
+            assertTrue(file.setWritable(true));
+        }
+    }
+
+    private File create(String name) throws IOException
+    {
+        File file = new File(temporaryFolder.getRoot(), name);
+        FileUtils.write(file, name, "UTF-8");
+        return file;
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.api.data.AutomatedInstallData;
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.Info;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.PackInfo;
+import com.izforge.izpack.api.data.ParsableFile;
+import com.izforge.izpack.api.data.binding.OsModel;
+import com.izforge.izpack.api.event.AbstractInstallerListener;
+import com.izforge.izpack.api.event.ProgressListener;
+import com.izforge.izpack.api.exception.ResourceNotFoundException;
+import com.izforge.izpack.api.handler.Prompt;
+import com.izforge.izpack.api.rules.RulesEngine;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.core.data.DefaultVariables;
+import com.izforge.izpack.core.resource.ResourceManager;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import com.izforge.izpack.installer.data.UninstallData;
+import com.izforge.izpack.installer.event.InstallerListeners;
+import com.izforge.izpack.util.Housekeeper;
+import com.izforge.izpack.util.PlatformModelMatcher;
+import com.izforge.izpack.util.Platforms;
+
+
+/**
+ * Tests the {@link UnpackerBase}.
+ */
+public class UnpackerBaseTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The installation data.
+     */
+    private AutomatedInstallData installData;
+
+    /**
+     * The pack streams, keyed on resource name.
+     */
+    private final Map<String, byte[]> streams = new HashMap<String, byte[]>();
+
+    /**
+     * The identity of each installed file as it was installed, keyed on file name.
+     */
+    private final Map<String, Object> installed = new LinkedHashMap<String, Object>();
+
+    /**
+     * The source directory.
+     */
+    private File sourceDir;
+
+    /**
+     * The installation directory.
+     */
+    private File installDir;
+
+
+    /**
+     * Sets up the test case.
+     */
+    @Before
+    public void setUp()
+    {
+        sourceDir = new File(temporaryFolder.getRoot(), "source");
+        installDir = new File(temporaryFolder.getRoot(), "install");
+        installData = new AutomatedInstallData(new DefaultVariables(), Platforms.LINUX);
+        Info info = new Info();
+        info.setAppName("test");
+        installData.setInfo(info);
+        installData.setInstallPath(installDir.getPath());
+        installData.setVariable("name", "value");
+    }
+
+    /**
+     * Verifies that:
+     * <ul>
+     * <li>a back reference is linked to an installed copy of its payload</li>
+     * <li>a copy that has been overwritten by a later pack is not linked to</li>
+     * <li>a parsable back reference is never linked, nor linked to</li>
+     * </ul>
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testLinks() throws Exception
+    {
+        PackInfo core = createPack("core", false);
+        PackFile a = addFile(core, "a.txt", "name=${name}\n");
+
+        PackInfo update = createPack("update", false);
+        addFile(update, "a.txt", "updated\n");
+
+        PackInfo extra = createPack("extra", true);
+        addBackReference(extra, "d.txt", a);
+        addBackReference(extra, "b.txt", a);
+        addBackReference(extra, "c.txt", a);
+        addBackReference(extra, "e.txt", a);
+        addParsable(extra, "d.txt");
+        addParsable(extra, "e.txt");
+
+        unpack(core, update, extra);
+
+        // a.txt was overwritten, so b.txt can't be linked to it, and is extracted
+        assertEquals("updated\n", read("a.txt"));
+        assertEquals("name=${name}\n", read("b.txt"));
+        assertFalse(isSameFile("a.txt", "b.txt"));
+
+        // c.txt is linked to the copy extracted to b.txt
+        assertEquals("name=${name}\n", read("c.txt"));
+        assertTrue(isSameFile("b.txt", "c.txt"));
+
+        // the parsable files have their own copies, as they were installed, and after parsing
+        assertEquals("name=value\n", read("d.txt"));
+        assertEquals("name=value\n", read("e.txt"));
+        assertFalse(isSameFile("b.txt", "d.txt"));
+        assertFalse(isSameFile("b.txt", "e.txt"));
+        assertEquals(Arrays.asList("d.txt", "b.txt", "c.txt", "e.txt"), new ArrayList<String>(installed.keySet()));
+        assertFalse(installed.get("e.txt").equals(installed.get("b.txt")));
+    }
+
+    /**
+     * Verifies that when an interrupted installation is resumed, files recorded in the extraction journal aren't
+     * extracted again, but parsable files are, so that they pick up any changed variables.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testResume() throws Exception
+    {
+        PackInfo core = createPack("core", false);
+        addFile(core, "a.txt", "name=${name}\n");
+        addFile(core, "p.txt", "name=${name}\n");
+        addParsable(core, "p.txt");
+
+        unpack(core);
+        assertTrue(new File(installDir, ExtractionJournal.NAME).exists());
+        assertEquals("name=${name}\n", read("a.txt"));
+        assertEquals("name=value\n", read("p.txt"));
+
+        // change the pack content but not its length, so that resumed files can be told apart
+        streams.put("packs/pack-core", "NAME=${name}\nNAME=${name}\n".getBytes("UTF-8"));
+        installData.setVariable("name", "other");
+        unpack(core);
+
+        assertEquals("name=${name}\n", read("a.txt"));
+        assertEquals("NAME=other\n", read("p.txt"));
+    }
+
+    /**
+     * Unpacks packs.
+     *
+     * @param packs the packs to unpack
+     */
+    private void unpack(PackInfo... packs)
+    {
+        installData.getSelectedPacks().clear();
+        for (PackInfo pack : packs)
+        {
+            installData.getSelectedPacks().add(pack.getPack());
+        }
+        Prompt prompt = mock(Prompt.class);
+        InstallerListeners listeners = new InstallerListeners(installData, prompt);
+        listeners.add(new InstalledFileListener());
+        listeners.initialise();
+        TestUnpacker unpacker = new TestUnpacker(installData, new TestPackResources(), mock(RulesEngine.class),
+                                                 new VariableSubstitutorImpl(installData.getVariables()),
+                                                 new UninstallData(), mock(FileQueueFactory.class),
+                                                 mock(Housekeeper.class), listeners, prompt,
+                                                 new PlatformModelMatcher(new Platforms(), Platforms.LINUX));
+        unpacker.setProgressListener(mock(ProgressListener.class));
+        try
+        {
+            unpacker.unpack(Arrays.asList(packs), null);
+        }
+        finally
+        {
+            unpacker.cleanup();
+        }
+    }
+
+    private PackInfo createPack(String name, boolean hardLinks)
+    {
+        PackInfo result = new PackInfo(name, name, null, true, false, null, true, 0);
+        result.setHardLinks(hardLinks);
+        streams.put("packs/pack-" + name, new byte[0]);
+        return result;
+    }
+
+    /**
+     * Adds a file to a pack, appending its content to the pack stream.
+     *
+     * @param pack    the pack
+     * @param name    the file name
+     * @param content the file content
+     * @return the pack file
+     * @throws IOException for any I/O error
+     */
+    private PackFile addFile(PackInfo pack, String name, String content) throws IOException
+    {
+        PackFile result = add(pack, name, content);
+        String resource = "packs/pack-" + pack.getPack().getName();
+        byte[] stream = streams.get(resource);
+        byte[] bytes = content.getBytes("UTF-8");
+        int offset = stream.length;
+        byte[] appended = Arrays.copyOf(stream, offset + bytes.length);
+        System.arraycopy(bytes, 0, appended, offset, bytes.length);
+        streams.put(resource, appended);
+        result.setStreamResourceName(resource);
+        result.setStreamOffset(offset);
+        return result;
+    }
+
+    /**
+     * Adds a back reference to a pack.
+     *
+     * @param pack   the pack
+     * @param name   the file name
+     * @param linked the file referred to
+     * @throws IOException for any I/O error
+     */
+    private void addBackReference(PackInfo pack, String name, PackFile linked) throws IOException
+    {
+        add(pack, name, FileUtils.readFileToString(linked.getFile(), "UTF-8")).setLinkedPackFile(linked);
+    }
+
+    private PackFile add(PackInfo pack, String name, String content) throws IOException
+    {
+        File source = new File(sourceDir, pack.getPack().getName() + "/" + name);
+        FileUtils.write(source, content, "UTF-8");
+        pack.addFile(sourceDir, source, target(name).getPath(), null, OverrideType.OVERRIDE_TRUE, null,
+                     Blockable.BLOCKABLE_NONE, null, null);
+        PackFile result = null;
+        for (PackFile packFile : pack.getPackFiles())
+        {
+            result = packFile;
+        }
+        return result;
+    }
+
+    private void addParsable(PackInfo pack, String name)
+    {
+        pack.addParsable(new ParsableFile(target(name).getPath(), SubstitutionType.TYPE_PLAIN, "UTF-8",
+                                          new ArrayList<OsModel>()));
+    }
+
+    private boolean isSameFile(String name1, String name2) throws IOException
+    {
+        return Files.isSameFile(target(name1).toPath(), target(name2).toPath());
+    }
+
+    private File target(String name)
+    {
+        return new File(installDir, name);
+    }
+
+    private String read(String name) throws IOException
+    {
+        return FileUtils.readFileToString(target(name), "UTF-8");
+    }
+
+    /**
+     * Unpacker that unpacks all the packs it is given.
+     */
+    private static class TestUnpacker extends UnpackerBase
+    {
+        public TestUnpacker(AutomatedInstallData installData, PackResources resources, RulesEngine rules,
+                            VariableSubstitutorImpl variableSubstitutor, UninstallData uninstallData,
+                            FileQueueFactory factory, Housekeeper housekeeper, InstallerListeners listeners,
+                            Prompt prompt, PlatformModelMatcher matcher)
+        {
+            super(installData, resources, rules, variableSubstitutor, uninstallData, factory, housekeeper, listeners,
+                  prompt, matcher);
+        }
+
+        @Override
+        protected boolean shouldUnpack(Pack pack)
+        {
+            return true;
+        }
+    }
+
+    /**
+     * Records the identity of each file in the extra pack as it is installed.
+     */
+    private class InstalledFileListener extends AbstractInstallerListener
+    {
+        @Override
+        public boolean isFileListener()
+        {
+            return true;
+        }
+
+        @Override
+        public void afterFile(File file, PackFile packFile, Pack pack)
+        {
+            if (pack.getName().equals("extra"))
+            {
+                try
+                {
+                    installed.put(file.getName(),
+                                  Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey());
+                }
+                catch (IOException exception)
+                {
+                    throw new IllegalStateException(exception);
+                }
+            }
+        }
+    }
+
+    /**
+     * Serves pack streams from {@link #streams}.
+     */
+    private class TestPackResources implements PackResources
+    {
+        @Override
+        public InputStream getPackStream(String name)
+        {
+            return getInputStream("packs/pack-" + name);
+        }
+
+        @Override
+        public InputStream getInputStream(String name)
+        {
+            if (name.startsWith(ResourceManager.RESOURCE_BASEPATH_DEFAULT))
+            {
+                name = name.substring(ResourceManager.RESOURCE_BASEPATH_DEFAULT.length());
+            }
+            byte[] stream = streams.get(name);
+            if (stream == null)
+            {
+                throw new ResourceNotFoundException("Resource not found: " + name);
+            }
+            return new ByteArrayInputStream(stream);
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Tests the {@link UpdateCheckCleaner}.
+ */
+public class UpdateCheckCleanerTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that only files matching the patterns that weren't installed are selected.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testScan() throws IOException
+    {
+        File installPath = temporaryFolder.newFolder("myapp");
+        create(installPath, "lib/a.jar", "lib/old.jar", "lib/ext/old.jar", "lib/.svn/entries", "conf/app.xml",
+               "README");
+        new File(installPath, "lib/empty").mkdirs();
+
+        UpdateCheckCleaner cleaner = new UpdateCheckCleaner(installPath, Arrays.asList("lib/"),
+                                                            Arrays.asList("lib/ext/**"));
+        List<Path> files = new ArrayList<Path>();
+        List<Path> directories = new ArrayList<Path>();
+        cleaner.scan(Arrays.asList("lib/a.jar", new File(installPath, "lib").getPath()), files, directories);
+
+        assertEquals(Arrays.asList(new File(installPath, "lib/old.jar").toPath()), files);
+        assertEquals(Arrays.asList(new File(installPath, "lib/empty").toPath()), directories);
+    }
+
+    /**
+     * Verifies that files are deleted in parallel, and that only empty directories are deleted.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testClean() throws IOException
+    {
+        File installPath = temporaryFolder.newFolder("myapp");
+        List<String> installed = new ArrayList<String>();
+        List<File> stale = new ArrayList<File>();
+        for (int i = 0; i < 10; ++i)
+        {
+            for (int j = 0; j < 20; ++j)
+            {
+                String name = "dir" + i + "/file" + j;
+                if (i % 2 == 0)
+                {
+                    installed.add(name);
+                }
+                else
+                {
+                    stale.add(new File(installPath, name));
+                }
+                create(installPath, name);
+            }
+        }
+        create(installPath, "dir1/keep/user.txt");
+
+        UpdateCheckCleaner cleaner = new UpdateCheckCleaner(installPath, Collections.<String>emptyList(),
+                                                            Arrays.asList("**/keep/**"));
+        cleaner.clean(installed);
+
+        for (String name : installed)
+        {
+            assertTrue(name, new File(installPath, name).exists());
+        }
+        for (File file : stale)
+        {
+            assertFalse(file.toString(), file.exists());
+        }
+        assertFalse(new File(installPath, "dir3").exists());
+        assertTrue(new File(installPath, "dir1/keep/user.txt").exists());
+        assertTrue(installPath.exists());
+    }
+
+    private void create(File dir, String... names) throws IOException
+    {
+        for (String name : names)
+        {
+            FileUtils.write(new File(dir, name), name, "UTF-8");
+        }
+    }
+}
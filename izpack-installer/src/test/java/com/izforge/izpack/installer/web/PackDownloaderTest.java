@@ -0,0 +1,418 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.web;
+
+import com.izforge.izpack.util.FileUtil;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Tests the {@link PackDownloader} against an embedded HTTP server.
+ */
+public class PackDownloaderTest
+{
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The HTTP server.
+     */
+    private HttpServer server;
+
+    /**
+     * The files served, keyed on path.
+     */
+    private final Map<String, byte[]> files = new ConcurrentHashMap<String, byte[]>();
+
+    /**
+     * The number of requests received, keyed on path.
+     */
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<String, AtomicInteger>();
+
+    /**
+     * The Range headers received.
+     */
+    private final List<String> ranges = new CopyOnWriteArrayList<String>();
+
+    /**
+     * If non-null, requests wait on this latch before responding.
+     */
+    private volatile CountDownLatch gate;
+
+    /**
+     * If non-null, responses pause after {@link #holdAt} bytes until this latch is released.
+     */
+    private volatile CountDownLatch hold;
+
+    /**
+     * The number of bytes to send before pausing on {@link #hold}.
+     */
+    private volatile int holdAt;
+
+    /**
+     * The cache directory.
+     */
+    private File cache;
+
+    /**
+     * The downloader.
+     */
+    private PackDownloader downloader;
+
+
+    /**
+     * Starts the server.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new RangeHandler());
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        cache = temporaryFolder.newFolder("cache");
+        downloader = new PackDownloader(cache, 3);
+    }
+
+    /**
+     * Stops the server.
+     */
+    @After
+    public void tearDown()
+    {
+        downloader.close();
+        server.stop(0);
+    }
+
+    /**
+     * Verifies that several packs are downloaded concurrently, and that verified packs are subsequently served from
+     * the cache.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testConcurrentDownload() throws Exception
+    {
+        byte[] pack1 = add("install.jar.pack-1.jar", 100000);
+        byte[] pack2 = add("install.jar.pack-2.jar", 200000);
+        byte[] pack3 = add("install.jar.pack-3.jar", 300000);
+
+        // the server only responds once all three requests are in progress
+        gate = new CountDownLatch(3);
+        Future<File> future1 = downloader.download(uri("install.jar.pack-1.jar"), pack1.length, sha256(pack1));
+        Future<File> future2 = downloader.download(uri("install.jar.pack-2.jar"), pack2.length, sha256(pack2));
+        Future<File> future3 = downloader.download(uri("install.jar.pack-3.jar"), pack3.length, sha256(pack3));
+
+        assertArrayEquals(pack1, Files.readAllBytes(future1.get(10, TimeUnit.SECONDS).toPath()));
+        assertArrayEquals(pack2, Files.readAllBytes(future2.get(10, TimeUnit.SECONDS).toPath()));
+        assertArrayEquals(pack3, Files.readAllBytes(future3.get(10, TimeUnit.SECONDS).toPath()));
+        gate = null;
+
+        // a new downloader should reuse the cached packs
+        downloader.close();
+        downloader = new PackDownloader(cache, 3);
+        File file = downloader.get(uri("install.jar.pack-2.jar"), pack2.length, sha256(pack2));
+        assertArrayEquals(pack2, Files.readAllBytes(file.toPath()));
+        assertEquals(1, requests.get("/install.jar.pack-2.jar").get());
+    }
+
+    /**
+     * Verifies that a partial download is resumed using a range request.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testResume() throws Exception
+    {
+        byte[] pack = add("install.jar.pack-core.jar", 150000);
+        Path part = cache.toPath().resolve("install.jar.pack-core.jar.part");
+        Files.write(part, Arrays.copyOf(pack, 60000));
+
+        File file = downloader.get(uri("install.jar.pack-core.jar"), pack.length, sha256(pack));
+        assertArrayEquals(pack, Files.readAllBytes(file.toPath()));
+        assertEquals(Arrays.asList("bytes=60000-"), ranges);
+        assertFalse(Files.exists(part));
+    }
+
+    /**
+     * Verifies that a download can be read while it is still in progress.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testStreamWhileDownloading() throws Exception
+    {
+        byte[] pack = add("install.jar.pack-stream.jar", 400000);
+        hold = new CountDownLatch(1);
+        holdAt = 100000;
+
+        try (InputStream in = downloader.openStream(uri("install.jar.pack-stream.jar"), pack.length, sha256(pack)))
+        {
+            // the first part can be read before the server sends the remainder
+            byte[] first = new byte[holdAt];
+            int read = 0;
+            while (read < first.length)
+            {
+                int count = in.read(first, read, first.length - read);
+                assertTrue(count > 0);
+                read += count;
+            }
+            assertArrayEquals(Arrays.copyOf(pack, holdAt), first);
+
+            hold.countDown();
+            ByteArrayOutputStream rest = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1)
+            {
+                rest.write(buffer, 0, count);
+            }
+            assertArrayEquals(Arrays.copyOfRange(pack, holdAt, pack.length), rest.toByteArray());
+        }
+        assertTrue(new File(cache, "install.jar.pack-stream.jar").exists());
+    }
+
+    /**
+     * Verifies that a server that doesn't respond within the stall timeout is retried.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testStalledResponse() throws Exception
+    {
+        useStallTimeout(Duration.ofMillis(500));
+        byte[] pack = add("install.jar.pack-slow.jar", 1000);
+        gate = new CountDownLatch(2); // the first request waits for the second
+
+        File file = downloader.get(uri("install.jar.pack-slow.jar"), pack.length, sha256(pack));
+        assertArrayEquals(pack, Files.readAllBytes(file.toPath()));
+        assertEquals(2, requests.get("/install.jar.pack-slow.jar").get());
+    }
+
+    /**
+     * Verifies that a transfer that stops receiving data for longer than the stall timeout is aborted and resumed.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testStalledTransfer() throws Exception
+    {
+        useStallTimeout(Duration.ofMillis(500));
+        byte[] pack = add("install.jar.pack-stall.jar", 150000);
+        hold = new CountDownLatch(1);
+        holdAt = 50000;
+
+        try
+        {
+            File file = downloader.get(uri("install.jar.pack-stall.jar"), pack.length, sha256(pack));
+            assertArrayEquals(pack, Files.readAllBytes(file.toPath()));
+            assertEquals(Arrays.asList("bytes=50000-"), ranges);
+        }
+        finally
+        {
+            hold.countDown();
+        }
+    }
+
+    /**
+     * Verifies that a download that doesn't match its checksum is rejected and discarded.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testChecksumMismatch() throws Exception
+    {
+        byte[] pack = add("install.jar.pack-bad.jar", 1000);
+        try
+        {
+            downloader.get(uri("install.jar.pack-bad.jar"), pack.length, sha256(new byte[1000]));
+            fail("Expected IOException");
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+        String[] remaining = cache.list();
+        assertTrue(remaining == null || remaining.length == 0);
+    }
+
+    /**
+     * Verifies that a missing pack is reported as a {@code FileNotFoundException}.
+     *
+     * @throws Exception for any error
+     */
+    @Test(expected = FileNotFoundException.class)
+    public void testNotFound() throws Exception
+    {
+        downloader.get(uri("install.jar.pack-missing.jar"), 0, null);
+    }
+
+    /**
+     * Adds a file of random content to the server.
+     *
+     * @param name the file name
+     * @param size the file size
+     * @return the file content
+     */
+    private byte[] add(String name, int size)
+    {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        files.put("/" + name, content);
+        return content;
+    }
+
+    /**
+     * Replaces the downloader with one using the specified stall timeout.
+     *
+     * @param stallTimeout the stall timeout
+     */
+    private void useStallTimeout(Duration stallTimeout)
+    {
+        downloader.close();
+        downloader = new PackDownloader(cache, 3, stallTimeout);
+    }
+
+    private URI uri(String name)
+    {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort()
+                                  + "/" + name);
+    }
+
+    private static String sha256(byte[] content) throws IOException
+    {
+        Path file = Files.createTempFile("pack", ".jar");
+        try
+        {
+            Files.write(file, content);
+            return FileUtil.sha256(file);
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Serves files, supporting open ended range requests.
+     */
+    private class RangeHandler implements HttpHandler
+    {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException
+        {
+            String path = exchange.getRequestURI().getPath();
+            requests.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+            CountDownLatch start = gate;
+            if (start != null)
+            {
+                start.countDown();
+                try
+                {
+                    start.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException exception)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            byte[] content = files.get(path);
+            if (content == null)
+            {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            int offset = 0;
+            int status = 200;
+            if (range != null)
+            {
+                ranges.add(range);
+                offset = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+                status = 206;
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + offset + "-" + (content.length - 1)
+                        + "/" + content.length);
+            }
+            exchange.sendResponseHeaders(status, content.length - offset);
+            try (OutputStream out = exchange.getResponseBody())
+            {
+                CountDownLatch latch = hold;
+                if (latch != null && holdAt > offset)
+                {
+                    out.write(content, offset, holdAt - offset);
+                    out.flush();
+                    offset = holdAt;
+                    try
+                    {
+                        latch.await(10, TimeUnit.SECONDS);
+                    }
+                    catch (InterruptedException exception)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                out.write(content, offset, content.length - offset);
+            }
+        }
+    }
+}
@@ -45,9 +45,9 @@ public class DataCheckCommon
 
     public static String getInstallDataVariables(InstallData installData)
     {
-        Properties properties = installData.getVariables().getProperties();
+        Properties properties = installData.getVariables().getSnapshot();
         @SuppressWarnings("unchecked")
-        List<String> list = (List<String>) Collections.list(installData.getVariables().getProperties().propertyNames());
+        List<String> list = (List<String>) Collections.list(properties.propertyNames());
         list.sort(CASE_INSENSITIVE_ORDER);
         StringBuilder output = new StringBuilder("InstallData Variables:\n");
         for (String varName : list)
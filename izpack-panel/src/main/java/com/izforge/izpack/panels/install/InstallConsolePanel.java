@@ -45,6 +45,11 @@ public class InstallConsolePanel extends AbstractConsolePanel implements Progres
 
     private int noOfPacks = 0;
 
+    /**
+     * The last percentage of bytes reported, or {@code -1} if none has been reported.
+     */
+    private int lastPercent = -1;
+
     public InstallConsolePanel(IUnpacker unpacker, PanelView<ConsolePanel> panel)
     {
         super(panel);
@@ -76,6 +81,7 @@ public class InstallConsolePanel extends AbstractConsolePanel implements Progres
     {
         System.out.println("[ Starting to unpack ]");
         this.noOfPacks = no_of_steps;
+        this.lastPercent = -1;
     }
 
     @Override
@@ -100,6 +106,26 @@ public class InstallConsolePanel extends AbstractConsolePanel implements Progres
         System.out.println(") ]");
     }
 
+    /**
+     * Reports byte progress in 10% increments, with the throughput and estimated time remaining.
+     *
+     * @param bytes           the number of bytes processed so far
+     * @param totalBytes      the total number of bytes to process
+     * @param bytesPerSecond  the current throughput, or {@code 0} if it is not yet known
+     * @param remainingMillis the estimated time remaining in milliseconds, or {@code -1} if it is not yet known
+     */
+    @Override
+    public void progressBytes(long bytes, long totalBytes, long bytesPerSecond, long remainingMillis)
+    {
+        int percent = ProgressFormatter.getPercent(bytes, totalBytes);
+        if (percent / 10 > lastPercent / 10)
+        {
+            lastPercent = percent;
+            System.out.println("[ " + ProgressFormatter.format(bytes, totalBytes, bytesPerSecond, remainingMillis)
+                                       + " ]");
+        }
+    }
+
     @Override
     public void setSubStepNo(int no_of_substeps)
     {
@@ -90,6 +90,23 @@ public class InstallPanel extends IzPanel implements ProgressListener
      */
     private int currentStep = 0;
 
+    /**
+     * The text describing the current step of the overall progress. Only accessed on the event dispatch thread.
+     */
+    private String stepText = "";
+
+    /**
+     * The text describing the byte progress, or {@code null} if there is none. Only accessed on the event dispatch
+     * thread.
+     */
+    private String bytesText;
+
+    /**
+     * Determines if the overall progress bar shows byte progress, rather than the number of packs. Only accessed on
+     * the event dispatch thread.
+     */
+    private boolean showBytes = false;
+
     /**
      * Constructs an <tt>InstallPanel</tt>.
      *
@@ -154,13 +171,16 @@ public class InstallPanel extends IzPanel implements ProgressListener
                 parent.blockGUI();
 
                 // figure out how many packs there are to install
+                showBytes = false;
+                bytesText = null;
                 overallProgressBar.setMinimum(0);
                 overallProgressBar.setMaximum(noOfPacks);
                 if (noOfPacks == 1)
                 {
                     overallProgressBar.setIndeterminate(true);
                 }
-                overallProgressBar.setString("0 / " + Integer.toString(noOfPacks));
+                stepText = "0 / " + Integer.toString(noOfPacks);
+                updateOverallString();
             }
         });
     }
@@ -262,9 +282,47 @@ public class InstallPanel extends IzPanel implements ProgressListener
                 packProgressBar.setMinimum(0);
                 packProgressBar.setMaximum(max);
                 packProgressBar.setString(packName);
-                overallProgressBar.setValue(stepno - 1);
-                overallProgressBar.setString(Integer.toString(stepno) + " / "
-                                                     + Integer.toString(noOfPacks));
+                if (!showBytes)
+                {
+                    overallProgressBar.setValue(stepno - 1);
+                }
+                stepText = Integer.toString(stepno) + " / " + Integer.toString(noOfPacks);
+                updateOverallString();
+            }
+        });
+    }
+
+    /**
+     * Byte progress.
+     * <p/>
+     * Once received, the overall progress bar tracks the bytes installed rather than the number of packs, and shows
+     * the throughput and estimated time remaining.
+     *
+     * @param bytes           the number of bytes processed so far
+     * @param totalBytes      the total number of bytes to process
+     * @param bytesPerSecond  the current throughput, or {@code 0} if it is not yet known
+     * @param remainingMillis the estimated time remaining in milliseconds, or {@code -1} if it is not yet known
+     */
+    @Override
+    public void progressBytes(final long bytes, final long totalBytes, final long bytesPerSecond,
+                              final long remainingMillis)
+    {
+        final String text = ProgressFormatter.format(bytes, totalBytes, bytesPerSecond, remainingMillis);
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (!showBytes)
+                {
+                    showBytes = true;
+                    overallProgressBar.setIndeterminate(false);
+                    overallProgressBar.setMinimum(0);
+                    overallProgressBar.setMaximum(100);
+                }
+                overallProgressBar.setValue(ProgressFormatter.getPercent(bytes, totalBytes));
+                bytesText = text;
+                updateOverallString();
             }
         });
     }
@@ -317,6 +375,14 @@ public class InstallPanel extends IzPanel implements ProgressListener
         packProgressBar.setValue(currentStep);
     }
 
+    /**
+     * Updates the overall progress bar text from the current step and byte progress.
+     */
+    private void updateOverallString()
+    {
+        overallProgressBar.setString(bytesText != null ? stepText + " (" + bytesText + ")" : stepText);
+    }
+
     /**
      * Called when the panel becomes active.
      */
@@ -0,0 +1,93 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.panels.install;
+
+import java.util.concurrent.TimeUnit;
+
+import com.izforge.izpack.api.data.Pack;
+
+
+/**
+ * Formats {@link com.izforge.izpack.api.event.ProgressListener#progressBytes byte progress} for display.
+ * <p/>
+ * The output is language neutral, e.g. {@code "45% - 12.3 MB/s - 1:05"}.
+ */
+final class ProgressFormatter
+{
+
+    /**
+     * Prevent instantiation.
+     */
+    private ProgressFormatter()
+    {
+    }
+
+    /**
+     * Returns the percentage of bytes processed.
+     *
+     * @param bytes      the number of bytes processed
+     * @param totalBytes the total number of bytes
+     * @return the percentage, between {@code 0} and {@code 100}
+     */
+    static int getPercent(long bytes, long totalBytes)
+    {
+        return (totalBytes <= 0) ? 100 : (int) Math.min(100, bytes * 100 / totalBytes);
+    }
+
+    /**
+     * Formats byte progress.
+     *
+     * @param bytes           the number of bytes processed
+     * @param totalBytes      the total number of bytes
+     * @param bytesPerSecond  the throughput, or {@code 0} if unknown
+     * @param remainingMillis the estimated time remaining in milliseconds, or {@code -1} if unknown
+     * @return the formatted progress
+     */
+    static String format(long bytes, long totalBytes, long bytesPerSecond, long remainingMillis)
+    {
+        StringBuilder result = new StringBuilder();
+        result.append(getPercent(bytes, totalBytes)).append('%');
+        if (bytesPerSecond > 0)
+        {
+            result.append(" - ").append(Pack.toByteUnitsString(bytesPerSecond)).append("/s");
+        }
+        if (remainingMillis > 0)
+        {
+            result.append(" - ").append(formatDuration(remainingMillis));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Formats a duration as {@code m:ss} or {@code h:mm:ss}.
+     *
+     * @param millis the duration, in milliseconds
+     * @return the formatted duration
+     */
+    static String formatDuration(long millis)
+    {
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(millis + 999);
+        long hours = seconds / 3600;
+        long minutes = (seconds / 60) % 60;
+        seconds = seconds % 60;
+        return (hours > 0) ? String.format("%d:%02d:%02d", hours, minutes, seconds)
+                : String.format("%d:%02d", minutes, seconds);
+    }
+}
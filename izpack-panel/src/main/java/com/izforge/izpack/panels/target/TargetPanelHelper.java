@@ -19,13 +19,10 @@
 package com.izforge.izpack.panels.target;
 
 import com.izforge.izpack.api.data.InstallData;
-import com.izforge.izpack.api.data.Pack;
-import org.apache.commons.io.IOUtils;
+import com.izforge.izpack.core.data.InstallationInformation;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.ObjectInputStream;
-import java.util.List;
+import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -47,46 +44,29 @@ public class TargetPanelHelper
      * current version of IzPack.
      * <p/>
      * To be incompatible, the file {@link InstallData#INSTALLATION_INFORMATION} must exist in the supplied directory,
-     * and not contain recognised {@link Pack} instances.
+     * and not be readable by {@link InstallationInformation}, in either its current or its earlier, serialized format.
      *
      * @param dir the path to check
      * @param readInstallationInformation check .installationinformation file or skip it
      * @return {@code true} if there is incompatible installation information,
      *         {@code false} if there is no installation info, or it is compatible
      */
-    @SuppressWarnings("unchecked")
     public static boolean isIncompatibleInstallation(String dir, Boolean readInstallationInformation)
     {
         boolean result = false;
         File file = new File(dir, InstallData.INSTALLATION_INFORMATION);
         if (file.exists() && readInstallationInformation)
         {
-            FileInputStream input = null;
-            ObjectInputStream objectInput = null;
             try
             {
-                input = new FileInputStream(file);
-                objectInput = new ObjectInputStream(input);
-                List<Object> packs = (List<Object>) objectInput.readObject();
-                for (Object pack : packs)
-                {
-                    if (!(pack instanceof Pack))
-                    {
-                        return true;
-                    }
-                }
+                InstallationInformation.readPacks(file);
             }
-            catch (Throwable exception)
+            catch (IOException exception)
             {
                 logger.log(Level.FINE, "Installation information at path=" + file.getPath()
-                        + " failed to deserialize", exception);
+                        + " could not be read", exception);
                 result = true;
             }
-            finally
-            {
-                IOUtils.closeQuietly(objectInput);
-                IOUtils.closeQuietly(input);
-            }
         }
 
         return result;
@@ -108,7 +108,7 @@ public class DataCheckCommonTest
         Properties properties = new Properties();
         properties.setProperty("Variable1", "Value1");
         properties.setProperty("Variable2", "Value2");
-        Mockito.when(variables.getProperties()).thenReturn(properties);
+        Mockito.when(variables.getSnapshot()).thenReturn(properties);
     }
 
     private void mockPacks(InstallData installData) {
@@ -22,6 +22,7 @@ package com.izforge.izpack.panels.target;
 
 import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.core.data.InstallationInformation;
 import org.apache.commons.io.FileUtils;
 import org.junit.After;
 import org.junit.Before;
@@ -32,6 +33,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Properties;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -90,5 +93,16 @@ public class TargetPanelHelperTest
         objStream.writeObject(new Integer(1));
         objStream.close();
         assertTrue(TargetPanelHelper.isIncompatibleInstallation(dir.getPath(), true));
+
+        // verify that the method returns false for data written in the current format
+        assertTrue(file.delete());
+        InstallationInformation.append(file, "1.0", Arrays.asList(new Pack("core", null, null, null, null, true,
+                                                                           false, false, null, true, 0)),
+                                       new Properties());
+        assertFalse(TargetPanelHelper.isIncompatibleInstallation(dir.getPath(), true));
+
+        // verify that the method returns true for unrecognised data
+        FileUtils.writeStringToFile(file, "not installation information", "UTF-8");
+        assertTrue(TargetPanelHelper.isIncompatibleInstallation(dir.getPath(), true));
     }
 }
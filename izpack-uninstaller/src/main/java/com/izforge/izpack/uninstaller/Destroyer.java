@@ -22,10 +22,31 @@ package com.izforge.izpack.uninstaller;
 import static com.izforge.izpack.api.handler.Prompt.Type.ERROR;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -39,6 +60,10 @@ import com.izforge.izpack.uninstaller.resource.RootScripts;
 
 /**
  * The files destroyer class.
+ * <p/>
+ * Unless disabled, or a listener must be notified of each deletion, files are deleted in parallel: installed files
+ * are partitioned by directory, and the partitions deleted concurrently. Directories that are not empty at that
+ * time are deleted afterwards, deepest first.
  *
  * @author Julien Ponge
  * @author Tim Anderson
@@ -81,6 +106,11 @@ public class Destroyer implements Runnable
      */
     private boolean forceDelete;
 
+    /**
+     * Determines if files may be deleted in parallel.
+     */
+    private boolean parallel = true;
+
     /**
      * Tracks the no. of files that couldn't be deleted.
      */
@@ -138,6 +168,18 @@ public class Destroyer implements Runnable
         this.forceDelete = force;
     }
 
+    /**
+     * Determines if files may be deleted in parallel.
+     * <p/>
+     * Files are always deleted sequentially if an uninstaller listener must be notified of each deletion.
+     *
+     * @param parallel if <tt>true</tt>, delete files in parallel
+     */
+    public void setParallel(boolean parallel)
+    {
+        this.parallel = parallel;
+    }
+
     /**
      * Runs the destroyer.
      */
@@ -195,17 +237,25 @@ public class Destroyer implements Runnable
             listener.startAction("destroy", size);
         }
 
-        for (int i = 0; i < size; i++)
+        List<File> remaining = null;
+        if (parallel && !listeners.isFileListener())
+        {
+            remaining = deleteParallel(files);
+        }
+        else
         {
-            File file = files.get(i);
-            listeners.beforeDelete(file, listener);
+            for (int i = 0; i < size; i++)
+            {
+                File file = files.get(i);
+                listeners.beforeDelete(file, listener);
 
-            delete(file);
+                delete(file);
 
-            listeners.afterDelete(file, listener);
-            if (listener != null)
-            {
-                listener.progress(i, file.getAbsolutePath());
+                listeners.afterDelete(file, listener);
+                if (listener != null)
+                {
+                    listener.progress(i, file.getAbsolutePath());
+                }
             }
         }
 
@@ -223,7 +273,8 @@ public class Destroyer implements Runnable
         cleanup(installPath);
 
         // verify that the files no longer exist. Check this here, as the root scripts may have performed cleanup.
-        checkDeletion(files, installPath);
+        // When deleting in parallel, only those files that failed to be deleted need to be checked
+        checkDeletion(remaining != null ? remaining : files, installPath);
 
         if (listener != null)
         {
@@ -254,27 +305,196 @@ public class Destroyer implements Runnable
     }
 
     /**
-     * Recursively deletes a directory tree.
+     * Deletes installed files in parallel.
+     * <p/>
+     * Files are partitioned by parent directory, and the partitions deleted concurrently. Directories that aren't
+     * empty when first deleted are retried once all files have been deleted, bottom-up.
+     *
+     * @param files the installed files, in reverse order of installation
+     * @return the files that could not be deleted
+     * @throws InterruptedException if interrupted
+     */
+    private List<File> deleteParallel(List<File> files) throws InterruptedException
+    {
+        Map<File, List<File>> partitions = new LinkedHashMap<File, List<File>>();
+        for (File file : files)
+        {
+            File parent = file.getAbsoluteFile().getParentFile();
+            List<File> partition = partitions.get(parent);
+            if (partition == null)
+            {
+                partition = new ArrayList<File>();
+                partitions.put(parent, partition);
+            }
+            partition.add(file);
+        }
+
+        final Queue<File> directories = new ConcurrentLinkedQueue<File>();
+        final Queue<File> failures = new ConcurrentLinkedQueue<File>();
+        final AtomicInteger deleted = new AtomicInteger();
+        final AtomicReference<File> last = new AtomicReference<File>();
+        final CountDownLatch latch = new CountDownLatch(partitions.size());
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new DestroyerThreadFactory());
+        try
+        {
+            for (final List<File> partition : partitions.values())
+            {
+                executor.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            for (File file : partition)
+                            {
+                                if (!deleteQuietly(file, failures))
+                                {
+                                    directories.add(file);
+                                }
+                                last.lazySet(file);
+                                deleted.incrementAndGet();
+                            }
+                        }
+                        finally
+                        {
+                            latch.countDown();
+                        }
+                    }
+                });
+            }
+            int reported = 0;
+            while (!latch.await(100, TimeUnit.MILLISECONDS))
+            {
+                int count = deleted.get();
+                if (listener != null && count != reported)
+                {
+                    listener.progress(count, last.get().getAbsolutePath());
+                    reported = count;
+                }
+            }
+
+            // delete non-empty directories bottom-up. Directories at the same depth are deleted concurrently
+            TreeMap<Integer, List<File>> levels = new TreeMap<Integer, List<File>>(Collections.reverseOrder());
+            for (File dir : directories)
+            {
+                int depth = dir.toPath().toAbsolutePath().getNameCount();
+                List<File> level = levels.get(depth);
+                if (level == null)
+                {
+                    level = new ArrayList<File>();
+                    levels.put(depth, level);
+                }
+                level.add(dir);
+            }
+            for (List<File> level : levels.values())
+            {
+                List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+                for (final File dir : level)
+                {
+                    tasks.add(Executors.callable(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            try
+                            {
+                                Files.deleteIfExists(dir.toPath());
+                            }
+                            catch (IOException exception)
+                            {
+                                failures.add(dir);
+                                logger.log(Level.FINE, "Failed to delete: " + dir, exception);
+                            }
+                        }
+                    }));
+                }
+                executor.invokeAll(tasks);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        if (!failures.isEmpty())
+        {
+            logger.info("Failed to delete " + failures.size() + " of " + files.size() + " files");
+        }
+        return new ArrayList<File>(failures);
+    }
+
+    /**
+     * Deletes a file or empty directory, recording any failure.
+     *
+     * @param file     the file to delete
+     * @param failures the failures
+     * @return <tt>false</tt> if the file is a directory that isn't empty, otherwise <tt>true</tt>
+     */
+    private boolean deleteQuietly(File file, Queue<File> failures)
+    {
+        try
+        {
+            Files.deleteIfExists(file.toPath());
+        }
+        catch (DirectoryNotEmptyException exception)
+        {
+            return false;
+        }
+        catch (IOException exception)
+        {
+            failures.add(file);
+            logger.log(Level.FINE, "Failed to delete: " + file, exception);
+        }
+        return true;
+    }
+
+    /**
+     * Deletes a directory tree.
+     * <p/>
+     * Empty directories are always deleted. Files are only deleted if deletion is forced. Symbolic links are not
+     * followed.
      *
      * @param file the file to delete
      */
     private void cleanup(File file)
     {
-        if (file.isDirectory())
+        if (!file.exists())
+        {
+            return;
+        }
+        try
         {
-            File[] files = file.listFiles();
-            if (files != null)
+            Files.walkFileTree(file.toPath(), new SimpleFileVisitor<Path>()
             {
-                for (File child : files)
+                @Override
+                public FileVisitResult visitFile(Path path, BasicFileAttributes attrs)
                 {
-                    cleanup(child);
+                    if (forceDelete)
+                    {
+                        delete(path.toFile());
+                    }
+                    return FileVisitResult.CONTINUE;
                 }
-            }
-            delete(file);
+
+                @Override
+                public FileVisitResult visitFileFailed(Path path, IOException exception)
+                {
+                    logger.log(Level.FINE, "Failed to visit: " + path, exception);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exception)
+                {
+                    delete(dir.toFile());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
         }
-        else if (forceDelete)
+        catch (IOException exception)
         {
-            delete(file);
+            logger.log(Level.INFO, "Failed to clean up: " + file, exception);
         }
     }
 
@@ -291,4 +511,19 @@ public class Destroyer implements Runnable
         }
     }
 
+    /**
+     * Creates daemon threads for parallel deletion.
+     */
+    private static class DestroyerThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "IzPack - Destroyer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
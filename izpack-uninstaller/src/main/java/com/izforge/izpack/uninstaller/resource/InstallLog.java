@@ -22,10 +22,13 @@
 package com.izforge.izpack.uninstaller.resource;
 
 import com.izforge.izpack.api.exception.IzPackException;
+import com.izforge.izpack.api.exception.ResourceNotFoundException;
 import com.izforge.izpack.api.resource.Resources;
+import com.izforge.izpack.util.file.CompactPathLog;
 import org.apache.commons.io.IOUtils;
 
 import java.io.*;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -36,6 +39,10 @@ import java.util.TreeSet;
  * The installation log.
  * <p/>
  * This holds the installation path and the list of installed files.
+ * <p/>
+ * The installed files are read from the <em>install.paths</em> resource, which holds them in deletion order in the
+ * {@link CompactPathLog} format. If it is not present, they are read from the <em>install.log</em> resource, and
+ * sorted.
  *
  * @author Tim Anderson
  */
@@ -47,6 +54,11 @@ public class InstallLog
      */
     private static final String INSTALL_LOG = "install.log";
 
+    /**
+     * The install.paths resource path.
+     */
+    private static final String INSTALL_PATHS = "install.paths";
+
     /**
      * The installation directory.
      */
@@ -75,7 +87,8 @@ public class InstallLog
             BufferedReader reader = new BufferedReader(inReader);
 
             installPath = getInstallPath(reader);
-            files = getFiles(reader);
+            List<File> paths = getFiles(resources);
+            files = (paths != null) ? paths : getFiles(reader);
         }
         catch (IOException exception)
         {
@@ -155,6 +168,55 @@ public class InstallLog
         return path;
     }
 
+    /**
+     * Returns the installed files from the <em>install.paths</em> resource, in leaf first order.
+     * <p/>
+     * {@code File} instances are created on demand.
+     *
+     * @param resources used to locate the <em>install.paths</em> resource
+     * @return the installed files, or {@code null} if the resource doesn't exist
+     * @throws IOException for any I/O error
+     */
+    private List<File> getFiles(Resources resources) throws IOException
+    {
+        InputStream in;
+        try
+        {
+            in = resources.getInputStream(INSTALL_PATHS);
+        }
+        catch (ResourceNotFoundException exception)
+        {
+            return null;
+        }
+        if (in == null)
+        {
+            return null;
+        }
+        final List<String> paths;
+        try
+        {
+            paths = CompactPathLog.read(in);
+        }
+        finally
+        {
+            IOUtils.closeQuietly(in);
+        }
+        return new AbstractList<File>()
+        {
+            @Override
+            public File get(int index)
+            {
+                return new File(paths.get(index));
+            }
+
+            @Override
+            public int size()
+            {
+                return paths.size();
+            }
+        };
+    }
+
     /**
      * Returns the installed files, in leaf first order.
      *
@@ -0,0 +1,168 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.uninstaller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.api.handler.Prompt;
+import com.izforge.izpack.uninstaller.event.UninstallerListeners;
+import com.izforge.izpack.uninstaller.resource.Executables;
+import com.izforge.izpack.uninstaller.resource.InstallLog;
+import com.izforge.izpack.uninstaller.resource.RootScripts;
+
+
+/**
+ * Tests the {@link Destroyer}.
+ */
+public class DestroyerTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that installed files are deleted in parallel, and that directories holding files that weren't
+     * installed are reported.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testParallel() throws IOException
+    {
+        File installPath = temporaryFolder.newFolder("myapp");
+        List<File> installed = install(installPath);
+        File extra = new File(installPath, "dir2/user.txt");
+        FileUtils.write(extra, "user data", "UTF-8");
+
+        Destroyer destroyer = createDestroyer(installPath, installed);
+        destroyer.run();
+
+        for (File file : installed)
+        {
+            if (!file.equals(extra.getParentFile()))
+            {
+                assertFalse(file.toString(), file.exists());
+            }
+        }
+        assertTrue(extra.exists());
+        List<File> failed = destroyer.getFailedToDelete();
+        assertEquals(2, failed.size());
+        assertTrue(failed.contains(extra.getParentFile()));
+        assertTrue(failed.contains(installPath));
+    }
+
+    /**
+     * Verifies that forced deletion removes files that weren't installed.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testParallelForce() throws IOException
+    {
+        File installPath = temporaryFolder.newFolder("myapp");
+        List<File> installed = install(installPath);
+        FileUtils.write(new File(installPath, "dir2/user.txt"), "user data", "UTF-8");
+
+        Destroyer destroyer = createDestroyer(installPath, installed);
+        destroyer.setForceDelete(true);
+        destroyer.run();
+
+        assertFalse(installPath.exists());
+        assertTrue(destroyer.getFailedToDelete().isEmpty());
+    }
+
+    /**
+     * Verifies that sequential deletion gives the same result.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testSequential() throws IOException
+    {
+        File installPath = temporaryFolder.newFolder("myapp");
+        List<File> installed = install(installPath);
+
+        Destroyer destroyer = createDestroyer(installPath, installed);
+        destroyer.setParallel(false);
+        destroyer.run();
+
+        assertFalse(installPath.exists());
+        assertTrue(destroyer.getFailedToDelete().isEmpty());
+    }
+
+    /**
+     * Creates an installation.
+     *
+     * @param installPath the installation directory
+     * @return the installed files and directories, in the order the install log returns them
+     * @throws IOException for any I/O error
+     */
+    private List<File> install(File installPath) throws IOException
+    {
+        List<File> result = new ArrayList<File>();
+        for (int i = 0; i < 5; ++i)
+        {
+            File dir = new File(installPath, "dir" + i);
+            result.add(dir);
+            for (int j = 0; j < 5; ++j)
+            {
+                File sub = new File(dir, "sub" + j);
+                result.add(sub);
+                for (int k = 0; k < 20; ++k)
+                {
+                    File file = new File(sub, "file" + k);
+                    FileUtils.write(file, "content" + k, "UTF-8");
+                    result.add(file);
+                }
+            }
+        }
+        Collections.sort(result, Collections.reverseOrder());
+        return result;
+    }
+
+    private Destroyer createDestroyer(File installPath, List<File> installed)
+    {
+        InstallLog log = mock(InstallLog.class);
+        when(log.getInstallPath()).thenReturn(installPath.getPath());
+        when(log.getInstalled()).thenReturn(installed);
+        Executables executables = mock(Executables.class);
+        when(executables.run()).thenReturn(true);
+        Prompt prompt = mock(Prompt.class);
+        return new Destroyer(log, new UninstallerListeners(prompt), executables, mock(RootScripts.class), prompt);
+    }
+}
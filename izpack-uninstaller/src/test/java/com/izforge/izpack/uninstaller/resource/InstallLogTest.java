@@ -25,9 +25,12 @@ package com.izforge.izpack.uninstaller.resource;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.commons.io.input.ReaderInputStream;
@@ -36,6 +39,7 @@ import org.junit.Test;
 import org.mockito.Mockito;
 
 import com.izforge.izpack.api.resource.Resources;
+import com.izforge.izpack.util.file.CompactPathLog;
 
 /**
  * Tests the {@link InstallLog} class.
@@ -104,4 +108,28 @@ public class InstallLogTest
         assertEquals(new File("myapp/dir1"), installed.get(3));
     }
 
+    /**
+     * Verifies that installed files are read from the compact <em>install.paths</em> resource if present.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testCompactInstalled() throws IOException
+    {
+        ByteArrayOutputStream paths = new ByteArrayOutputStream();
+        CompactPathLog.write(Arrays.asList("myapp/dir2/dir3", "myapp/dir1", "myapp/dir2/dir3/file2",
+                                           "myapp/dir2/file1"), paths);
+        Resources resources = Mockito.mock(Resources.class);
+        when(resources.getInputStream("install.log")).thenReturn(new ReaderInputStream(new StringReader("myapp\n")));
+        when(resources.getInputStream("install.paths")).thenReturn(new ByteArrayInputStream(paths.toByteArray()));
+
+        InstallLog log = new InstallLog(resources);
+        assertEquals("myapp", log.getInstallPath());
+        List<File> installed = log.getInstalled();
+        assertEquals(4, installed.size());
+        assertEquals(new File("myapp/dir2/file1"), installed.get(0));
+        assertEquals(new File("myapp/dir2/dir3/file2"), installed.get(1));
+        assertEquals(new File("myapp/dir2/dir3"), installed.get(2));
+        assertEquals(new File("myapp/dir1"), installed.get(3));
+    }
 }
@@ -345,45 +345,24 @@ public class FileExecutor
             // execute command in POSTINSTALL stage
             if (currentStage == ExecutableFile.POSTINSTALL && efile.executionStage == ExecutableFile.POSTINSTALL || currentStage == ExecutableFile.UNINSTALL && efile.executionStage == ExecutableFile.UNINSTALL)
             {
-                List<String> paramList = new ArrayList<String>();
-                if (ExecutableFile.BIN == efile.type)
+                if (ExecutableFile.JAR == efile.type && efile.inProcess && inProcessSupported)
                 {
-                    paramList.add(file.toString());
-                }
-                else if (ExecutableFile.JAR == efile.type && null == efile.mainClass)
-                {
-                    paramList.add(System.getProperty("java.home") + "/bin/java");
-                    paramList.add("-jar");
-                    paramList.add(file.toString());
-                }
-                else if (ExecutableFile.JAR == efile.type && null != efile.mainClass)
-                {
-                    paramList.add(System.getProperty("java.home") + "/bin/java");
-                    paramList.add("-cp");
                     try
                     {
-                        paramList.add(buildClassPath(file.toString()));
+                        exitStatus = executeInProcess(efile, file, output);
                     }
-                    catch (Exception e)
+                    catch (UnsupportedOperationException e)
                     {
-                        logger.log(Level.WARNING, e.getMessage(), e);
+                        logger.log(Level.WARNING, "Cannot execute " + file + " in-process, starting a new JVM", e);
+                        inProcessSupported = false;
+                        exitStatus = executeCommand(getCommand(efile, file), output);
                     }
-                    paramList.add(efile.mainClass);
                 }
-
-                if (null != efile.argList && !efile.argList.isEmpty())
+                else
                 {
-                    paramList.addAll(efile.argList);
+                    exitStatus = executeCommand(getCommand(efile, file), output);
                 }
 
-                String[] params = new String[paramList.size()];
-                for (int i = 0; i < paramList.size(); i++)
-                {
-                    params[i] = paramList.get(i);
-                }
-
-                exitStatus = executeCommand(params, output);
-
                 // bring a dialog depending on return code and failure handling
                 if (exitStatus != 0)
                 {
@@ -435,6 +414,72 @@ public class FileExecutor
         return exitStatus;
     }
 
+    /**
+     * Returns the command line to execute a file in a new process.
+     *
+     * @param efile the executable file
+     * @param file  the file to execute
+     * @return the command line
+     */
+    private String[] getCommand(ExecutableFile efile, File file)
+    {
+        List<String> paramList = new ArrayList<String>();
+        if (ExecutableFile.BIN == efile.type)
+        {
+            paramList.add(file.toString());
+        }
+        else if (ExecutableFile.JAR == efile.type && null == efile.mainClass)
+        {
+            paramList.add(System.getProperty("java.home") + "/bin/java");
+            paramList.add("-jar");
+            paramList.add(file.toString());
+        }
+        else if (ExecutableFile.JAR == efile.type && null != efile.mainClass)
+        {
+            paramList.add(System.getProperty("java.home") + "/bin/java");
+            paramList.add("-cp");
+            try
+            {
+                paramList.add(buildClassPath(file.toString()));
+            }
+            catch (Exception e)
+            {
+                logger.log(Level.WARNING, e.getMessage(), e);
+            }
+            paramList.add(efile.mainClass);
+        }
+
+        if (null != efile.argList && !efile.argList.isEmpty())
+        {
+            paramList.addAll(efile.argList);
+        }
+
+        String[] params = new String[paramList.size()];
+        for (int i = 0; i < paramList.size(); i++)
+        {
+            params[i] = paramList.get(i);
+        }
+        return params;
+    }
+
+    /**
+     * Executes a JAR file inside the current JVM, using the same class path and main class that
+     * would be passed to a new java process.
+     *
+     * @param efile  the executable file
+     * @param file   the file to execute
+     * @param output contains output of the execution index 0 = standard output index 1 = standard
+     *               error
+     * @return exit status of the main class
+     * @throws UnsupportedOperationException if the JVM does not permit in-process execution
+     */
+    private int executeInProcess(ExecutableFile efile, File file, String[] output)
+    {
+        logger.fine("Executing " + file + " in-process");
+        String classPath = (efile.mainClass == null) ? file.toString() : buildClassPath(file.toString());
+        return new InProcessJavaExecutor().execute(classPath, efile.mainClass, efile.argList, output);
+    }
+
     /**
      * Transform classpath as specified in targetFile attribute into
      * OS specific classpath. This method also resolves directories
@@ -499,4 +544,10 @@ public class FileExecutor
      * The files to execute.
      */
     private final Collection<ExecutableFile> files;
+
+    /**
+     * Determines if JAR files flagged for in-process execution may be run inside this JVM.
+     * Cleared the first time the JVM refuses, after which new processes are started instead.
+     */
+    private boolean inProcessSupported = InProcessJavaExecutor.isSupported();
 }
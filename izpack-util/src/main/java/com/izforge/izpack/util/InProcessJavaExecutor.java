@@ -0,0 +1,546 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.Permission;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Runs the main class of a jar inside the current JVM instead of spawning a new <tt>java</tt> process.
+ * <p/>
+ * The main class is loaded by an isolated {@link URLClassLoader} whose parent is the platform class loader, so none
+ * of the installer classes are visible to it. It runs on a dedicated thread in its own {@link ThreadGroup}; output
+ * written to {@link System#out} and {@link System#err} by that group is captured, and calls to {@link System#exit}
+ * from that group are trapped and turned into the exit status.
+ * <p/>
+ * As with <tt>java -jar</tt>, execution completes once the main method has returned and all non-daemon threads it
+ * started have ended, or once {@link System#exit} is called. Threads of the group still running at that point are
+ * interrupted, as their class loader is closed.
+ * <p/>
+ * Only one in-process execution may run at a time, as the standard streams and the exit guard are JVM wide.
+ * <p/>
+ * The exit guard is a {@link SecurityManager}, so in-process execution is only {@link #isSupported() supported} by
+ * JVMs that permit one to be installed at run time:
+ * <ul>
+ * <li>Java 17, unless started with <tt>-Djava.security.manager=disallow</tt>. The JVM prints a deprecation warning
+ * the first time the guard is installed</li>
+ * <li>Java 18 to 23, only if started with <tt>-Djava.security.manager=allow</tt></li>
+ * <li>Java 24 and later never permit it</li>
+ * </ul>
+ */
+public class InProcessJavaExecutor
+{
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(InProcessJavaExecutor.class.getName());
+
+    /**
+     * Serialises executions, as {@link System#setOut}, {@link System#setErr} and the exit guard are global.
+     */
+    private static final Object LOCK = new Object();
+
+    /**
+     * Determines if the JVM permits the exit guard to be installed.
+     */
+    private static final boolean SUPPORTED = checkSupported();
+
+    /**
+     * The interval at which to check whether {@link System#exit} was called while waiting for threads, in
+     * milliseconds.
+     */
+    private static final long POLL_INTERVAL = 100;
+
+
+    /**
+     * Determines if in-process execution is supported by this JVM.
+     * <p/>
+     * This is determined from the Java version and the <tt>java.security.manager</tt> system property, without
+     * attempting to install a security manager.
+     *
+     * @return {@code true} if in-process execution is supported, {@code false} if a new JVM must be started instead
+     */
+    public static boolean isSupported()
+    {
+        return SUPPORTED;
+    }
+
+
+    /**
+     * Executes the main class of a jar and waits for it to complete.
+     *
+     * @param classPath the class path, using {@link File#pathSeparatorChar} as separator
+     * @param mainClass the main class. If {@code null}, the <tt>Main-Class</tt> manifest attribute of the first class
+     *                  path entry is used, as per <tt>java -jar</tt>
+     * @param args      the arguments to pass to the main class. May be {@code null}
+     * @param output    receives the captured standard output at index 0 and the standard error at index 1
+     * @return the exit status. This is {@code 0} if the main method returns normally, the status passed to
+     *         {@link System#exit} if that was called, or {@code 1} if the main method failed with an exception
+     * @throws UnsupportedOperationException if the exit guard cannot be installed in this JVM. Nothing has been
+     *                                       executed in this case, so the caller may fall back to a new process.
+     *                                       Check {@link #isSupported()} first to avoid this
+     */
+    @SuppressWarnings("removal")
+    public int execute(String classPath, String mainClass, List<String> args, String[] output)
+    {
+        if (!SUPPORTED)
+        {
+            throw new UnsupportedOperationException("In-process execution is not supported by this JVM");
+        }
+        synchronized (LOCK)
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            PrintStream errStream = new PrintStream(err, true);
+            ThreadGroup group = new ThreadGroup("izpack-exec");
+            int exitStatus;
+
+            SecurityManager previous = System.getSecurityManager();
+            ExitGuard guard = new ExitGuard(group, previous);
+            System.setSecurityManager(guard);
+
+            PrintStream stdout = System.out;
+            PrintStream stderr = System.err;
+            try
+            {
+                URL[] urls = getURLs(classPath);
+                String className = (mainClass != null) ? mainClass : getMainClass(classPath);
+                try (URLClassLoader loader = new URLClassLoader(urls, ClassLoader.getPlatformClassLoader()))
+                {
+                    System.setOut(new PrintStream(new GroupOutputStream(group, out, stdout), true));
+                    System.setErr(new PrintStream(new GroupOutputStream(group, err, stderr), true));
+
+                    MainRunner runner = new MainRunner(loader, className, args, errStream);
+                    Thread thread = new Thread(group, runner, "izpack-exec-" + className);
+                    thread.setContextClassLoader(loader);
+                    thread.start();
+                    thread.join();
+                    try
+                    {
+                        waitForThreads(group, guard);
+                    }
+                    finally
+                    {
+                        stopThreads(group);
+                    }
+
+                    Integer requested = guard.getExitStatus();
+                    exitStatus = (requested != null) ? requested : runner.getExitStatus();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                logger.log(Level.FINE, "In-process execution interrupted", e);
+                Thread.currentThread().interrupt();
+                errStream.println(e.getMessage());
+                exitStatus = -1;
+            }
+            catch (IOException e)
+            {
+                logger.log(Level.FINE, "In-process execution failed", e);
+                errStream.println(e.getMessage());
+                exitStatus = -1;
+            }
+            finally
+            {
+                System.setOut(stdout);
+                System.setErr(stderr);
+                System.setSecurityManager(previous);
+            }
+
+            output[0] = out.toString();
+            output[1] = err.toString();
+            logger.fine("stdout:");
+            logger.fine(output[0]);
+            logger.fine("stderr:");
+            logger.fine(output[1]);
+            logger.fine("exit status: " + exitStatus);
+            return exitStatus;
+        }
+    }
+
+    /**
+     * Waits for the non-daemon threads of a group to end, as the JVM would before exiting, unless
+     * {@link System#exit} is called.
+     *
+     * @param group the thread group
+     * @param guard the exit guard
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private void waitForThreads(ThreadGroup group, ExitGuard guard) throws InterruptedException
+    {
+        Thread thread;
+        while (guard.getExitStatus() == null && (thread = getNonDaemonThread(group)) != null)
+        {
+            thread.join(POLL_INTERVAL);
+        }
+    }
+
+    /**
+     * Interrupts the threads of a group that are still running, once execution has completed.
+     *
+     * @param group the thread group
+     */
+    private void stopThreads(ThreadGroup group)
+    {
+        for (Thread thread : getThreads(group))
+        {
+            logger.fine("Interrupting thread " + thread.getName() + " left running by in-process execution");
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Returns a live non-daemon thread of a group.
+     *
+     * @param group the thread group
+     * @return a non-daemon thread, or {@code null} if there are none
+     */
+    private static Thread getNonDaemonThread(ThreadGroup group)
+    {
+        for (Thread thread : getThreads(group))
+        {
+            if (!thread.isDaemon())
+            {
+                return thread;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the live threads of a group and its subgroups.
+     *
+     * @param group the thread group
+     * @return the live threads
+     */
+    private static List<Thread> getThreads(ThreadGroup group)
+    {
+        Thread[] threads;
+        int count;
+        do
+        {
+            threads = new Thread[group.activeCount() + 8];
+            count = group.enumerate(threads, true);
+        }
+        while (count == threads.length);
+        List<Thread> result = new ArrayList<Thread>(count);
+        for (int i = 0; i < count; ++i)
+        {
+            if (threads[i].isAlive())
+            {
+                result.add(threads[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Determines if the JVM permits a security manager to be installed at run time.
+     *
+     * @return {@code true} if {@link System#setSecurityManager} is permitted
+     */
+    private static boolean checkSupported()
+    {
+        int version = Runtime.version().feature();
+        String property = System.getProperty("java.security.manager");
+        boolean result;
+        if (version >= 24 || "disallow".equals(property))
+        {
+            result = false;
+        }
+        else if (version >= 18)
+        {
+            // only permitted if the property is "allow", or names a security manager installed at startup
+            result = property != null && !property.isEmpty();
+        }
+        else
+        {
+            result = true;
+        }
+        if (!result)
+        {
+            logger.fine("In-process execution is not supported by this JVM (Java " + version
+                                + ", java.security.manager=" + property + ")");
+        }
+        return result;
+    }
+
+    /**
+     * Converts a class path to URLs.
+     *
+     * @param classPath the class path
+     * @return the corresponding URLs
+     * @throws MalformedURLException if an entry cannot be converted
+     */
+    private URL[] getURLs(String classPath) throws MalformedURLException
+    {
+        List<URL> urls = new ArrayList<URL>();
+        for (String entry : classPath.split(File.pathSeparator))
+        {
+            if (!entry.isEmpty())
+            {
+                urls.add(new File(entry).toURI().toURL());
+            }
+        }
+        return urls.toArray(new URL[0]);
+    }
+
+    /**
+     * Returns the <tt>Main-Class</tt> manifest attribute of the first class path entry.
+     *
+     * @param classPath the class path
+     * @return the main class name
+     * @throws IOException if the jar cannot be read or does not declare a main class
+     */
+    private String getMainClass(String classPath) throws IOException
+    {
+        String path = classPath.split(File.pathSeparator)[0];
+        try (JarFile jar = new JarFile(path))
+        {
+            Manifest manifest = jar.getManifest();
+            String result = (manifest != null) ? manifest.getMainAttributes().getValue(Attributes.Name.MAIN_CLASS)
+                    : null;
+            if (result == null)
+            {
+                throw new IOException("No main manifest attribute, in " + path);
+            }
+            return result.trim();
+        }
+    }
+
+    /**
+     * Invokes the static main method of a class.
+     */
+    private static class MainRunner implements Runnable
+    {
+        private final ClassLoader loader;
+        private final String className;
+        private final String[] args;
+        private final PrintStream err;
+        private volatile int exitStatus = 1;
+
+        MainRunner(ClassLoader loader, String className, List<String> args, PrintStream err)
+        {
+            this.loader = loader;
+            this.className = className;
+            this.args = (args != null) ? args.toArray(new String[0]) : new String[0];
+            this.err = err;
+        }
+
+        public int getExitStatus()
+        {
+            return exitStatus;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                Class<?> type = Class.forName(className, true, loader);
+                Method main = type.getMethod("main", String[].class);
+                if (!Modifier.isStatic(main.getModifiers()))
+                {
+                    err.println("Error: Main method is not static in class " + className);
+                    return;
+                }
+                main.invoke(null, (Object) args);
+                exitStatus = 0;
+            }
+            catch (InvocationTargetException e)
+            {
+                if (!isExit(e.getCause()))
+                {
+                    e.getCause().printStackTrace(err);
+                }
+            }
+            catch (ClassNotFoundException | NoSuchMethodException e)
+            {
+                err.println("Error: Could not find or load main class " + className);
+                err.println("Caused by: " + e);
+            }
+            catch (Throwable e)
+            {
+                if (!isExit(e))
+                {
+                    e.printStackTrace(err);
+                }
+            }
+        }
+
+        private boolean isExit(Throwable exception)
+        {
+            for (Throwable cause = exception; cause != null; cause = cause.getCause())
+            {
+                if (cause instanceof ExitTrappedException)
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Thrown to unwind the thread calling {@link System#exit} inside an in-process execution.
+     */
+    private static class ExitTrappedException extends SecurityException
+    {
+        private static final long serialVersionUID = -2893487526312307124L;
+
+        ExitTrappedException(int status)
+        {
+            super("System.exit(" + status + ") trapped");
+        }
+    }
+
+    /**
+     * Traps {@link System#exit} for threads of the executing group, and delegates everything else to the previously
+     * installed security manager, if any.
+     */
+    @SuppressWarnings("removal")
+    private static class ExitGuard extends SecurityManager
+    {
+        private final ThreadGroup group;
+        private final SecurityManager previous;
+        private volatile Integer exitStatus;
+
+        ExitGuard(ThreadGroup group, SecurityManager previous)
+        {
+            this.group = group;
+            this.previous = previous;
+        }
+
+        public Integer getExitStatus()
+        {
+            return exitStatus;
+        }
+
+        @Override
+        public void checkExit(int status)
+        {
+            if (isMember(group))
+            {
+                synchronized (this)
+                {
+                    if (exitStatus == null)
+                    {
+                        exitStatus = status;
+                    }
+                }
+                throw new ExitTrappedException(status);
+            }
+            if (previous != null)
+            {
+                previous.checkExit(status);
+            }
+        }
+
+        @Override
+        public void checkPermission(Permission perm)
+        {
+            if (previous != null)
+            {
+                previous.checkPermission(perm);
+            }
+        }
+
+        @Override
+        public void checkPermission(Permission perm, Object context)
+        {
+            if (previous != null)
+            {
+                previous.checkPermission(perm, context);
+            }
+        }
+    }
+
+    /**
+     * Routes writes from threads of the executing group to a capture buffer, and all others to the original stream.
+     */
+    private static class GroupOutputStream extends OutputStream
+    {
+        private final ThreadGroup group;
+        private final OutputStream captured;
+        private final OutputStream original;
+
+        GroupOutputStream(ThreadGroup group, OutputStream captured, OutputStream original)
+        {
+            this.group = group;
+            this.captured = captured;
+            this.original = original;
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            target().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            target().flush();
+        }
+
+        private OutputStream target()
+        {
+            return isMember(group) ? captured : original;
+        }
+    }
+
+    /**
+     * Determines if the current thread belongs to a thread group or one of its descendants.
+     *
+     * @param group the thread group
+     * @return {@code true} if the current thread is a member of the group
+     */
+    private static boolean isMember(ThreadGroup group)
+    {
+        ThreadGroup current = Thread.currentThread().getThreadGroup();
+        return current != null && group.parentOf(current);
+    }
+}
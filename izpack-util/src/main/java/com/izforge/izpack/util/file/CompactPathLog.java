@@ -0,0 +1,191 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.file;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Reads and writes a compact list of file paths.
+ * <p/>
+ * Paths are stored in reverse lexical order, so that files precede the directories that contain them, without
+ * duplicates. Each path is stored as the number of characters it shares with the preceding path, followed by the
+ * remaining characters in UTF-8. As paths in the same directory share a prefix, this is typically several times
+ * smaller than a plain list, and can be read back in deletion order without sorting.
+ */
+public final class CompactPathLog
+{
+
+    /**
+     * The format identifier.
+     */
+    private static final int MAGIC = 0x495A504C; // IZPL
+
+    /**
+     * The format version.
+     */
+    private static final int VERSION = 1;
+
+
+    /**
+     * Prevent instantiation.
+     */
+    private CompactPathLog()
+    {
+    }
+
+    /**
+     * Writes paths.
+     * <p/>
+     * The stream is flushed but not closed.
+     *
+     * @param paths the paths to write, in any order
+     * @param out   the stream to write to
+     * @throws IOException for any I/O error
+     */
+    public static void write(Collection<String> paths, OutputStream out) throws IOException
+    {
+        String[] sorted = paths.toArray(new String[paths.size()]);
+        Arrays.sort(sorted, Collections.reverseOrder());
+        int count = 0;
+        for (int i = 0; i < sorted.length; ++i)
+        {
+            if (i == 0 || !sorted[i].equals(sorted[i - 1]))
+            {
+                sorted[count++] = sorted[i];
+            }
+        }
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        writeVarInt(data, count);
+        String previous = "";
+        for (int i = 0; i < count; ++i)
+        {
+            String path = sorted[i];
+            int shared = getSharedPrefix(previous, path);
+            byte[] suffix = path.substring(shared).getBytes(StandardCharsets.UTF_8);
+            writeVarInt(data, shared);
+            writeVarInt(data, suffix.length);
+            data.write(suffix);
+            previous = path;
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads paths.
+     *
+     * @param in the stream to read from. This is not closed
+     * @return the paths, in reverse lexical order
+     * @throws IOException if the stream is not in the expected format, or an I/O error occurs
+     */
+    public static List<String> read(InputStream in) throws IOException
+    {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC)
+        {
+            throw new IOException("Invalid path log");
+        }
+        int version = data.readUnsignedByte();
+        if (version != VERSION)
+        {
+            throw new IOException("Unsupported path log version: " + version);
+        }
+        int count = readVarInt(data);
+        List<String> result = new ArrayList<String>(count);
+        String previous = "";
+        byte[] buffer = new byte[256];
+        for (int i = 0; i < count; ++i)
+        {
+            int shared = readVarInt(data);
+            int length = readVarInt(data);
+            if (shared > previous.length())
+            {
+                throw new IOException("Invalid path log");
+            }
+            if (length > buffer.length)
+            {
+                buffer = new byte[Math.max(length, buffer.length * 2)];
+            }
+            data.readFully(buffer, 0, length);
+            String path = previous.substring(0, shared) + new String(buffer, 0, length, StandardCharsets.UTF_8);
+            result.add(path);
+            previous = path;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of leading characters two paths share, without splitting surrogate pairs.
+     */
+    private static int getSharedPrefix(String previous, String path)
+    {
+        int max = Math.min(previous.length(), path.length());
+        int result = 0;
+        while (result < max && previous.charAt(result) == path.charAt(result))
+        {
+            ++result;
+        }
+        if (result > 0 && Character.isHighSurrogate(path.charAt(result - 1)))
+        {
+            --result;
+        }
+        return result;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException
+    {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7)
+        {
+            int b = in.readUnsignedByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return result;
+            }
+        }
+        throw new IOException("Invalid path log");
+    }
+}
@@ -481,7 +481,7 @@ public class DirectoryScanner
      *         contents of the <code>defaultExcludes</code>
      *         <code>Vector</code>.
      */
-    private static String[] getDefaultExcludes()
+    public static String[] getDefaultExcludes()
     {
         return defaultExcludes.toArray(new String[defaultExcludes
                 .size()]);
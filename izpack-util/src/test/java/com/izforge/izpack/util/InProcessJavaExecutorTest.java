@@ -0,0 +1,254 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Tests the {@link InProcessJavaExecutor}.
+ */
+public class InProcessJavaExecutorTest
+{
+
+    /**
+     * The class path containing the test main classes.
+     */
+    private final String classPath = getClassPath();
+
+    /**
+     * Skips the tests if the JVM doesn't support in-process execution.
+     */
+    @Before
+    public void setUp()
+    {
+        assumeTrue(InProcessJavaExecutor.isSupported());
+    }
+
+    /**
+     * Verifies that a main method that returns normally yields a zero exit status, and that its output is captured.
+     */
+    @Test
+    public void testNormalReturn()
+    {
+        String[] output = new String[2];
+        int status = new InProcessJavaExecutor().execute(classPath, EchoMain.class.getName(),
+                                                         Arrays.asList("a", "b"), output);
+        assertEquals(0, status);
+        assertEquals("a b", output[0].trim());
+        assertEquals("err", output[1].trim());
+    }
+
+    /**
+     * Verifies that {@link System#exit} is trapped and its status returned, without terminating the JVM.
+     */
+    @Test
+    public void testExit()
+    {
+        String[] output = new String[2];
+        int status = new InProcessJavaExecutor().execute(classPath, ExitMain.class.getName(),
+                                                         Collections.singletonList("3"), output);
+        assertEquals(3, status);
+        assertEquals("exiting", output[0].trim());
+    }
+
+    /**
+     * Verifies that an exception thrown by the main method yields a non-zero exit status, and its stack trace is
+     * written to the captured standard error.
+     */
+    @Test
+    public void testException()
+    {
+        String[] output = new String[2];
+        int status = new InProcessJavaExecutor().execute(classPath, FailMain.class.getName(), null, output);
+        assertEquals(1, status);
+        assertTrue(output[1].contains("IllegalStateException"));
+    }
+
+    /**
+     * Verifies that an unknown main class yields a non-zero exit status.
+     */
+    @Test
+    public void testMissingClass()
+    {
+        String[] output = new String[2];
+        int status = new InProcessJavaExecutor().execute(classPath, "no.such.Main", null, output);
+        assertEquals(1, status);
+        assertTrue(output[1].contains("no.such.Main"));
+    }
+
+    /**
+     * Verifies that the main class is loaded in an isolated class loader.
+     */
+    @Test
+    public void testIsolation()
+    {
+        String[] output = new String[2];
+        int status = new InProcessJavaExecutor().execute(classPath, LoaderMain.class.getName(), null, output);
+        assertEquals(0, status);
+        assertEquals("isolated", output[0].trim());
+    }
+
+    /**
+     * Verifies that execution waits for the non-daemon threads started by the main method, as <tt>java -jar</tt>
+     * would.
+     */
+    @Test
+    public void testWaitForThreads()
+    {
+        String[] output = new String[2];
+        int status = new InProcessJavaExecutor().execute(classPath, ThreadMain.class.getName(), null, output);
+        assertEquals(0, status);
+        assertEquals("started\nfinished", output[0].trim().replace(System.lineSeparator(), "\n"));
+    }
+
+    /**
+     * Verifies that a call to {@link System#exit} from another thread completes execution without waiting for the
+     * remaining threads.
+     */
+    @Test
+    public void testExitFromThread()
+    {
+        String[] output = new String[2];
+        long start = System.currentTimeMillis();
+        int status = new InProcessJavaExecutor().execute(classPath, ThreadExitMain.class.getName(), null, output);
+        assertEquals(4, status);
+        assertTrue(System.currentTimeMillis() - start < 10000);
+    }
+
+    private static String getClassPath()
+    {
+        try
+        {
+            return new File(EchoMain.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+        }
+        catch (Exception exception)
+        {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    public static class EchoMain
+    {
+        public static void main(String[] args)
+        {
+            System.out.println(String.join(" ", args));
+            System.err.println("err");
+        }
+    }
+
+    public static class ExitMain
+    {
+        public static void main(String[] args)
+        {
+            System.out.println("exiting");
+            System.exit(Integer.parseInt(args[0]));
+        }
+    }
+
+    public static class FailMain
+    {
+        public static void main(String[] args)
+        {
+            throw new IllegalStateException("failed");
+        }
+    }
+
+    public static class LoaderMain
+    {
+        public static void main(String[] args)
+        {
+            try
+            {
+                Class.forName("com.izforge.izpack.util.InProcessJavaExecutor");
+                System.out.println("shared");
+            }
+            catch (ClassNotFoundException exception)
+            {
+                System.out.println("isolated");
+            }
+        }
+    }
+
+    public static class ThreadMain
+    {
+        public static void main(String[] args)
+        {
+            Thread thread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        Thread.sleep(200);
+                    }
+                    catch (InterruptedException exception)
+                    {
+                        return;
+                    }
+                    System.out.println("finished");
+                }
+            });
+            thread.start();
+            System.out.println("started");
+        }
+    }
+
+    public static class ThreadExitMain
+    {
+        public static void main(String[] args)
+        {
+            new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    System.exit(4);
+                }
+            }).start();
+            new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        Thread.sleep(60000);
+                    }
+                    catch (InterruptedException exception)
+                    {
+                        // interrupted once execution completes
+                    }
+                }
+            }).start();
+        }
+    }
+}
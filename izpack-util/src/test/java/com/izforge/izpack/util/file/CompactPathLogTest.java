@@ -0,0 +1,87 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.izforge.izpack.util.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link CompactPathLog}.
+ */
+public class CompactPathLogTest
+{
+
+    /**
+     * Verifies that paths are read back in reverse order without duplicates, including paths that differ within a
+     * surrogate pair.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testReadWrite() throws IOException
+    {
+        List<String> paths = Arrays.asList("/opt/app", "/opt/app/lib/a.jar", "/opt/app/lib", "/opt/app/lib/b.jar",
+                                           "/opt/app/lib/a.jar", "/opt/app/😀.txt",
+                                           "/opt/app/😁.txt", "/opt/app/résumé.txt");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompactPathLog.write(paths, out);
+
+        List<String> expected = new ArrayList<String>(new TreeSet<String>(paths));
+        Collections.reverse(expected);
+        assertEquals(expected, CompactPathLog.read(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    /**
+     * Verifies that paths sharing directories are stored compactly.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testCompact() throws IOException
+    {
+        List<String> paths = new ArrayList<String>();
+        int plain = 0;
+        for (int i = 0; i < 1000; ++i)
+        {
+            String path = "/opt/application/lib/module" + (i / 100) + "/resources/file" + i + ".properties";
+            paths.add(path);
+            plain += path.getBytes(StandardCharsets.UTF_8).length + 1;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompactPathLog.write(paths, out);
+        assertTrue(out.size() * 4 < plain);
+
+        List<String> read = CompactPathLog.read(new ByteArrayInputStream(out.toByteArray()));
+        Collections.sort(read);
+        Collections.sort(paths);
+        assertEquals(paths, read);
+    }
+}